@@ -19,32 +19,39 @@ package com.helger.en16931.ubl2cii.cli;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.Callable;
 import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.error.IError;
 import com.helger.commons.error.list.ErrorList;
-import com.helger.commons.io.file.FileHelper;
 import com.helger.commons.io.file.FileSystemIterator;
 import com.helger.commons.io.file.FileSystemRecursiveIterator;
 import com.helger.commons.io.file.FilenameHelper;
 import com.helger.commons.state.ESuccess;
-import com.helger.en16931.ubl2cii.UBLToCIIConversionHelper;
+import com.helger.en16931.ubl2cii.AttachmentStore;
+import com.helger.en16931.ubl2cii.DirectoryAttachmentSink;
+import com.helger.en16931.ubl2cii.ECIIOutputProfile;
+import com.helger.en16931.ubl2cii.EFileInputMode;
+import com.helger.en16931.ubl2cii.UBLToCIIArchiveConverter;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionEngine;
+import com.helger.en16931.ubl2cii.UBLToCIIConversionSettings;
 import com.helger.en16931.ubl2cii.UBLToCIIVersion;
 
 import picocli.CommandLine;
@@ -76,7 +83,34 @@ public class UBLToCIIConverter implements Callable <Integer>
   @Option (names = "--disable-wildcard-expansion", paramLabel = "boolean", defaultValue = "false", description = "Disable wildcard expansion of filenames")
   private boolean m_bDisableWildcardExpansion;
 
-  @Parameters (arity = "1..*", paramLabel = "source files", description = "One or more UBL file(s)")
+  @Option (names = "--input-mode", paramLabel = "mode", defaultValue = "STREAM", description = "How the input files are read - one of ${COMPLETION-CANDIDATES} (default: '${DEFAULT-VALUE}')")
+  private EFileInputMode m_eFileInputMode;
+
+  @Option (names = "--mapping-threshold", paramLabel = "bytes", defaultValue = "" + UBLToCIIConversionSettings.DEFAULT_MAPPING_THRESHOLD, description = "The minimum file size for memory mapping in input mode MAPPED. Smaller files are read into pooled buffers (default: '${DEFAULT-VALUE}')")
+  private int m_nMappingThreshold;
+
+  @Option (names = "--output-profile", paramLabel = "profile", defaultValue = "PRETTY", description = "How the CII output is serialized - one of ${COMPLETION-CANDIDATES} (default: '${DEFAULT-VALUE}')")
+  private ECIIOutputProfile m_eOutputProfile;
+
+  @Option (names = "--gzip-output", paramLabel = "boolean", defaultValue = "false", description = "Write GZIP compressed output files with the extension '.xml.gz' (default: '${DEFAULT-VALUE}'). Compressed input files are always detected.")
+  private boolean m_bGZIPOutput;
+
+  @Option (names = "--gzip-level", paramLabel = "level", defaultValue = "" + UBLToCIIConversionSettings.DEFAULT_GZIP_LEVEL, description = "The GZIP compression level from -1 (default) and 0 (none) to 9 (best) (default: '${DEFAULT-VALUE}')")
+  private int m_nGZIPLevel;
+
+  @Option (names = "--attachment-dir", paramLabel = "directory", description = "If specified, embedded attachments are written as separate files into this directory and are referenced by URI from the CII")
+  private String m_sAttachmentDir;
+
+  @Option (names = "--dedup-attachments", paramLabel = "boolean", defaultValue = "false", description = "Spool embedded attachments to temporary files and handle identical attachments of all input files only once (default: '${DEFAULT-VALUE}')")
+  private boolean m_bDedupAttachments;
+
+  @Option (names = "--attachment-spool-threshold", paramLabel = "bytes", defaultValue = "" + UBLToCIIConversionSettings.DEFAULT_ATTACHMENT_SPOOL_THRESHOLD, description = "The minimum decoded size of embedded attachments to be spooled and deduplicated (default: '${DEFAULT-VALUE}')")
+  private int m_nAttachmentSpoolThreshold;
+
+  @Option (names = "--parallel-line-threshold", paramLabel = "lines", defaultValue = "" + UBLToCIIConversionSettings.DEFAULT_PARALLEL_LINE_THRESHOLD, description = "The minimum number of invoice lines of a single document to convert the lines in parallel (default: '${DEFAULT-VALUE}')")
+  private int m_nParallelLineThreshold;
+
+  @Parameters (arity = "1..*", paramLabel = "source files", description = "One or more UBL file(s) or ZIP archive(s) of UBL files")
   private List <String> m_aSourceFilenames;
 
   private void _verboseLog (@Nonnull final Supplier <String> aSupplier)
@@ -193,6 +227,97 @@ public class UBLToCIIConverter implements Callable <Integer>
         LOGGER.info (sMsg);
   }
 
+  private void _convertArchive (@Nonnull final UBLToCIIArchiveConverter aArchiveConverter, @Nonnull final File f)
+  {
+    final File aDestFile = new File (m_sOutputDir, FilenameHelper.getBaseName (f.getName ()) + m_sOutputFileSuffix + ".zip");
+
+    LOGGER.info ("Converting all UBL entries of ZIP archive '" + f.getAbsolutePath () + "' to CII");
+
+    final ErrorList aErrorList = new ErrorList ();
+    final ICommonsList <UBLToCIIArchiveConverter.EntryResult> aResults = aArchiveConverter.convertArchive (f.toPath (),
+                                                                                                           aDestFile.toPath (),
+                                                                                                           aErrorList);
+    if (aResults == null)
+    {
+      LOGGER.error ("Failed to convert ZIP archive '" + f.getAbsolutePath () + "':");
+      for (final IError aError : aErrorList)
+        _log (aError);
+      return;
+    }
+
+    int nSuccess = 0;
+    for (final UBLToCIIArchiveConverter.EntryResult aResult : aResults)
+    {
+      if (aResult.isSuccess ())
+      {
+        nSuccess++;
+        _verboseLog ( () -> "  Converted entry '" + aResult.getInputName () + "' to '" + aResult.getOutputName () + "'");
+      }
+      else
+        LOGGER.error ("Failed to convert entry '" + aResult.getInputName () + "' to CII:");
+      for (final IError aError : aResult.getErrorList ())
+        _log (aError);
+    }
+    LOGGER.info ("Successfully wrote " +
+                 nSuccess +
+                 " of " +
+                 aResults.size () +
+                 " entries to CII ZIP archive '" +
+                 aDestFile.getAbsolutePath () +
+                 "'");
+  }
+
+  @Nullable
+  private DirectoryAttachmentSink _createAttachmentSink () throws IOException
+  {
+    if (m_sAttachmentDir == null)
+      return null;
+
+    final Path aDir = Paths.get (m_sAttachmentDir).toAbsolutePath ();
+    Files.createDirectories (aDir);
+    _verboseLog ( () -> "Writing attachments to directory '" + aDir + "'");
+    return new DirectoryAttachmentSink (aDir);
+  }
+
+  private void _convertStreaming (@Nonnull final UBLToCIIConversionEngine aEngine,
+                                  @Nonnull final File f,
+                                  @Nonnull final File aDestFile)
+  {
+    // Read and write in one pass, so that the attachments can be spooled
+    final ErrorList aErrorList = new ErrorList ();
+    ESuccess eSuccess;
+    try (final FileChannel aChannel = FileChannel.open (aDestFile.toPath (),
+                                                        StandardOpenOption.CREATE,
+                                                        StandardOpenOption.TRUNCATE_EXISTING,
+                                                        StandardOpenOption.WRITE))
+    {
+      // Uses the same file input mode as the non-streaming conversion
+      eSuccess = aEngine.convertUBL21AutoDetectToCIID16B (f.toPath (), aChannel, aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      LOGGER.error ("  " + ex.getMessage ());
+      eSuccess = ESuccess.FAILURE;
+    }
+
+    for (final IError aError : aErrorList)
+      _log (aError);
+    if (eSuccess.isSuccess ())
+      LOGGER.info ("Successfully wrote CII file '" + aDestFile.getAbsolutePath () + "'");
+    else
+    {
+      LOGGER.error ("Failed to convert UBL file '" + f.getAbsolutePath () + "' to CII");
+      _deletePartialFile (aDestFile);
+    }
+  }
+
+  private static void _deletePartialFile (@Nonnull final File aDestFile)
+  {
+    // Don't leave partial output behind
+    if (aDestFile.exists () && !aDestFile.delete ())
+      LOGGER.warn ("Failed to delete the partial CII file '" + aDestFile.getAbsolutePath () + "'");
+  }
+
   // doing the business
   public Integer call () throws Exception
   {
@@ -202,35 +327,109 @@ public class UBLToCIIConverter implements Callable <Integer>
     m_sOutputDir = _normalizeOutputDirectory (m_sOutputDir);
     final List <File> m_aSourceFiles = _normalizeInputFiles (m_aSourceFilenames);
 
-    for (final File f : m_aSourceFiles)
+    final DirectoryAttachmentSink aAttachmentSink = _createAttachmentSink ();
+    // Shared by all input files
+    final AttachmentStore aStore = m_bDedupAttachments ? new AttachmentStore () : null;
+    final UBLToCIIConversionSettings aSettings = UBLToCIIConversionSettings.builder ()
+                                                                           .fileInputMode (m_eFileInputMode)
+                                                                           .mappingThreshold (m_nMappingThreshold)
+                                                                           .outputProfile (m_eOutputProfile)
+                                                                           .gzipOutput (m_bGZIPOutput)
+                                                                           .gzipLevel (m_nGZIPLevel)
+                                                                           .attachmentSink (aAttachmentSink)
+                                                                           .spoolAttachments (m_bDedupAttachments)
+                                                                           .attachmentSpoolThreshold (m_nAttachmentSpoolThreshold)
+                                                                           .attachmentStore (aStore)
+                                                                           .parallelLineThreshold (m_nParallelLineThreshold)
+                                                                           .build ();
+    _verboseLog ( () -> "Using conversion settings " + aSettings);
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (aSettings);
+    final UBLToCIIArchiveConverter aArchiveConverter = new UBLToCIIArchiveConverter (aEngine,
+                                                                                     m_sOutputFileSuffix);
+
+    try
     {
-      final File aDestFile = new File (m_sOutputDir, FilenameHelper.getBaseName (f) + m_sOutputFileSuffix + ".xml");
+      for (final File f : m_aSourceFiles)
+      {
+        if (f.getName ().toLowerCase (Locale.ROOT).endsWith (".zip"))
+        {
+          _convertArchive (aArchiveConverter, f);
+          continue;
+        }
 
-      LOGGER.info ("Converting UBL file '" + f.getAbsolutePath () + "' to CII");
+        String sBaseName = f.getName ();
+        if (sBaseName.endsWith (".gz"))
+          sBaseName = sBaseName.substring (0, sBaseName.length () - 3);
+        final File aDestFile = new File (m_sOutputDir,
+                                         FilenameHelper.getBaseName (sBaseName) +
+                                                       m_sOutputFileSuffix +
+                                                       (m_bGZIPOutput ? ".xml.gz" : ".xml"));
 
-      // Perform the main conversion
-      final ErrorList aErrorList = new ErrorList ();
-      final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (FileHelper.getInputStream (f),
-        aErrorList);
-      if (aErrorList.containsAtLeastOneError () || aCII == null)
-      {
-        LOGGER.error ("Failed to convert UBL file '" + f.getAbsolutePath () + "' to CII:");
-        for (final IError aError : aErrorList)
-          _log (aError);
-      }
-      else
-      {
-        for (final IError aError : aErrorList)
-          _log (aError);
+        LOGGER.info ("Converting UBL file '" + f.getAbsolutePath () + "' to CII");
 
-        final boolean bFormattedOutput = true;
-        final ESuccess eSuccess = new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (bFormattedOutput)
-                                                                                  .write (aCII, aDestFile);
+        if (aStore != null)
+        {
+          _convertStreaming (aEngine, f, aDestFile);
+          continue;
+        }
 
-        if (eSuccess.isSuccess ())
-          LOGGER.info ("Successfully wrote CII file '" + aDestFile.getAbsolutePath () + "'");
+        // Perform the main conversion
+        final ErrorList aErrorList = new ErrorList ();
+        final CrossIndustryInvoiceType aCII = aEngine.convertUBL21AutoDetectToCIID16B (f.toPath (), aErrorList);
+        if (aErrorList.containsAtLeastOneError () || aCII == null)
+        {
+          LOGGER.error ("Failed to convert UBL file '" + f.getAbsolutePath () + "' to CII:");
+          for (final IError aError : aErrorList)
+            _log (aError);
+        }
         else
-          LOGGER.error ("Failed to write CII file '" + aDestFile.getAbsolutePath () + "'");
+        {
+          for (final IError aError : aErrorList)
+            _log (aError);
+
+          final ErrorList aWriteErrorList = new ErrorList ();
+          ESuccess eSuccess;
+          try (final FileChannel aChannel = FileChannel.open (aDestFile.toPath (),
+                                                              StandardOpenOption.CREATE,
+                                                              StandardOpenOption.TRUNCATE_EXISTING,
+                                                              StandardOpenOption.WRITE))
+          {
+            eSuccess = aEngine.writeCIID16B (aCII, aChannel, aWriteErrorList);
+          }
+          catch (final IOException ex)
+          {
+            LOGGER.error ("  " + ex.getMessage ());
+            eSuccess = ESuccess.FAILURE;
+          }
+          for (final IError aError : aWriteErrorList)
+            _log (aError);
+
+          if (eSuccess.isSuccess ())
+            LOGGER.info ("Successfully wrote CII file '" + aDestFile.getAbsolutePath () + "'");
+          else
+          {
+            LOGGER.error ("Failed to write CII file '" + aDestFile.getAbsolutePath () + "'");
+            _deletePartialFile (aDestFile);
+          }
+        }
+      }
+    }
+    finally
+    {
+      if (aStore != null)
+      {
+        LOGGER.info ("Attachment deduplication: " +
+                     aStore.getDistinctCount () +
+                     " distinct attachment(s), " +
+                     aStore.getDuplicateCount () +
+                     " duplicate(s) with " +
+                     aStore.getDuplicateSize () +
+                     " bytes, " +
+                     aStore.getEncodedReuseCount () +
+                     " reused base64 encoding(s), " +
+                     aStore.getURIReuseCount () +
+                     " reused externalized file(s)");
+        aStore.close ();
       }
     }
 
@@ -39,7 +39,6 @@ import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentit
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
-import un.unece.uncefact.data.standard.unqualifieddatatype._100.IndicatorType;
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.TextType;
 
 /**
@@ -79,13 +78,6 @@ public abstract class AbstractToCIID16BConverter {
     return isOriginatorDocumentReferenceTypeCode(s) || "130".equals(s);
   }
 
-  @Nullable
-  private static String _getAsVAIfNecessary(@Nullable final String s) {
-    if ("VAT".equals(s))
-      return "VA";
-    return s;
-  }
-
   @Nullable
   protected static String createFormattedDateValue(@Nullable final LocalDate aLocalDate) {
     if (aLocalDate == null)
@@ -132,10 +124,7 @@ public abstract class AbstractToCIID16BConverter {
     if (aUBLID == null)
       return null;
 
-    final IDType ret = new IDType();
-    ifNotNull(ret::setSchemeID, aUBLID.getSchemeID());
-    ifNotNull(ret::setValue, aUBLID.getValue());
-    return ret;
+    return UBL21ToCIID16BMapping.ID.apply(aUBLID, new IDType());
   }
 
   @Nullable
@@ -173,18 +162,7 @@ public abstract class AbstractToCIID16BConverter {
     if (aUBLAddress == null)
       return null;
 
-    final TradeAddressType ret = new TradeAddressType();
-    ifNotEmpty(ret::setLineOne, aUBLAddress.getStreetNameValue());
-    ifNotEmpty(ret::setLineTwo, aUBLAddress.getAdditionalStreetNameValue());
-    if (aUBLAddress.hasAddressLineEntries())
-      ifNotEmpty(ret::setLineThree, aUBLAddress.getAddressLineAtIndex(0).getLineValue());
-    ifNotEmpty(ret::setCityName, aUBLAddress.getCityNameValue());
-    ifNotEmpty(ret::setPostcodeCode, aUBLAddress.getPostalZoneValue());
-    if (aUBLAddress.getCountrySubentity() != null)
-      ret.addCountrySubDivisionName(convertText(aUBLAddress.getCountrySubentity().getValue()));
-    if (aUBLAddress.getCountry() != null)
-      ifNotEmpty(ret::setCountryID, aUBLAddress.getCountry().getIdentificationCodeValue());
-    return ret;
+    return UBL21ToCIID16BMapping.ADDRESS.apply(aUBLAddress, new TradeAddressType());
   }
 
   @Nonnull
@@ -208,59 +186,7 @@ public abstract class AbstractToCIID16BConverter {
     if (aUBLParty == null)
       return null;
 
-    final TradePartyType aTPT = new TradePartyType();
-    for (final var aUBLPartyID : aUBLParty.getPartyIdentification())
-      ifNotNull(aTPT::addID, convertID(aUBLPartyID.getID()));
-
-    if (aUBLParty.hasPartyNameEntries())
-      ifNotEmpty(aTPT::setName, aUBLParty.getPartyNameAtIndex(0).getNameValue());
-
-    if (aUBLParty.hasPartyLegalEntityEntries()) {
-      final PartyLegalEntityType aUBLLegalEntity = aUBLParty.getPartyLegalEntity().get(0);
-
-      final LegalOrganizationType aLOT = new LegalOrganizationType();
-      ifNotEmpty(aLOT::setTradingBusinessName, aUBLLegalEntity.getRegistrationNameValue());
-      ifNotNull(aLOT::setID, convertID(aUBLLegalEntity.getCompanyID()));
-      ifNotNull(aLOT::setPostalTradeAddress, convertAddress(aUBLLegalEntity.getRegistrationAddress()));
-
-      if (StringHelper.hasNoText(aTPT.getNameValue())) {
-        // Fill mandatory field
-        ifNotEmpty(aTPT::setName, aUBLLegalEntity.getRegistrationNameValue());
-      }
-
-      aTPT.setSpecifiedLegalOrganization(aLOT);
-    }
-
-    ifNotNull(aTPT::setPostalTradeAddress, convertAddress(aUBLParty.getPostalAddress()));
-
-    if (aUBLParty.getEndpointID() != null) {
-      final UniversalCommunicationType aUCT = new UniversalCommunicationType();
-      ifNotNull(aUCT::setURIID, convertID(aUBLParty.getEndpointID()));
-      aTPT.addURIUniversalCommunication(aUCT);
-    }
-
-    if (aUBLParty.hasPartyTaxSchemeEntries()) {
-      final PartyTaxSchemeType aUBLPartyTaxScheme = aUBLParty.getPartyTaxSchemeAtIndex(0);
-      if (aUBLPartyTaxScheme.getCompanyIDValue() != null) {
-        final TaxRegistrationType aTaxReg = new TaxRegistrationType();
-        final IDType aID = convertID(aUBLPartyTaxScheme.getCompanyID());
-        if (aUBLPartyTaxScheme.getTaxScheme() != null) {
-          // MUST use "VA" scheme
-          ifNotEmpty(aID::setSchemeID, _getAsVAIfNecessary(aUBLPartyTaxScheme.getTaxScheme().getIDValue()));
-        }
-        aTaxReg.setID(aID);
-        aTPT.addSpecifiedTaxRegistration(aTaxReg);
-      }
-    }
-
-    if (!aUBLParty.hasNoPersonEntries())
-      for (var aPerson : aUBLParty.getPerson())
-        aTPT.addDefinedTradeContact(convertPersonType(aPerson));
-    if(aUBLParty.getContact() != null) {
-      aTPT.addDefinedTradeContact(convertPersonType(aUBLParty.getContact()));
-    }
-
-    return aTPT;
+    return UBL21ToCIID16BMapping.PARTY.apply(aUBLParty, new TradePartyType());
   }
 
   @Nonnull
@@ -377,51 +303,12 @@ public abstract class AbstractToCIID16BConverter {
 
   @Nonnull
   protected static TradeTaxType convertApplicableTradeTax(@Nonnull final TaxSubtotalType aUBLTaxSubtotal) {
-    final TaxCategoryType aUBLTaxCategory = aUBLTaxSubtotal.getTaxCategory();
-    final TaxSchemeType aUBLTaxScheme = aUBLTaxCategory.getTaxScheme();
-
-    final TradeTaxType ret = new TradeTaxType();
-    if (aUBLTaxScheme != null)
-      ifNotEmpty(ret::setTypeCode, aUBLTaxScheme.getIDValue());
-    ifNotEmpty(ret::setCategoryCode, aUBLTaxCategory.getIDValue());
-    ifNotNull(ret::addCalculatedAmount, convertAmount(aUBLTaxSubtotal.getTaxAmount()));
-    ifNotEmpty(ret::setCategoryCode, aUBLTaxCategory.getIDValue());
-    ifNotNull(ret::addBasisAmount, convertAmount(aUBLTaxSubtotal.getTaxableAmount()));
-    ifNotNull(ret::setRateApplicablePercent, aUBLTaxCategory.getPercentValue());
-    if (aUBLTaxCategory.hasTaxExemptionReasonEntries())
-      ifNotEmpty(ret::setExemptionReason, aUBLTaxCategory.getTaxExemptionReasonAtIndex(0).getValue());
-    ifNotEmpty(ret::setExemptionReasonCode, aUBLTaxCategory.getTaxExemptionReasonCodeValue());
-    return ret;
+    return UBL21ToCIID16BMapping.VAT_BREAKDOWN.apply(aUBLTaxSubtotal, new TradeTaxType());
   }
 
   @Nonnull
   protected static TradeAllowanceChargeType convertSpecifiedTradeAllowanceCharge(@Nonnull final AllowanceChargeType aUBLAllowanceCharge) {
-    final TradeAllowanceChargeType ret = new TradeAllowanceChargeType();
-
-    final IndicatorType aITDC = new IndicatorType();
-    aITDC.setIndicator(Boolean.valueOf(aUBLAllowanceCharge.getChargeIndicator().isValue()));
-    ret.setChargeIndicator(aITDC);
-
-    ret.addActualAmount(convertAmount(aUBLAllowanceCharge.getAmount()));
-    ifNotEmpty(ret::setReasonCode, aUBLAllowanceCharge.getAllowanceChargeReasonCodeValue());
-    if (aUBLAllowanceCharge.hasAllowanceChargeReasonEntries())
-      ret.setReason(aUBLAllowanceCharge.getAllowanceChargeReason().get(0).getValue());
-    ifNotNull(ret::setCalculationPercent, aUBLAllowanceCharge.getMultiplierFactorNumericValue());
-    ifNotNull(ret::setBasisAmount, aUBLAllowanceCharge.getBaseAmountValue());
-
-    if (aUBLAllowanceCharge.hasTaxCategoryEntries()) {
-      final TaxCategoryType aUBLTaxCategory = aUBLAllowanceCharge.getTaxCategoryAtIndex(0);
-      final TaxSchemeType aUBLTaxSchene = aUBLTaxCategory.getTaxScheme();
-
-      final TradeTaxType aTradeTax = new TradeTaxType();
-      if (aUBLTaxSchene != null)
-        ifNotEmpty(aTradeTax::setTypeCode, aUBLTaxSchene.getIDValue());
-      ifNotEmpty(aTradeTax::setCategoryCode, aUBLTaxCategory.getIDValue());
-      ifNotNull(aTradeTax::setRateApplicablePercent, aUBLTaxCategory.getPercentValue());
-      ret.addCategoryTradeTax(aTradeTax);
-    }
-
-    return ret;
+    return UBL21ToCIID16BMapping.ALLOWANCE_CHARGE.apply(aUBLAllowanceCharge, new TradeAllowanceChargeType());
   }
 
   @Nonnull
@@ -440,25 +327,26 @@ public abstract class AbstractToCIID16BConverter {
   protected static TradeSettlementHeaderMonetarySummationType createSpecifiedTradeSettlementHeaderMonetarySummation(@Nullable final MonetaryTotalType aUBLMonetaryTotal,
                                                                                                                     @Nullable final TaxTotalType aUBLTaxTotal) {
     final TradeSettlementHeaderMonetarySummationType ret = new TradeSettlementHeaderMonetarySummationType();
-    if (aUBLMonetaryTotal != null) {
-      ifNotNull(ret::addLineTotalAmount, convertAmount(aUBLMonetaryTotal.getLineExtensionAmount()));
-      ifNotNull(ret::addChargeTotalAmount, convertAmount(aUBLMonetaryTotal.getChargeTotalAmount()));
-      ifNotNull(ret::addAllowanceTotalAmount, convertAmount(aUBLMonetaryTotal.getAllowanceTotalAmount()));
-      ifNotNull(ret::addTaxBasisTotalAmount, convertAmount(aUBLMonetaryTotal.getTaxExclusiveAmount()));
-    }
+    if (aUBLMonetaryTotal != null)
+      UBL21ToCIID16BMapping.MONETARY_SUMMATION.apply(aUBLMonetaryTotal, ret);
 
     if (aUBLTaxTotal != null) {
       // Currency ID is required here
       ifNotNull(ret::addTaxTotalAmount, convertAmount(aUBLTaxTotal.getTaxAmount(), true));
     }
-
-    if (aUBLMonetaryTotal != null) {
-      ifNotNull(ret::addRoundingAmount, convertAmount(aUBLMonetaryTotal.getPayableRoundingAmount()));
-      ifNotNull(ret::addGrandTotalAmount, convertAmount(aUBLMonetaryTotal.getTaxInclusiveAmount()));
-      ifNotNull(ret::addTotalPrepaidAmount, convertAmount(aUBLMonetaryTotal.getPrepaidAmount()));
-      ifNotNull(ret::addDuePayableAmount, convertAmount(aUBLMonetaryTotal.getPayableAmount()));
-    }
-
     return ret;
   }
+
+  /**
+   * Create the header trade settlement that is common to invoices and credit
+   * notes.
+   *
+   * @param aUBLDoc
+   *        The UBL document. May not be <code>null</code>.
+   * @return The created header trade settlement. Never <code>null</code>.
+   */
+  @Nonnull
+  protected static HeaderTradeSettlementType createApplicableHeaderTradeSettlement(@Nonnull final IUBL21Document aUBLDoc) {
+    return UBL21ToCIID16BMapping.HEADER_TRADE_SETTLEMENT.apply(aUBLDoc, new HeaderTradeSettlementType());
+  }
 }
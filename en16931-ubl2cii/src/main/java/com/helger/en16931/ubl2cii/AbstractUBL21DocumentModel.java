@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.time.LocalDate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DeliveryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DocumentReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PeriodType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.SupplierPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.NoteType;
+
+/**
+ * Abstract base class for the lightweight UBL 2.1 document projections. It
+ * only keeps the parts of the document that are used by the converters and is
+ * filled by the {@link UBL21StreamReader} without creating the full JAXB
+ * object graph.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public abstract class AbstractUBL21DocumentModel implements IUBL21Document
+{
+  private String m_sCustomizationID;
+  private String m_sID;
+  private LocalDate m_aIssueDate;
+  private final ICommonsList <NoteType> m_aNotes = new CommonsArrayList <> ();
+  private String m_sDocumentCurrencyCode;
+  private String m_sAccountingCost;
+  private PeriodType m_aInvoicePeriod;
+  private OrderReferenceType m_aOrderReference;
+  private DocumentReferenceType m_aContractDocumentReference;
+  private final ICommonsList <DocumentReferenceType> m_aAdditionalDocumentReferences = new CommonsArrayList <> ();
+  private SupplierPartyType m_aAccountingSupplierParty;
+  private CustomerPartyType m_aAccountingCustomerParty;
+  private PartyType m_aPayeeParty;
+  private DeliveryType m_aDelivery;
+  private PaymentMeansType m_aPaymentMeans;
+  private final ICommonsList <PaymentTermsType> m_aPaymentTerms = new CommonsArrayList <> ();
+  private final ICommonsList <AllowanceChargeType> m_aAllowanceCharges = new CommonsArrayList <> ();
+  private final ICommonsList <TaxTotalType> m_aTaxTotals = new CommonsArrayList <> ();
+  private MonetaryTotalType m_aLegalMonetaryTotal;
+
+  protected AbstractUBL21DocumentModel ()
+  {}
+
+  @Nullable
+  public final String getCustomizationID ()
+  {
+    return m_sCustomizationID;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:CustomizationID. May be <code>null</code>.
+   */
+  public final void setCustomizationID (@Nullable final String s)
+  {
+    m_sCustomizationID = s;
+  }
+
+  @Nullable
+  public final String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:ID. May be <code>null</code>.
+   */
+  public final void setID (@Nullable final String s)
+  {
+    m_sID = s;
+  }
+
+  @Nullable
+  public final LocalDate getIssueDate ()
+  {
+    return m_aIssueDate;
+  }
+
+  /**
+   * @param a
+   *        The local value of cbc:IssueDate. May be <code>null</code>.
+   */
+  public final void setIssueDate (@Nullable final LocalDate a)
+  {
+    m_aIssueDate = a;
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <NoteType> getNotes ()
+  {
+    return m_aNotes;
+  }
+
+  /**
+   * @param a
+   *        A cbc:Note to be added. May not be <code>null</code>.
+   */
+  public final void addNote (@Nonnull final NoteType a)
+  {
+    m_aNotes.add (a);
+  }
+
+  @Nullable
+  public final String getDocumentCurrencyCode ()
+  {
+    return m_sDocumentCurrencyCode;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:DocumentCurrencyCode. May be <code>null</code>.
+   */
+  public final void setDocumentCurrencyCode (@Nullable final String s)
+  {
+    m_sDocumentCurrencyCode = s;
+  }
+
+  @Nullable
+  public final String getAccountingCost ()
+  {
+    return m_sAccountingCost;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:AccountingCost. May be <code>null</code>.
+   */
+  public final void setAccountingCost (@Nullable final String s)
+  {
+    m_sAccountingCost = s;
+  }
+
+  @Nullable
+  public final PeriodType getInvoicePeriod ()
+  {
+    return m_aInvoicePeriod;
+  }
+
+  /**
+   * @param a
+   *        The first cac:InvoicePeriod. May be <code>null</code>.
+   */
+  public final void setInvoicePeriod (@Nullable final PeriodType a)
+  {
+    m_aInvoicePeriod = a;
+  }
+
+  @Nullable
+  public final OrderReferenceType getOrderReference ()
+  {
+    return m_aOrderReference;
+  }
+
+  /**
+   * @param a
+   *        The cac:OrderReference. May be <code>null</code>.
+   */
+  public final void setOrderReference (@Nullable final OrderReferenceType a)
+  {
+    m_aOrderReference = a;
+  }
+
+  @Nullable
+  public final DocumentReferenceType getContractDocumentReference ()
+  {
+    return m_aContractDocumentReference;
+  }
+
+  /**
+   * @param a
+   *        The first cac:ContractDocumentReference. May be <code>null</code>.
+   */
+  public final void setContractDocumentReference (@Nullable final DocumentReferenceType a)
+  {
+    m_aContractDocumentReference = a;
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <DocumentReferenceType> getAdditionalDocumentReferences ()
+  {
+    return m_aAdditionalDocumentReferences;
+  }
+
+  /**
+   * @param a
+   *        A cac:AdditionalDocumentReference to be added. May not be <code>null</code>.
+   */
+  public final void addAdditionalDocumentReference (@Nonnull final DocumentReferenceType a)
+  {
+    m_aAdditionalDocumentReferences.add (a);
+  }
+
+  @Nullable
+  public final SupplierPartyType getAccountingSupplierParty ()
+  {
+    return m_aAccountingSupplierParty;
+  }
+
+  /**
+   * @param a
+   *        The cac:AccountingSupplierParty. May be <code>null</code>.
+   */
+  public final void setAccountingSupplierParty (@Nullable final SupplierPartyType a)
+  {
+    m_aAccountingSupplierParty = a;
+  }
+
+  @Nullable
+  public final CustomerPartyType getAccountingCustomerParty ()
+  {
+    return m_aAccountingCustomerParty;
+  }
+
+  /**
+   * @param a
+   *        The cac:AccountingCustomerParty. May be <code>null</code>.
+   */
+  public final void setAccountingCustomerParty (@Nullable final CustomerPartyType a)
+  {
+    m_aAccountingCustomerParty = a;
+  }
+
+  @Nullable
+  public final PartyType getPayeeParty ()
+  {
+    return m_aPayeeParty;
+  }
+
+  /**
+   * @param a
+   *        The cac:PayeeParty. May be <code>null</code>.
+   */
+  public final void setPayeeParty (@Nullable final PartyType a)
+  {
+    m_aPayeeParty = a;
+  }
+
+  @Nullable
+  public final DeliveryType getDelivery ()
+  {
+    return m_aDelivery;
+  }
+
+  /**
+   * @param a
+   *        The first cac:Delivery. May be <code>null</code>.
+   */
+  public final void setDelivery (@Nullable final DeliveryType a)
+  {
+    m_aDelivery = a;
+  }
+
+  @Nullable
+  public final PaymentMeansType getPaymentMeans ()
+  {
+    return m_aPaymentMeans;
+  }
+
+  /**
+   * @param a
+   *        The first cac:PaymentMeans. May be <code>null</code>.
+   */
+  public final void setPaymentMeans (@Nullable final PaymentMeansType a)
+  {
+    m_aPaymentMeans = a;
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <PaymentTermsType> getPaymentTerms ()
+  {
+    return m_aPaymentTerms;
+  }
+
+  /**
+   * @param a
+   *        A cac:PaymentTerms to be added. May not be <code>null</code>.
+   */
+  public final void addPaymentTerms (@Nonnull final PaymentTermsType a)
+  {
+    m_aPaymentTerms.add (a);
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <AllowanceChargeType> getAllowanceCharges ()
+  {
+    return m_aAllowanceCharges;
+  }
+
+  /**
+   * @param a
+   *        A document level cac:AllowanceCharge to be added. May not be <code>null</code>.
+   */
+  public final void addAllowanceCharge (@Nonnull final AllowanceChargeType a)
+  {
+    m_aAllowanceCharges.add (a);
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <TaxTotalType> getTaxTotals ()
+  {
+    return m_aTaxTotals;
+  }
+
+  /**
+   * @param a
+   *        A cac:TaxTotal to be added. May not be <code>null</code>.
+   */
+  public final void addTaxTotal (@Nonnull final TaxTotalType a)
+  {
+    m_aTaxTotals.add (a);
+  }
+
+  @Nullable
+  public final MonetaryTotalType getLegalMonetaryTotal ()
+  {
+    return m_aLegalMonetaryTotal;
+  }
+
+  /**
+   * @param a
+   *        The cac:LegalMonetaryTotal. May be <code>null</code>.
+   */
+  public final void setLegalMonetaryTotal (@Nullable final MonetaryTotalType a)
+  {
+    m_aLegalMonetaryTotal = a;
+  }
+}
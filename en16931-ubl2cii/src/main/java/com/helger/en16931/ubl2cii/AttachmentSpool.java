@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.UUID;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.IMutableStatisticsHandlerSize;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The temporary files of large embedded attachments of a single conversion.
+ * While reading, the content of each large
+ * <code>cbc:EmbeddedDocumentBinaryObject</code> is decoded into a spool file
+ * and JAXB only sees a short placeholder. While writing, the placeholder in
+ * the CII <code>ram:AttachmentBinaryObject</code> is replaced by the base64
+ * encoded content of the spool file, that is streamed in chunks. So the
+ * attachment is never held completely in memory.<br>
+ * All spool files are deleted when the spool is closed. If an
+ * {@link AttachmentStore} is used, the spool files are handed over to the
+ * store instead, so that duplicate attachments are kept only once.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class AttachmentSpool implements AutoCloseable
+{
+  /** The default minimum decoded size of an attachment to be spooled */
+  public static final int DEFAULT_THRESHOLD = 1024 * 1024;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (AttachmentSpool.class);
+  private static final IMutableStatisticsHandlerCounter STATS_SPOOLED = StatisticsManager.getCounterHandler (AttachmentSpool.class.getName () +
+                                                                                                           "$spooled");
+  private static final IMutableStatisticsHandlerSize STATS_SPOOLED_SIZE = StatisticsManager.getSizeHandler (AttachmentSpool.class.getName () +
+                                                                                                          "$spooledsize");
+
+  private final int m_nThreshold;
+  private final Path m_aDirectory;
+  private final AttachmentStore m_aStore;
+  private final String m_sPlaceholderPrefix = "ubl2cii-spool-" + UUID.randomUUID ().toString () + "-";
+  private final ICommonsList <Path> m_aCreatedFiles = new CommonsArrayList <> ();
+  private final ICommonsMap <String, Path> m_aSpooledFiles = new CommonsHashMap <> ();
+  private final ICommonsMap <String, AttachmentStore.Entry> m_aStoreEntries = new CommonsHashMap <> ();
+
+  /**
+   * Constructor
+   *
+   * @param nThreshold
+   *        The minimum decoded size in bytes of an attachment to be spooled.
+   *        Must be &ge; 0.
+   * @param aDirectory
+   *        The directory to create the spool files in. May be
+   *        <code>null</code> to use the default temporary directory.
+   */
+  public AttachmentSpool (@Nonnegative final int nThreshold, @Nullable final Path aDirectory)
+  {
+    this (nThreshold, aDirectory, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param nThreshold
+   *        The minimum decoded size in bytes of an attachment to be spooled.
+   *        Must be &ge; 0.
+   * @param aDirectory
+   *        The directory to create the spool files in. May be
+   *        <code>null</code> to use the default temporary directory.
+   * @param aStore
+   *        The batch scoped store to deduplicate the spooled attachments. May
+   *        be <code>null</code>.
+   */
+  public AttachmentSpool (@Nonnegative final int nThreshold,
+                          @Nullable final Path aDirectory,
+                          @Nullable final AttachmentStore aStore)
+  {
+    ValueEnforcer.isGE0 (nThreshold, "Threshold");
+    m_nThreshold = nThreshold;
+    m_aDirectory = aDirectory;
+    m_aStore = aStore;
+  }
+
+  /**
+   * @return The minimum decoded size in bytes of an attachment to be spooled.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public int getThreshold ()
+  {
+    return m_nThreshold;
+  }
+
+  /**
+   * @return The directory the spool files are created in. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public Path getDirectory ()
+  {
+    return m_aDirectory;
+  }
+
+  /**
+   * @return The store to deduplicate the spooled attachments. May be
+   *         <code>null</code>.
+   */
+  @Nullable
+  public AttachmentStore getStore ()
+  {
+    return m_aStore;
+  }
+
+  /**
+   * @return The number of attachments that were spooled. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getSpooledCount ()
+  {
+    return m_aSpooledFiles.size ();
+  }
+
+  /**
+   * @return The length of the base64 encoded placeholders. All placeholders
+   *         have the same length.
+   */
+  @Nonnegative
+  int getPlaceholderLength ()
+  {
+    // Prefix and 8 digits
+    return (m_sPlaceholderPrefix.length () + 8 + 2) / 3 * 4;
+  }
+
+  /**
+   * Create a new, empty spool file, that is deleted when this spool is closed.
+   *
+   * @return The created file. Never <code>null</code>.
+   * @throws IOException
+   *         If the file could not be created
+   */
+  @Nonnull
+  Path createSpoolFile () throws IOException
+  {
+    final Path ret = m_aDirectory != null ? Files.createTempFile (m_aDirectory, "ubl2cii-", ".bin")
+                                          : Files.createTempFile ("ubl2cii-", ".bin");
+    m_aCreatedFiles.add (ret);
+    return ret;
+  }
+
+  /**
+   * Register a completely written spool file.
+   *
+   * @param aFile
+   *        The spool file with the decoded attachment. May not be
+   *        <code>null</code>.
+   * @param nSize
+   *        The decoded size of the attachment in bytes.
+   * @param aDigest
+   *        The SHA-256 digest of the decoded attachment. Must be present if
+   *        this spool has a store, ignored otherwise.
+   * @return The base64 encoded placeholder to be used instead of the content.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  String addSpoolFile (@Nonnull final Path aFile, @Nonnegative final long nSize, @Nullable final byte [] aDigest)
+  {
+    final String sID = m_sPlaceholderPrefix + String.format ("%08d", Integer.valueOf (m_aSpooledFiles.size ()));
+    final String sPlaceholder = Base64.getEncoder ().encodeToString (sID.getBytes (StandardCharsets.US_ASCII));
+    if (m_aStore != null)
+    {
+      // The store is now responsible for the file
+      m_aCreatedFiles.remove (aFile);
+      final AttachmentStore.Entry aEntry = m_aStore.registerFile (aDigest, aFile, nSize);
+      m_aStoreEntries.put (sPlaceholder, aEntry);
+      m_aSpooledFiles.put (sPlaceholder, aEntry.getFile ());
+    }
+    else
+      m_aSpooledFiles.put (sPlaceholder, aFile);
+    STATS_SPOOLED.increment ();
+    STATS_SPOOLED_SIZE.addSize (nSize);
+    return sPlaceholder;
+  }
+
+  /**
+   * Get the spool file for the provided text.
+   *
+   * @param sText
+   *        The text to check. May not be <code>null</code>.
+   * @return <code>null</code> if the provided text is not a placeholder of
+   *         this spool.
+   */
+  @Nullable
+  Path getSpoolFile (@Nonnull final String sText)
+  {
+    if (sText.length () != getPlaceholderLength ())
+      return null;
+    return m_aSpooledFiles.get (sText);
+  }
+
+  /**
+   * Get the store entry for the provided text.
+   *
+   * @param sText
+   *        The text to check. May not be <code>null</code>.
+   * @return <code>null</code> if this spool has no store or if the provided
+   *         text is not a placeholder of this spool.
+   */
+  @Nullable
+  AttachmentStore.Entry getStoreEntry (@Nonnull final String sText)
+  {
+    return m_aStoreEntries.get (sText);
+  }
+
+  /**
+   * Get the store entry for the provided decoded value.
+   *
+   * @param aValue
+   *        The decoded value of a binary object. May not be <code>null</code>.
+   * @return <code>null</code> if this spool has no store or if the provided
+   *         value is not a placeholder of this spool.
+   */
+  @Nullable
+  AttachmentStore.Entry getStoreEntry (@Nonnull final byte [] aValue)
+  {
+    if (m_aStoreEntries.isEmpty () || aValue.length != m_sPlaceholderPrefix.length () + 8)
+      return null;
+    return getStoreEntry (Base64.getEncoder ().encodeToString (aValue));
+  }
+
+  /**
+   * Get the spool file for the provided decoded value.
+   *
+   * @param aValue
+   *        The decoded value of a binary object. May not be <code>null</code>.
+   * @return <code>null</code> if the provided value is not a placeholder of
+   *         this spool.
+   */
+  @Nullable
+  Path getSpoolFile (@Nonnull final byte [] aValue)
+  {
+    if (m_aSpooledFiles.isEmpty () || aValue.length != m_sPlaceholderPrefix.length () + 8)
+      return null;
+    return getSpoolFile (Base64.getEncoder ().encodeToString (aValue));
+  }
+
+  /**
+   * Delete all spool files.
+   */
+  @Override
+  public void close ()
+  {
+    for (final Path aFile : m_aCreatedFiles)
+      try
+      {
+        Files.deleteIfExists (aFile);
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Failed to delete attachment spool file '" + aFile + "'", ex);
+      }
+    m_aCreatedFiles.clear ();
+    m_aSpooledFiles.clear ();
+    m_aStoreEntries.clear ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Threshold", m_nThreshold)
+                                       .append ("Directory", m_aDirectory)
+                                       .append ("Store", m_aStore)
+                                       .append ("SpooledCount", m_aSpooledFiles.size ())
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.ubl21.CUBL21;
+
+/**
+ * An {@link XMLStreamReader} that reads the content of large
+ * <code>cbc:EmbeddedDocumentBinaryObject</code> elements itself and decodes it
+ * into a file of an {@link AttachmentSpool}. Instead of the content, a short
+ * placeholder is reported as the element text, so that JAXB never decodes the
+ * whole attachment into a byte array. Smaller attachments are reported
+ * unchanged. If the spool has an {@link AttachmentStore}, the SHA-256 hash of
+ * the decoded content is calculated while spooling.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class AttachmentSpoolingXMLStreamReader extends StreamReaderDelegate
+{
+  static final QName EMBEDDED_DOCUMENT_BINARY_OBJECT = new QName (CUBL21.XML_SCHEMA_CBC_NAMESPACE_URL,
+                                                                  "EmbeddedDocumentBinaryObject");
+
+  // Number of base64 characters decoded at once
+  private static final int DECODE_CHUNK = 16 * 1024;
+
+  private final AttachmentSpool m_aSpool;
+  private final char [] m_aCharBuf = new char [DECODE_CHUNK];
+  // The replaced element text or null
+  private char [] m_aText;
+
+  AttachmentSpoolingXMLStreamReader (@Nonnull final XMLStreamReader aReader, @Nonnull final AttachmentSpool aSpool)
+  {
+    super (aReader);
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aSpool, "Spool");
+    m_aSpool = aSpool;
+  }
+
+  private static boolean _isWhitespace (final char c)
+  {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  /**
+   * Incremental base64 decoder into a stream, ignoring all whitespaces.
+   */
+  private static final class Base64Sink
+  {
+    private final OutputStream m_aOS;
+    private final byte [] m_aSrc = new byte [DECODE_CHUNK];
+    private final byte [] m_aDst = new byte [DECODE_CHUNK / 4 * 3];
+    private int m_nSrcLen = 0;
+    private long m_nDecodedSize = 0;
+
+    Base64Sink (@Nonnull final OutputStream aOS)
+    {
+      m_aOS = aOS;
+    }
+
+    void write (@Nonnull final CharSequence aChars) throws IOException
+    {
+      for (int i = 0; i < aChars.length (); ++i)
+        write (aChars.charAt (i));
+    }
+
+    void write (@Nonnull final char [] aChars, final int nOfs, final int nLen) throws IOException
+    {
+      for (int i = 0; i < nLen; ++i)
+        write (aChars[nOfs + i]);
+    }
+
+    private void write (final char c) throws IOException
+    {
+      if (_isWhitespace (c))
+        return;
+      if (c > 0x7f)
+        throw new IOException ("Invalid base64 character 0x" + Integer.toHexString (c));
+      m_aSrc[m_nSrcLen++] = (byte) c;
+      if (m_nSrcLen == m_aSrc.length)
+        _decode ();
+    }
+
+    private void _decode () throws IOException
+    {
+      try
+      {
+        final int nDecoded = m_nSrcLen == m_aSrc.length ? Base64.getDecoder ().decode (m_aSrc, m_aDst)
+                                                        : Base64.getDecoder ()
+                                                                .decode (Arrays.copyOf (m_aSrc, m_nSrcLen),
+                                                                         m_aDst);
+        m_aOS.write (m_aDst, 0, nDecoded);
+        m_nDecodedSize += nDecoded;
+        m_nSrcLen = 0;
+      }
+      catch (final IllegalArgumentException ex)
+      {
+        throw new IOException ("Invalid base64 content", ex);
+      }
+    }
+
+    long finish () throws IOException
+    {
+      if (m_nSrcLen > 0)
+        _decode ();
+      return m_nDecodedSize;
+    }
+  }
+
+  @Override
+  public int next () throws XMLStreamException
+  {
+    final XMLStreamReader aParent = getParent ();
+    if (m_aText != null)
+    {
+      // The parent is already positioned on the end element
+      m_aText = null;
+      return aParent.getEventType ();
+    }
+
+    if (aParent.getEventType () != XMLStreamConstants.START_ELEMENT ||
+        !EMBEDDED_DOCUMENT_BINARY_OBJECT.equals (aParent.getName ()))
+      return aParent.next ();
+
+    // JAXB is done with the start element - consume the content
+    final StringBuilder aSB = new StringBuilder ();
+    long nChars = 0;
+    Path aFile = null;
+    OutputStream aOS = null;
+    MessageDigest aDigest = null;
+    Base64Sink aSink = null;
+    try
+    {
+      int nEventType = aParent.next ();
+      while (nEventType != XMLStreamConstants.END_ELEMENT)
+      {
+        if (nEventType == XMLStreamConstants.CHARACTERS ||
+            nEventType == XMLStreamConstants.CDATA ||
+            nEventType == XMLStreamConstants.SPACE)
+        {
+          int nSrcStart = 0;
+          int nRead;
+          while ((nRead = aParent.getTextCharacters (nSrcStart, m_aCharBuf, 0, m_aCharBuf.length)) > 0)
+          {
+            nSrcStart += nRead;
+            if (aSink != null)
+              aSink.write (m_aCharBuf, 0, nRead);
+            else
+            {
+              aSB.append (m_aCharBuf, 0, nRead);
+              for (int i = 0; i < nRead; ++i)
+                if (!_isWhitespace (m_aCharBuf[i]))
+                  nChars++;
+              // 3 bytes per 4 base64 characters
+              if (nChars / 4 * 3 > m_aSpool.getThreshold ())
+              {
+                // Too large - switch to the spool file
+                aFile = m_aSpool.createSpoolFile ();
+                aOS = StreamHelper.getBuffered (Files.newOutputStream (aFile));
+                if (m_aSpool.getStore () != null)
+                {
+                  // Hash the decoded content for deduplication
+                  aDigest = AttachmentStore.createMessageDigest ();
+                  aOS = new DigestOutputStream (aOS, aDigest);
+                }
+                aSink = new Base64Sink (aOS);
+                aSink.write (aSB);
+                aSB.setLength (0);
+              }
+            }
+            if (nRead < m_aCharBuf.length)
+              break;
+          }
+        }
+        else
+          if (nEventType == XMLStreamConstants.START_ELEMENT)
+            throw new XMLStreamException ("Unexpected child element in binary object", aParent.getLocation ());
+        nEventType = aParent.next ();
+      }
+
+      if (aSink != null)
+      {
+        final long nSize = aSink.finish ();
+        aOS.close ();
+        aOS = null;
+        m_aText = m_aSpool.addSpoolFile (aFile, nSize, aDigest != null ? aDigest.digest () : null).toCharArray ();
+      }
+      else
+        if (aSB.length () > 0)
+        {
+          m_aText = new char [aSB.length ()];
+          aSB.getChars (0, aSB.length (), m_aText, 0);
+        }
+    }
+    catch (final IOException ex)
+    {
+      throw new XMLStreamException ("Failed to spool the embedded attachment", aParent.getLocation (), ex);
+    }
+    finally
+    {
+      StreamHelper.close (aOS);
+    }
+
+    if (m_aText == null)
+      return XMLStreamConstants.END_ELEMENT;
+    return XMLStreamConstants.CHARACTERS;
+  }
+
+  @Override
+  public int getEventType ()
+  {
+    return m_aText != null ? XMLStreamConstants.CHARACTERS : super.getEventType ();
+  }
+
+  @Override
+  public boolean isCharacters ()
+  {
+    return m_aText != null || super.isCharacters ();
+  }
+
+  @Override
+  public boolean isStartElement ()
+  {
+    return m_aText == null && super.isStartElement ();
+  }
+
+  @Override
+  public boolean isEndElement ()
+  {
+    return m_aText == null && super.isEndElement ();
+  }
+
+  @Override
+  public boolean isWhiteSpace ()
+  {
+    return m_aText == null && super.isWhiteSpace ();
+  }
+
+  @Override
+  public boolean hasText ()
+  {
+    return m_aText != null || super.hasText ();
+  }
+
+  @Override
+  public String getText ()
+  {
+    return m_aText != null ? new String (m_aText) : super.getText ();
+  }
+
+  @Override
+  public char [] getTextCharacters ()
+  {
+    return m_aText != null ? m_aText : super.getTextCharacters ();
+  }
+
+  @Override
+  public int getTextCharacters (final int nSourceStart,
+                                final char [] aTarget,
+                                final int nTargetStart,
+                                final int nLength) throws XMLStreamException
+  {
+    if (m_aText == null)
+      return super.getTextCharacters (nSourceStart, aTarget, nTargetStart, nLength);
+
+    final int nCopy = Math.max (0, Math.min (nLength, m_aText.length - nSourceStart));
+    System.arraycopy (m_aText, nSourceStart, aTarget, nTargetStart, nCopy);
+    return nCopy;
+  }
+
+  @Override
+  public int getTextStart ()
+  {
+    return m_aText != null ? 0 : super.getTextStart ();
+  }
+
+  @Override
+  public int getTextLength ()
+  {
+    return m_aText != null ? m_aText.length : super.getTextLength ();
+  }
+
+  @Override
+  public int nextTag () throws XMLStreamException
+  {
+    // Must go through next() - the parent implementation would bypass the
+    // replacement
+    int nEventType = next ();
+    while ((nEventType == XMLStreamConstants.CHARACTERS && isWhiteSpace ()) ||
+           (nEventType == XMLStreamConstants.CDATA && isWhiteSpace ()) ||
+           nEventType == XMLStreamConstants.SPACE ||
+           nEventType == XMLStreamConstants.PROCESSING_INSTRUCTION ||
+           nEventType == XMLStreamConstants.COMMENT)
+    {
+      nEventType = next ();
+    }
+    if (nEventType != XMLStreamConstants.START_ELEMENT && nEventType != XMLStreamConstants.END_ELEMENT)
+      throw new XMLStreamException ("Expected a start or end element", getLocation ());
+    return nEventType;
+  }
+}
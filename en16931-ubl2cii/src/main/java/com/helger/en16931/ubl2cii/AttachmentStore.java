@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A content addressed store for the embedded attachments of a batch of
+ * conversions. The attachments are identified by the SHA-256 hash of their
+ * decoded content, so that an attachment contained in many documents (like
+ * the terms and conditions of a supplier) is handled only once:
+ * <ul>
+ * <li>Only one spool file is kept per distinct attachment - the spool files
+ * of duplicates are deleted right after reading.</li>
+ * <li>The base64 encoding of a spooled attachment is created once and copied
+ * into each CII that contains it.</li>
+ * <li>If an {@link IAttachmentSink} is configured, each distinct attachment
+ * is stored only once and all duplicates reference the same URI.</li>
+ * </ul>
+ * The store is meant to be shared by all conversions of a batch via
+ * {@link UBLToCIIConversionSettings.Builder#attachmentStore(AttachmentStore)}
+ * together with only one attachment sink. Deduplication of embedded
+ * attachments requires attachment spooling to be enabled, and only applies to
+ * attachments exceeding the spool threshold. All files are deleted when the
+ * store is closed.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class AttachmentStore implements AutoCloseable
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (AttachmentStore.class);
+  private static final IMutableStatisticsHandlerCounter STATS_DUPLICATES = StatisticsManager.getCounterHandler (AttachmentStore.class.getName () +
+                                                                                                              "$duplicates");
+
+  /**
+   * A single distinct attachment.
+   *
+   * @author Philip Helger
+   */
+  @ThreadSafe
+  static final class Entry
+  {
+    private final String m_sHash;
+    private final long m_nSize;
+    @GuardedBy ("this")
+    private Path m_aFile;
+    @GuardedBy ("this")
+    private Path m_aEncodedFile;
+    @GuardedBy ("this")
+    private String m_sURI;
+
+    Entry (@Nonnull final String sHash, @Nonnegative final long nSize)
+    {
+      m_sHash = sHash;
+      m_nSize = nSize;
+    }
+
+    /**
+     * @return The hex encoded SHA-256 hash of the decoded content. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    String getHash ()
+    {
+      return m_sHash;
+    }
+
+    /**
+     * @return The decoded size in bytes.
+     */
+    @Nonnegative
+    long getSize ()
+    {
+      return m_nSize;
+    }
+
+    /**
+     * @return The file with the decoded content. May be <code>null</code> if
+     *         the attachment was only externalized from memory.
+     */
+    @Nullable
+    synchronized Path getFile ()
+    {
+      return m_aFile;
+    }
+  }
+
+  private final Path m_aDirectory;
+  private final Map <String, Entry> m_aEntries = new ConcurrentHashMap <> ();
+  private final AtomicLong m_aDuplicateCount = new AtomicLong (0);
+  private final AtomicLong m_aDuplicateSize = new AtomicLong (0);
+  private final AtomicLong m_aEncodedReuseCount = new AtomicLong (0);
+  private final AtomicLong m_aURIReuseCount = new AtomicLong (0);
+
+  /**
+   * Constructor using the default temporary directory for the base64 encoded
+   * files.
+   */
+  public AttachmentStore ()
+  {
+    this (null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aDirectory
+   *        The directory to create the base64 encoded files in. May be
+   *        <code>null</code> to use the default temporary directory.
+   */
+  public AttachmentStore (@Nullable final Path aDirectory)
+  {
+    m_aDirectory = aDirectory;
+  }
+
+  /**
+   * @return A new SHA-256 message digest. Never <code>null</code>.
+   */
+  @Nonnull
+  static MessageDigest createMessageDigest ()
+  {
+    try
+    {
+      return MessageDigest.getInstance ("SHA-256");
+    }
+    catch (final NoSuchAlgorithmException ex)
+    {
+      throw new IllegalStateException ("SHA-256 is not supported", ex);
+    }
+  }
+
+  @Nonnull
+  private Entry _register (@Nonnull final String sHash, @Nonnegative final long nSize)
+  {
+    final Entry aNew = new Entry (sHash, nSize);
+    final Entry aOld = m_aEntries.putIfAbsent (sHash, aNew);
+    if (aOld == null)
+      return aNew;
+
+    m_aDuplicateCount.incrementAndGet ();
+    m_aDuplicateSize.addAndGet (nSize);
+    STATS_DUPLICATES.increment ();
+    return aOld;
+  }
+
+  /**
+   * Register a spool file with a decoded attachment. If the same content is
+   * already contained, the provided file is deleted. Otherwise the store takes
+   * over the ownership of the file.
+   *
+   * @param aDigest
+   *        The SHA-256 digest of the content. May not be <code>null</code>.
+   * @param aFile
+   *        The spool file. May not be <code>null</code>.
+   * @param nSize
+   *        The decoded size in bytes.
+   * @return The entry to use. Never <code>null</code>.
+   */
+  @Nonnull
+  Entry registerFile (@Nonnull final byte [] aDigest, @Nonnull final Path aFile, @Nonnegative final long nSize)
+  {
+    final Entry ret = _register (StringHelper.getHexEncoded (aDigest), nSize);
+    synchronized (ret)
+    {
+      if (ret.m_aFile == null)
+      {
+        ret.m_aFile = aFile;
+        return ret;
+      }
+    }
+    // Duplicate
+    _delete (aFile);
+    return ret;
+  }
+
+  /**
+   * Register an attachment that is only available in memory.
+   *
+   * @param aContent
+   *        The decoded content. May not be <code>null</code>.
+   * @return The entry to use. Never <code>null</code>.
+   */
+  @Nonnull
+  Entry registerContent (@Nonnull final byte [] aContent)
+  {
+    return _register (StringHelper.getHexEncoded (createMessageDigest ().digest (aContent)), aContent.length);
+  }
+
+  /**
+   * Get the file with the base64 encoded content of the provided entry. It is
+   * created on the first call.
+   *
+   * @param aEntry
+   *        The entry with a file. May not be <code>null</code>.
+   * @return The file with the US-ASCII encoded base64 content without line
+   *         breaks. Never <code>null</code>.
+   * @throws IOException
+   *         If encoding fails
+   */
+  @Nonnull
+  Path getEncodedFile (@Nonnull final Entry aEntry) throws IOException
+  {
+    synchronized (aEntry)
+    {
+      if (aEntry.m_aEncodedFile != null)
+      {
+        m_aEncodedReuseCount.incrementAndGet ();
+        return aEntry.m_aEncodedFile;
+      }
+
+      final Path aEncodedFile = m_aDirectory != null ? Files.createTempFile (m_aDirectory, "ubl2cii-", ".b64")
+                                                     : Files.createTempFile ("ubl2cii-", ".b64");
+      try (final OutputStream aOS = Base64.getEncoder ().wrap (Files.newOutputStream (aEncodedFile)))
+      {
+        Files.copy (aEntry.m_aFile, aOS);
+      }
+      catch (final IOException ex)
+      {
+        _delete (aEncodedFile);
+        throw ex;
+      }
+      aEntry.m_aEncodedFile = aEncodedFile;
+      return aEncodedFile;
+    }
+  }
+
+  /**
+   * Get the URI of the provided entry in the attachment sink. The sink is
+   * invoked only for the first call.
+   *
+   * @param aEntry
+   *        The entry to store. May not be <code>null</code>.
+   * @param aStorer
+   *        The callback that stores the attachment in the sink. May not be
+   *        <code>null</code>.
+   * @return The URI of the stored attachment. Never <code>null</code>.
+   * @throws IOException
+   *         If storing fails
+   */
+  @Nonnull
+  String getURI (@Nonnull final Entry aEntry, @Nonnull final IURIStorer aStorer) throws IOException
+  {
+    synchronized (aEntry)
+    {
+      if (aEntry.m_sURI != null)
+      {
+        m_aURIReuseCount.incrementAndGet ();
+        return aEntry.m_sURI;
+      }
+      aEntry.m_sURI = aStorer.store ();
+      return aEntry.m_sURI;
+    }
+  }
+
+  /**
+   * Callback for {@link AttachmentStore#getURI(Entry, IURIStorer)}.
+   *
+   * @author Philip Helger
+   */
+  @FunctionalInterface
+  interface IURIStorer
+  {
+    @Nonnull
+    String store () throws IOException;
+  }
+
+  /**
+   * @return The number of distinct attachments contained. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getDistinctCount ()
+  {
+    return m_aEntries.size ();
+  }
+
+  /**
+   * @return The number of attachments that were already contained. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public long getDuplicateCount ()
+  {
+    return m_aDuplicateCount.get ();
+  }
+
+  /**
+   * @return The total decoded size in bytes of all duplicate attachments.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public long getDuplicateSize ()
+  {
+    return m_aDuplicateSize.get ();
+  }
+
+  /**
+   * @return The number of times an existing base64 encoding was reused. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public long getEncodedReuseCount ()
+  {
+    return m_aEncodedReuseCount.get ();
+  }
+
+  /**
+   * @return The number of times an attachment was not passed to the
+   *         attachment sink, because it was already stored. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getURIReuseCount ()
+  {
+    return m_aURIReuseCount.get ();
+  }
+
+  private static void _delete (@Nullable final Path aFile)
+  {
+    if (aFile != null)
+      try
+      {
+        Files.deleteIfExists (aFile);
+      }
+      catch (final IOException ex)
+      {
+        LOGGER.warn ("Failed to delete attachment store file '" + aFile + "'", ex);
+      }
+  }
+
+  /**
+   * Delete all files of this store. The store must not be used afterwards.
+   */
+  @Override
+  public void close ()
+  {
+    for (final Entry aEntry : m_aEntries.values ())
+      synchronized (aEntry)
+      {
+        _delete (aEntry.m_aFile);
+        _delete (aEntry.m_aEncodedFile);
+      }
+    m_aEntries.clear ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Directory", m_aDirectory)
+                                       .append ("DistinctCount", m_aEntries.size ())
+                                       .append ("DuplicateCount", m_aDuplicateCount.get ())
+                                       .append ("DuplicateSize", m_aDuplicateSize.get ())
+                                       .getToString ();
+  }
+}
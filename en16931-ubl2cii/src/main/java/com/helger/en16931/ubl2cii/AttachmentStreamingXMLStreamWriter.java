@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * An {@link XMLStreamWriter} that replaces the placeholders of an
+ * {@link AttachmentSpool} in <code>ram:AttachmentBinaryObject</code> elements
+ * with the base64 encoded content of the spool files. The content is read and
+ * encoded in chunks, so that the attachment is never held completely in
+ * memory. If the spool has an {@link AttachmentStore}, the base64 encoding
+ * created by the store is copied instead. All other calls are passed on
+ * unchanged.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class AttachmentStreamingXMLStreamWriter implements XMLStreamWriter
+{
+  static final String ATTACHMENT_BINARY_OBJECT = "AttachmentBinaryObject";
+
+  // Number of bytes encoded at once - must be a multiple of 3
+  private static final int ENCODE_CHUNK = 48 * 1024;
+
+  private final XMLStreamWriter m_aWriter;
+  private final AttachmentSpool m_aSpool;
+  // The collected text of the current binary object or null
+  private StringBuilder m_aText;
+
+  AttachmentStreamingXMLStreamWriter (@Nonnull final XMLStreamWriter aWriter, @Nonnull final AttachmentSpool aSpool)
+  {
+    ValueEnforcer.notNull (aWriter, "Writer");
+    ValueEnforcer.notNull (aSpool, "Spool");
+    m_aWriter = aWriter;
+    m_aSpool = aSpool;
+  }
+
+  private void _startElement (@Nonnull final String sLocalName) throws XMLStreamException
+  {
+    _flushText ();
+    if (ATTACHMENT_BINARY_OBJECT.equals (sLocalName))
+      m_aText = new StringBuilder ();
+  }
+
+  private void _flushText () throws XMLStreamException
+  {
+    if (m_aText != null)
+    {
+      if (m_aText.length () > 0)
+        m_aWriter.writeCharacters (m_aText.toString ());
+      m_aText = null;
+    }
+  }
+
+  private void _text (@Nonnull final char [] aText, final int nStart, final int nLen) throws XMLStreamException
+  {
+    if (m_aText != null && m_aText.length () + nLen <= m_aSpool.getPlaceholderLength ())
+      m_aText.append (aText, nStart, nLen);
+    else
+    {
+      // Can't be a placeholder
+      _flushText ();
+      m_aWriter.writeCharacters (aText, nStart, nLen);
+    }
+  }
+
+  private void _writeSpoolFile (@Nonnull final Path aFile) throws XMLStreamException
+  {
+    final byte [] aBuf = new byte [ENCODE_CHUNK];
+    final char [] aChars = new char [ENCODE_CHUNK / 3 * 4];
+    final Base64.Encoder aEncoder = Base64.getEncoder ();
+    try (final InputStream aIS = Files.newInputStream (aFile))
+    {
+      int nFilled;
+      do
+      {
+        // Fill the buffer completely, so that no padding is created in between
+        nFilled = 0;
+        int nRead;
+        while (nFilled < aBuf.length && (nRead = aIS.read (aBuf, nFilled, aBuf.length - nFilled)) >= 0)
+          nFilled += nRead;
+        if (nFilled > 0)
+        {
+          final byte [] aEncoded = aEncoder.encode (nFilled == aBuf.length ? aBuf : Arrays.copyOf (aBuf, nFilled));
+          for (int i = 0; i < aEncoded.length; ++i)
+            aChars[i] = (char) aEncoded[i];
+          m_aWriter.writeCharacters (aChars, 0, aEncoded.length);
+        }
+      } while (nFilled == aBuf.length);
+    }
+    catch (final IOException ex)
+    {
+      throw new XMLStreamException ("Failed to read the attachment spool file '" + aFile + "'", ex);
+    }
+  }
+
+  private void _writeEncodedFile (@Nonnull final Path aFile) throws XMLStreamException
+  {
+    // The file is already base64 encoded - just copy it
+    final byte [] aBuf = new byte [ENCODE_CHUNK];
+    final char [] aChars = new char [ENCODE_CHUNK];
+    try (final InputStream aIS = Files.newInputStream (aFile))
+    {
+      int nRead;
+      while ((nRead = aIS.read (aBuf)) >= 0)
+      {
+        for (int i = 0; i < nRead; ++i)
+          aChars[i] = (char) aBuf[i];
+        m_aWriter.writeCharacters (aChars, 0, nRead);
+      }
+    }
+    catch (final IOException ex)
+    {
+      throw new XMLStreamException ("Failed to read the encoded attachment file '" + aFile + "'", ex);
+    }
+  }
+
+  public void writeStartElement (final String sLocalName) throws XMLStreamException
+  {
+    _startElement (sLocalName);
+    m_aWriter.writeStartElement (sLocalName);
+  }
+
+  public void writeStartElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+  {
+    _startElement (sLocalName);
+    m_aWriter.writeStartElement (sNamespaceURI, sLocalName);
+  }
+
+  public void writeStartElement (final String sPrefix,
+                                 final String sLocalName,
+                                 final String sNamespaceURI) throws XMLStreamException
+  {
+    _startElement (sLocalName);
+    m_aWriter.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+  }
+
+  public void writeEmptyElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeEmptyElement (sNamespaceURI, sLocalName);
+  }
+
+  public void writeEmptyElement (final String sPrefix,
+                                 final String sLocalName,
+                                 final String sNamespaceURI) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeEmptyElement (sPrefix, sLocalName, sNamespaceURI);
+  }
+
+  public void writeEmptyElement (final String sLocalName) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeEmptyElement (sLocalName);
+  }
+
+  public void writeEndElement () throws XMLStreamException
+  {
+    if (m_aText != null)
+    {
+      final String sText = m_aText.toString ();
+      final Path aFile = m_aSpool.getSpoolFile (sText);
+      if (aFile != null)
+      {
+        m_aText = null;
+        final AttachmentStore.Entry aEntry = m_aSpool.getStoreEntry (sText);
+        if (aEntry != null)
+        {
+          // Encode only once per batch
+          try
+          {
+            _writeEncodedFile (m_aSpool.getStore ().getEncodedFile (aEntry));
+          }
+          catch (final IOException ex)
+          {
+            throw new XMLStreamException ("Failed to encode the attachment file '" + aFile + "'", ex);
+          }
+        }
+        else
+          _writeSpoolFile (aFile);
+      }
+      else
+        _flushText ();
+    }
+    m_aWriter.writeEndElement ();
+  }
+
+  public void writeEndDocument () throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeEndDocument ();
+  }
+
+  public void close () throws XMLStreamException
+  {
+    m_aWriter.close ();
+  }
+
+  public void flush () throws XMLStreamException
+  {
+    m_aWriter.flush ();
+  }
+
+  public void writeAttribute (final String sLocalName, final String sValue) throws XMLStreamException
+  {
+    m_aWriter.writeAttribute (sLocalName, sValue);
+  }
+
+  public void writeAttribute (final String sPrefix,
+                              final String sNamespaceURI,
+                              final String sLocalName,
+                              final String sValue) throws XMLStreamException
+  {
+    m_aWriter.writeAttribute (sPrefix, sNamespaceURI, sLocalName, sValue);
+  }
+
+  public void writeAttribute (final String sNamespaceURI,
+                              final String sLocalName,
+                              final String sValue) throws XMLStreamException
+  {
+    m_aWriter.writeAttribute (sNamespaceURI, sLocalName, sValue);
+  }
+
+  public void writeNamespace (final String sPrefix, final String sNamespaceURI) throws XMLStreamException
+  {
+    m_aWriter.writeNamespace (sPrefix, sNamespaceURI);
+  }
+
+  public void writeDefaultNamespace (final String sNamespaceURI) throws XMLStreamException
+  {
+    m_aWriter.writeDefaultNamespace (sNamespaceURI);
+  }
+
+  public void writeComment (final String sData) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeComment (sData);
+  }
+
+  public void writeProcessingInstruction (final String sTarget) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeProcessingInstruction (sTarget);
+  }
+
+  public void writeProcessingInstruction (final String sTarget, final String sData) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeProcessingInstruction (sTarget, sData);
+  }
+
+  public void writeCData (final String sData) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeCData (sData);
+  }
+
+  public void writeDTD (final String sDTD) throws XMLStreamException
+  {
+    m_aWriter.writeDTD (sDTD);
+  }
+
+  public void writeEntityRef (final String sName) throws XMLStreamException
+  {
+    _flushText ();
+    m_aWriter.writeEntityRef (sName);
+  }
+
+  public void writeStartDocument () throws XMLStreamException
+  {
+    m_aWriter.writeStartDocument ();
+  }
+
+  public void writeStartDocument (final String sVersion) throws XMLStreamException
+  {
+    m_aWriter.writeStartDocument (sVersion);
+  }
+
+  public void writeStartDocument (final String sEncoding, final String sVersion) throws XMLStreamException
+  {
+    m_aWriter.writeStartDocument (sEncoding, sVersion);
+  }
+
+  public void writeCharacters (final String sText) throws XMLStreamException
+  {
+    if (m_aText == null)
+      m_aWriter.writeCharacters (sText);
+    else
+    {
+      final char [] aChars = sText.toCharArray ();
+      _text (aChars, 0, aChars.length);
+    }
+  }
+
+  public void writeCharacters (final char [] aText, final int nStart, final int nLen) throws XMLStreamException
+  {
+    _text (aText, nStart, nLen);
+  }
+
+  public String getPrefix (final String sUri) throws XMLStreamException
+  {
+    return m_aWriter.getPrefix (sUri);
+  }
+
+  public void setPrefix (final String sPrefix, final String sUri) throws XMLStreamException
+  {
+    m_aWriter.setPrefix (sPrefix, sUri);
+  }
+
+  public void setDefaultNamespace (final String sUri) throws XMLStreamException
+  {
+    m_aWriter.setDefaultNamespace (sUri);
+  }
+
+  public void setNamespaceContext (final NamespaceContext aContext) throws XMLStreamException
+  {
+    m_aWriter.setNamespaceContext (aContext);
+  }
+
+  public NamespaceContext getNamespaceContext ()
+  {
+    return m_aWriter.getNamespaceContext ();
+  }
+
+  public Object getProperty (final String sName)
+  {
+    return m_aWriter.getProperty (sName);
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.io.stream.WrappedOutputStream;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The SHA-256 digest of the bytes of a written CII document, that was
+ * calculated while writing. Together with {@link ECIIOutputProfile#CANONICAL}
+ * it can be used as a cache key to detect documents that were already
+ * converted, without comparing or re-reading the output.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class CIIOutputDigest
+{
+  /** The message digest algorithm used */
+  public static final String ALGORITHM = "SHA-256";
+
+  private final byte [] m_aDigest;
+  private final long m_nByteCount;
+
+  CIIOutputDigest (@Nonnull final byte [] aDigest, @Nonnegative final long nByteCount)
+  {
+    ValueEnforcer.notNull (aDigest, "Digest");
+    ValueEnforcer.isGE0 (nByteCount, "ByteCount");
+    m_aDigest = aDigest;
+    m_nByteCount = nByteCount;
+  }
+
+  /**
+   * @return A copy of the SHA-256 digest bytes. Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public byte [] getAllDigestBytes ()
+  {
+    return m_aDigest.clone ();
+  }
+
+  /**
+   * @return The SHA-256 digest as a lower case hex string with 64 characters.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  public String getDigestAsHexString ()
+  {
+    return StringHelper.getHexEncoded (m_aDigest);
+  }
+
+  /**
+   * @return The number of bytes written. Always &ge; 0.
+   */
+  @Nonnegative
+  public long getByteCount ()
+  {
+    return m_nByteCount;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final CIIOutputDigest rhs = (CIIOutputDigest) o;
+    return Arrays.equals (m_aDigest, rhs.m_aDigest) && m_nByteCount == rhs.m_nByteCount;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_aDigest).append (m_nByteCount).getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Digest", getDigestAsHexString ())
+                                       .append ("ByteCount", m_nByteCount)
+                                       .getToString ();
+  }
+
+  /**
+   * An output stream that updates the digest with all bytes passed to the
+   * wrapped stream.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  static final class DigestingOutputStream extends WrappedOutputStream
+  {
+    private final MessageDigest m_aMD = AttachmentStore.createMessageDigest ();
+    private long m_nByteCount = 0;
+
+    DigestingOutputStream (@Nonnull @WillCloseWhenClosed final OutputStream aOS)
+    {
+      super (aOS);
+    }
+
+    @Override
+    public void write (final int b) throws IOException
+    {
+      super.write (b);
+      m_aMD.update ((byte) b);
+      m_nByteCount++;
+    }
+
+    @Override
+    public void write (@Nonnull final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      super.write (aBuf, nOfs, nLen);
+      m_aMD.update (aBuf, nOfs, nLen);
+      m_nByteCount += nLen;
+    }
+
+    /**
+     * @return The digest of all bytes written so far. May only be called
+     *         once.
+     */
+    @Nonnull
+    CIIOutputDigest getDigest ()
+    {
+      return new CIIOutputDigest (m_aMD.digest (), m_nByteCount);
+    }
+  }
+
+  /**
+   * A channel that updates the digest with all bytes written to the wrapped
+   * channel. Closing this channel does not close the wrapped channel.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  static final class DigestingWritableByteChannel implements WritableByteChannel
+  {
+    private final WritableByteChannel m_aChannel;
+    private final MessageDigest m_aMD = AttachmentStore.createMessageDigest ();
+    private long m_nByteCount = 0;
+
+    DigestingWritableByteChannel (@Nonnull @WillNotClose final WritableByteChannel aChannel)
+    {
+      m_aChannel = aChannel;
+    }
+
+    public int write (@Nonnull final ByteBuffer aSrc) throws IOException
+    {
+      final ByteBuffer aWritten = aSrc.duplicate ();
+      final int ret = m_aChannel.write (aSrc);
+      // Only the bytes that were really written
+      aWritten.limit (aWritten.position () + ret);
+      m_aMD.update (aWritten);
+      m_nByteCount += ret;
+      return ret;
+    }
+
+    public boolean isOpen ()
+    {
+      return m_aChannel.isOpen ();
+    }
+
+    public void close ()
+    {
+      // The wrapped channel stays open
+    }
+
+    /**
+     * @return The digest of all bytes written so far. May only be called
+     *         once.
+     */
+    @Nonnull
+    CIIOutputDigest getDigest ()
+    {
+      return new CIIOutputDigest (m_aMD.digest (), m_nByteCount);
+    }
+  }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.Comparator;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.string.StringHelper;
+
+/**
+ * An {@link XMLStreamWriter} that collects the namespace declarations and
+ * attributes of each start element and passes them on in a stable order: first
+ * the namespace declarations sorted by prefix (the default namespace first),
+ * followed by the attributes sorted by namespace URI and local name. This is
+ * the order defined by Canonical XML. The XML declaration is omitted, because
+ * canonical output is always UTF-8 encoded. All other calls are passed on
+ * unchanged.
+ *
+ * @author Philip Helger
+ * @see ECIIOutputProfile#CANONICAL
+ */
+@NotThreadSafe
+final class CanonicalXMLStreamWriter implements XMLStreamWriter
+{
+  /**
+   * A single namespace declaration or attribute
+   */
+  private static final class PendingAttr
+  {
+    private final boolean m_bNamespace;
+    private final String m_sPrefix;
+    private final String m_sNamespaceURI;
+    private final String m_sLocalName;
+    private final String m_sValue;
+
+    PendingAttr (final boolean bNamespace,
+                 @Nullable final String sPrefix,
+                 @Nullable final String sNamespaceURI,
+                 @Nonnull final String sLocalName,
+                 @Nonnull final String sValue)
+    {
+      m_bNamespace = bNamespace;
+      m_sPrefix = sPrefix;
+      m_sNamespaceURI = StringHelper.getNotNull (sNamespaceURI);
+      m_sLocalName = sLocalName;
+      m_sValue = sValue;
+    }
+  }
+
+  private static final Comparator <PendingAttr> COMPARATOR = Comparator.<PendingAttr, Boolean> comparing (x -> Boolean.valueOf (!x.m_bNamespace))
+                                                                       .thenComparing (x -> x.m_sNamespaceURI)
+                                                                       .thenComparing (x -> x.m_sLocalName);
+
+  private final XMLStreamWriter m_aWriter;
+  private final ICommonsList <PendingAttr> m_aPending = new CommonsArrayList <> ();
+
+  CanonicalXMLStreamWriter (@Nonnull final XMLStreamWriter aWriter)
+  {
+    ValueEnforcer.notNull (aWriter, "Writer");
+    m_aWriter = aWriter;
+  }
+
+  private void _flushAttrs () throws XMLStreamException
+  {
+    if (m_aPending.isNotEmpty ())
+    {
+      m_aPending.sort (COMPARATOR);
+      for (final PendingAttr aAttr : m_aPending)
+        if (aAttr.m_bNamespace)
+        {
+          if (aAttr.m_sLocalName.isEmpty ())
+            m_aWriter.writeDefaultNamespace (aAttr.m_sValue);
+          else
+            m_aWriter.writeNamespace (aAttr.m_sLocalName, aAttr.m_sValue);
+        }
+        else
+          if (aAttr.m_sPrefix == null)
+            m_aWriter.writeAttribute (aAttr.m_sNamespaceURI, aAttr.m_sLocalName, aAttr.m_sValue);
+          else
+            m_aWriter.writeAttribute (aAttr.m_sPrefix, aAttr.m_sNamespaceURI, aAttr.m_sLocalName, aAttr.m_sValue);
+      m_aPending.clear ();
+    }
+  }
+
+  private void _namespace (@Nullable final String sPrefix, @Nonnull final String sNamespaceURI)
+  {
+    // For namespaces the prefix is the sort key
+    final boolean bIsDefault = sPrefix == null ||
+                               sPrefix.equals (XMLConstants.DEFAULT_NS_PREFIX) ||
+                               sPrefix.equals (XMLConstants.XMLNS_ATTRIBUTE);
+    m_aPending.add (new PendingAttr (true, null, null, bIsDefault ? "" : sPrefix, sNamespaceURI));
+  }
+
+  public void writeStartElement (final String sLocalName) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeStartElement (sLocalName);
+  }
+
+  public void writeStartElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeStartElement (sNamespaceURI, sLocalName);
+  }
+
+  public void writeStartElement (final String sPrefix,
+                                 final String sLocalName,
+                                 final String sNamespaceURI) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeStartElement (sPrefix, sLocalName, sNamespaceURI);
+  }
+
+  public void writeEmptyElement (final String sNamespaceURI, final String sLocalName) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEmptyElement (sNamespaceURI, sLocalName);
+  }
+
+  public void writeEmptyElement (final String sPrefix,
+                                 final String sLocalName,
+                                 final String sNamespaceURI) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEmptyElement (sPrefix, sLocalName, sNamespaceURI);
+  }
+
+  public void writeEmptyElement (final String sLocalName) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEmptyElement (sLocalName);
+  }
+
+  public void writeEndElement () throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEndElement ();
+  }
+
+  public void writeEndDocument () throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEndDocument ();
+  }
+
+  public void close () throws XMLStreamException
+  {
+    m_aWriter.close ();
+  }
+
+  public void flush () throws XMLStreamException
+  {
+    m_aWriter.flush ();
+  }
+
+  public void writeAttribute (final String sLocalName, final String sValue) throws XMLStreamException
+  {
+    m_aPending.add (new PendingAttr (false, null, null, sLocalName, sValue));
+  }
+
+  public void writeAttribute (final String sPrefix,
+                              final String sNamespaceURI,
+                              final String sLocalName,
+                              final String sValue) throws XMLStreamException
+  {
+    m_aPending.add (new PendingAttr (false, sPrefix, sNamespaceURI, sLocalName, sValue));
+  }
+
+  public void writeAttribute (final String sNamespaceURI,
+                              final String sLocalName,
+                              final String sValue) throws XMLStreamException
+  {
+    m_aPending.add (new PendingAttr (false, null, sNamespaceURI, sLocalName, sValue));
+  }
+
+  public void writeNamespace (final String sPrefix, final String sNamespaceURI) throws XMLStreamException
+  {
+    _namespace (sPrefix, sNamespaceURI);
+  }
+
+  public void writeDefaultNamespace (final String sNamespaceURI) throws XMLStreamException
+  {
+    _namespace (null, sNamespaceURI);
+  }
+
+  public void writeComment (final String sData) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeComment (sData);
+  }
+
+  public void writeProcessingInstruction (final String sTarget) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeProcessingInstruction (sTarget);
+  }
+
+  public void writeProcessingInstruction (final String sTarget, final String sData) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeProcessingInstruction (sTarget, sData);
+  }
+
+  public void writeCData (final String sData) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeCData (sData);
+  }
+
+  public void writeDTD (final String sDTD) throws XMLStreamException
+  {
+    m_aWriter.writeDTD (sDTD);
+  }
+
+  public void writeEntityRef (final String sName) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeEntityRef (sName);
+  }
+
+  public void writeStartDocument () throws XMLStreamException
+  {
+    // No XML declaration
+  }
+
+  public void writeStartDocument (final String sVersion) throws XMLStreamException
+  {
+    // No XML declaration
+  }
+
+  public void writeStartDocument (final String sEncoding, final String sVersion) throws XMLStreamException
+  {
+    // No XML declaration
+  }
+
+  public void writeCharacters (final String sText) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeCharacters (sText);
+  }
+
+  public void writeCharacters (final char [] aText, final int nStart, final int nLen) throws XMLStreamException
+  {
+    _flushAttrs ();
+    m_aWriter.writeCharacters (aText, nStart, nLen);
+  }
+
+  public String getPrefix (final String sUri) throws XMLStreamException
+  {
+    return m_aWriter.getPrefix (sUri);
+  }
+
+  public void setPrefix (final String sPrefix, final String sUri) throws XMLStreamException
+  {
+    m_aWriter.setPrefix (sPrefix, sUri);
+  }
+
+  public void setDefaultNamespace (final String sUri) throws XMLStreamException
+  {
+    m_aWriter.setDefaultNamespace (sUri);
+  }
+
+  public void setNamespaceContext (final NamespaceContext aContext) throws XMLStreamException
+  {
+    m_aWriter.setNamespaceContext (aContext);
+  }
+
+  public NamespaceContext getNamespaceContext ()
+  {
+    return m_aWriter.getNamespaceContext ();
+  }
+
+  public Object getProperty (final String sName)
+  {
+    return m_aWriter.getProperty (sName);
+  }
+}
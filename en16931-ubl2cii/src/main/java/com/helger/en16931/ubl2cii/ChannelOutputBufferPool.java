@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A pool of direct {@link ByteBuffer}s that are used to write serialized
+ * documents to a {@link WritableByteChannel}. The serialized bytes are
+ * collected in a direct buffer which is handed to the channel when it is full,
+ * so that the channel doesn't need to copy them into a temporary native buffer
+ * first. The buffers are returned to the pool when the output stream is
+ * closed, to avoid allocating new direct memory for every document.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class ChannelOutputBufferPool
+{
+  /** The default size of a single buffer in bytes */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  /** The default maximum number of pooled buffers */
+  public static final int DEFAULT_MAX_POOLED_BUFFERS = Runtime.getRuntime ().availableProcessors () * 2;
+
+  private static final IMutableStatisticsHandlerCounter STATS_ALLOCATED = StatisticsManager.getCounterHandler (ChannelOutputBufferPool.class.getName () +
+                                                                                                             "$allocated");
+  private static final IMutableStatisticsHandlerCounter STATS_REUSED = StatisticsManager.getCounterHandler (ChannelOutputBufferPool.class.getName () +
+                                                                                                          "$reused");
+  private static final IMutableStatisticsHandlerCounter STATS_CHANNEL_WRITES = StatisticsManager.getCounterHandler (ChannelOutputBufferPool.class.getName () +
+                                                                                                                  "$channelwrites");
+
+  /**
+   * An output stream that collects the bytes in a pooled direct buffer and
+   * writes them to the channel whenever the buffer is full.
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  static final class BufferedChannelOutputStream extends OutputStream
+  {
+    private final ChannelOutputBufferPool m_aPool;
+    private final WritableByteChannel m_aChannel;
+    private ByteBuffer m_aBuffer;
+    private IOException m_aWriteException;
+
+    BufferedChannelOutputStream (@Nonnull final ChannelOutputBufferPool aPool,
+                                 @Nonnull final WritableByteChannel aChannel)
+    {
+      m_aPool = aPool;
+      m_aChannel = aChannel;
+      m_aBuffer = aPool._borrowBuffer ();
+    }
+
+    @Nonnull
+    private ByteBuffer _getBuffer () throws IOException
+    {
+      if (m_aBuffer == null)
+        throw new IOException ("Stream is already closed");
+      // The XML writer swallows exceptions on flush, so remember them
+      if (m_aWriteException != null)
+        throw new IOException ("A previous write to the channel failed", m_aWriteException);
+      return m_aBuffer;
+    }
+
+    /**
+     * @return The exception of the first failed write to the channel or
+     *         <code>null</code> if no write failed so far.
+     */
+    @Nullable
+    IOException getWriteException ()
+    {
+      return m_aWriteException;
+    }
+
+    private void _drain () throws IOException
+    {
+      m_aBuffer.flip ();
+      // Non-blocking channels may write less than requested
+      try
+      {
+        while (m_aBuffer.hasRemaining ())
+        {
+          STATS_CHANNEL_WRITES.increment ();
+          m_aChannel.write (m_aBuffer);
+        }
+      }
+      catch (final IOException ex)
+      {
+        m_aWriteException = ex;
+        throw ex;
+      }
+      m_aBuffer.clear ();
+    }
+
+    @Override
+    public void write (final int b) throws IOException
+    {
+      final ByteBuffer aBuffer = _getBuffer ();
+      if (!aBuffer.hasRemaining ())
+        _drain ();
+      aBuffer.put ((byte) b);
+    }
+
+    @Override
+    public void write (@Nonnull final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      ValueEnforcer.isArrayOfsLen (aBuf, nOfs, nLen);
+      final ByteBuffer aBuffer = _getBuffer ();
+      int nCurOfs = nOfs;
+      int nRemaining = nLen;
+      while (nRemaining > 0)
+      {
+        if (!aBuffer.hasRemaining ())
+          _drain ();
+        final int nChunk = Math.min (nRemaining, aBuffer.remaining ());
+        aBuffer.put (aBuf, nCurOfs, nChunk);
+        nCurOfs += nChunk;
+        nRemaining -= nChunk;
+      }
+    }
+
+    /**
+     * Write all pending bytes to the channel. If a previous write to the
+     * channel failed, nothing happens, as the error was already reported. Use
+     * {@link #getWriteException()} to check for that.
+     */
+    @Override
+    public void flush () throws IOException
+    {
+      if (m_aWriteException != null)
+        return;
+      if (_getBuffer ().position () > 0)
+        _drain ();
+    }
+
+    /**
+     * Writes all pending bytes and returns the buffer to the pool. The channel
+     * itself is not closed. If a previous write to the channel failed, the
+     * pending bytes are discarded, as the error was already reported.
+     */
+    @Override
+    public void close () throws IOException
+    {
+      if (m_aBuffer != null)
+        try
+        {
+          flush ();
+        }
+        finally
+        {
+          m_aPool._returnBuffer (m_aBuffer);
+          m_aBuffer = null;
+        }
+    }
+  }
+
+  private final int m_nBufferSize;
+  private final int m_nMaxPooledBuffers;
+  private final Queue <ByteBuffer> m_aPool = new ConcurrentLinkedQueue <> ();
+  private final AtomicInteger m_aPoolSize = new AtomicInteger (0);
+
+  /**
+   * Constructor
+   *
+   * @param nBufferSize
+   *        The size of each direct buffer in bytes. Must be &gt; 0.
+   * @param nMaxPooledBuffers
+   *        The maximum number of direct buffers that are kept for reuse. Must
+   *        be &ge; 0.
+   */
+  public ChannelOutputBufferPool (@Nonnegative final int nBufferSize, @Nonnegative final int nMaxPooledBuffers)
+  {
+    ValueEnforcer.isGT0 (nBufferSize, "BufferSize");
+    ValueEnforcer.isGE0 (nMaxPooledBuffers, "MaxPooledBuffers");
+    m_nBufferSize = nBufferSize;
+    m_nMaxPooledBuffers = nMaxPooledBuffers;
+  }
+
+  /**
+   * @return The size of each direct buffer in bytes. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getBufferSize ()
+  {
+    return m_nBufferSize;
+  }
+
+  /**
+   * @return The maximum number of direct buffers that are kept for reuse.
+   *         Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMaxPooledBuffers ()
+  {
+    return m_nMaxPooledBuffers;
+  }
+
+  /**
+   * @return The number of buffers currently available for reuse. Always &ge;
+   *         0.
+   */
+  @Nonnegative
+  public int getPooledBufferCount ()
+  {
+    return m_aPoolSize.get ();
+  }
+
+  @Nonnull
+  private ByteBuffer _borrowBuffer ()
+  {
+    final ByteBuffer ret = m_aPool.poll ();
+    if (ret != null)
+    {
+      m_aPoolSize.decrementAndGet ();
+      STATS_REUSED.increment ();
+      return ret;
+    }
+    STATS_ALLOCATED.increment ();
+    return ByteBuffer.allocateDirect (m_nBufferSize);
+  }
+
+  private void _returnBuffer (@Nonnull final ByteBuffer aBuffer)
+  {
+    aBuffer.clear ();
+    if (m_aPoolSize.incrementAndGet () <= m_nMaxPooledBuffers)
+      m_aPool.offer (aBuffer);
+    else
+      m_aPoolSize.decrementAndGet ();
+  }
+
+  /**
+   * Create a new output stream that writes to the provided channel via a
+   * pooled direct buffer. The output stream must be closed, to write the
+   * remaining bytes and to return the buffer to the pool.
+   *
+   * @param aChannel
+   *        The channel to write to. It is not closed, when the output stream is
+   *        closed. May not be <code>null</code>.
+   * @return A new output stream and never <code>null</code>.
+   */
+  @Nonnull
+  public OutputStream createOutputStream (@Nonnull @WillNotClose final WritableByteChannel aChannel)
+  {
+    return createBufferedOutputStream (aChannel);
+  }
+
+  @Nonnull
+  BufferedChannelOutputStream createBufferedOutputStream (@Nonnull @WillNotClose final WritableByteChannel aChannel)
+  {
+    ValueEnforcer.notNull (aChannel, "Channel");
+    return new BufferedChannelOutputStream (this, aChannel);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("BufferSize", m_nBufferSize)
+                                       .append ("MaxPooledBuffers", m_nMaxPooledBuffers)
+                                       .getToString ();
+  }
+}
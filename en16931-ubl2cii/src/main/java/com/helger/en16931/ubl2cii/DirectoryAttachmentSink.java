@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+
+/**
+ * An {@link IAttachmentSink} that writes each attachment as a side file into
+ * a directory. The file name is created from the document ID and the ID of
+ * the referenced document, the extension from the MIME code. The file name is
+ * used as a relative URI, so that the attachments can be stored next to the
+ * CII documents. Existing files are overwritten.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public class DirectoryAttachmentSink implements IAttachmentSink
+{
+  private static final ICommonsMap <String, String> EXTENSIONS = new CommonsHashMap <> ();
+  static
+  {
+    // All MIME codes allowed by EN 16931
+    EXTENSIONS.put ("application/pdf", ".pdf");
+    EXTENSIONS.put ("image/png", ".png");
+    EXTENSIONS.put ("image/jpeg", ".jpg");
+    EXTENSIONS.put ("text/csv", ".csv");
+    EXTENSIONS.put ("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", ".xlsx");
+    EXTENSIONS.put ("application/vnd.oasis.opendocument.spreadsheet", ".ods");
+  }
+
+  private final Path m_aDirectory;
+  // All file names used by this sink, to avoid overwriting within a run
+  private final Set <String> m_aUsedNames = ConcurrentHashMap.newKeySet ();
+
+  /**
+   * Constructor
+   *
+   * @param aDirectory
+   *        The directory to write the files to. Must exist. May not be
+   *        <code>null</code>.
+   */
+  public DirectoryAttachmentSink (@Nonnull final Path aDirectory)
+  {
+    ValueEnforcer.notNull (aDirectory, "Directory");
+    m_aDirectory = aDirectory;
+  }
+
+  /**
+   * @return The directory the files are written to. Never <code>null</code>.
+   */
+  @Nonnull
+  public final Path getDirectory ()
+  {
+    return m_aDirectory;
+  }
+
+  @Nonnull
+  private static String _getSafeName (@Nullable final String s, @Nonnull final String sDefault)
+  {
+    if (StringHelper.hasNoText (s))
+      return sDefault;
+    final StringBuilder ret = new StringBuilder (s.length ());
+    for (final char c : s.toCharArray ())
+    {
+      final boolean bSafe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-';
+      ret.append (bSafe ? c : '_');
+    }
+    return ret.toString ();
+  }
+
+  /**
+   * Get the file extension for the provided MIME code.
+   *
+   * @param sMimeCode
+   *        The MIME code of the attachment. May be <code>null</code>.
+   * @return The extension including the dot. Never <code>null</code>.
+   */
+  @Nonnull
+  protected String getExtension (@Nullable final String sMimeCode)
+  {
+    final String ret = sMimeCode == null ? null : EXTENSIONS.get (sMimeCode.toLowerCase (Locale.ROOT));
+    return ret != null ? ret : ".bin";
+  }
+
+  /**
+   * Get a file name that was not used by this sink before.
+   *
+   * @param sDocumentID
+   *        The document ID. May be <code>null</code>.
+   * @param aReferencedDocument
+   *        The referenced document. Never <code>null</code>.
+   * @param aBinaryObject
+   *        The binary object. Never <code>null</code>.
+   * @return The file name without a path. Never <code>null</code>.
+   */
+  @Nonnull
+  protected String getFilename (@Nullable final String sDocumentID,
+                                @Nonnull final ReferencedDocumentType aReferencedDocument,
+                                @Nonnull final BinaryObjectType aBinaryObject)
+  {
+    final String sBaseName = _getSafeName (sDocumentID, "document") +
+                             "_" +
+                             _getSafeName (aReferencedDocument.getIssuerAssignedIDValue (), "attachment");
+    final String sExt = getExtension (aBinaryObject.getMimeCode ());
+    String ret = sBaseName + sExt;
+    int nIndex = 2;
+    while (!m_aUsedNames.add (ret))
+      ret = sBaseName + "_" + nIndex++ + sExt;
+    return ret;
+  }
+
+  @Nonnull
+  public String storeAttachment (@Nullable final String sDocumentID,
+                                 @Nonnull final ReferencedDocumentType aReferencedDocument,
+                                 @Nonnull final BinaryObjectType aBinaryObject,
+                                 @Nonnull @WillNotClose final InputStream aContent) throws IOException
+  {
+    final String sFilename = getFilename (sDocumentID, aReferencedDocument, aBinaryObject);
+    Files.copy (aContent, m_aDirectory.resolve (sFilename), StandardCopyOption.REPLACE_EXISTING);
+    return sFilename;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Directory", m_aDirectory).getToString ();
+  }
+}
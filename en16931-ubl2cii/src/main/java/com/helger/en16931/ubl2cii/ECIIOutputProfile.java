@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+/**
+ * Defines how the created CII D16B documents are serialized. In all profiles
+ * the fixed namespace prefixes <code>rsm</code>, <code>ram</code>,
+ * <code>udt</code> and <code>qdt</code> are used, and they are declared once
+ * on the root element only.
+ *
+ * @author Philip Helger
+ */
+public enum ECIIOutputProfile
+{
+  /**
+   * Indented and aligned output - identical to the output of
+   * <code>CIID16BCrossIndustryInvoiceTypeMarshaller</code> with formatted
+   * output enabled
+   */
+  PRETTY (true),
+  /**
+   * No whitespace between the elements and no space before the end of
+   * self-closed elements. This is the smallest and fastest output.
+   */
+  COMPACT (false),
+  /**
+   * Like {@link #COMPACT} but with a byte-wise stable serialization, following
+   * the rules of Canonical XML where applicable: always UTF-8 without an XML
+   * declaration, Unix line endings, the namespace declarations sorted by
+   * prefix and the attributes sorted by namespace URI and local name. The
+   * same CII document always results in the same bytes, independent of the
+   * configured charset and the JAXB implementation, so that the output can be
+   * compared and hashed.
+   */
+  CANONICAL (false);
+
+  /** The default output profile */
+  public static final ECIIOutputProfile DEFAULT = PRETTY;
+
+  private final boolean m_bFormattedOutput;
+
+  ECIIOutputProfile (final boolean bFormattedOutput)
+  {
+    m_bFormattedOutput = bFormattedOutput;
+  }
+
+  /**
+   * @return <code>true</code> if the output is indented, <code>false</code> if
+   *         not.
+   */
+  public boolean isFormattedOutput ()
+  {
+    return m_bFormattedOutput;
+  }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+/**
+ * Defines how UBL files are read when a {@link java.nio.file.Path} is provided
+ * as input.
+ *
+ * @author Philip Helger
+ */
+public enum EFileInputMode
+{
+  /** Read the file through an input stream on a file channel */
+  STREAM,
+  /**
+   * Map large files into memory and parse directly from the mapped buffer.
+   * Small files are read at once into pooled heap buffers instead.
+   */
+  MAPPED;
+
+  /** The default input mode */
+  public static final EFileInputMode DEFAULT = STREAM;
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.builder.IBuilder;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * A precompiled plan that copies single values from a source object to a
+ * destination object. Each mapping consists of the business term it
+ * represents, a getter on the source, a setter on the destination and the
+ * condition under which the setter is invoked.<br>
+ * Plans are meant to be created once in a static context with method
+ * references or lambdas as getters and setters, so applying a plan does not
+ * use reflection.
+ *
+ * @author Philip Helger
+ * @param <SRC>
+ *        The source type
+ * @param <DST>
+ *        The destination type
+ */
+@Immutable
+final class FieldMappingPlan <SRC, DST>
+{
+  /**
+   * The condition under which a mapped value is set.
+   *
+   * @author Philip Helger
+   */
+  enum ECondition
+  {
+    /** The setter is always invoked, even with a <code>null</code> value */
+    ALWAYS (x -> true),
+    /** The setter is only invoked for non-<code>null</code> values */
+    IF_NOT_NULL (x -> x != null),
+    /** The setter is only invoked for non-empty Strings */
+    IF_NOT_EMPTY (x -> StringHelper.hasText ((String) x)),
+    /**
+     * The getter returns an {@link Iterable} and the setter is invoked for
+     * each contained element
+     */
+    FOR_EACH (x -> x != null);
+
+    private final Predicate <Object> m_aFilter;
+
+    ECondition (@Nonnull final Predicate <Object> aFilter)
+    {
+      m_aFilter = aFilter;
+    }
+
+    boolean isApplicable (@Nullable final Object aValue)
+    {
+      return m_aFilter.test (aValue);
+    }
+  }
+
+  private static final class Mapping <SRC, DST>
+  {
+    private final String m_sBusinessTerm;
+    private final Function <? super SRC, ?> m_aGetter;
+    private final BiConsumer <? super DST, Object> m_aSetter;
+    private final ECondition m_eCondition;
+
+    Mapping (@Nonnull final String sBusinessTerm,
+             @Nonnull final Function <? super SRC, ?> aGetter,
+             @Nonnull final BiConsumer <? super DST, Object> aSetter,
+             @Nonnull final ECondition eCondition)
+    {
+      m_sBusinessTerm = sBusinessTerm;
+      m_aGetter = aGetter;
+      m_aSetter = aSetter;
+      m_eCondition = eCondition;
+    }
+  }
+
+  private final Mapping <SRC, DST> [] m_aMappings;
+
+  private FieldMappingPlan (@Nonnull final Mapping <SRC, DST> [] aMappings)
+  {
+    m_aMappings = aMappings;
+  }
+
+  /**
+   * Copy all mapped values from the source to the destination.
+   *
+   * @param aSrc
+   *        The source object. May not be <code>null</code>.
+   * @param aDst
+   *        The destination object. May not be <code>null</code>.
+   * @return The passed destination object.
+   */
+  @Nonnull
+  DST apply (@Nonnull final SRC aSrc, @Nonnull final DST aDst)
+  {
+    for (final Mapping <SRC, DST> aMapping : m_aMappings)
+    {
+      final Object aValue = aMapping.m_aGetter.apply (aSrc);
+      if (aMapping.m_eCondition.isApplicable (aValue))
+      {
+        if (aMapping.m_eCondition == ECondition.FOR_EACH)
+        {
+          for (final Object aElement : (Iterable <?>) aValue)
+            aMapping.m_aSetter.accept (aDst, aElement);
+        }
+        else
+          aMapping.m_aSetter.accept (aDst, aValue);
+      }
+    }
+    return aDst;
+  }
+
+  /**
+   * @return The number of mappings in this plan. Always &ge; 0.
+   */
+  int getMappingCount ()
+  {
+    return m_aMappings.length;
+  }
+
+  /**
+   * @return The business terms of all mappings in the order they are applied.
+   *         Never <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  ICommonsList <String> getAllBusinessTerms ()
+  {
+    final ICommonsList <String> ret = new CommonsArrayList <> (m_aMappings.length);
+    for (final Mapping <SRC, DST> aMapping : m_aMappings)
+      ret.add (aMapping.m_sBusinessTerm);
+    return ret;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("BusinessTerms", getAllBusinessTerms ()).getToString ();
+  }
+
+  /**
+   * @return A new builder for a plan. Never <code>null</code>.
+   * @param <SRC>
+   *        The source type
+   * @param <DST>
+   *        The destination type
+   */
+  @Nonnull
+  static <SRC, DST> Builder <SRC, DST> builder ()
+  {
+    return new Builder <> ();
+  }
+
+  /**
+   * Builder for {@link FieldMappingPlan}
+   *
+   * @author Philip Helger
+   * @param <SRC>
+   *        The source type
+   * @param <DST>
+   *        The destination type
+   */
+  @NotThreadSafe
+  static final class Builder <SRC, DST> implements IBuilder <FieldMappingPlan <SRC, DST>>
+  {
+    private final List <Mapping <SRC, DST>> m_aMappings = new ArrayList <> ();
+
+    Builder ()
+    {}
+
+    @Nonnull
+    @SuppressWarnings ("unchecked")
+    private Builder <SRC, DST> _add (@Nonnull final String sBusinessTerm,
+                                     @Nonnull final Function <? super SRC, ?> aGetter,
+                                     @Nonnull final BiConsumer <? super DST, ?> aSetter,
+                                     @Nonnull final ECondition eCondition)
+    {
+      ValueEnforcer.notEmpty (sBusinessTerm, "BusinessTerm");
+      ValueEnforcer.notNull (aGetter, "Getter");
+      ValueEnforcer.notNull (aSetter, "Setter");
+      m_aMappings.add (new Mapping <> (sBusinessTerm,
+                                       aGetter,
+                                       (BiConsumer <? super DST, Object>) aSetter,
+                                       eCondition));
+      return this;
+    }
+
+    /**
+     * Add a mapping whose setter is always invoked.
+     *
+     * @param sBusinessTerm
+     *        The business term. May neither be <code>null</code> nor empty.
+     * @param aGetter
+     *        The getter on the source. May not be <code>null</code>.
+     * @param aSetter
+     *        The setter on the destination. May not be <code>null</code>.
+     * @return this for chaining
+     * @param <V>
+     *        The value type
+     */
+    @Nonnull
+    public <V> Builder <SRC, DST> always (@Nonnull final String sBusinessTerm,
+                                          @Nonnull final Function <? super SRC, ? extends V> aGetter,
+                                          @Nonnull final BiConsumer <? super DST, ? super V> aSetter)
+    {
+      return _add (sBusinessTerm, aGetter, aSetter, ECondition.ALWAYS);
+    }
+
+    /**
+     * Add a mapping whose setter is only invoked for non-<code>null</code>
+     * values.
+     *
+     * @param sBusinessTerm
+     *        The business term. May neither be <code>null</code> nor empty.
+     * @param aGetter
+     *        The getter on the source. May not be <code>null</code>.
+     * @param aSetter
+     *        The setter on the destination. May not be <code>null</code>.
+     * @return this for chaining
+     * @param <V>
+     *        The value type
+     */
+    @Nonnull
+    public <V> Builder <SRC, DST> ifNotNull (@Nonnull final String sBusinessTerm,
+                                             @Nonnull final Function <? super SRC, ? extends V> aGetter,
+                                             @Nonnull final BiConsumer <? super DST, ? super V> aSetter)
+    {
+      return _add (sBusinessTerm, aGetter, aSetter, ECondition.IF_NOT_NULL);
+    }
+
+    /**
+     * Add a mapping whose setter is only invoked for non-empty Strings.
+     *
+     * @param sBusinessTerm
+     *        The business term. May neither be <code>null</code> nor empty.
+     * @param aGetter
+     *        The getter on the source. May not be <code>null</code>.
+     * @param aSetter
+     *        The setter on the destination. May not be <code>null</code>.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder <SRC, DST> ifNotEmpty (@Nonnull final String sBusinessTerm,
+                                          @Nonnull final Function <? super SRC, String> aGetter,
+                                          @Nonnull final BiConsumer <? super DST, String> aSetter)
+    {
+      return _add (sBusinessTerm, aGetter, aSetter, ECondition.IF_NOT_EMPTY);
+    }
+
+    /**
+     * Add a mapping whose setter is invoked for each element of the collection
+     * returned by the getter. A <code>null</code> collection is ignored.
+     *
+     * @param sBusinessTerm
+     *        The business term. May neither be <code>null</code> nor empty.
+     * @param aGetter
+     *        The getter of the collection on the source. May not be
+     *        <code>null</code>.
+     * @param aSetter
+     *        The setter on the destination that is invoked for each element.
+     *        May not be <code>null</code>.
+     * @return this for chaining
+     * @param <V>
+     *        The element type
+     */
+    @Nonnull
+    public <V> Builder <SRC, DST> forEach (@Nonnull final String sBusinessTerm,
+                                           @Nonnull final Function <? super SRC, ? extends Iterable <? extends V>> aGetter,
+                                           @Nonnull final BiConsumer <? super DST, ? super V> aSetter)
+    {
+      return _add (sBusinessTerm, aGetter, aSetter, ECondition.FOR_EACH);
+    }
+
+    /**
+     * Add all mappings of another plan. This is meant to extend a plan that is
+     * shared between several source types.
+     *
+     * @param aPlan
+     *        The plan to add. May not be <code>null</code>.
+     * @return this for chaining
+     */
+    @Nonnull
+    @SuppressWarnings ("unchecked")
+    public Builder <SRC, DST> addAll (@Nonnull final FieldMappingPlan <? super SRC, ? super DST> aPlan)
+    {
+      ValueEnforcer.notNull (aPlan, "Plan");
+      for (final Mapping <?, ?> aMapping : aPlan.m_aMappings)
+        m_aMappings.add ((Mapping <SRC, DST>) aMapping);
+      return this;
+    }
+
+    @Nonnull
+    @SuppressWarnings ("unchecked")
+    public FieldMappingPlan <SRC, DST> build ()
+    {
+      return new FieldMappingPlan <> (m_aMappings.toArray (new Mapping [0]));
+    }
+  }
+}
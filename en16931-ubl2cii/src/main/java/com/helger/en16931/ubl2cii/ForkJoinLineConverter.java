@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * Converts already read UBL lines including their sub line trees on a
+ * {@link ForkJoinPool}. Ranges of sibling lines are split until they are small
+ * enough, and sub line lists are split the same way. Every line only writes
+ * its own result slot and the slots are flattened in document order, so the
+ * result is identical to the one of the sequential conversion.
+ *
+ * @author Philip Helger
+ * @param <LINE>
+ *        The UBL line type
+ */
+@Immutable
+final class ForkJoinLineConverter <LINE>
+{
+  private final BiFunction <? super LINE, String, SupplyChainTradeLineItemType> m_aLineConverter;
+  private final Function <? super LINE, ? extends List <LINE>> m_aSubLineGetter;
+  private final int m_nLinesPerTask;
+
+  /**
+   * Constructor
+   *
+   * @param aLineConverter
+   *        Converts a single line without its sub lines. The second parameter
+   *        is the ID of the parent line and is <code>null</code> for top-level
+   *        lines. May not be <code>null</code>.
+   * @param aSubLineGetter
+   *        Returns the direct sub lines of a line. May not be
+   *        <code>null</code>.
+   * @param nLinesPerTask
+   *        The maximum number of sibling lines handled by a single task. Must
+   *        be &gt; 0.
+   */
+  ForkJoinLineConverter (@Nonnull final BiFunction <? super LINE, String, SupplyChainTradeLineItemType> aLineConverter,
+                         @Nonnull final Function <? super LINE, ? extends List <LINE>> aSubLineGetter,
+                         @Nonnegative final int nLinesPerTask)
+  {
+    ValueEnforcer.notNull (aLineConverter, "LineConverter");
+    ValueEnforcer.notNull (aSubLineGetter, "SubLineGetter");
+    ValueEnforcer.isGT0 (nLinesPerTask, "LinesPerTask");
+    m_aLineConverter = aLineConverter;
+    m_aSubLineGetter = aSubLineGetter;
+    m_nLinesPerTask = nLinesPerTask;
+  }
+
+  /**
+   * Converts a range of sibling lines. Every line is stored in its own slot.
+   */
+  private final class RangeTask extends RecursiveAction
+  {
+    private final List <LINE> m_aLines;
+    private final String m_sParentLineID;
+    private final List <?> [] m_aSlots;
+    private final int m_nFromIndex;
+    private final int m_nToIndex;
+
+    RangeTask (@Nonnull final List <LINE> aLines,
+               @Nullable final String sParentLineID,
+               @Nonnull final List <?> [] aSlots,
+               final int nFromIndex,
+               final int nToIndex)
+    {
+      m_aLines = aLines;
+      m_sParentLineID = sParentLineID;
+      m_aSlots = aSlots;
+      m_nFromIndex = nFromIndex;
+      m_nToIndex = nToIndex;
+    }
+
+    @Override
+    protected void compute ()
+    {
+      final int nCount = m_nToIndex - m_nFromIndex;
+      if (nCount <= m_nLinesPerTask)
+      {
+        for (int i = m_nFromIndex; i < m_nToIndex; ++i)
+          m_aSlots[i] = _convertTree (m_aLines.get (i), m_sParentLineID);
+      }
+      else
+      {
+        final int nMid = m_nFromIndex + nCount / 2;
+        invokeAll (new RangeTask (m_aLines, m_sParentLineID, m_aSlots, m_nFromIndex, nMid),
+                   new RangeTask (m_aLines, m_sParentLineID, m_aSlots, nMid, m_nToIndex));
+      }
+    }
+  }
+
+  @Nonnull
+  private static List <SupplyChainTradeLineItemType> _flatten (@Nonnull final List <?> [] aSlots,
+                                                               @Nonnull final List <SupplyChainTradeLineItemType> aTarget)
+  {
+    for (final List <?> aSlot : aSlots)
+      for (final Object aItem : aSlot)
+        aTarget.add ((SupplyChainTradeLineItemType) aItem);
+    return aTarget;
+  }
+
+  @Nonnull
+  private List <SupplyChainTradeLineItemType> _convertTree (@Nonnull final LINE aLine, @Nullable final String sParentLineID)
+  {
+    final SupplyChainTradeLineItemType aItem = m_aLineConverter.apply (aLine, sParentLineID);
+    final List <LINE> aSubLines = m_aSubLineGetter.apply (aLine);
+    if (aSubLines.isEmpty ())
+      return Collections.singletonList (aItem);
+
+    // Runs inside the pool, so the sub line tasks are forked into the same
+    // pool
+    final List <?> [] aSlots = new List <?> [aSubLines.size ()];
+    new RangeTask (aSubLines, aItem.getAssociatedDocumentLineDocument ().getLineIDValue (), aSlots, 0, aSlots.length).invoke ();
+
+    final List <SupplyChainTradeLineItemType> ret = new ArrayList <> (aSlots.length + 1);
+    ret.add (aItem);
+    return _flatten (aSlots, ret);
+  }
+
+  /**
+   * Convert all provided top-level lines including their sub lines on the
+   * provided pool. The calling thread blocks until all lines are converted.
+   *
+   * @param aLines
+   *        The top-level lines to convert. May not be <code>null</code>.
+   * @param aPool
+   *        The pool to use. May not be <code>null</code>.
+   * @param nExpectedLineItems
+   *        The expected number of line items incl. all sub lines. Only used
+   *        to size the result list.
+   * @return The converted line items in document order. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  List <SupplyChainTradeLineItemType> convert (@Nonnull final List <LINE> aLines,
+                                               @Nonnull final ForkJoinPool aPool,
+                                               @Nonnegative final int nExpectedLineItems)
+  {
+    final List <?> [] aSlots = new List <?> [aLines.size ()];
+    if (aSlots.length > 0)
+      aPool.invoke (new RangeTask (aLines, null, aSlots, 0, aSlots.length));
+    return _flatten (aSlots, new ArrayList <> (nExpectedLineItems));
+  }
+}
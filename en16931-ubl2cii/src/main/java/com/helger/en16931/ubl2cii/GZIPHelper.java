@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.WillCloseWhenClosed;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+
+/**
+ * Helper methods for transparent GZIP compression of the UBL input and the
+ * CII output.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class GZIPHelper
+{
+  /** The first byte of every GZIP stream */
+  public static final int GZIP_MAGIC_BYTE_0 = 0x1f;
+  /** The second byte of every GZIP stream */
+  public static final int GZIP_MAGIC_BYTE_1 = 0x8b;
+  /** The minimum compression level */
+  public static final int MIN_LEVEL = Deflater.DEFAULT_COMPRESSION;
+  /** The maximum compression level */
+  public static final int MAX_LEVEL = Deflater.BEST_COMPRESSION;
+
+  private static final int BUFFER_SIZE = 16 * 1024;
+
+  private GZIPHelper ()
+  {}
+
+  /**
+   * Check if the provided bytes start with the GZIP magic bytes.
+   *
+   * @param aBytes
+   *        The bytes to check. May not be <code>null</code>.
+   * @param nOfs
+   *        The offset to start checking. Must be &ge; 0.
+   * @param nLen
+   *        The number of bytes available. Must be &ge; 0.
+   * @return <code>true</code> if the bytes look like a GZIP stream.
+   */
+  public static boolean isGZIP (@Nonnull final byte [] aBytes, final int nOfs, final int nLen)
+  {
+    ValueEnforcer.isArrayOfsLen (aBytes, nOfs, nLen);
+    return nLen >= 2 && (aBytes[nOfs] & 0xff) == GZIP_MAGIC_BYTE_0 && (aBytes[nOfs + 1] & 0xff) == GZIP_MAGIC_BYTE_1;
+  }
+
+  /**
+   * Get an input stream that returns the decompressed content if the provided
+   * stream is GZIP compressed, or the unmodified content otherwise. Only the
+   * first two bytes are inspected, so that the content is still streamed.
+   *
+   * @param aIS
+   *        The source input stream. Is closed, when the returned stream is
+   *        closed. May not be <code>null</code>.
+   * @return The input stream to read from. Never <code>null</code>.
+   * @throws IOException
+   *         If the first bytes cannot be read or the GZIP header is invalid
+   */
+  @Nonnull
+  public static InputStream getDecompressedIfGZIP (@Nonnull @WillCloseWhenClosed final InputStream aIS) throws IOException
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+
+    final PushbackInputStream aPIS = new PushbackInputStream (aIS, 2);
+    final byte [] aMagic = new byte [2];
+    int nRead = 0;
+    while (nRead < aMagic.length)
+    {
+      final int n = aPIS.read (aMagic, nRead, aMagic.length - nRead);
+      if (n < 0)
+        break;
+      nRead += n;
+    }
+    // Make the bytes available again
+    aPIS.unread (aMagic, 0, nRead);
+
+    if (isGZIP (aMagic, 0, nRead))
+      return new GZIPInputStream (aPIS, BUFFER_SIZE);
+    return aPIS;
+  }
+
+  /**
+   * Get an output stream that compresses everything with GZIP.
+   *
+   * @param aOS
+   *        The target output stream. Is closed, when the returned stream is
+   *        closed. May not be <code>null</code>.
+   * @param nLevel
+   *        The compression level from {@link #MIN_LEVEL} to
+   *        {@link #MAX_LEVEL}.
+   * @return The compressing output stream. Never <code>null</code>. Call
+   *         {@link GZIPOutputStream#finish()} or close it to write the
+   *         trailer.
+   * @throws IOException
+   *         If the GZIP header cannot be written
+   */
+  @Nonnull
+  public static GZIPOutputStream getCompressingOutputStream (@Nonnull @WillCloseWhenClosed final OutputStream aOS,
+                                                             final int nLevel) throws IOException
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.isBetweenInclusive (nLevel, "Level", MIN_LEVEL, MAX_LEVEL);
+
+    return new GZIPOutputStream (aOS, BUFFER_SIZE)
+    {
+      {
+        def.setLevel (nLevel);
+      }
+    };
+  }
+}
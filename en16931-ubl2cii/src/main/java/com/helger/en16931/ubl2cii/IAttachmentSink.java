@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+
+/**
+ * Callback to store embedded attachments outside of the created CII. If a
+ * sink is configured in {@link UBLToCIIConversionSettings}, each
+ * <code>ram:AttachmentBinaryObject</code> is handed to the sink and replaced
+ * by a reference in <code>ram:URIID</code>. Implementations must be thread
+ * safe, if the engine is used concurrently.
+ *
+ * @author Philip Helger
+ * @see DirectoryAttachmentSink
+ */
+@FunctionalInterface
+public interface IAttachmentSink
+{
+  /**
+   * Store a single attachment.
+   *
+   * @param sDocumentID
+   *        The ID of the CII document the attachment belongs to. May be
+   *        <code>null</code>.
+   * @param aReferencedDocument
+   *        The referenced document containing the attachment. Must not be
+   *        modified. Never <code>null</code>.
+   * @param aBinaryObject
+   *        The binary object with the MIME code and filename. The value must
+   *        not be used, because it may be a placeholder for a spooled
+   *        attachment. Never <code>null</code>.
+   * @param aContent
+   *        The decoded content of the attachment. Never <code>null</code>.
+   * @return The URI to be used in <code>ram:URIID</code> to reference the
+   *         stored attachment. May not be <code>null</code>.
+   * @throws IOException
+   *         If storing fails. The attachment stays embedded in this case.
+   */
+  @Nonnull
+  String storeAttachment (@Nullable String sDocumentID,
+                          @Nonnull ReferencedDocumentType aReferencedDocument,
+                          @Nonnull BinaryObjectType aBinaryObject,
+                          @Nonnull @WillNotClose InputStream aContent) throws IOException;
+}
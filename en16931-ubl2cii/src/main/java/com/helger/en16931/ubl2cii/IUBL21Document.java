@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DeliveryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DocumentReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PeriodType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.SupplierPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.NoteType;
+
+/**
+ * Read-only projection of the parts of a UBL 2.1 document header that are
+ * used by the converters. Basic components are reduced to their values,
+ * aggregates that are only used once are reduced to the first occurrence.
+ *
+ * @author Philip Helger
+ */
+public interface IUBL21Document
+{
+  /**
+   * @return The value of cbc:CustomizationID or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  String getCustomizationID ();
+
+  /**
+   * @return The value of cbc:ID or <code>null</code> if not present.
+   */
+  @Nullable
+  String getID ();
+
+  /**
+   * @return The local value of cbc:IssueDate or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  LocalDate getIssueDate ();
+
+  /**
+   * @return All cbc:Note elements. Never <code>null</code>.
+   */
+  @Nonnull
+  List <NoteType> getNotes ();
+
+  /**
+   * @return The value of cbc:DocumentCurrencyCode or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  String getDocumentCurrencyCode ();
+
+  /**
+   * @return The value of cbc:AccountingCost or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  String getAccountingCost ();
+
+  /**
+   * @return The first cac:InvoicePeriod or <code>null</code> if not present.
+   */
+  @Nullable
+  PeriodType getInvoicePeriod ();
+
+  /**
+   * @return The cac:OrderReference or <code>null</code> if not present.
+   */
+  @Nullable
+  OrderReferenceType getOrderReference ();
+
+  /**
+   * @return The first cac:ContractDocumentReference or <code>null</code> if
+   *         not present.
+   */
+  @Nullable
+  DocumentReferenceType getContractDocumentReference ();
+
+  /**
+   * @return All cac:AdditionalDocumentReference elements. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  List <DocumentReferenceType> getAdditionalDocumentReferences ();
+
+  /**
+   * @return The cac:AccountingSupplierParty or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  SupplierPartyType getAccountingSupplierParty ();
+
+  /**
+   * @return The cac:AccountingCustomerParty or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  CustomerPartyType getAccountingCustomerParty ();
+
+  /**
+   * @return The cac:PayeeParty or <code>null</code> if not present.
+   */
+  @Nullable
+  PartyType getPayeeParty ();
+
+  /**
+   * @return The first cac:Delivery or <code>null</code> if not present.
+   */
+  @Nullable
+  DeliveryType getDelivery ();
+
+  /**
+   * @return The first cac:PaymentMeans or <code>null</code> if not present.
+   */
+  @Nullable
+  PaymentMeansType getPaymentMeans ();
+
+  /**
+   * @return All cac:PaymentTerms elements. Never <code>null</code>.
+   */
+  @Nonnull
+  List <PaymentTermsType> getPaymentTerms ();
+
+  /**
+   * @return All document level cac:AllowanceCharge elements. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  List <AllowanceChargeType> getAllowanceCharges ();
+
+  /**
+   * @return All cac:TaxTotal elements. Never <code>null</code>.
+   */
+  @Nonnull
+  List <TaxTotalType> getTaxTotals ();
+
+  /**
+   * @return The cac:LegalMonetaryTotal or <code>null</code> if not present.
+   */
+  @Nullable
+  MonetaryTotalType getLegalMonetaryTotal ();
+}
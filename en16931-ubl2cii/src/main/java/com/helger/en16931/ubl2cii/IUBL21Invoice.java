@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+
+/**
+ * Read-only projection of a UBL 2.1 Invoice as used by
+ * {@link UBL21InvoiceToCIID16BConverter}.
+ *
+ * @author Philip Helger
+ */
+public interface IUBL21Invoice extends IUBL21Document
+{
+  /**
+   * @return The value of cbc:ProfileID or <code>null</code> if not present.
+   */
+  @Nullable
+  String getProfileID ();
+
+  /**
+   * @return The value of cbc:InvoiceTypeCode or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  String getInvoiceTypeCode ();
+
+  /**
+   * @return The value of cbc:BuyerReference or <code>null</code> if not
+   *         present.
+   */
+  @Nullable
+  String getBuyerReference ();
+
+  /**
+   * @return All cac:InvoiceLine elements in document order. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  List <InvoiceLineType> getInvoiceLines ();
+}
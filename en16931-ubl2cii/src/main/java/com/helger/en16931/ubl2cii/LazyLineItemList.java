@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * A list of CII line items that converts the UBL lines only while it is
+ * iterated. It is put into the CII document that is passed to the JAXB
+ * marshaller, so that each line item is created right before it is written,
+ * and becomes garbage directly afterwards. That keeps the memory consumption
+ * of the CII side independent of the number of lines, while the output stays
+ * identical to the eager conversion.<br>
+ * Each iteration converts the lines again, so it should only be iterated once.
+ * The first random access via {@link #get(int)} converts all lines at once
+ * and keeps the result, so that all methods of the {@link List} contract
+ * work - but only the iteration keeps the memory consumption low.
+ *
+ * @author Philip Helger
+ * @param <LINETYPE>
+ *        The UBL line type
+ */
+@NotThreadSafe
+final class LazyLineItemList <LINETYPE> extends AbstractList <SupplyChainTradeLineItemType>
+{
+  private final List <LINETYPE> m_aUBLLines;
+  private final Function <? super LINETYPE, List <SupplyChainTradeLineItemType>> m_aConverter;
+  private final int m_nSize;
+  // Only filled on random access
+  private List <SupplyChainTradeLineItemType> m_aMaterialized;
+
+  /**
+   * Constructor
+   *
+   * @param aUBLLines
+   *        The UBL lines to convert. May not be <code>null</code>.
+   * @param aConverter
+   *        The converter for a single UBL line, that may create more than one
+   *        CII line item. May not be <code>null</code>.
+   * @param nSize
+   *        The total number of CII line items that the converter creates for
+   *        all UBL lines. Must be &ge; 0.
+   */
+  LazyLineItemList (@Nonnull final List <LINETYPE> aUBLLines,
+                    @Nonnull final Function <? super LINETYPE, List <SupplyChainTradeLineItemType>> aConverter,
+                    @Nonnegative final int nSize)
+  {
+    m_aUBLLines = aUBLLines;
+    m_aConverter = aConverter;
+    m_nSize = nSize;
+  }
+
+  @Override
+  public int size ()
+  {
+    return m_nSize;
+  }
+
+  @Nonnull
+  private List <SupplyChainTradeLineItemType> _getMaterialized ()
+  {
+    List <SupplyChainTradeLineItemType> ret = m_aMaterialized;
+    if (ret == null)
+    {
+      ret = new ArrayList <> (m_nSize);
+      for (final LINETYPE aUBLLine : m_aUBLLines)
+        ret.addAll (m_aConverter.apply (aUBLLine));
+      m_aMaterialized = ret;
+    }
+    return ret;
+  }
+
+  @Override
+  public SupplyChainTradeLineItemType get (final int nIndex)
+  {
+    return _getMaterialized ().get (nIndex);
+  }
+
+  @Override
+  @Nonnull
+  public Iterator <SupplyChainTradeLineItemType> iterator ()
+  {
+    // Don't convert again if all lines are already present
+    if (m_aMaterialized != null)
+      return m_aMaterialized.iterator ();
+
+    return new Iterator <> ()
+    {
+      private final Iterator <LINETYPE> m_aUBLIt = m_aUBLLines.iterator ();
+      private Iterator <SupplyChainTradeLineItemType> m_aCurrentIt = Collections.emptyIterator ();
+
+      public boolean hasNext ()
+      {
+        while (!m_aCurrentIt.hasNext ())
+        {
+          if (!m_aUBLIt.hasNext ())
+            return false;
+          // Convert the next UBL line only now
+          m_aCurrentIt = m_aConverter.apply (m_aUBLIt.next ()).iterator ();
+        }
+        return true;
+      }
+
+      public SupplyChainTradeLineItemType next ()
+      {
+        if (!hasNext ())
+          throw new NoSuchElementException ();
+        return m_aCurrentIt.next ();
+      }
+    };
+  }
+}
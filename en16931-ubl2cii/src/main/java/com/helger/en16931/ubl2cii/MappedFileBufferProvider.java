@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.statistics.IMutableStatisticsHandlerCounter;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Provides the content of files as {@link ByteBuffer} without going through an
+ * input stream. Files with at least the mapping threshold size are mapped into
+ * memory via {@link FileChannel#map(FileChannel.MapMode, long, long)}, so that
+ * the parser reads directly from the page cache. Smaller files, for which the
+ * mapping overhead is higher than the gain, are read with a single channel
+ * read into a heap buffer that is taken from a pool and reused afterwards.<br>
+ * The buffers are only valid inside the callback and must not be kept.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class MappedFileBufferProvider
+{
+  /** Files with at least this size in bytes are memory mapped by default */
+  public static final int DEFAULT_MAPPING_THRESHOLD = 256 * 1024;
+  /** The default maximum number of pooled heap buffers */
+  public static final int DEFAULT_MAX_POOLED_BUFFERS = Runtime.getRuntime ().availableProcessors () * 2;
+
+  private static final IMutableStatisticsHandlerCounter STATS_MAPPED = StatisticsManager.getCounterHandler (MappedFileBufferProvider.class.getName () +
+                                                                                                           "$mapped");
+  private static final IMutableStatisticsHandlerCounter STATS_HEAP = StatisticsManager.getCounterHandler (MappedFileBufferProvider.class.getName () +
+                                                                                                         "$heap");
+  private static final IMutableStatisticsHandlerCounter STATS_CHANNEL_READS = StatisticsManager.getCounterHandler (MappedFileBufferProvider.class.getName () +
+                                                                                                                  "$channelreads");
+
+  private final int m_nMappingThreshold;
+  private final int m_nMaxPooledBuffers;
+  private final Queue <byte []> m_aPool = new ConcurrentLinkedQueue <> ();
+  private final AtomicInteger m_aPoolSize = new AtomicInteger (0);
+
+  /**
+   * Constructor
+   *
+   * @param nMappingThreshold
+   *        Files with at least this number of bytes are memory mapped. Smaller
+   *        files are read into pooled heap buffers of this size. Must be &ge;
+   *        0.
+   * @param nMaxPooledBuffers
+   *        The maximum number of heap buffers that are kept for reuse. Must be
+   *        &ge; 0.
+   */
+  public MappedFileBufferProvider (@Nonnegative final int nMappingThreshold, @Nonnegative final int nMaxPooledBuffers)
+  {
+    ValueEnforcer.isGE0 (nMappingThreshold, "MappingThreshold");
+    ValueEnforcer.isGE0 (nMaxPooledBuffers, "MaxPooledBuffers");
+    m_nMappingThreshold = nMappingThreshold;
+    m_nMaxPooledBuffers = nMaxPooledBuffers;
+  }
+
+  /**
+   * @return The minimum file size in bytes for memory mapping. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMappingThreshold ()
+  {
+    return m_nMappingThreshold;
+  }
+
+  /**
+   * @return The maximum number of heap buffers that are kept for reuse. Always
+   *         &ge; 0.
+   */
+  @Nonnegative
+  public int getMaxPooledBuffers ()
+  {
+    return m_nMaxPooledBuffers;
+  }
+
+  @Nonnull
+  private byte [] _borrowBuffer ()
+  {
+    final byte [] ret = m_aPool.poll ();
+    if (ret != null)
+    {
+      m_aPoolSize.decrementAndGet ();
+      return ret;
+    }
+    return new byte [m_nMappingThreshold];
+  }
+
+  private void _returnBuffer (@Nonnull final byte [] aBuffer)
+  {
+    if (m_aPoolSize.incrementAndGet () <= m_nMaxPooledBuffers)
+      m_aPool.offer (aBuffer);
+    else
+      m_aPoolSize.decrementAndGet ();
+  }
+
+  /**
+   * Provide the complete content of the passed file as a buffer to the
+   * callback.
+   *
+   * @param <T>
+   *        The result type
+   * @param aPath
+   *        The file to read. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled if the file cannot be read. May not be
+   *        <code>null</code>.
+   * @param aCallback
+   *        The callback that works on the buffer. The buffer must not be used
+   *        after the callback returned. May not be <code>null</code>.
+   * @return The result of the callback or <code>null</code> if the file could
+   *         not be read.
+   */
+  @Nullable
+  public <T> T read (@Nonnull final Path aPath,
+                     @Nonnull final ErrorList aErrorList,
+                     @Nonnull final Function <ByteBuffer, T> aCallback)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+    ValueEnforcer.notNull (aCallback, "Callback");
+
+    try (final FileChannel aChannel = FileChannel.open (aPath, StandardOpenOption.READ))
+    {
+      final long nSize = aChannel.size ();
+      if (nSize > Integer.MAX_VALUE)
+      {
+        aErrorList.add (SingleError.builderError ()
+                                   .errorFieldName (aPath.toString ())
+                                   .errorText ("The file is too large to be mapped (" + nSize + " bytes)")
+                                   .build ());
+        return null;
+      }
+
+      if (nSize >= m_nMappingThreshold)
+      {
+        // The mapping stays valid after the channel is closed and is released
+        // by the garbage collector
+        STATS_MAPPED.increment ();
+        return aCallback.apply (aChannel.map (FileChannel.MapMode.READ_ONLY, 0, nSize));
+      }
+
+      STATS_HEAP.increment ();
+      final byte [] aBytes = _borrowBuffer ();
+      try
+      {
+        final ByteBuffer aBuffer = ByteBuffer.wrap (aBytes, 0, (int) nSize);
+        // Usually a single read is sufficient
+        while (aBuffer.hasRemaining ())
+        {
+          STATS_CHANNEL_READS.increment ();
+          if (aChannel.read (aBuffer) < 0)
+            break;
+        }
+        aBuffer.flip ();
+        return aCallback.apply (aBuffer);
+      }
+      finally
+      {
+        _returnBuffer (aBytes);
+      }
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorFieldName (aPath.toString ())
+                                 .errorText ("Failed to read the file")
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("MappingThreshold", m_nMappingThreshold)
+                                       .append ("MaxPooledBuffers", m_nMaxPooledBuffers)
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.ICommonsSet;
+
+/**
+ * An {@link XMLStreamReader} that silently drops all elements with one of the
+ * configured names, including their complete content, at any depth. This is
+ * meant to be put in front of a JAXB unmarshaller, so that e.g. large
+ * signatures or extensions that are never used by the conversion are not
+ * turned into objects at all.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class SkippingXMLStreamReader extends StreamReaderDelegate
+{
+  private final ICommonsSet <QName> m_aSkippedElements;
+  private int m_nSkippedCount = 0;
+
+  /**
+   * Constructor
+   *
+   * @param aReader
+   *        The reader to read from. May not be <code>null</code>.
+   * @param aSkippedElements
+   *        The fully qualified names of the elements to be skipped. May not be
+   *        <code>null</code>.
+   */
+  public SkippingXMLStreamReader (@Nonnull final XMLStreamReader aReader, @Nonnull final Set <QName> aSkippedElements)
+  {
+    super (aReader);
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aSkippedElements, "SkippedElements");
+    m_aSkippedElements = new CommonsHashSet <> (aSkippedElements);
+  }
+
+  /**
+   * @return A copy of all element names that are skipped. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public final ICommonsSet <QName> getAllSkippedElements ()
+  {
+    return m_aSkippedElements.getClone ();
+  }
+
+  /**
+   * @return The number of element subtrees that were skipped so far. Always
+   *         &ge; 0.
+   */
+  public final int getSkippedCount ()
+  {
+    return m_nSkippedCount;
+  }
+
+  @Override
+  public int next () throws XMLStreamException
+  {
+    final XMLStreamReader aParent = getParent ();
+    int nEventType = aParent.next ();
+    while (nEventType == XMLStreamConstants.START_ELEMENT && m_aSkippedElements.contains (aParent.getName ()))
+    {
+      // Skip the whole subtree and continue after the end element
+      StAXHelper.skipElement (aParent);
+      m_nSkippedCount++;
+      nEventType = aParent.next ();
+    }
+    return nEventType;
+  }
+
+  @Override
+  public int nextTag () throws XMLStreamException
+  {
+    // Must go through next() - the parent implementation would bypass the
+    // skipping
+    int nEventType = next ();
+    while ((nEventType == XMLStreamConstants.CHARACTERS && isWhiteSpace ()) ||
+           (nEventType == XMLStreamConstants.CDATA && isWhiteSpace ()) ||
+           nEventType == XMLStreamConstants.SPACE ||
+           nEventType == XMLStreamConstants.PROCESSING_INSTRUCTION ||
+           nEventType == XMLStreamConstants.COMMENT)
+    {
+      nEventType = next ();
+    }
+    if (nEventType != XMLStreamConstants.START_ELEMENT && nEventType != XMLStreamConstants.END_ELEMENT)
+      throw new XMLStreamException ("Expected a start or end element", getLocation ());
+    return nEventType;
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.InputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+
+/**
+ * Small StAX helper methods shared by the different readers.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class StAXHelper
+{
+  /**
+   * Callback interface for working on an {@link XMLStreamReader}.
+   *
+   * @param <T>
+   *        The result type
+   */
+  @FunctionalInterface
+  public interface IXMLStreamReaderCallback <T>
+  {
+    @Nullable
+    T apply (@Nonnull XMLStreamReader aReader) throws XMLStreamException;
+  }
+
+  private static final XMLInputFactory XML_INPUT_FACTORY;
+
+  static
+  {
+    // Created only once - configured for safe processing of untrusted input
+    XML_INPUT_FACTORY = XMLInputFactory.newFactory ();
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+  }
+
+  private StAXHelper ()
+  {}
+
+  /**
+   * Create a new {@link XMLStreamReader} on the provided input stream, using a
+   * shared and securely configured {@link XMLInputFactory}.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>. Closing
+   *        the returned reader does not close the input stream.
+   * @return The new stream reader and never <code>null</code>.
+   * @throws XMLStreamException
+   *         If the reader cannot be created
+   */
+  @Nonnull
+  public static XMLStreamReader createXMLStreamReader (@Nonnull @WillNotClose final InputStream aIS) throws XMLStreamException
+  {
+    return XML_INPUT_FACTORY.createXMLStreamReader (aIS);
+  }
+
+  /**
+   * Move the reader forward to the first start element.
+   *
+   * @param aReader
+   *        The reader to use. May not be <code>null</code>.
+   * @return <code>true</code> if the reader is positioned on a start element,
+   *         <code>false</code> if the end of the document was reached.
+   * @throws XMLStreamException
+   *         On XML error
+   */
+  public static boolean moveToStartElement (@Nonnull final XMLStreamReader aReader) throws XMLStreamException
+  {
+    while (!aReader.isStartElement ())
+    {
+      if (!aReader.hasNext ())
+        return false;
+      aReader.next ();
+    }
+    return true;
+  }
+
+  /**
+   * Skip the complete element the reader is currently positioned at, without
+   * creating any objects for the content. Afterwards the reader is positioned
+   * at the matching end element.
+   *
+   * @param aReader
+   *        The reader that is positioned on a start element. May not be
+   *        <code>null</code>.
+   * @throws XMLStreamException
+   *         On XML error
+   */
+  public static void skipElement (@Nonnull final XMLStreamReader aReader) throws XMLStreamException
+  {
+    int nDepth = 1;
+    while (nDepth > 0)
+    {
+      final int nEventType = aReader.next ();
+      if (nEventType == XMLStreamConstants.START_ELEMENT)
+        nDepth++;
+      else
+        if (nEventType == XMLStreamConstants.END_ELEMENT)
+          nDepth--;
+    }
+  }
+
+  /**
+   * Invoke the callback with the provided reader. XML errors are added to the
+   * error list. The reader is not closed.
+   *
+   * @param <T>
+   *        The result type
+   * @param aReader
+   *        The reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aCallback
+   *        The callback to be invoked with the reader. May not be
+   *        <code>null</code>.
+   * @return The result of the callback or <code>null</code> in case of an XML
+   *         error.
+   */
+  @Nullable
+  public static <T> T read (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                            @Nonnull final ErrorList aErrorList,
+                            @Nonnull final IXMLStreamReaderCallback <T> aCallback)
+  {
+    try
+    {
+      return aCallback.apply (aReader);
+    }
+    catch (final XMLStreamException ex)
+    {
+      _addError (aErrorList, ex);
+      return null;
+    }
+  }
+
+  private static void _addError (@Nonnull final ErrorList aErrorList, @Nonnull final XMLStreamException ex)
+  {
+    aErrorList.add (SingleError.builderError ()
+                               .errorLocation (ex.getLocation ())
+                               .errorText ("Failed to read the XML document")
+                               .linkedException (ex)
+                               .build ());
+  }
+
+  /**
+   * Create an {@link XMLStreamReader} on the provided input stream, invoke the
+   * callback and close the reader afterwards. XML errors are added to the error
+   * list.
+   *
+   * @param <T>
+   *        The result type
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aCallback
+   *        The callback to be invoked with the reader. May not be
+   *        <code>null</code>.
+   * @return The result of the callback or <code>null</code> in case of an XML
+   *         error.
+   */
+  @Nullable
+  public static <T> T read (@Nonnull @WillNotClose final InputStream aIS,
+                            @Nonnull final ErrorList aErrorList,
+                            @Nonnull final IXMLStreamReaderCallback <T> aCallback)
+  {
+    try
+    {
+      final XMLStreamReader aReader = createXMLStreamReader (aIS);
+      try
+      {
+        return aCallback.apply (aReader);
+      }
+      finally
+      {
+        aReader.close ();
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      _addError (aErrorList, ex);
+      return null;
+    }
+  }
+}
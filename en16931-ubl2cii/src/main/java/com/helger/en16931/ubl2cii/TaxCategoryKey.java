@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.math.MathHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * The key of a tax category in the {@link UBL21TaxCategoryIndex}. Two keys are
+ * equal if tax scheme, VAT category code and VAT rate are equal - the scale of
+ * the VAT rate is ignored.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class TaxCategoryKey
+{
+  private final String m_sTaxSchemeID;
+  private final String m_sCategoryCode;
+  private final BigDecimal m_aPercent;
+
+  /**
+   * Constructor
+   *
+   * @param sTaxSchemeID
+   *        Tax scheme, usually "VAT". May be <code>null</code>.
+   * @param sCategoryCode
+   *        VAT category code (BT-95, BT-102, BT-151). May be <code>null</code>.
+   * @param aPercent
+   *        VAT rate (BT-96, BT-103, BT-152). May be <code>null</code>.
+   */
+  public TaxCategoryKey (@Nullable final String sTaxSchemeID,
+                         @Nullable final String sCategoryCode,
+                         @Nullable final BigDecimal aPercent)
+  {
+    m_sTaxSchemeID = sTaxSchemeID;
+    m_sCategoryCode = sCategoryCode;
+    m_aPercent = aPercent;
+  }
+
+  /**
+   * @return The tax scheme, usually "VAT" or <code>null</code>.
+   */
+  @Nullable
+  public String getTaxSchemeID ()
+  {
+    return m_sTaxSchemeID;
+  }
+
+  /**
+   * @return The VAT category code (BT-95, BT-102, BT-151) or <code>null</code>.
+   */
+  @Nullable
+  public String getCategoryCode ()
+  {
+    return m_sCategoryCode;
+  }
+
+  /**
+   * @return The VAT rate (BT-96, BT-103, BT-152) or <code>null</code>.
+   */
+  @Nullable
+  public BigDecimal getPercent ()
+  {
+    return m_aPercent;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final TaxCategoryKey rhs = (TaxCategoryKey) o;
+    return EqualsHelper.equals (m_sTaxSchemeID, rhs.m_sTaxSchemeID) &&
+           EqualsHelper.equals (m_sCategoryCode, rhs.m_sCategoryCode) &&
+           EqualsHelper.equals (m_aPercent, rhs.m_aPercent);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    // Consistent with equals, which ignores the scale of the percentage
+    return new HashCodeGenerator (this).append (m_sTaxSchemeID)
+                                       .append (m_sCategoryCode)
+                                       .append (MathHelper.getWithoutTrailingZeroes (m_aPercent))
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("TaxSchemeID", m_sTaxSchemeID)
+                                       .append ("CategoryCode", m_sCategoryCode)
+                                       .append ("Percent", m_aPercent)
+                                       .getToString ();
+  }
+}
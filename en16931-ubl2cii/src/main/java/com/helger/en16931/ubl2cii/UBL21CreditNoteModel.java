@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+
+/**
+ * Lightweight projection of a UBL 2.1 Credit Note that only contains the
+ * business terms mapped by {@link UBL21CreditNoteToCIID16BConverter}. Use
+ * {@link UBL21StreamReader#readCreditNoteModel(java.io.InputStream, com.helger.commons.error.list.ErrorList)}
+ * to read it directly from XML or {@link #createFrom(CreditNoteType)} to
+ * create it from a full JAXB Credit Note.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class UBL21CreditNoteModel extends AbstractUBL21DocumentModel implements IUBL21CreditNote
+{
+  private String m_sCreditNoteTypeCode;
+  private final ICommonsList <CreditNoteLineType> m_aCreditNoteLines = new CommonsArrayList <> ();
+
+  public UBL21CreditNoteModel ()
+  {}
+
+  @Nullable
+  public final String getCreditNoteTypeCode ()
+  {
+    return m_sCreditNoteTypeCode;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:CreditNoteTypeCode. May be <code>null</code>.
+   */
+  public final void setCreditNoteTypeCode (@Nullable final String s)
+  {
+    m_sCreditNoteTypeCode = s;
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <CreditNoteLineType> getCreditNoteLines ()
+  {
+    return m_aCreditNoteLines;
+  }
+
+  /**
+   * @param a
+   *        A cac:CreditNoteLine to be added. May not be <code>null</code>.
+   */
+  public final void addCreditNoteLine (@Nonnull final CreditNoteLineType a)
+  {
+    m_aCreditNoteLines.add (a);
+  }
+
+  /**
+   * Create a new projection from the provided JAXB Credit Note. The aggregates
+   * are not copied but referenced. This is only needed for inputs that are
+   * already unmarshalled completely (like DOM nodes) - for streamed input use
+   * the {@link UBL21StreamReader} instead.
+   *
+   * @param aCreditNote
+   *        The source credit note. May not be <code>null</code>.
+   * @return A new projection and never <code>null</code>.
+   */
+  @Nonnull
+  public static UBL21CreditNoteModel createFrom (@Nonnull final CreditNoteType aCreditNote)
+  {
+    ValueEnforcer.notNull (aCreditNote, "CreditNote");
+
+    final UBL21CreditNoteModel ret = new UBL21CreditNoteModel ();
+    ret.setCustomizationID (aCreditNote.getCustomizationIDValue ());
+    ret.setID (aCreditNote.getIDValue ());
+    if (aCreditNote.getIssueDate () != null)
+      ret.setIssueDate (aCreditNote.getIssueDate ().getValueLocal ());
+    ret.setCreditNoteTypeCode (aCreditNote.getCreditNoteTypeCodeValue ());
+    ret.getNotes ().addAll (aCreditNote.getNote ());
+    ret.setDocumentCurrencyCode (aCreditNote.getDocumentCurrencyCodeValue ());
+    ret.setAccountingCost (aCreditNote.getAccountingCostValue ());
+    ret.setInvoicePeriod (aCreditNote.getInvoicePeriod ().isEmpty () ? null : aCreditNote.getInvoicePeriodAtIndex (0));
+    ret.setOrderReference (aCreditNote.getOrderReference ());
+    ret.setContractDocumentReference (aCreditNote.getContractDocumentReference ().isEmpty () ? null
+                                                                                           : aCreditNote.getContractDocumentReferenceAtIndex (0));
+    ret.getAdditionalDocumentReferences ().addAll (aCreditNote.getAdditionalDocumentReference ());
+    ret.setAccountingSupplierParty (aCreditNote.getAccountingSupplierParty ());
+    ret.setAccountingCustomerParty (aCreditNote.getAccountingCustomerParty ());
+    ret.setPayeeParty (aCreditNote.getPayeeParty ());
+    ret.setDelivery (aCreditNote.getDelivery ().isEmpty () ? null : aCreditNote.getDeliveryAtIndex (0));
+    ret.setPaymentMeans (aCreditNote.getPaymentMeans ().isEmpty () ? null : aCreditNote.getPaymentMeansAtIndex (0));
+    ret.getPaymentTerms ().addAll (aCreditNote.getPaymentTerms ());
+    ret.getAllowanceCharges ().addAll (aCreditNote.getAllowanceCharge ());
+    ret.getTaxTotals ().addAll (aCreditNote.getTaxTotal ());
+    ret.setLegalMonetaryTotal (aCreditNote.getLegalMonetaryTotal ());
+    ret.getCreditNoteLines ().addAll (aCreditNote.getCreditNoteLine ());
+    return ret;
+  }
+}
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.builder.IBuilder;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ubl21.EUBL21DocumentType;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.EndpointIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.PayableAmountType;
+
+/**
+ * A small immutable summary of the header of a UBL 2.1 Invoice or Credit Note,
+ * that can be used for routing decisions without performing the full
+ * conversion. It is created by
+ * {@link UBL21StreamReader#readDocumentSummary(javax.xml.stream.XMLStreamReader, com.helger.commons.error.list.ErrorList)}
+ * which stops reading after the cac:LegalMonetaryTotal element, so that no
+ * line is ever read.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class UBL21DocumentSummary
+{
+  private final EUBL21DocumentType m_eDocumentType;
+  private final String m_sID;
+  private final LocalDate m_aIssueDate;
+  private final String m_sTypeCode;
+  private final String m_sDocumentCurrencyCode;
+  private final String m_sBuyerReference;
+  private final String m_sSellerName;
+  private final String m_sSellerEndpointSchemeID;
+  private final String m_sSellerEndpointID;
+  private final String m_sBuyerName;
+  private final String m_sBuyerEndpointSchemeID;
+  private final String m_sBuyerEndpointID;
+  private final BigDecimal m_aPayableAmount;
+  private final String m_sPayableAmountCurrencyID;
+
+  private UBL21DocumentSummary (@Nonnull final Builder aBuilder)
+  {
+    m_eDocumentType = aBuilder.m_eDocumentType;
+    m_sID = aBuilder.m_sID;
+    m_aIssueDate = aBuilder.m_aIssueDate;
+    m_sTypeCode = aBuilder.m_sTypeCode;
+    m_sDocumentCurrencyCode = aBuilder.m_sDocumentCurrencyCode;
+    m_sBuyerReference = aBuilder.m_sBuyerReference;
+    m_sSellerName = aBuilder.m_sSellerName;
+    m_sSellerEndpointSchemeID = aBuilder.m_sSellerEndpointSchemeID;
+    m_sSellerEndpointID = aBuilder.m_sSellerEndpointID;
+    m_sBuyerName = aBuilder.m_sBuyerName;
+    m_sBuyerEndpointSchemeID = aBuilder.m_sBuyerEndpointSchemeID;
+    m_sBuyerEndpointID = aBuilder.m_sBuyerEndpointID;
+    m_aPayableAmount = aBuilder.m_aPayableAmount;
+    m_sPayableAmountCurrencyID = aBuilder.m_sPayableAmountCurrencyID;
+  }
+
+  /**
+   * @return The type of the UBL document. Either Invoice or Credit Note. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public EUBL21DocumentType getDocumentType ()
+  {
+    return m_eDocumentType;
+  }
+
+  /**
+   * @return The document ID (BT-1) or <code>null</code>.
+   */
+  @Nullable
+  public String getID ()
+  {
+    return m_sID;
+  }
+
+  /**
+   * @return The issue date (BT-2) or <code>null</code>.
+   */
+  @Nullable
+  public LocalDate getIssueDate ()
+  {
+    return m_aIssueDate;
+  }
+
+  /**
+   * @return The invoice or credit note type code (BT-3) or <code>null</code>.
+   */
+  @Nullable
+  public String getTypeCode ()
+  {
+    return m_sTypeCode;
+  }
+
+  /**
+   * @return The document currency code (BT-5) or <code>null</code>.
+   */
+  @Nullable
+  public String getDocumentCurrencyCode ()
+  {
+    return m_sDocumentCurrencyCode;
+  }
+
+  /**
+   * @return The buyer reference (BT-10) or <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerReference ()
+  {
+    return m_sBuyerReference;
+  }
+
+  /**
+   * @return The trading name of the seller, or if not present the legal
+   *         registration name. May be <code>null</code>.
+   */
+  @Nullable
+  public String getSellerName ()
+  {
+    return m_sSellerName;
+  }
+
+  /**
+   * @return The scheme ID of the electronic address of the seller (BT-34-1)
+   *         or <code>null</code>.
+   */
+  @Nullable
+  public String getSellerEndpointSchemeID ()
+  {
+    return m_sSellerEndpointSchemeID;
+  }
+
+  /**
+   * @return The electronic address of the seller (BT-34) or
+   *         <code>null</code>.
+   */
+  @Nullable
+  public String getSellerEndpointID ()
+  {
+    return m_sSellerEndpointID;
+  }
+
+  /**
+   * @return The trading name of the buyer, or if not present the legal
+   *         registration name. May be <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerName ()
+  {
+    return m_sBuyerName;
+  }
+
+  /**
+   * @return The scheme ID of the electronic address of the buyer (BT-49-1) or
+   *         <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerEndpointSchemeID ()
+  {
+    return m_sBuyerEndpointSchemeID;
+  }
+
+  /**
+   * @return The electronic address of the buyer (BT-49) or <code>null</code>.
+   */
+  @Nullable
+  public String getBuyerEndpointID ()
+  {
+    return m_sBuyerEndpointID;
+  }
+
+  /**
+   * @return The amount due for payment (BT-115) or <code>null</code>.
+   */
+  @Nullable
+  public BigDecimal getPayableAmount ()
+  {
+    return m_aPayableAmount;
+  }
+
+  /**
+   * @return The currency of the amount due for payment or <code>null</code>.
+   */
+  @Nullable
+  public String getPayableAmountCurrencyID ()
+  {
+    return m_sPayableAmountCurrencyID;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final UBL21DocumentSummary rhs = (UBL21DocumentSummary) o;
+    return m_eDocumentType == rhs.m_eDocumentType &&
+           EqualsHelper.equals (m_sID, rhs.m_sID) &&
+           EqualsHelper.equals (m_aIssueDate, rhs.m_aIssueDate) &&
+           EqualsHelper.equals (m_sTypeCode, rhs.m_sTypeCode) &&
+           EqualsHelper.equals (m_sDocumentCurrencyCode, rhs.m_sDocumentCurrencyCode) &&
+           EqualsHelper.equals (m_sBuyerReference, rhs.m_sBuyerReference) &&
+           EqualsHelper.equals (m_sSellerName, rhs.m_sSellerName) &&
+           EqualsHelper.equals (m_sSellerEndpointSchemeID, rhs.m_sSellerEndpointSchemeID) &&
+           EqualsHelper.equals (m_sSellerEndpointID, rhs.m_sSellerEndpointID) &&
+           EqualsHelper.equals (m_sBuyerName, rhs.m_sBuyerName) &&
+           EqualsHelper.equals (m_sBuyerEndpointSchemeID, rhs.m_sBuyerEndpointSchemeID) &&
+           EqualsHelper.equals (m_sBuyerEndpointID, rhs.m_sBuyerEndpointID) &&
+           EqualsHelper.equals (m_aPayableAmount, rhs.m_aPayableAmount) &&
+           EqualsHelper.equals (m_sPayableAmountCurrencyID, rhs.m_sPayableAmountCurrencyID);
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_eDocumentType)
+                                       .append (m_sID)
+                                       .append (m_aIssueDate)
+                                       .append (m_sTypeCode)
+                                       .append (m_sDocumentCurrencyCode)
+                                       .append (m_sBuyerReference)
+                                       .append (m_sSellerName)
+                                       .append (m_sSellerEndpointSchemeID)
+                                       .append (m_sSellerEndpointID)
+                                       .append (m_sBuyerName)
+                                       .append (m_sBuyerEndpointSchemeID)
+                                       .append (m_sBuyerEndpointID)
+                                       .append (m_aPayableAmount)
+                                       .append (m_sPayableAmountCurrencyID)
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("DocumentType", m_eDocumentType)
+                                       .append ("ID", m_sID)
+                                       .append ("IssueDate", m_aIssueDate)
+                                       .append ("TypeCode", m_sTypeCode)
+                                       .append ("DocumentCurrencyCode", m_sDocumentCurrencyCode)
+                                       .append ("BuyerReference", m_sBuyerReference)
+                                       .append ("SellerName", m_sSellerName)
+                                       .append ("SellerEndpointSchemeID", m_sSellerEndpointSchemeID)
+                                       .append ("SellerEndpointID", m_sSellerEndpointID)
+                                       .append ("BuyerName", m_sBuyerName)
+                                       .append ("BuyerEndpointSchemeID", m_sBuyerEndpointSchemeID)
+                                       .append ("BuyerEndpointID", m_sBuyerEndpointID)
+                                       .append ("PayableAmount", m_aPayableAmount)
+                                       .append ("PayableAmountCurrencyID", m_sPayableAmountCurrencyID)
+                                       .getToString ();
+  }
+
+  /**
+   * Create a new builder.
+   *
+   * @param eDocumentType
+   *        The document type. Must be Invoice or Credit Note. May not be
+   *        <code>null</code>.
+   * @return A new builder and never <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder (@Nonnull final EUBL21DocumentType eDocumentType)
+  {
+    return new Builder (eDocumentType);
+  }
+
+  /**
+   * Builder for {@link UBL21DocumentSummary}
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  public static final class Builder implements IBuilder <UBL21DocumentSummary>
+  {
+    private final EUBL21DocumentType m_eDocumentType;
+    private String m_sID;
+    private LocalDate m_aIssueDate;
+    private String m_sTypeCode;
+    private String m_sDocumentCurrencyCode;
+    private String m_sBuyerReference;
+    private String m_sSellerName;
+    private String m_sSellerEndpointSchemeID;
+    private String m_sSellerEndpointID;
+    private String m_sBuyerName;
+    private String m_sBuyerEndpointSchemeID;
+    private String m_sBuyerEndpointID;
+    private BigDecimal m_aPayableAmount;
+    private String m_sPayableAmountCurrencyID;
+
+    Builder (@Nonnull final EUBL21DocumentType eDocumentType)
+    {
+      ValueEnforcer.notNull (eDocumentType, "DocumentType");
+      ValueEnforcer.isTrue (eDocumentType == EUBL21DocumentType.INVOICE ||
+                            eDocumentType == EUBL21DocumentType.CREDIT_NOTE,
+                            "Only Invoice and Credit Note are supported");
+      m_eDocumentType = eDocumentType;
+    }
+
+    @Nonnull
+    public Builder id (@Nullable final String s)
+    {
+      m_sID = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder issueDate (@Nullable final LocalDate a)
+    {
+      m_aIssueDate = a;
+      return this;
+    }
+
+    @Nonnull
+    public Builder typeCode (@Nullable final String s)
+    {
+      m_sTypeCode = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder documentCurrencyCode (@Nullable final String s)
+    {
+      m_sDocumentCurrencyCode = s;
+      return this;
+    }
+
+    @Nonnull
+    public Builder buyerReference (@Nullable final String s)
+    {
+      m_sBuyerReference = s;
+      return this;
+    }
+
+    @Nullable
+    private static String _getName (@Nonnull final PartyType aParty)
+    {
+      if (aParty.hasPartyNameEntries () && aParty.getPartyNameAtIndex (0).getName () != null)
+        return aParty.getPartyNameAtIndex (0).getNameValue ();
+      if (aParty.hasPartyLegalEntityEntries () && aParty.getPartyLegalEntityAtIndex (0).getRegistrationName () != null)
+        return aParty.getPartyLegalEntityAtIndex (0).getRegistrationNameValue ();
+      return null;
+    }
+
+    @Nonnull
+    public Builder seller (@Nullable final PartyType aParty)
+    {
+      if (aParty == null)
+      {
+        m_sSellerName = null;
+        m_sSellerEndpointSchemeID = null;
+        m_sSellerEndpointID = null;
+      }
+      else
+      {
+        m_sSellerName = _getName (aParty);
+        final EndpointIDType aEndpointID = aParty.getEndpointID ();
+        m_sSellerEndpointSchemeID = aEndpointID == null ? null : aEndpointID.getSchemeID ();
+        m_sSellerEndpointID = aEndpointID == null ? null : aEndpointID.getValue ();
+      }
+      return this;
+    }
+
+    @Nonnull
+    public Builder buyer (@Nullable final PartyType aParty)
+    {
+      if (aParty == null)
+      {
+        m_sBuyerName = null;
+        m_sBuyerEndpointSchemeID = null;
+        m_sBuyerEndpointID = null;
+      }
+      else
+      {
+        m_sBuyerName = _getName (aParty);
+        final EndpointIDType aEndpointID = aParty.getEndpointID ();
+        m_sBuyerEndpointSchemeID = aEndpointID == null ? null : aEndpointID.getSchemeID ();
+        m_sBuyerEndpointID = aEndpointID == null ? null : aEndpointID.getValue ();
+      }
+      return this;
+    }
+
+    @Nonnull
+    public Builder legalMonetaryTotal (@Nullable final MonetaryTotalType aMonetaryTotal)
+    {
+      final PayableAmountType aPayableAmount = aMonetaryTotal == null ? null : aMonetaryTotal.getPayableAmount ();
+      m_aPayableAmount = aPayableAmount == null ? null : aPayableAmount.getValue ();
+      m_sPayableAmountCurrencyID = aPayableAmount == null ? null : aPayableAmount.getCurrencyID ();
+      return this;
+    }
+
+    @Nonnull
+    public UBL21DocumentSummary build ()
+    {
+      return new UBL21DocumentSummary (this);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableObject;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Lightweight projection of a UBL 2.1 Invoice that only contains the business
+ * terms mapped by {@link UBL21InvoiceToCIID16BConverter}. Use
+ * {@link UBL21StreamReader#readInvoiceModel(java.io.InputStream, com.helger.commons.error.list.ErrorList)}
+ * to read it directly from XML or {@link #createFrom(InvoiceType)} to create it
+ * from a full JAXB Invoice.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public class UBL21InvoiceModel extends AbstractUBL21DocumentModel implements IUBL21Invoice
+{
+  private String m_sProfileID;
+  private String m_sInvoiceTypeCode;
+  private String m_sBuyerReference;
+  private final ICommonsList <InvoiceLineType> m_aInvoiceLines = new CommonsArrayList <> ();
+
+  public UBL21InvoiceModel ()
+  {}
+
+  @Nullable
+  public final String getProfileID ()
+  {
+    return m_sProfileID;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:ProfileID. May be <code>null</code>.
+   */
+  public final void setProfileID (@Nullable final String s)
+  {
+    m_sProfileID = s;
+  }
+
+  @Nullable
+  public final String getInvoiceTypeCode ()
+  {
+    return m_sInvoiceTypeCode;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:InvoiceTypeCode. May be <code>null</code>.
+   */
+  public final void setInvoiceTypeCode (@Nullable final String s)
+  {
+    m_sInvoiceTypeCode = s;
+  }
+
+  @Nullable
+  public final String getBuyerReference ()
+  {
+    return m_sBuyerReference;
+  }
+
+  /**
+   * @param s
+   *        The value of cbc:BuyerReference. May be <code>null</code>.
+   */
+  public final void setBuyerReference (@Nullable final String s)
+  {
+    m_sBuyerReference = s;
+  }
+
+  @Nonnull
+  @ReturnsMutableObject
+  public final ICommonsList <InvoiceLineType> getInvoiceLines ()
+  {
+    return m_aInvoiceLines;
+  }
+
+  /**
+   * @param a
+   *        A cac:InvoiceLine to be added. May not be <code>null</code>.
+   */
+  public final void addInvoiceLine (@Nonnull final InvoiceLineType a)
+  {
+    m_aInvoiceLines.add (a);
+  }
+
+  /**
+   * Create a new projection from the provided JAXB Invoice. The aggregates are
+   * not copied but referenced. This is only needed for inputs that are already
+   * unmarshalled completely (like DOM nodes) - for streamed input use the
+   * {@link UBL21StreamReader} instead.
+   *
+   * @param aInvoice
+   *        The source invoice. May not be <code>null</code>.
+   * @return A new projection and never <code>null</code>.
+   */
+  @Nonnull
+  public static UBL21InvoiceModel createFrom (@Nonnull final InvoiceType aInvoice)
+  {
+    ValueEnforcer.notNull (aInvoice, "Invoice");
+
+    final UBL21InvoiceModel ret = new UBL21InvoiceModel ();
+    ret.setCustomizationID (aInvoice.getCustomizationIDValue ());
+    ret.setProfileID (aInvoice.getProfileIDValue ());
+    ret.setID (aInvoice.getIDValue ());
+    if (aInvoice.getIssueDate () != null)
+      ret.setIssueDate (aInvoice.getIssueDate ().getValueLocal ());
+    ret.setInvoiceTypeCode (aInvoice.getInvoiceTypeCodeValue ());
+    ret.getNotes ().addAll (aInvoice.getNote ());
+    ret.setDocumentCurrencyCode (aInvoice.getDocumentCurrencyCodeValue ());
+    ret.setAccountingCost (aInvoice.getAccountingCostValue ());
+    ret.setBuyerReference (aInvoice.getBuyerReferenceValue ());
+    ret.setInvoicePeriod (aInvoice.getInvoicePeriod ().isEmpty () ? null : aInvoice.getInvoicePeriodAtIndex (0));
+    ret.setOrderReference (aInvoice.getOrderReference ());
+    ret.setContractDocumentReference (aInvoice.getContractDocumentReference ().isEmpty () ? null
+                                                                                        : aInvoice.getContractDocumentReferenceAtIndex (0));
+    ret.getAdditionalDocumentReferences ().addAll (aInvoice.getAdditionalDocumentReference ());
+    ret.setAccountingSupplierParty (aInvoice.getAccountingSupplierParty ());
+    ret.setAccountingCustomerParty (aInvoice.getAccountingCustomerParty ());
+    ret.setPayeeParty (aInvoice.getPayeeParty ());
+    ret.setDelivery (aInvoice.getDelivery ().isEmpty () ? null : aInvoice.getDeliveryAtIndex (0));
+    ret.setPaymentMeans (aInvoice.getPaymentMeans ().isEmpty () ? null : aInvoice.getPaymentMeansAtIndex (0));
+    ret.getPaymentTerms ().addAll (aInvoice.getPaymentTerms ());
+    ret.getAllowanceCharges ().addAll (aInvoice.getAllowanceCharge ());
+    ret.getTaxTotals ().addAll (aInvoice.getTaxTotal ());
+    ret.setLegalMonetaryTotal (aInvoice.getLegalMonetaryTotal ());
+    ret.getInvoiceLines ().addAll (aInvoice.getInvoiceLine ());
+    return ret;
+  }
+}
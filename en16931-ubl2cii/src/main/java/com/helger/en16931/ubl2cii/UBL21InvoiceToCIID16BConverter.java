@@ -17,6 +17,7 @@
  */
 package com.helger.en16931.ubl2cii;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -26,29 +27,15 @@ import com.helger.commons.error.list.ErrorList;
 import com.sascha10k.helper.TaxCategory;
 import com.sascha10k.helper.Tuple2;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CommodityClassificationType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ItemPropertyType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ItemType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PeriodType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.SupplierPartyType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
 import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSchemeType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
-import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
-import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IDType;
-import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.LineExtensionAmountType;
 import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.MultiplierFactorNumericType;
-import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.TaxTypeCodeType;
 import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
 import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.*;
 import un.unece.uncefact.data.standard.unqualifieddatatype._100.AmountType;
-import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
-import un.unece.uncefact.data.standard.unqualifieddatatype._100.QuantityType;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -72,135 +59,57 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
     return _convertInvoiceLine(aUBLLine, null);
   }
 
+  /**
+   * Convert a single UBL invoice line including all its sub invoice lines.
+   * Used by the {@link UBL21ParallelConverter} to convert lines concurrently.
+   *
+   * @param aUBLLine
+   *        The line to convert. May not be <code>null</code>.
+   * @return The converted line items in document order. Never
+   *         <code>null</code>.
+   */
   @Nonnull
-  private static List<SupplyChainTradeLineItemType> _convertInvoiceLine (@Nonnull final InvoiceLineType aUBLLine, String parentID)
+  static List<SupplyChainTradeLineItemType> convertInvoiceLine (@Nonnull final InvoiceLineType aUBLLine)
   {
-    final SupplyChainTradeLineItemType supplyChainTradeLineItemType = new SupplyChainTradeLineItemType ();
-    final DocumentLineDocumentType aDLDT = new DocumentLineDocumentType ();
-    final List<SupplyChainTradeLineItemType> ret = new ArrayList<>();
-
-    aDLDT.setLineID (aUBLLine.getIDValue ());
+    return _convertInvoiceLine (aUBLLine);
+  }
 
+  /**
+   * Convert a single UBL invoice line without its sub invoice lines. Used by
+   * the {@link UBL21ParallelConverter} to convert line trees concurrently.
+   *
+   * @param aUBLLine
+   *        The line to convert. May not be <code>null</code>.
+   * @param parentID
+   *        The ID of the parent line. May be <code>null</code> for top-level
+   *        lines.
+   * @return The converted line item. Never <code>null</code>.
+   */
+  @Nonnull
+  static SupplyChainTradeLineItemType convertInvoiceLineWithoutSubLines (@Nonnull final InvoiceLineType aUBLLine, @Nullable final String parentID)
+  {
+    // Parent lines have no amounts on their own - nothing is modified
+    final UBL21ToCIID16BMapping.LineMapping <InvoiceLineType> aMapping = aUBLLine.hasSubInvoiceLineEntries () ? UBL21ToCIID16BMapping.PARENT_INVOICE_LINE
+                                                                                                             : UBL21ToCIID16BMapping.INVOICE_LINE;
+    final SupplyChainTradeLineItemType supplyChainTradeLineItemType = aMapping.convert (aUBLLine);
     if(parentID != null) {
-      aDLDT.setParentLineID(parentID);
-    }
-
-    var aAllowanceChargeList = aUBLLine.getAllowanceCharge();
-    if(aUBLLine.hasSubInvoiceLineEntries()) {
-      aUBLLine.getPrice().setPriceAmount(new BigDecimal(0));
-      aUBLLine.setLineExtensionAmount(new BigDecimal(0));
-      aUBLLine.setAllowanceCharge(new ArrayList<>()); // this must be set on billing level
-    }
-
-    for (final var aUBLNote : aUBLLine.getNote ())
-      aDLDT.addIncludedNote (convertNote (aUBLNote));
-
-    supplyChainTradeLineItemType.setAssociatedDocumentLineDocument (aDLDT);
-
-    // SpecifiedTradeProduct
-    final TradeProductType aTPT = new TradeProductType ();
-    final ItemType aUBLItem = aUBLLine.getItem ();
-    if (aUBLItem.getStandardItemIdentification () != null)
-      aTPT.setGlobalID (convertID (aUBLItem.getStandardItemIdentification ().getID ()));
-
-    if (aUBLItem.getSellersItemIdentification () != null)
-      aTPT.setSellerAssignedID (aUBLItem.getSellersItemIdentification ().getIDValue ());
-
-    aTPT.addName (convertText (aUBLItem.getNameValue ()));
-
-    if (aUBLItem.hasDescriptionEntries ())
-      aTPT.setDescription (aUBLItem.getDescriptionAtIndex (0).getValue ());
-
-    // ApplicableProductCharacteristic
-    for (final ItemPropertyType aUBLAddItemProp : aUBLLine.getItem ().getAdditionalItemProperty ())
-    {
-      final ProductCharacteristicType aPCT = new ProductCharacteristicType ();
-      ifNotNull (aPCT::addDescription, convertText (aUBLAddItemProp.getNameValue ()));
-      ifNotNull (aPCT::addValue, convertText (aUBLAddItemProp.getValueValue ()));
-      aTPT.addApplicableProductCharacteristic (aPCT);
-    }
-
-    // DesignatedProductClassification
-    for (final CommodityClassificationType aUBLCC : aUBLLine.getItem ().getCommodityClassification ())
-    {
-      final ProductClassificationType aPCT = new ProductClassificationType ();
-      final CodeType aCT = new CodeType ();
-      ifNotEmpty (aCT::setListID, aUBLCC.getItemClassificationCode ().getListID ());
-      ifNotEmpty (aCT::setValue, aUBLCC.getItemClassificationCode ().getValue ());
-      aPCT.setClassCode (aCT);
-      aTPT.addDesignatedProductClassification (aPCT);
-    }
-    supplyChainTradeLineItemType.setSpecifiedTradeProduct (aTPT);
-
-    // BuyerOrderReferencedDocument
-    final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
-    if (aUBLLine.hasOrderLineReferenceEntries ())
-    {
-      aRDT.setLineID (aUBLLine.getOrderLineReferenceAtIndex (0).getLineIDValue ());
-    }
-
-    // NetPriceProductTradePrice
-    final TradePriceType aLTPT = new TradePriceType ();
-    if (aUBLLine.getPrice () != null && aUBLLine.getPrice ().getPriceAmount () != null)
-    {
-      aLTPT.addChargeAmount (convertAmount (aUBLLine.getPrice ().getPriceAmount ()));
-    }
-
-    // SpecifiedLineTradeAgreement
-    final LineTradeAgreementType aLTAT = new LineTradeAgreementType ();
-    aLTAT.setBuyerOrderReferencedDocument (aRDT);
-    aLTAT.setNetPriceProductTradePrice (aLTPT);
-
-    // SpecifiedLineTradeDelivery
-    final LineTradeDeliveryType aLTDT = new LineTradeDeliveryType ();
-    final QuantityType aQuantity = new QuantityType ();
-    aQuantity.setUnitCode (aUBLLine.getInvoicedQuantity ().getUnitCode ());
-    aQuantity.setValue (aUBLLine.getInvoicedQuantity ().getValue ());
-    aLTDT.setBilledQuantity (aQuantity);
-
-    // SpecifiedLineTradeSettlement
-    final LineTradeSettlementType aSLTS = new LineTradeSettlementType ();
-    for (final TaxCategoryType aUBLTaxCategory : aUBLLine.getItem ().getClassifiedTaxCategory ())
-    {
-      final TaxSchemeType aUBLTaxScheme = aUBLTaxCategory.getTaxScheme ();
-
-      final TradeTaxType aTradeTax = new TradeTaxType ();
-      if (aUBLTaxScheme != null)
-        ifNotEmpty (aTradeTax::setTypeCode, aUBLTaxCategory.getTaxScheme ().getIDValue ());
-      ifNotEmpty (aTradeTax::setCategoryCode, aUBLTaxCategory.getIDValue ());
-      ifNotNull (aTradeTax::setRateApplicablePercent, aUBLTaxCategory.getPercentValue ());
-      aSLTS.addApplicableTradeTax (aTradeTax);
-    }
-
-    for(final AllowanceChargeType allowanceCharge : aUBLLine.getAllowanceCharge()) {
-      aSLTS.addSpecifiedTradeAllowanceCharge(convertSpecifiedTradeAllowanceCharge(allowanceCharge));
+      supplyChainTradeLineItemType.getAssociatedDocumentLineDocument ().setParentLineID(parentID);
     }
 
-    // set it back, as it needs to be available to be put on billing level
-    if(aUBLLine.hasSubInvoiceLineEntries())
-      aUBLLine.setAllowanceCharge(aAllowanceChargeList);
-
-    final TradeSettlementLineMonetarySummationType aTSLMST = new TradeSettlementLineMonetarySummationType ();
-    ifNotNull (aTSLMST::addLineTotalAmount, convertAmount (aUBLLine.getLineExtensionAmount ()));
-
-    if (aUBLLine.getAccountingCostValue () != null)
-    {
-      final TradeAccountingAccountType aTAATL = new TradeAccountingAccountType ();
-      aTAATL.setID (aUBLLine.getAccountingCostValue ());
-      aSLTS.addReceivableSpecifiedTradeAccountingAccount (aTAATL);
-    }
-    aSLTS.setSpecifiedTradeSettlementLineMonetarySummation(aTSLMST);
-
-    supplyChainTradeLineItemType.setSpecifiedLineTradeDelivery (aLTDT);
-    supplyChainTradeLineItemType.setSpecifiedLineTradeAgreement (aLTAT);
-    supplyChainTradeLineItemType.setSpecifiedLineTradeSettlement(aSLTS);
+    return supplyChainTradeLineItemType;
+  }
 
+  @Nonnull
+  private static List<SupplyChainTradeLineItemType> _convertInvoiceLine (@Nonnull final InvoiceLineType aUBLLine, String parentID)
+  {
+    final List<SupplyChainTradeLineItemType> ret = new ArrayList<>();
+    final SupplyChainTradeLineItemType supplyChainTradeLineItemType = convertInvoiceLineWithoutSubLines (aUBLLine, parentID);
     ret.add(supplyChainTradeLineItemType);
 
     // SubInvoiceLine handling
     if(aUBLLine.hasSubInvoiceLineEntries()) {
       for(int i = 0; i < aUBLLine.getSubInvoiceLineCount(); i++) {
-        var subInvoiceLines = _convertInvoiceLine(Objects.requireNonNull(aUBLLine.getSubInvoiceLineAtIndex(i)), aDLDT.getLineIDValue());
+        var subInvoiceLines = _convertInvoiceLine(Objects.requireNonNull(aUBLLine.getSubInvoiceLineAtIndex(i)), supplyChainTradeLineItemType.getAssociatedDocumentLineDocument ().getLineIDValue());
         ret.addAll (subInvoiceLines);
       }
     }
@@ -208,79 +117,70 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
   }
 
   @Nonnull
-  private static HeaderTradeSettlementType _createApplicableHeaderTradeSettlement (@Nonnull final InvoiceType aUBLInvoice)
+  private static HeaderTradeSettlementType _createApplicableHeaderTradeSettlement (@Nonnull final IUBL21Invoice aUBLInvoice)
   {
-    final HeaderTradeSettlementType ret = new HeaderTradeSettlementType ();
-
-    final PaymentMeansType aUBLPaymentMeans = aUBLInvoice.hasPaymentMeansEntries () ? aUBLInvoice.getPaymentMeansAtIndex (0)
-                                                                                    : null;
-
-    if (aUBLPaymentMeans != null && aUBLPaymentMeans.hasPaymentIDEntries ())
-      ret.addPaymentReference (convertText (aUBLPaymentMeans.getPaymentIDAtIndex (0).getValue ()));
-
-    ifNotEmpty (ret::setInvoiceCurrencyCode, aUBLInvoice.getDocumentCurrencyCodeValue ());
-    ifNotNull (ret::setPayeeTradeParty, convertParty (aUBLInvoice.getPayeeParty ()));
-
-    if (aUBLPaymentMeans != null)
-    {
-      final TradeSettlementPaymentMeansType aTSPMT = new TradeSettlementPaymentMeansType ();
-      ifNotEmpty (aTSPMT::setTypeCode, aUBLPaymentMeans.getPaymentMeansCodeValue ());
-
-      final CreditorFinancialAccountType aCFAT = new CreditorFinancialAccountType ();
-      if (aUBLPaymentMeans.getPayeeFinancialAccount () != null)
-        ifNotEmpty (aCFAT::setIBANID, aUBLPaymentMeans.getPayeeFinancialAccount ().getIDValue ());
-      aTSPMT.setPayeePartyCreditorFinancialAccount (aCFAT);
-      ret.addSpecifiedTradeSettlementPaymentMeans (aTSPMT);
-    }
-
-    for (final TaxTotalType aUBLTaxTotal : aUBLInvoice.getTaxTotal ())
-      for (final TaxSubtotalType aUBLTaxSubtotal : aUBLTaxTotal.getTaxSubtotal ())
-        ret.addApplicableTradeTax (convertApplicableTradeTax (aUBLTaxSubtotal));
-
-    if (aUBLInvoice.hasInvoicePeriodEntries ())
-    {
-      final PeriodType aUBLPeriod = aUBLInvoice.getInvoicePeriodAtIndex (0);
-
-      final SpecifiedPeriodType aSPT = new SpecifiedPeriodType ();
-      if (aUBLPeriod.getStartDate () != null)
-        aSPT.setStartDateTime (convertDate (aUBLPeriod.getStartDate ().getValueLocal ()));
-      if (aUBLPeriod.getEndDate () != null)
-        aSPT.setEndDateTime (convertDate (aUBLPeriod.getEndDate ().getValueLocal ()));
-      ret.setBillingSpecifiedPeriod (aSPT);
-    }
-
-    for (final AllowanceChargeType aUBLAllowanceCharge : aUBLInvoice.getAllowanceCharge ())
-      ret.addSpecifiedTradeAllowanceCharge (convertSpecifiedTradeAllowanceCharge (aUBLAllowanceCharge));
-
-    for (final PaymentTermsType aUBLPaymentTerms : aUBLInvoice.getPaymentTerms ())
-      ret.addSpecifiedTradePaymentTerms (convertSpecifiedTradePaymentTerms (aUBLPaymentTerms, aUBLPaymentMeans));
-
-    final TaxTotalType aUBLTaxTotal = aUBLInvoice.hasTaxTotalEntries () ? aUBLInvoice.getTaxTotalAtIndex (0) : null;
-    ret.setSpecifiedTradeSettlementHeaderMonetarySummation (createSpecifiedTradeSettlementHeaderMonetarySummation (aUBLInvoice.getLegalMonetaryTotal (), aUBLTaxTotal));
-
+    final HeaderTradeSettlementType ret = createApplicableHeaderTradeSettlement (aUBLInvoice);
     _handleParentInvoiceLines(ret, aUBLInvoice);
+    return ret;
+  }
 
-    if (aUBLInvoice.getAccountingCost () != null)
-    {
-      final TradeAccountingAccountType aTAAT = new TradeAccountingAccountType ();
-      aTAAT.setID (aUBLInvoice.getAccountingCost ().getValue ());
-      ret.addReceivableSpecifiedTradeAccountingAccount (aTAAT);
-    }
+  @Nullable
+  public static HeaderTradeSettlementType _handleParentInvoiceLines(final HeaderTradeSettlementType aHTP, final InvoiceType aUBLInvoice){
+    return _handleParentInvoiceLines (aHTP, UBL21InvoiceModel.createFrom (aUBLInvoice));
+  }
 
+  /**
+   * Get the VAT category for the allowances and charges that are moved from a
+   * parent line to the document level. They keep the VAT category of the line
+   * they belong to, including its tax scheme. If the line item has no VAT
+   * category, the first tax category of the document is used.
+   *
+   * @param aParentLine
+   *        The parent line. May not be <code>null</code>.
+   * @param aTaxCategoryIndex
+   *        The tax category index of the document. May not be
+   *        <code>null</code>.
+   * @return The new tax category or <code>null</code> if neither the line nor
+   *         the document has one.
+   */
+  @Nullable
+  private static TaxCategoryType _getParentAllowanceChargeTaxCategory (@Nonnull final InvoiceLineType aParentLine,
+                                                                       @Nonnull final UBL21TaxCategoryIndex aTaxCategoryIndex)
+  {
+    final ItemType aItem = aParentLine.getItem ();
+    if (aItem != null && aItem.hasClassifiedTaxCategoryEntries ())
+      return aItem.getClassifiedTaxCategoryAtIndex (0).clone ();
+
+    final TaxCategoryKey aTaxCategory = aTaxCategoryIndex.getFirstTaxCategory ();
+    if (aTaxCategory == null)
+      return null;
+
+    final TaxCategoryType ret = new TaxCategoryType ();
+    ret.setID (aTaxCategory.getCategoryCode ());
+    ret.setPercent (aTaxCategory.getPercent ());
+    final TaxSchemeType aTaxScheme = new TaxSchemeType ();
+    aTaxScheme.setID (aTaxCategory.getTaxSchemeID ());
+    ret.setTaxScheme (aTaxScheme);
     return ret;
   }
 
   @Nullable
-  public static HeaderTradeSettlementType _handleParentInvoiceLines(final HeaderTradeSettlementType aHTP, final InvoiceType aUBLInvoice){
+  public static HeaderTradeSettlementType _handleParentInvoiceLines(final HeaderTradeSettlementType aHTP, final IUBL21Invoice aUBLInvoice){
     var parentInvoiceLines = new ArrayList<InvoiceLineType>();
-    for(final var aSubInvoiceLine : aUBLInvoice.getInvoiceLine())
+    for(final var aSubInvoiceLine : aUBLInvoice.getInvoiceLines())
       parentInvoiceLines.addAll(getAllParentInvoiceLines(aSubInvoiceLine));
+    if (parentInvoiceLines.isEmpty ())
+      return aHTP;
 
-
+    // The tax categories are only needed for parent lines
+    final UBL21TaxCategoryIndex aTaxCategoryIndex = UBL21TaxCategoryIndex.createFrom (aUBLInvoice);
 
     var monetarySums = aHTP.getSpecifiedTradeSettlementHeaderMonetarySummation();
     for(final var aParentInvoiceLine : parentInvoiceLines) {
-      aParentInvoiceLine.getAllowanceCharge().forEach(aAllowanceCharge -> {
+      final TaxCategoryType aTaxCategory = _getParentAllowanceChargeTaxCategory (aParentInvoiceLine, aTaxCategoryIndex);
+      aParentInvoiceLine.getAllowanceCharge().forEach(aUBLAllowanceCharge -> {
+        // Work on a copy so that the UBL invoice is not modified
+        final AllowanceChargeType aAllowanceCharge = aUBLAllowanceCharge.clone ();
         if(aAllowanceCharge.getMultiplierFactorNumeric() != null && aAllowanceCharge.getBaseAmount() != null) {
           aAllowanceCharge.setMultiplierFactorNumeric((MultiplierFactorNumericType) null);
           aAllowanceCharge.setBaseAmount((BigDecimal) null);
@@ -294,42 +194,51 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
           monetarySums.addAllowanceTotalAmount(convertAmount(aAllowanceCharge.getAmount()));
         }
 
-        var taxCategories = convertToTaxCategories(aUBLInvoice).getT1();
-        for(var key : taxCategories.keySet()){
-          var taxCat = taxCategories.get(key);
-          var newTaxCat = new TaxCategoryType ();
-          newTaxCat.setID(new IDType(taxCat.taxScheme));
-          newTaxCat.setPercent(taxCat.taxPercentage);
-          var tst  = new TaxSchemeType();
-          tst.setID(new IDType("id"));
-          tst.setTaxTypeCode(new TaxTypeCodeType("code"));
-          tst.setName("name");
-          newTaxCat.setTaxScheme(tst);
-          aAllowanceCharge.setTaxCategory(List.of(newTaxCat));
-        }
+        if (aTaxCategory != null)
+          aAllowanceCharge.setTaxCategory (List.of (aTaxCategory));
 
         monetarySums.addLineTotalAmount(new AmountType(amount));
         aHTP.addSpecifiedTradeAllowanceCharge(convertSpecifiedTradeAllowanceCharge(aAllowanceCharge));
       });
     }
 
-    if(!parentInvoiceLines.isEmpty ()){
-      var aLTA = sumAmountTypeList(monetarySums.getLineTotalAmount());
-      var aLCA = sumAmountTypeList(monetarySums.getChargeTotalAmount());
-      var aLAA = sumAmountTypeList(monetarySums.getAllowanceTotalAmount());
+    var aLTA = sumAmountTypeList(monetarySums.getLineTotalAmount());
+    var aLCA = sumAmountTypeList(monetarySums.getChargeTotalAmount());
+    var aLAA = sumAmountTypeList(monetarySums.getAllowanceTotalAmount());
 
-      monetarySums.setLineTotalAmount(aLTA);
-      monetarySums.setChargeTotalAmount(aLCA);
-      monetarySums.setAllowanceTotalAmount(aLAA);
-    }
+    monetarySums.setLineTotalAmount(aLTA);
+    monetarySums.setChargeTotalAmount(aLCA);
+    monetarySums.setAllowanceTotalAmount(aLAA);
 
     return aHTP;
   }
 
+  /**
+   * @param aInvoice
+   *        The UBL invoice. May not be <code>null</code>.
+   * @return The tax categories keyed by a concatenated string and the total
+   *         tax amount.
+   * @deprecated Use {@link UBL21TaxCategoryIndex#createFrom(IUBL21Document)}
+   *             instead
+   */
+  @Deprecated (forRemoval = true, since = "1.1.1")
   public static Tuple2<Map<String, TaxCategory>, BigDecimal> convertToTaxCategories(@Nonnull final InvoiceType aInvoice) {
+    return convertToTaxCategories (UBL21InvoiceModel.createFrom (aInvoice));
+  }
+
+  /**
+   * @param aInvoice
+   *        The UBL document. May not be <code>null</code>.
+   * @return The tax categories keyed by a concatenated string and the total
+   *         tax amount.
+   * @deprecated Use {@link UBL21TaxCategoryIndex#createFrom(IUBL21Document)}
+   *             instead
+   */
+  @Deprecated (forRemoval = true, since = "1.1.1")
+  public static Tuple2<Map<String, TaxCategory>, BigDecimal> convertToTaxCategories(@Nonnull final IUBL21Document aInvoice) {
     var taxCategories = new HashMap<String, TaxCategory>();
     var taxTotal  = BigDecimal.ZERO;
-    for(var taxCategory : aInvoice.getTaxTotal()) {
+    for(var taxCategory : aInvoice.getTaxTotals()) {
       taxCategory.getTaxAmountValue();
       taxTotal = taxTotal.add(taxCategory.getTaxAmountValue());
 
@@ -362,102 +271,118 @@ public final class UBL21InvoiceToCIID16BConverter extends AbstractToCIID16BConve
                                                                         @Nonnull final ErrorList aErrorList)
   {
     ValueEnforcer.notNull (aUBLInvoice, "UBLInvoice");
-    ValueEnforcer.notNull (aErrorList, "ErrorList");
-
-    final CrossIndustryInvoiceType aCIIInvoice = new CrossIndustryInvoiceType ();
-
-    {
-      final ExchangedDocumentContextType aEDCT = new ExchangedDocumentContextType ();
-      if (aUBLInvoice.getCustomizationID () != null)
-      {
-        final DocumentContextParameterType aDCP = new DocumentContextParameterType ();
-        aDCP.setID (aUBLInvoice.getCustomizationIDValue ());
-        aEDCT.addGuidelineSpecifiedDocumentContextParameter (aDCP);
-      }
-      if(aUBLInvoice.getProfileID() != null) {
-        final DocumentContextParameterType aDCP = new DocumentContextParameterType ();
-        aDCP.setID (aUBLInvoice.getProfileIDValue ());
-        aEDCT.addBusinessProcessSpecifiedDocumentContextParameter(aDCP);
-      }
-      aCIIInvoice.setExchangedDocumentContext (aEDCT);
-    }
-
-    {
-      final ExchangedDocumentType aEDT = new ExchangedDocumentType ();
-      ifNotEmpty (aEDT::setID, aUBLInvoice.getIDValue ());
-      ifNotEmpty (aEDT::setTypeCode, aUBLInvoice.getInvoiceTypeCodeValue ());
-
-      // IssueDate
-      if (aUBLInvoice.getIssueDate () != null)
-        aEDT.setIssueDateTime (convertDate (aUBLInvoice.getIssueDate ().getValueLocal ()));
-
-      // Add add IncludedNote
-      for (final var aNote : aUBLInvoice.getNote ())
-        aEDT.addIncludedNote (convertNote (aNote));
-
-      aCIIInvoice.setExchangedDocument (aEDT);
-    }
-
-    {
-      final SupplyChainTradeTransactionType aSCTT = new SupplyChainTradeTransactionType ();
-
-      // IncludedSupplyChainTradeLineItem
-      List<InvoiceLineType> invoiceLine = aUBLInvoice.getInvoiceLine();
-      for (InvoiceLineType aLine : invoiceLine) {
-        _convertInvoiceLine(aLine).forEach(aSCTT::addIncludedSupplyChainTradeLineItem);
-      }
-
 
-      // ApplicableHeaderTradeAgreement
-      {
-        final HeaderTradeAgreementType aHTAT = new HeaderTradeAgreementType ();
-
-        // BuyerReference (in B2G context used for PEPPOL routing, but it is generally mandatory)
-        aHTAT.setBuyerReference(aUBLInvoice.getBuyerReferenceValue ());
-
-        // SellerTradeParty
-        final SupplierPartyType aSupplierParty = aUBLInvoice.getAccountingSupplierParty ();
-        if (aSupplierParty != null)
-          aHTAT.setSellerTradeParty (convertParty (aSupplierParty.getParty ()));
-
-        // BuyerTradeParty
-        final CustomerPartyType aCustomerParty = aUBLInvoice.getAccountingCustomerParty ();
-        if (aCustomerParty != null)
-          aHTAT.setBuyerTradeParty (convertParty (aCustomerParty.getParty ()));
-
-        // BuyerOrderReferencedDocument
-        if (aUBLInvoice.getOrderReference () != null && aUBLInvoice.getOrderReference ().getID () != null)
-        {
-          final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
-          aRDT.setIssuerAssignedID (aUBLInvoice.getOrderReference ().getIDValue ());
-          aHTAT.setBuyerOrderReferencedDocument (aRDT);
-        }
-
-        // ContractReferencedDocument
-        if (aUBLInvoice.hasContractDocumentReferenceEntries ())
-        {
-          final ReferencedDocumentType aCRDT = new ReferencedDocumentType ();
-          aCRDT.setIssuerAssignedID (aUBLInvoice.getContractDocumentReferenceAtIndex (0).getIDValue ());
-          aHTAT.setContractReferencedDocument (aCRDT);
-        }
+    return convertToCrossIndustryInvoice (UBL21InvoiceModel.createFrom (aUBLInvoice), aErrorList);
+  }
 
-        // AdditionalReferencedDocument
-        for (final var aUBLDocDesc : aUBLInvoice.getAdditionalDocumentReference ())
-          aHTAT.addAdditionalReferencedDocument (convertAdditionalReferencedDocument (aUBLDocDesc));
-        aSCTT.setApplicableHeaderTradeAgreement (aHTAT);
-      }
+  /**
+   * Convert the provided UBL invoice projection. This works with the full
+   * JAXB based {@link InvoiceType} as well as with the lightweight
+   * {@link UBL21InvoiceModel}. Invoices with at least
+   * {@link UBL21ParallelConverter#DEFAULT_PARALLEL_LINE_THRESHOLD} line items
+   * have their lines converted on the common
+   * {@link java.util.concurrent.ForkJoinPool}.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice.
+   * @see UBL21ParallelConverter#getDefaultInstance()
+   */
+  @Nullable
+  public static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                        @Nonnull final ErrorList aErrorList)
+  {
+    return UBL21ParallelConverter.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aUBLInvoice, aErrorList);
+  }
 
-      // ApplicableHeaderTradeDelivery
-      aSCTT.setApplicableHeaderTradeDelivery (createApplicableHeaderTradeDelivery (aUBLInvoice.hasDeliveryEntries () ? aUBLInvoice.getDeliveryAtIndex (0)
-                                                                                                                     : null));
+  /**
+   * Convert the provided UBL invoice lines including all their sub invoice
+   * lines sequentially in the calling thread.
+   *
+   * @param aUBLLines
+   *        The lines to convert. May not be <code>null</code>.
+   * @return The converted line items in document order. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  static List<SupplyChainTradeLineItemType> convertInvoiceLines (@Nonnull final List<InvoiceLineType> aUBLLines)
+  {
+    final List <SupplyChainTradeLineItemType> ret = new ArrayList <> ();
+    for (final InvoiceLineType aLine : aUBLLines)
+      ret.addAll (_convertInvoiceLine (aLine));
+    return ret;
+  }
 
-      // ApplicableHeaderTradeSettlement
-      aSCTT.setApplicableHeaderTradeSettlement (_createApplicableHeaderTradeSettlement (aUBLInvoice));
+  /**
+   * Count the line items that are created for the provided line.
+   *
+   * @param aUBLLine
+   *        The line to count. May not be <code>null</code>.
+   * @return The number of line items, including all sub invoice lines. Always
+   *         &gt; 0.
+   */
+  static int countLineItems (@Nonnull final InvoiceLineType aUBLLine)
+  {
+    int ret = 1;
+    if (aUBLLine.hasSubInvoiceLineEntries ())
+      for (final InvoiceLineType aSubLine : aUBLLine.getSubInvoiceLine ())
+        ret += countLineItems (aSubLine);
+    return ret;
+  }
 
-      aCIIInvoice.setSupplyChainTradeTransaction (aSCTT);
-    }
+  /**
+   * Convert the provided UBL invoice, but only convert the lines while the
+   * created CII document is serialized. The result must be serialized exactly
+   * once and must not be used otherwise.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice incl. all lines. May not be <code>null</code>.
+   * @param nLineItems
+   *        The number of line items, including all sub invoice lines, as
+   *        returned by {@link #countLineItems(InvoiceLineType)}. Must be &ge;
+   *        0.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice with the lazy line items.
+   * @see LazyLineItemList
+   */
+  @Nullable
+  static CrossIndustryInvoiceType convertToCrossIndustryInvoiceWithLazyLines (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                              @Nonnegative final int nLineItems,
+                                                                              @Nonnull final ErrorList aErrorList)
+  {
+    // The line conversion does not modify the UBL lines, so the order doesn't
+    // matter
+    return convertToCrossIndustryInvoice (aUBLInvoice,
+                                          new LazyLineItemList <> (aUBLInvoice.getInvoiceLines (),
+                                                                   UBL21InvoiceToCIID16BConverter::_convertInvoiceLine,
+                                                                   nLineItems),
+                                          aErrorList);
+  }
 
-    return aCIIInvoice;
+  /**
+   * Convert the provided UBL invoice, using the already converted invoice
+   * lines. Neither the line conversion nor the header conversion modify the
+   * UBL invoice, so the same invoice may be converted several times and
+   * concurrently.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice incl. all lines. May not be <code>null</code>.
+   * @param aLineItems
+   *        The converted lines in document order. The list is used as is and
+   *        not copied. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice.
+   */
+  @Nullable
+  static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                 @Nonnull final List <SupplyChainTradeLineItemType> aLineItems,
+                                                                 @Nonnull final ErrorList aErrorList)
+  {
+    return UBL21ToCIID16BMapping.INVOICE.convert (aUBLInvoice, aLineItems, _createApplicableHeaderTradeSettlement (aUBLInvoice));
   }
 
   public static List<InvoiceLineType> getAllParentInvoiceLines (@Nonnull final InvoiceLineType aInvoiceLine) {
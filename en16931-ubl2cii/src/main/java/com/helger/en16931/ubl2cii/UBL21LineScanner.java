@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.ubl21.CUBL21;
+
+/**
+ * A fast byte-level pre-scanner that determines the offsets of the top-level
+ * line elements (<code>cac:InvoiceLine</code> or
+ * <code>cac:CreditNoteLine</code>) of a UBL 2.1 document without creating an
+ * XML parser. It only understands the subset of XML that is needed to track
+ * the element depth (tags, quoted attribute values, comments, CDATA sections
+ * and processing instructions). Documents using a DTD, a non ASCII compatible
+ * encoding or line elements that declare namespaces themselves are rejected,
+ * so that the caller can fall back to the sequential processing.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+final class UBL21LineScanner
+{
+  private static final byte [] COMMENT_END = "-->".getBytes (StandardCharsets.US_ASCII);
+  private static final byte [] CDATA_START = "<![CDATA[".getBytes (StandardCharsets.US_ASCII);
+  private static final byte [] CDATA_END = "]]>".getBytes (StandardCharsets.US_ASCII);
+  private static final byte [] PI_END = "?>".getBytes (StandardCharsets.US_ASCII);
+
+  /**
+   * The result of a successful scan. Offsets are always byte offsets into the
+   * scanned array.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  static final class Result
+  {
+    private final byte [] m_aBytes;
+    private final int m_nRootStartTagEnd;
+    private final byte [] m_aRootEndTag;
+    private final int [] m_aLineStart;
+    private final int [] m_aLineEnd;
+
+    Result (@Nonnull final byte [] aBytes,
+            final int nRootStartTagEnd,
+            @Nonnull final byte [] aRootEndTag,
+            @Nonnull final int [] aLineStart,
+            @Nonnull final int [] aLineEnd)
+    {
+      m_aBytes = aBytes;
+      m_nRootStartTagEnd = nRootStartTagEnd;
+      m_aRootEndTag = aRootEndTag;
+      m_aLineStart = aLineStart;
+      m_aLineEnd = aLineEnd;
+    }
+
+    /**
+     * @return The number of top-level line elements found.
+     */
+    @Nonnegative
+    int getLineCount ()
+    {
+      return m_aLineStart.length;
+    }
+
+    /**
+     * @return The complete document without all top-level line elements.
+     */
+    @Nonnull
+    InputStream getHeaderInputStream ()
+    {
+      final int nLineCount = getLineCount ();
+      if (nLineCount == 0)
+        return new NonBlockingByteArrayInputStream (m_aBytes);
+
+      final ICommonsList <InputStream> aParts = new CommonsArrayList <> (nLineCount + 1);
+      int nLast = 0;
+      for (int i = 0; i < nLineCount; ++i)
+      {
+        if (m_aLineStart[i] > nLast)
+          aParts.add (new NonBlockingByteArrayInputStream (m_aBytes, nLast, m_aLineStart[i] - nLast));
+        nLast = m_aLineEnd[i];
+      }
+      aParts.add (new NonBlockingByteArrayInputStream (m_aBytes, nLast, m_aBytes.length - nLast));
+      return new SequenceInputStream (Collections.enumeration (aParts));
+    }
+
+    /**
+     * Get a stand-alone XML document that contains the original XML
+     * declaration, the original root start tag (with all the namespace
+     * declarations) and the lines in the provided range.
+     *
+     * @param nFromIndex
+     *        The index of the first line to include. Inclusive.
+     * @param nToIndex
+     *        The index of the last line to include. Exclusive.
+     * @return The XML document as a stream of the original bytes. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    InputStream getLinesInputStream (@Nonnegative final int nFromIndex, @Nonnegative final int nToIndex)
+    {
+      final ICommonsList <InputStream> aParts = new CommonsArrayList <> (nToIndex - nFromIndex + 2);
+      aParts.add (new NonBlockingByteArrayInputStream (m_aBytes, 0, m_nRootStartTagEnd));
+      for (int i = nFromIndex; i < nToIndex; ++i)
+        aParts.add (new NonBlockingByteArrayInputStream (m_aBytes, m_aLineStart[i], m_aLineEnd[i] - m_aLineStart[i]));
+      aParts.add (new NonBlockingByteArrayInputStream (m_aRootEndTag));
+      return new SequenceInputStream (Collections.enumeration (aParts));
+    }
+  }
+
+  private UBL21LineScanner ()
+  {}
+
+  private static boolean _startsWith (@Nonnull final byte [] aBytes, final int nOfs, @Nonnull final byte [] aSearch)
+  {
+    if (nOfs + aSearch.length > aBytes.length)
+      return false;
+    return Arrays.equals (aBytes, nOfs, nOfs + aSearch.length, aSearch, 0, aSearch.length);
+  }
+
+  /**
+   * @return The index directly after the search bytes or -1 if not found.
+   */
+  private static int _skipAfter (@Nonnull final byte [] aBytes, final int nOfs, @Nonnull final byte [] aSearch)
+  {
+    final int nMax = aBytes.length - aSearch.length;
+    for (int i = nOfs; i <= nMax; ++i)
+      if (aBytes[i] == aSearch[0] && _startsWith (aBytes, i, aSearch))
+        return i + aSearch.length;
+    return -1;
+  }
+
+  private static boolean _isNameEnd (final byte b)
+  {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '/' || b == '>';
+  }
+
+  /**
+   * @return The index directly after the closing '&gt;' of the tag starting at
+   *         the provided offset, or -1 if the tag is not closed.
+   */
+  private static int _skipTag (@Nonnull final byte [] aBytes, final int nOfs)
+  {
+    byte nQuote = 0;
+    for (int i = nOfs; i < aBytes.length; ++i)
+    {
+      final byte b = aBytes[i];
+      if (nQuote != 0)
+      {
+        if (b == nQuote)
+          nQuote = 0;
+      }
+      else
+        if (b == '"' || b == '\'')
+          nQuote = b;
+        else
+          if (b == '>')
+            return i + 1;
+    }
+    return -1;
+  }
+
+  /**
+   * Extract the namespace declarations from a start tag.
+   */
+  private static void _readNamespaceDeclarations (@Nonnull final String sTag,
+                                                  @Nonnull final ICommonsMap <String, String> aTarget)
+  {
+    int nIdx = sTag.indexOf ("xmlns");
+    while (nIdx >= 0)
+    {
+      final int nEq = sTag.indexOf ('=', nIdx);
+      if (nEq < 0)
+        break;
+      final String sAttrName = sTag.substring (nIdx, nEq).trim ();
+      int nValueStart = nEq + 1;
+      while (nValueStart < sTag.length () && Character.isWhitespace (sTag.charAt (nValueStart)))
+        nValueStart++;
+      if (nValueStart >= sTag.length ())
+        break;
+      final char cQuote = sTag.charAt (nValueStart);
+      final int nValueEnd = sTag.indexOf (cQuote, nValueStart + 1);
+      if (nValueEnd < 0)
+        break;
+      final String sValue = sTag.substring (nValueStart + 1, nValueEnd);
+      if (sAttrName.equals ("xmlns"))
+        aTarget.put ("", sValue);
+      else
+        if (sAttrName.startsWith ("xmlns:"))
+          aTarget.put (sAttrName.substring (6), sValue);
+      nIdx = sTag.indexOf ("xmlns", nValueEnd);
+    }
+  }
+
+  private static boolean _isASCIICompatible (@Nonnull final byte [] aBytes)
+  {
+    if (aBytes.length < 2)
+      return false;
+    // UTF-16/UTF-32 BOMs or a '<' encoded in 2 or 4 bytes
+    final int b0 = aBytes[0] & 0xff;
+    final int b1 = aBytes[1] & 0xff;
+    return !(b0 == 0xfe && b1 == 0xff) && !(b0 == 0xff && b1 == 0xfe) && b0 != 0 && b1 != 0;
+  }
+
+  /**
+   * Scan the provided document for top-level line elements.
+   *
+   * @param aBytes
+   *        The complete XML document. May not be <code>null</code>.
+   * @param sLineLocalName
+   *        The local name of the line elements (e.g. "InvoiceLine"). May not
+   *        be <code>null</code>.
+   * @return <code>null</code> if the document cannot be handled by this
+   *         scanner (e.g. because it is malformed) and the caller should use
+   *         the sequential processing instead.
+   */
+  @Nullable
+  static Result scan (@Nonnull final byte [] aBytes, @Nonnull final String sLineLocalName)
+  {
+    if (!_isASCIICompatible (aBytes))
+      return null;
+
+    final IntList aLineStart = new IntList ();
+    final IntList aLineEnd = new IntList ();
+    final ICommonsMap <String, String> aRootNamespaces = new CommonsHashMap <> ();
+    int nRootStartTagEnd = -1;
+    byte [] aRootEndTag = null;
+    int nDepth = 0;
+    boolean bInLine = false;
+
+    int i = 0;
+    final int nLen = aBytes.length;
+    while (i < nLen)
+    {
+      if (aBytes[i] != '<')
+      {
+        i++;
+        continue;
+      }
+      if (i + 1 >= nLen)
+        return null;
+
+      final byte bNext = aBytes[i + 1];
+      if (bNext == '?')
+      {
+        i = _skipAfter (aBytes, i + 2, PI_END);
+      }
+      else
+        if (bNext == '!')
+        {
+          if (i + 3 < nLen && aBytes[i + 2] == '-' && aBytes[i + 3] == '-')
+            i = _skipAfter (aBytes, i + 4, COMMENT_END);
+          else
+            if (_startsWith (aBytes, i, CDATA_START))
+              i = _skipAfter (aBytes, i + CDATA_START.length, CDATA_END);
+            else
+            {
+              // DOCTYPE is not supported
+              return null;
+            }
+        }
+        else
+          if (bNext == '/')
+          {
+            // End tag
+            final int nTagEnd = _skipTag (aBytes, i);
+            if (nTagEnd < 0 || nDepth == 0)
+              return null;
+            nDepth--;
+            if (nDepth == 1 && bInLine)
+            {
+              aLineEnd.add (nTagEnd);
+              bInLine = false;
+            }
+            else
+              if (nDepth == 0)
+              {
+                // End of root element - ignore everything afterwards
+                aRootEndTag = Arrays.copyOfRange (aBytes, i, nTagEnd);
+                break;
+              }
+            i = nTagEnd;
+          }
+          else
+          {
+            // Start tag
+            final int nTagEnd = _skipTag (aBytes, i);
+            if (nTagEnd < 0)
+              return null;
+            final boolean bSelfClosing = aBytes[nTagEnd - 2] == '/';
+
+            if (nDepth == 0)
+            {
+              if (bSelfClosing)
+                return null;
+              nRootStartTagEnd = nTagEnd;
+              _readNamespaceDeclarations (new String (aBytes, i, nTagEnd - i, StandardCharsets.UTF_8),
+                                          aRootNamespaces);
+            }
+            else
+              if (nDepth == 1)
+              {
+                int nNameEnd = i + 1;
+                while (nNameEnd < nTagEnd && !_isNameEnd (aBytes[nNameEnd]))
+                  nNameEnd++;
+                final String sQName = new String (aBytes, i + 1, nNameEnd - i - 1, StandardCharsets.UTF_8);
+                final int nColon = sQName.indexOf (':');
+                final String sLocalName = nColon < 0 ? sQName : sQName.substring (nColon + 1);
+                if (sLocalName.equals (sLineLocalName))
+                {
+                  final String sTag = new String (aBytes, nNameEnd, nTagEnd - nNameEnd, StandardCharsets.UTF_8);
+                  if (sTag.contains ("xmlns"))
+                  {
+                    // Namespace redeclaration on a line is not supported
+                    return null;
+                  }
+                  final String sPrefix = nColon < 0 ? "" : sQName.substring (0, nColon);
+                  if (CUBL21.XML_SCHEMA_CAC_NAMESPACE_URL.equals (aRootNamespaces.get (sPrefix)))
+                  {
+                    aLineStart.add (i);
+                    if (bSelfClosing)
+                      aLineEnd.add (nTagEnd);
+                    else
+                      bInLine = true;
+                  }
+                }
+              }
+            if (!bSelfClosing)
+              nDepth++;
+            i = nTagEnd;
+          }
+
+      if (i < 0)
+        return null;
+    }
+
+    if (aRootEndTag == null)
+      return null;
+
+    return new Result (aBytes, nRootStartTagEnd, aRootEndTag, aLineStart.toArray (), aLineEnd.toArray ());
+  }
+
+  /**
+   * Minimal growing int array to avoid boxing the offsets.
+   */
+  private static final class IntList
+  {
+    private int [] m_aData = new int [64];
+    private int m_nSize = 0;
+
+    void add (final int n)
+    {
+      if (m_nSize == m_aData.length)
+        m_aData = Arrays.copyOf (m_aData, m_nSize * 2);
+      m_aData[m_nSize++] = n;
+    }
+
+    @Nonnull
+    int [] toArray ()
+    {
+      return Arrays.copyOf (m_aData, m_nSize);
+    }
+  }
+}
@@ -0,0 +1,626 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.ArrayHelper;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ubl21.EUBL21DocumentType;
+
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * Converter for UBL 2.1 documents with a huge number of lines. A byte-level
+ * pre-scan ({@link UBL21LineScanner}) determines the offsets of all top-level
+ * <code>InvoiceLine</code> or <code>CreditNoteLine</code> elements. Ranges of
+ * lines are then unmarshalled and converted in parallel on a
+ * {@link ForkJoinPool}, while the header (the document without the lines) is
+ * read in the calling thread. The results are stitched together in document
+ * order, so that the created CII is identical to the one of the sequential
+ * conversion.<br>
+ * The complete document must be available as a byte array. Like the
+ * {@link UBL21StreamReader}, no XML Schema validation is performed. If the
+ * pre-scan cannot handle a document, the sequential
+ * {@link UBL21StreamReader} is used instead.<br>
+ * Documents that were already read are converted in parallel by
+ * {@link #convertUBL21InvoiceToCIID16B(IUBL21Invoice, ErrorList)} and
+ * {@link #convertUBL21CreditNoteToCIID16B(IUBL21CreditNote, ErrorList)} if
+ * they have at least {@link #getParallelLineThreshold()} lines.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class UBL21ParallelConverter
+{
+  /** The default number of lines that are handled by a single task */
+  public static final int DEFAULT_LINES_PER_TASK = 256;
+  /**
+   * The default minimum number of line items of an already read document to
+   * convert the lines in parallel
+   */
+  public static final int DEFAULT_PARALLEL_LINE_THRESHOLD = 1_000;
+
+  private static final UBL21ParallelConverter DEFAULT_INSTANCE = new UBL21ParallelConverter (ForkJoinPool.commonPool (),
+                                                                                             DEFAULT_LINES_PER_TASK);
+
+  private final ForkJoinPool m_aPool;
+  private final int m_nLinesPerTask;
+  private final int m_nParallelLineThreshold;
+  private final ForkJoinLineConverter <InvoiceLineType> m_aInvoiceLineConverter;
+  private final ForkJoinLineConverter <CreditNoteLineType> m_aCreditNoteLineConverter;
+
+  /**
+   * Constructor
+   *
+   * @param aPool
+   *        The pool to run the line tasks on. May not be <code>null</code>.
+   * @param nLinesPerTask
+   *        The maximum number of lines to be handled in a single task. Must be
+   *        &gt; 0.
+   */
+  public UBL21ParallelConverter (@Nonnull final ForkJoinPool aPool, @Nonnegative final int nLinesPerTask)
+  {
+    this (aPool, nLinesPerTask, DEFAULT_PARALLEL_LINE_THRESHOLD);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aPool
+   *        The pool to run the line tasks on. May not be <code>null</code>.
+   * @param nLinesPerTask
+   *        The maximum number of lines to be handled in a single task. Must be
+   *        &gt; 0.
+   * @param nParallelLineThreshold
+   *        The minimum number of line items, including all sub lines, of an
+   *        already read document to convert its lines in parallel. Smaller
+   *        documents are converted sequentially in the calling thread. Must be
+   *        &gt; 0.
+   */
+  public UBL21ParallelConverter (@Nonnull final ForkJoinPool aPool,
+                                 @Nonnegative final int nLinesPerTask,
+                                 @Nonnegative final int nParallelLineThreshold)
+  {
+    ValueEnforcer.notNull (aPool, "Pool");
+    ValueEnforcer.isGT0 (nLinesPerTask, "LinesPerTask");
+    ValueEnforcer.isGT0 (nParallelLineThreshold, "ParallelLineThreshold");
+    m_aPool = aPool;
+    m_nLinesPerTask = nLinesPerTask;
+    m_nParallelLineThreshold = nParallelLineThreshold;
+    m_aInvoiceLineConverter = new ForkJoinLineConverter <> (UBL21InvoiceToCIID16BConverter::convertInvoiceLineWithoutSubLines,
+                                                            x -> x.hasSubInvoiceLineEntries () ? x.getSubInvoiceLine ()
+                                                                                               : Collections.emptyList (),
+                                                            nLinesPerTask);
+    m_aCreditNoteLineConverter = new ForkJoinLineConverter <> ((x, p) -> UBL21CreditNoteToCIID16BConverter.convertCreditNoteLine (x),
+                                                               x -> Collections.emptyList (),
+                                                               nLinesPerTask);
+  }
+
+  /**
+   * @return The shared instance using the common {@link ForkJoinPool}. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static UBL21ParallelConverter getDefaultInstance ()
+  {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * @return The pool the line tasks are run on. Never <code>null</code>.
+   */
+  @Nonnull
+  public ForkJoinPool getPool ()
+  {
+    return m_aPool;
+  }
+
+  /**
+   * @return The maximum number of lines handled by a single task. Always &gt;
+   *         0.
+   */
+  @Nonnegative
+  public int getLinesPerTask ()
+  {
+    return m_nLinesPerTask;
+  }
+
+  /**
+   * @return The minimum number of line items of an already read document to
+   *         convert its lines in parallel. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getParallelLineThreshold ()
+  {
+    return m_nParallelLineThreshold;
+  }
+
+  /**
+   * The shared state of all line tasks of a single document. Every task only
+   * writes the indices of its own range.
+   *
+   * @param <T>
+   *        The UBL line type
+   */
+  private static final class LineContext <T>
+  {
+    private final UBL21LineScanner.Result m_aScan;
+    private final EUBL21DocumentType m_eDocType;
+    private final Class <T> m_aLineClass;
+    private final Function <? super T, List <SupplyChainTradeLineItemType>> m_aLineConverter;
+    private final T [] m_aLines;
+    private final List <?> [] m_aLineItems;
+    private final ErrorList [] m_aErrors;
+
+    LineContext (@Nonnull final UBL21LineScanner.Result aScan,
+                 @Nonnull final EUBL21DocumentType eDocType,
+                 @Nonnull final Class <T> aLineClass,
+                 @Nonnull final Function <? super T, List <SupplyChainTradeLineItemType>> aLineConverter)
+    {
+      m_aScan = aScan;
+      m_eDocType = eDocType;
+      m_aLineClass = aLineClass;
+      m_aLineConverter = aLineConverter;
+      final int nLineCount = aScan.getLineCount ();
+      m_aLines = ArrayHelper.newArray (aLineClass, nLineCount);
+      m_aLineItems = new List <?> [nLineCount];
+      m_aErrors = new ErrorList [nLineCount];
+    }
+
+    /**
+     * Unmarshal and convert all lines of the provided range.
+     */
+    void convertLines (final int nFromIndex, final int nToIndex)
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      m_aErrors[nFromIndex] = aErrorList;
+
+      StAXHelper.read (m_aScan.getLinesInputStream (nFromIndex, nToIndex), aErrorList, aReader -> {
+        _convertLines (aReader, nFromIndex, aErrorList);
+        return null;
+      });
+    }
+
+    private void _convertLines (@Nonnull final XMLStreamReader aReader,
+                                final int nFromIndex,
+                                @Nonnull final ErrorList aErrorList) throws XMLStreamException
+    {
+      // Move to the root element
+      StAXHelper.moveToStartElement (aReader);
+      try
+      {
+        final Unmarshaller aUnmarshaller = UBL21StreamReader.createUnmarshaller (m_eDocType, aErrorList);
+
+        // All children of the root element are lines
+        int nIndex = nFromIndex;
+        int nEventType = aReader.next ();
+        while (nEventType != XMLStreamConstants.END_ELEMENT)
+        {
+          if (nEventType == XMLStreamConstants.START_ELEMENT)
+          {
+            final T aLine = aUnmarshaller.unmarshal (aReader, m_aLineClass).getValue ();
+            m_aLines[nIndex] = aLine;
+            m_aLineItems[nIndex] = m_aLineConverter.apply (aLine);
+            nIndex++;
+
+            // Afterwards the reader is positioned after the end element
+            nEventType = aReader.getEventType ();
+            continue;
+          }
+          nEventType = aReader.next ();
+        }
+      }
+      catch (final JAXBException ex)
+      {
+        aErrorList.add (SingleError.builderError ()
+                                   .errorText ("Failed to unmarshal the UBL 2.1 " + m_aLineClass.getSimpleName ())
+                                   .linkedException (ex)
+                                   .build ());
+      }
+    }
+
+    /**
+     * Collect the results of all tasks in document order.
+     *
+     * @return <code>null</code> if at least one line could not be converted.
+     */
+    @Nullable
+    List <SupplyChainTradeLineItemType> collectLineItems (@Nonnull final ErrorList aErrorList)
+    {
+      for (final ErrorList aTaskErrors : m_aErrors)
+        if (aTaskErrors != null)
+          aErrorList.addAll (aTaskErrors);
+
+      final List <SupplyChainTradeLineItemType> ret = new ArrayList <> (m_aLineItems.length);
+      for (final List <?> aItems : m_aLineItems)
+      {
+        if (aItems == null)
+          return null;
+        for (final Object aItem : aItems)
+          ret.add ((SupplyChainTradeLineItemType) aItem);
+      }
+      return ret;
+    }
+  }
+
+  /**
+   * Recursively splits a range of lines until it is small enough.
+   */
+  private static final class LineTask extends RecursiveAction
+  {
+    private final LineContext <?> m_aCtx;
+    private final int m_nFromIndex;
+    private final int m_nToIndex;
+    private final int m_nLinesPerTask;
+
+    LineTask (@Nonnull final LineContext <?> aCtx,
+              final int nFromIndex,
+              final int nToIndex,
+              final int nLinesPerTask)
+    {
+      m_aCtx = aCtx;
+      m_nFromIndex = nFromIndex;
+      m_nToIndex = nToIndex;
+      m_nLinesPerTask = nLinesPerTask;
+    }
+
+    @Override
+    protected void compute ()
+    {
+      final int nCount = m_nToIndex - m_nFromIndex;
+      if (nCount <= m_nLinesPerTask)
+        m_aCtx.convertLines (m_nFromIndex, m_nToIndex);
+      else
+      {
+        final int nMid = m_nFromIndex + nCount / 2;
+        invokeAll (new LineTask (m_aCtx, m_nFromIndex, nMid, m_nLinesPerTask),
+                   new LineTask (m_aCtx, nMid, m_nToIndex, m_nLinesPerTask));
+      }
+    }
+  }
+
+  /**
+   * Start the conversion of all lines on the pool.
+   *
+   * @return <code>null</code> if there are no lines, the running task
+   *         otherwise.
+   */
+  @Nullable
+  private LineTask _startLineTasks (@Nonnull final LineContext <?> aCtx)
+  {
+    final int nLineCount = aCtx.m_aScan.getLineCount ();
+    if (nLineCount == 0)
+      return null;
+
+    final LineTask ret = new LineTask (aCtx, 0, nLineCount, m_nLinesPerTask);
+    m_aPool.execute (ret);
+    return ret;
+  }
+
+  /**
+   * Convert an already read UBL 2.1 Invoice to CII D16B. If the invoice has at
+   * least {@link #getParallelLineThreshold()} line items, the invoice lines
+   * and their sub invoice line trees are converted on the pool. Otherwise the
+   * cheaper sequential conversion is used.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aUBLInvoice, "UBLInvoice");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final List <InvoiceLineType> aLines = aUBLInvoice.getInvoiceLines ();
+    final int nLineItems = _countLineItems (aLines);
+    if (nLineItems < m_nParallelLineThreshold)
+      return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                           UBL21InvoiceToCIID16BConverter.convertInvoiceLines (aLines),
+                                                                           aErrorList);
+
+    return _convertInvoiceInParallel (aUBLInvoice, nLineItems, aErrorList);
+  }
+
+  private static int _countLineItems (@Nonnull final List <InvoiceLineType> aLines)
+  {
+    int ret = 0;
+    for (final InvoiceLineType aLine : aLines)
+      ret += UBL21InvoiceToCIID16BConverter.countLineItems (aLine);
+    return ret;
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertInvoiceInParallel (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                              final int nLineItems,
+                                                              @Nonnull final ErrorList aErrorList)
+  {
+    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                         m_aInvoiceLineConverter.convert (aUBLInvoice.getInvoiceLines (),
+                                                                                                          m_aPool,
+                                                                                                          nLineItems),
+                                                                         aErrorList);
+  }
+
+  /**
+   * Convert an already read UBL 2.1 Invoice to CII D16B for a single
+   * serialization. If the invoice has less than
+   * {@link #getParallelLineThreshold()} line items, the lines are only
+   * converted while the CII is written. Otherwise the lines are converted on
+   * the pool upfront, like in
+   * {@link #convertUBL21InvoiceToCIID16B(IUBL21Invoice, ErrorList)}.
+   *
+   * @param aUBLInvoice
+   *        The UBL invoice. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice, that must be serialized exactly once.
+   * @see LazyLineItemList
+   */
+  @Nullable
+  CrossIndustryInvoiceType convertUBL21InvoiceToCIID16BWithLazyLines (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                      @Nonnull final ErrorList aErrorList)
+  {
+    final int nLineItems = _countLineItems (aUBLInvoice.getInvoiceLines ());
+    if (nLineItems < m_nParallelLineThreshold)
+      return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoiceWithLazyLines (aUBLInvoice, nLineItems, aErrorList);
+
+    return _convertInvoiceInParallel (aUBLInvoice, nLineItems, aErrorList);
+  }
+
+  /**
+   * Convert an already read UBL 2.1 Credit Note to CII D16B. If the credit
+   * note has at least {@link #getParallelLineThreshold()} lines, the lines are
+   * converted on the pool. Otherwise the cheaper sequential conversion is
+   * used.
+   *
+   * @param aUBLCreditNote
+   *        The UBL credit note. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final IUBL21CreditNote aUBLCreditNote,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aUBLCreditNote, "UBLCreditNote");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final List <CreditNoteLineType> aLines = aUBLCreditNote.getCreditNoteLines ();
+    if (aLines.size () < m_nParallelLineThreshold)
+      return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote,
+                                                                              UBL21CreditNoteToCIID16BConverter.convertCreditNoteLines (aLines),
+                                                                              aErrorList);
+
+    return _convertCreditNoteInParallel (aUBLCreditNote, aErrorList);
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertCreditNoteInParallel (@Nonnull final IUBL21CreditNote aUBLCreditNote,
+                                                                 @Nonnull final ErrorList aErrorList)
+  {
+    final List <CreditNoteLineType> aLines = aUBLCreditNote.getCreditNoteLines ();
+    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote,
+                                                                            m_aCreditNoteLineConverter.convert (aLines,
+                                                                                                                m_aPool,
+                                                                                                                aLines.size ()),
+                                                                            aErrorList);
+  }
+
+  /**
+   * Convert an already read UBL 2.1 Credit Note to CII D16B for a single
+   * serialization. If the credit note has less than
+   * {@link #getParallelLineThreshold()} lines, the lines are only converted
+   * while the CII is written. Otherwise the lines are converted on the pool
+   * upfront, like in
+   * {@link #convertUBL21CreditNoteToCIID16B(IUBL21CreditNote, ErrorList)}.
+   *
+   * @param aUBLCreditNote
+   *        The UBL credit note. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII invoice, that must be serialized exactly once.
+   * @see LazyLineItemList
+   */
+  @Nullable
+  CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16BWithLazyLines (@Nonnull final IUBL21CreditNote aUBLCreditNote,
+                                                                         @Nonnull final ErrorList aErrorList)
+  {
+    if (aUBLCreditNote.getCreditNoteLines ().size () < m_nParallelLineThreshold)
+      return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoiceWithLazyLines (aUBLCreditNote, aErrorList);
+
+    return _convertCreditNoteInParallel (aUBLCreditNote, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Invoice to CII D16B.
+   *
+   * @param aBytes
+   *        The complete UBL 2.1 Invoice. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final byte [] aBytes,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final UBL21LineScanner.Result aScan = UBL21LineScanner.scan (aBytes, "InvoiceLine");
+    if (aScan == null)
+    {
+      // Fallback without pre-scan - the lines may still be converted in
+      // parallel
+      final UBL21InvoiceModel aUBLInvoice = UBL21StreamReader.readInvoiceModel (new NonBlockingByteArrayInputStream (aBytes),
+                                                                     aErrorList);
+      if (aUBLInvoice == null)
+        return null;
+      return convertUBL21InvoiceToCIID16B (aUBLInvoice, aErrorList);
+    }
+
+    final LineContext <InvoiceLineType> aCtx = new LineContext <> (aScan,
+                                                                   EUBL21DocumentType.INVOICE,
+                                                                   InvoiceLineType.class,
+                                                                   UBL21InvoiceToCIID16BConverter::convertInvoiceLine);
+    final LineTask aTask = _startLineTasks (aCtx);
+
+    // Read the header while the lines are processed
+    final UBL21InvoiceModel aUBLInvoice = UBL21StreamReader.readInvoiceModel (aScan.getHeaderInputStream (), aErrorList);
+
+    if (aTask != null)
+      aTask.join ();
+    final List <SupplyChainTradeLineItemType> aLineItems = aCtx.collectLineItems (aErrorList);
+    if (aUBLInvoice == null || aLineItems == null)
+      return null;
+
+    // The lines are needed for the header trade settlement
+    Collections.addAll (aUBLInvoice.getInvoiceLines (), aCtx.m_aLines);
+    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aLineItems, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Credit Note to CII D16B.
+   *
+   * @param aBytes
+   *        The complete UBL 2.1 Credit Note. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final byte [] aBytes,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final UBL21LineScanner.Result aScan = UBL21LineScanner.scan (aBytes, "CreditNoteLine");
+    if (aScan == null)
+    {
+      // Fallback without pre-scan - the lines may still be converted in
+      // parallel
+      final UBL21CreditNoteModel aUBLCreditNote = UBL21StreamReader.readCreditNoteModel (new NonBlockingByteArrayInputStream (aBytes),
+                                                                              aErrorList);
+      if (aUBLCreditNote == null)
+        return null;
+      return convertUBL21CreditNoteToCIID16B (aUBLCreditNote, aErrorList);
+    }
+
+    final LineContext <CreditNoteLineType> aCtx = new LineContext <> (aScan,
+                                                                      EUBL21DocumentType.CREDIT_NOTE,
+                                                                      CreditNoteLineType.class,
+                                                                      x -> Collections.singletonList (UBL21CreditNoteToCIID16BConverter.convertCreditNoteLine (x)));
+    final LineTask aTask = _startLineTasks (aCtx);
+
+    // Read the header while the lines are processed
+    final UBL21CreditNoteModel aUBLCreditNote = UBL21StreamReader.readCreditNoteModel (aScan.getHeaderInputStream (),
+                                                                            aErrorList);
+
+    if (aTask != null)
+      aTask.join ();
+    final List <SupplyChainTradeLineItemType> aLineItems = aCtx.collectLineItems (aErrorList);
+    if (aUBLCreditNote == null || aLineItems == null)
+      return null;
+
+    Collections.addAll (aUBLCreditNote.getCreditNoteLines (), aCtx.m_aLines);
+    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aLineItems, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Invoice or Credit Note to CII D16B. The document type is
+   * determined from the root element.
+   *
+   * @param aBytes
+   *        The complete UBL 2.1 document. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> in case of an error.
+   */
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final byte [] aBytes,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    // Only peek at the root element
+    final ErrorList aReadErrors = new ErrorList ();
+    final QName aRootName = StAXHelper.read (new NonBlockingByteArrayInputStream (aBytes),
+                                             aReadErrors,
+                                             r -> StAXHelper.moveToStartElement (r) ? r.getName () : null);
+    aErrorList.addAll (aReadErrors);
+    if (aReadErrors.containsAtLeastOneError ())
+      return null;
+
+    if (aRootName == null)
+    {
+      aErrorList.add (SingleError.builderError ().errorText ("The XML document has no root element").build ());
+      return null;
+    }
+
+    if ("Invoice".equals (aRootName.getLocalPart ()))
+      return convertUBL21InvoiceToCIID16B (aBytes, aErrorList);
+    if ("CreditNote".equals (aRootName.getLocalPart ()))
+      return convertUBL21CreditNoteToCIID16B (aBytes, aErrorList);
+
+    aErrorList.add (SingleError.builderError ()
+                               .errorText ("The XML document type " + aRootName + " is not supported")
+                               .build ());
+    return null;
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Pool", m_aPool)
+                                       .append ("LinesPerTask", m_nLinesPerTask)
+                                       .append ("ParallelLineThreshold", m_nParallelLineThreshold)
+                                       .getToString ();
+  }
+}
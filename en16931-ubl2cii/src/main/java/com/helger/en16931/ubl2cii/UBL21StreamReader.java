@@ -0,0 +1,775 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.InputStream;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsHashMap;
+import com.helger.commons.collection.impl.ICommonsMap;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.jaxb.JAXBContextCache;
+import com.helger.jaxb.JAXBContextCacheKey;
+import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
+import com.helger.ubl21.CUBL21;
+import com.helger.ubl21.EUBL21DocumentType;
+
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CustomerPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DeliveryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.DocumentReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PeriodType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.SupplierPartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AccountingCostType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.BuyerReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CreditNoteTypeCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.CustomizationIDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.DocumentCurrencyCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IDType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.InvoiceTypeCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.IssueDateType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.NoteType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ProfileIDType;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * StAX based reader for UBL 2.1 Invoices and Credit Notes. Instead of
+ * unmarshalling the complete document into the JAXB tree, only the top-level
+ * elements that are used by {@link UBL21InvoiceToCIID16BConverter} and
+ * {@link UBL21CreditNoteToCIID16BConverter} are unmarshalled straight from the
+ * {@link XMLStreamReader}. All other top-level elements (like extensions,
+ * signatures, additional parties etc.) are skipped without creating any
+ * objects.<br>
+ * Note: each mapped element is still unmarshalled via JAXB as a whole. This
+ * includes every single invoice or credit note line, so the cost of reading
+ * the lines is the same as with the full JAXB unmarshalling - the savings
+ * only stem from the skipped top-level elements.<br>
+ * Note: in contrast to {@link com.helger.ubl21.UBL21Marshaller} the public
+ * methods perform no XML Schema validation. The conversion engine uses this
+ * reader as its main path and validates all events the reader passes on the
+ * fly. If the converters start to use additional top-level elements, they
+ * need to be registered here as well.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class UBL21StreamReader
+{
+  /**
+   * Maps a single top-level child element onto the owning document.
+   *
+   * @param <DOCTYPE>
+   *        The owning document type
+   * @param <T>
+   *        The JAXB type of the child element
+   */
+  private static final class ChildMapping <DOCTYPE, T>
+  {
+    private final Class <T> m_aClass;
+    private final BiConsumer <? super DOCTYPE, ? super T> m_aSetter;
+
+    ChildMapping (@Nonnull final Class <T> aClass, @Nonnull final BiConsumer <? super DOCTYPE, ? super T> aSetter)
+    {
+      m_aClass = aClass;
+      m_aSetter = aSetter;
+    }
+
+    void unmarshal (@Nonnull final Unmarshaller aUnmarshaller,
+                    @Nonnull final XMLStreamReader aReader,
+                    @Nonnull final DOCTYPE aDoc) throws JAXBException
+    {
+      m_aSetter.accept (aDoc, aUnmarshaller.unmarshal (aReader, m_aClass).getValue ());
+    }
+  }
+
+  private static final ICommonsMap <QName, ChildMapping <InvoiceType, ?>> INVOICE_CHILDREN = new CommonsHashMap <> ();
+  private static final ICommonsMap <QName, ChildMapping <CreditNoteType, ?>> CREDIT_NOTE_CHILDREN = new CommonsHashMap <> ();
+
+  private static <DOCTYPE, T> void _cbc (@Nonnull final ICommonsMap <QName, ChildMapping <DOCTYPE, ?>> aMap,
+                                         @Nonnull final String sLocalName,
+                                         @Nonnull final Class <T> aClass,
+                                         @Nonnull final BiConsumer <? super DOCTYPE, ? super T> aSetter)
+  {
+    aMap.put (new QName (CUBL21.XML_SCHEMA_CBC_NAMESPACE_URL, sLocalName), new ChildMapping <> (aClass, aSetter));
+  }
+
+  private static <DOCTYPE, T> void _cac (@Nonnull final ICommonsMap <QName, ChildMapping <DOCTYPE, ?>> aMap,
+                                         @Nonnull final String sLocalName,
+                                         @Nonnull final Class <T> aClass,
+                                         @Nonnull final BiConsumer <? super DOCTYPE, ? super T> aSetter)
+  {
+    aMap.put (new QName (CUBL21.XML_SCHEMA_CAC_NAMESPACE_URL, sLocalName), new ChildMapping <> (aClass, aSetter));
+  }
+
+  static
+  {
+    // Invoice - only the elements used by the converter
+    final ICommonsMap <QName, ChildMapping <InvoiceType, ?>> i = INVOICE_CHILDREN;
+    _cbc (i, "CustomizationID", CustomizationIDType.class, InvoiceType::setCustomizationID);
+    _cbc (i, "ProfileID", ProfileIDType.class, InvoiceType::setProfileID);
+    _cbc (i, "ID", IDType.class, InvoiceType::setID);
+    _cbc (i, "IssueDate", IssueDateType.class, InvoiceType::setIssueDate);
+    _cbc (i, "InvoiceTypeCode", InvoiceTypeCodeType.class, InvoiceType::setInvoiceTypeCode);
+    _cbc (i, "Note", NoteType.class, InvoiceType::addNote);
+    _cbc (i, "DocumentCurrencyCode", DocumentCurrencyCodeType.class, InvoiceType::setDocumentCurrencyCode);
+    _cbc (i, "AccountingCost", AccountingCostType.class, InvoiceType::setAccountingCost);
+    _cbc (i, "BuyerReference", BuyerReferenceType.class, InvoiceType::setBuyerReference);
+    _cac (i, "InvoicePeriod", PeriodType.class, InvoiceType::addInvoicePeriod);
+    _cac (i, "OrderReference", OrderReferenceType.class, InvoiceType::setOrderReference);
+    _cac (i, "ContractDocumentReference", DocumentReferenceType.class, InvoiceType::addContractDocumentReference);
+    _cac (i,
+          "AdditionalDocumentReference",
+          DocumentReferenceType.class,
+          InvoiceType::addAdditionalDocumentReference);
+    _cac (i, "AccountingSupplierParty", SupplierPartyType.class, InvoiceType::setAccountingSupplierParty);
+    _cac (i, "AccountingCustomerParty", CustomerPartyType.class, InvoiceType::setAccountingCustomerParty);
+    _cac (i, "PayeeParty", PartyType.class, InvoiceType::setPayeeParty);
+    _cac (i, "Delivery", DeliveryType.class, InvoiceType::addDelivery);
+    _cac (i, "PaymentMeans", PaymentMeansType.class, InvoiceType::addPaymentMeans);
+    _cac (i, "PaymentTerms", PaymentTermsType.class, InvoiceType::addPaymentTerms);
+    _cac (i, "AllowanceCharge", AllowanceChargeType.class, InvoiceType::addAllowanceCharge);
+    _cac (i, "TaxTotal", TaxTotalType.class, InvoiceType::addTaxTotal);
+    _cac (i, "LegalMonetaryTotal", MonetaryTotalType.class, InvoiceType::setLegalMonetaryTotal);
+    _cac (i, "InvoiceLine", InvoiceLineType.class, InvoiceType::addInvoiceLine);
+
+    // Credit Note - only the elements used by the converter
+    final ICommonsMap <QName, ChildMapping <CreditNoteType, ?>> c = CREDIT_NOTE_CHILDREN;
+    _cbc (c, "CustomizationID", CustomizationIDType.class, CreditNoteType::setCustomizationID);
+    _cbc (c, "ID", IDType.class, CreditNoteType::setID);
+    _cbc (c, "IssueDate", IssueDateType.class, CreditNoteType::setIssueDate);
+    _cbc (c, "CreditNoteTypeCode", CreditNoteTypeCodeType.class, CreditNoteType::setCreditNoteTypeCode);
+    _cbc (c, "Note", NoteType.class, CreditNoteType::addNote);
+    _cbc (c, "DocumentCurrencyCode", DocumentCurrencyCodeType.class, CreditNoteType::setDocumentCurrencyCode);
+    _cbc (c, "AccountingCost", AccountingCostType.class, CreditNoteType::setAccountingCost);
+    _cac (c, "InvoicePeriod", PeriodType.class, CreditNoteType::addInvoicePeriod);
+    _cac (c, "OrderReference", OrderReferenceType.class, CreditNoteType::setOrderReference);
+    _cac (c, "ContractDocumentReference", DocumentReferenceType.class, CreditNoteType::addContractDocumentReference);
+    _cac (c,
+          "AdditionalDocumentReference",
+          DocumentReferenceType.class,
+          CreditNoteType::addAdditionalDocumentReference);
+    _cac (c, "AccountingSupplierParty", SupplierPartyType.class, CreditNoteType::setAccountingSupplierParty);
+    _cac (c, "AccountingCustomerParty", CustomerPartyType.class, CreditNoteType::setAccountingCustomerParty);
+    _cac (c, "PayeeParty", PartyType.class, CreditNoteType::setPayeeParty);
+    _cac (c, "Delivery", DeliveryType.class, CreditNoteType::addDelivery);
+    _cac (c, "PaymentMeans", PaymentMeansType.class, CreditNoteType::addPaymentMeans);
+    _cac (c, "PaymentTerms", PaymentTermsType.class, CreditNoteType::addPaymentTerms);
+    _cac (c, "AllowanceCharge", AllowanceChargeType.class, CreditNoteType::addAllowanceCharge);
+    _cac (c, "TaxTotal", TaxTotalType.class, CreditNoteType::addTaxTotal);
+    _cac (c, "LegalMonetaryTotal", MonetaryTotalType.class, CreditNoteType::setLegalMonetaryTotal);
+    _cac (c, "CreditNoteLine", CreditNoteLineType.class, CreditNoteType::addCreditNoteLine);
+  }
+
+  private static final ICommonsMap <QName, ChildMapping <UBL21InvoiceModel, ?>> INVOICE_MODEL_CHILDREN = new CommonsHashMap <> ();
+  private static final ICommonsMap <QName, ChildMapping <UBL21CreditNoteModel, ?>> CREDIT_NOTE_MODEL_CHILDREN = new CommonsHashMap <> ();
+
+  /**
+   * Register the elements that are common to the Invoice and Credit Note
+   * projection. Basic components are reduced to their values, and for
+   * aggregates that are only used once, only the first occurrence is kept.
+   */
+  private static <DOCTYPE extends AbstractUBL21DocumentModel> void _registerCommonModelChildren (@Nonnull final ICommonsMap <QName, ChildMapping <DOCTYPE, ?>> m)
+  {
+    _cbc (m, "CustomizationID", CustomizationIDType.class, (d, v) -> d.setCustomizationID (v.getValue ()));
+    _cbc (m, "ID", IDType.class, (d, v) -> d.setID (v.getValue ()));
+    _cbc (m, "IssueDate", IssueDateType.class, (d, v) -> d.setIssueDate (v.getValueLocal ()));
+    _cbc (m, "Note", NoteType.class, AbstractUBL21DocumentModel::addNote);
+    _cbc (m,
+          "DocumentCurrencyCode",
+          DocumentCurrencyCodeType.class,
+          (d, v) -> d.setDocumentCurrencyCode (v.getValue ()));
+    _cbc (m, "AccountingCost", AccountingCostType.class, (d, v) -> d.setAccountingCost (v.getValue ()));
+    _cac (m, "InvoicePeriod", PeriodType.class, (d, v) -> {
+      if (d.getInvoicePeriod () == null)
+        d.setInvoicePeriod (v);
+    });
+    _cac (m, "OrderReference", OrderReferenceType.class, AbstractUBL21DocumentModel::setOrderReference);
+    _cac (m, "ContractDocumentReference", DocumentReferenceType.class, (d, v) -> {
+      if (d.getContractDocumentReference () == null)
+        d.setContractDocumentReference (v);
+    });
+    _cac (m,
+          "AdditionalDocumentReference",
+          DocumentReferenceType.class,
+          AbstractUBL21DocumentModel::addAdditionalDocumentReference);
+    _cac (m,
+          "AccountingSupplierParty",
+          SupplierPartyType.class,
+          AbstractUBL21DocumentModel::setAccountingSupplierParty);
+    _cac (m,
+          "AccountingCustomerParty",
+          CustomerPartyType.class,
+          AbstractUBL21DocumentModel::setAccountingCustomerParty);
+    _cac (m, "PayeeParty", PartyType.class, AbstractUBL21DocumentModel::setPayeeParty);
+    _cac (m, "Delivery", DeliveryType.class, (d, v) -> {
+      if (d.getDelivery () == null)
+        d.setDelivery (v);
+    });
+    _cac (m, "PaymentMeans", PaymentMeansType.class, (d, v) -> {
+      if (d.getPaymentMeans () == null)
+        d.setPaymentMeans (v);
+    });
+    _cac (m, "PaymentTerms", PaymentTermsType.class, AbstractUBL21DocumentModel::addPaymentTerms);
+    _cac (m, "AllowanceCharge", AllowanceChargeType.class, AbstractUBL21DocumentModel::addAllowanceCharge);
+    _cac (m, "TaxTotal", TaxTotalType.class, AbstractUBL21DocumentModel::addTaxTotal);
+    _cac (m, "LegalMonetaryTotal", MonetaryTotalType.class, AbstractUBL21DocumentModel::setLegalMonetaryTotal);
+  }
+
+  static
+  {
+    // Invoice projection
+    final ICommonsMap <QName, ChildMapping <UBL21InvoiceModel, ?>> i = INVOICE_MODEL_CHILDREN;
+    _registerCommonModelChildren (i);
+    _cbc (i, "ProfileID", ProfileIDType.class, (d, v) -> d.setProfileID (v.getValue ()));
+    _cbc (i, "InvoiceTypeCode", InvoiceTypeCodeType.class, (d, v) -> d.setInvoiceTypeCode (v.getValue ()));
+    _cbc (i, "BuyerReference", BuyerReferenceType.class, (d, v) -> d.setBuyerReference (v.getValue ()));
+    _cac (i, "InvoiceLine", InvoiceLineType.class, UBL21InvoiceModel::addInvoiceLine);
+
+    // Credit Note projection
+    final ICommonsMap <QName, ChildMapping <UBL21CreditNoteModel, ?>> c = CREDIT_NOTE_MODEL_CHILDREN;
+    _registerCommonModelChildren (c);
+    _cbc (c,
+          "CreditNoteTypeCode",
+          CreditNoteTypeCodeType.class,
+          (d, v) -> d.setCreditNoteTypeCode (v.getValue ()));
+    _cac (c, "CreditNoteLine", CreditNoteLineType.class, UBL21CreditNoteModel::addCreditNoteLine);
+  }
+
+  private static final QName LEGAL_MONETARY_TOTAL = new QName (CUBL21.XML_SCHEMA_CAC_NAMESPACE_URL, "LegalMonetaryTotal");
+  private static final ICommonsMap <QName, ChildMapping <UBL21DocumentSummary.Builder, ?>> INVOICE_SUMMARY_CHILDREN = new CommonsHashMap <> ();
+  private static final ICommonsMap <QName, ChildMapping <UBL21DocumentSummary.Builder, ?>> CREDIT_NOTE_SUMMARY_CHILDREN = new CommonsHashMap <> ();
+
+  private static void _registerCommonSummaryChildren (@Nonnull final ICommonsMap <QName, ChildMapping <UBL21DocumentSummary.Builder, ?>> m)
+  {
+    _cbc (m, "ID", IDType.class, (d, v) -> d.id (v.getValue ()));
+    _cbc (m, "IssueDate", IssueDateType.class, (d, v) -> d.issueDate (v.getValueLocal ()));
+    _cbc (m,
+          "DocumentCurrencyCode",
+          DocumentCurrencyCodeType.class,
+          (d, v) -> d.documentCurrencyCode (v.getValue ()));
+    _cbc (m, "BuyerReference", BuyerReferenceType.class, (d, v) -> d.buyerReference (v.getValue ()));
+    _cac (m, "AccountingSupplierParty", SupplierPartyType.class, (d, v) -> d.seller (v.getParty ()));
+    _cac (m, "AccountingCustomerParty", CustomerPartyType.class, (d, v) -> d.buyer (v.getParty ()));
+    _cac (m, "LegalMonetaryTotal", MonetaryTotalType.class, UBL21DocumentSummary.Builder::legalMonetaryTotal);
+  }
+
+  static
+  {
+    _registerCommonSummaryChildren (INVOICE_SUMMARY_CHILDREN);
+    _cbc (INVOICE_SUMMARY_CHILDREN, "InvoiceTypeCode", InvoiceTypeCodeType.class, (d, v) -> d.typeCode (v.getValue ()));
+
+    _registerCommonSummaryChildren (CREDIT_NOTE_SUMMARY_CHILDREN);
+    _cbc (CREDIT_NOTE_SUMMARY_CHILDREN,
+          "CreditNoteTypeCode",
+          CreditNoteTypeCodeType.class,
+          (d, v) -> d.typeCode (v.getValue ()));
+  }
+
+  private UBL21StreamReader ()
+  {}
+
+  /**
+   * Create a new unmarshaller for the provided document type, that does not
+   * perform XML Schema validation.
+   *
+   * @param eDocType
+   *        The UBL document type. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled by the unmarshaller. May not be
+   *        <code>null</code>.
+   * @return A new unmarshaller and never <code>null</code>.
+   * @throws JAXBException
+   *         If the unmarshaller cannot be created
+   */
+  @Nonnull
+  static Unmarshaller createUnmarshaller (@Nonnull final EUBL21DocumentType eDocType,
+                                          @Nonnull final ErrorList aErrorList) throws JAXBException
+  {
+    final Unmarshaller ret = JAXBContextCache.getInstance ()
+                                             .getFromCache (JAXBContextCacheKey.createForClass (eDocType.getImplementationClass ()))
+                                             .createUnmarshaller ();
+    ret.setEventHandler (new WrappedCollectingValidationEventHandler (aErrorList));
+    return ret;
+  }
+
+  @Nullable
+  private static <DOCTYPE> DOCTYPE _read (@Nonnull final XMLStreamReader aReader,
+                                          @Nonnull final EUBL21DocumentType eDocType,
+                                          @Nonnull final Supplier <DOCTYPE> aFactory,
+                                          @Nonnull final ICommonsMap <QName, ChildMapping <DOCTYPE, ?>> aChildren,
+                                          @Nullable final QName aStopAfter,
+                                          @Nonnull final ErrorList aErrorList)
+  {
+    return _read (aReader, eDocType, null, null, aFactory, aChildren, aStopAfter, aErrorList);
+  }
+
+  @Nullable
+  private static <DOCTYPE> DOCTYPE _read (@Nonnull final XMLStreamReader aSrcReader,
+                                          @Nonnull final EUBL21DocumentType eDocType,
+                                          @Nullable final Unmarshaller aSharedUnmarshaller,
+                                          @Nullable final Schema aSchema,
+                                          @Nonnull final Supplier <DOCTYPE> aFactory,
+                                          @Nonnull final ICommonsMap <QName, ChildMapping <DOCTYPE, ?>> aChildren,
+                                          @Nullable final QName aStopAfter,
+                                          @Nonnull final ErrorList aErrorList)
+  {
+    XMLStreamReader aReader = aSrcReader;
+    try
+    {
+      if (!StAXHelper.moveToStartElement (aReader))
+      {
+        aErrorList.add (SingleError.builderError ().errorText ("The XML document has no root element").build ());
+        return null;
+      }
+
+      if (!eDocType.getRootElementNamespaceURI ().equals (aReader.getNamespaceURI ()) ||
+          !eDocType.getRootElementLocalName ().equals (aReader.getLocalName ()))
+      {
+        aErrorList.add (SingleError.builderError ()
+                                   .errorLocation (aReader.getLocation ())
+                                   .errorText ("The XML document type " +
+                                               aReader.getName () +
+                                               " is not supported - expected " +
+                                               eDocType.getRootElementLocalName ())
+                                   .build ());
+        return null;
+      }
+
+      if (aSchema != null)
+      {
+        // Validate all events, including the ones of the skipped elements
+        aReader = new ValidatingXMLStreamReader (aReader, aSchema, aErrorList);
+      }
+
+      final Unmarshaller aUnmarshaller;
+      if (aSharedUnmarshaller != null)
+      {
+        aUnmarshaller = aSharedUnmarshaller;
+        aUnmarshaller.setEventHandler (new WrappedCollectingValidationEventHandler (aErrorList));
+      }
+      else
+        aUnmarshaller = createUnmarshaller (eDocType, aErrorList);
+      final DOCTYPE ret = aFactory.get ();
+
+      // Iterate all direct children of the root element
+      int nEventType = aReader.next ();
+      while (nEventType != XMLStreamConstants.END_ELEMENT)
+      {
+        if (nEventType == XMLStreamConstants.START_ELEMENT)
+        {
+          final QName aName = aReader.getName ();
+          final ChildMapping <DOCTYPE, ?> aMapping = aChildren.get (aName);
+          if (aMapping != null)
+          {
+            // Afterwards the reader is positioned after the end element
+            aMapping.unmarshal (aUnmarshaller, aReader, ret);
+            if (aName.equals (aStopAfter))
+            {
+              // Everything needed was read - don't touch the rest
+              break;
+            }
+            nEventType = aReader.getEventType ();
+            continue;
+          }
+
+          // Not needed for the conversion
+          StAXHelper.skipElement (aReader);
+        }
+        nEventType = aReader.next ();
+      }
+      return ret;
+    }
+    catch (final XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorLocation (ex.getLocation ())
+                                 .errorText ("Failed to read the UBL 2.1 " + eDocType.getRootElementLocalName ())
+                                 .linkedException (ex)
+                                 .build ());
+    }
+    catch (final JAXBException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to unmarshal the UBL 2.1 " + eDocType.getRootElementLocalName ())
+                                 .linkedException (ex)
+                                 .build ());
+    }
+    finally
+    {
+      if (aSharedUnmarshaller != null)
+        _resetEventHandler (aSharedUnmarshaller);
+    }
+    return null;
+  }
+
+  private static void _resetEventHandler (@Nonnull final Unmarshaller aUnmarshaller)
+  {
+    try
+    {
+      // Don't keep a reference to the error list
+      aUnmarshaller.setEventHandler (null);
+    }
+    catch (final JAXBException ex)
+    {
+      // Never happens with the reference implementation
+      throw new IllegalStateException (ex);
+    }
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice from the provided stream reader. The reader must be
+   * positioned before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static InvoiceType readInvoice (@Nonnull final XMLStreamReader aReader, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _read (aReader, EUBL21DocumentType.INVOICE, InvoiceType::new, INVOICE_CHILDREN, null, aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice from the provided input stream.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static InvoiceType readInvoice (@Nonnull @WillNotClose final InputStream aIS,
+                                         @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aIS, aErrorList, r -> readInvoice (r, aErrorList));
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note from the provided stream reader. The reader
+   * must be positioned before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static CreditNoteType readCreditNote (@Nonnull final XMLStreamReader aReader,
+                                               @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _read (aReader, EUBL21DocumentType.CREDIT_NOTE, CreditNoteType::new, CREDIT_NOTE_CHILDREN, null, aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note from the provided input stream.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static CreditNoteType readCreditNote (@Nonnull @WillNotClose final InputStream aIS,
+                                               @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aIS, aErrorList, r -> readCreditNote (r, aErrorList));
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice into the lightweight {@link UBL21InvoiceModel}
+   * without creating an {@link InvoiceType}. The reader must be positioned
+   * before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static UBL21InvoiceModel readInvoiceModel (@Nonnull final XMLStreamReader aReader,
+                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _read (aReader,
+                  EUBL21DocumentType.INVOICE,
+                  UBL21InvoiceModel::new,
+                  INVOICE_MODEL_CHILDREN,
+                  null,
+                  aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice into the lightweight {@link UBL21InvoiceModel} with
+   * a shared unmarshaller and an optional XML Schema validation of all events
+   * of the reader, including the ones of the elements that are not mapped. The
+   * reader must be positioned before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aUnmarshaller
+   *        The unmarshaller for the mapped elements. Must not have a schema
+   *        set. May not be <code>null</code>.
+   * @param aSchema
+   *        The schema to validate all events of the reader against. May be
+   *        <code>null</code> to disable validation.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading or validation failed.
+   */
+  @Nullable
+  static UBL21InvoiceModel readInvoiceModel (@Nonnull final XMLStreamReader aReader,
+                                             @Nonnull final Unmarshaller aUnmarshaller,
+                                             @Nullable final Schema aSchema,
+                                             @Nonnull final ErrorList aErrorList)
+  {
+    return _read (aReader,
+                  EUBL21DocumentType.INVOICE,
+                  aUnmarshaller,
+                  aSchema,
+                  UBL21InvoiceModel::new,
+                  INVOICE_MODEL_CHILDREN,
+                  null,
+                  aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice into the lightweight {@link UBL21InvoiceModel}
+   * without creating an {@link InvoiceType}.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static UBL21InvoiceModel readInvoiceModel (@Nonnull @WillNotClose final InputStream aIS,
+                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aIS, aErrorList, r -> readInvoiceModel (r, aErrorList));
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note into the lightweight
+   * {@link UBL21CreditNoteModel} without creating a {@link CreditNoteType}.
+   * The reader must be positioned before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static UBL21CreditNoteModel readCreditNoteModel (@Nonnull final XMLStreamReader aReader,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _read (aReader,
+                  EUBL21DocumentType.CREDIT_NOTE,
+                  UBL21CreditNoteModel::new,
+                  CREDIT_NOTE_MODEL_CHILDREN,
+                  null,
+                  aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note into the lightweight
+   * {@link UBL21CreditNoteModel} with a shared unmarshaller and an optional
+   * XML Schema validation of all events of the reader, including the ones of
+   * the elements that are not mapped. The reader must be positioned before or
+   * on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aUnmarshaller
+   *        The unmarshaller for the mapped elements. Must not have a schema
+   *        set. May not be <code>null</code>.
+   * @param aSchema
+   *        The schema to validate all events of the reader against. May be
+   *        <code>null</code> to disable validation.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading or validation failed.
+   */
+  @Nullable
+  static UBL21CreditNoteModel readCreditNoteModel (@Nonnull final XMLStreamReader aReader,
+                                                   @Nonnull final Unmarshaller aUnmarshaller,
+                                                   @Nullable final Schema aSchema,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    return _read (aReader,
+                  EUBL21DocumentType.CREDIT_NOTE,
+                  aUnmarshaller,
+                  aSchema,
+                  UBL21CreditNoteModel::new,
+                  CREDIT_NOTE_MODEL_CHILDREN,
+                  null,
+                  aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note into the lightweight
+   * {@link UBL21CreditNoteModel} without creating a {@link CreditNoteType}.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static UBL21CreditNoteModel readCreditNoteModel (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aIS, aErrorList, r -> readCreditNoteModel (r, aErrorList));
+  }
+
+  /**
+   * Read only the header of a UBL 2.1 Invoice or Credit Note into a
+   * {@link UBL21DocumentSummary}. The document type is determined from the
+   * root element. Reading stops directly after the cac:LegalMonetaryTotal
+   * element, so that none of the lines is read. The reader must be positioned
+   * before or on the root element.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public static UBL21DocumentSummary readDocumentSummary (@Nonnull final XMLStreamReader aReader,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aReader, aErrorList, r -> {
+      if (!StAXHelper.moveToStartElement (r))
+      {
+        aErrorList.add (SingleError.builderError ().errorText ("The XML document has no root element").build ());
+        return null;
+      }
+
+      final EUBL21DocumentType eDocType;
+      final ICommonsMap <QName, ChildMapping <UBL21DocumentSummary.Builder, ?>> aChildren;
+      if ("Invoice".equals (r.getLocalName ()))
+      {
+        eDocType = EUBL21DocumentType.INVOICE;
+        aChildren = INVOICE_SUMMARY_CHILDREN;
+      }
+      else
+        if ("CreditNote".equals (r.getLocalName ()))
+        {
+          eDocType = EUBL21DocumentType.CREDIT_NOTE;
+          aChildren = CREDIT_NOTE_SUMMARY_CHILDREN;
+        }
+        else
+        {
+          aErrorList.add (SingleError.builderError ()
+                                     .errorLocation (r.getLocation ())
+                                     .errorText ("The XML document type " + r.getName () + " is not supported")
+                                     .build ());
+          return null;
+        }
+
+      final UBL21DocumentSummary.Builder aBuilder = _read (r,
+                                                           eDocType,
+                                                           () -> UBL21DocumentSummary.builder (eDocType),
+                                                           aChildren,
+                                                           LEGAL_MONETARY_TOTAL,
+                                                           aErrorList);
+      return aBuilder == null ? null : aBuilder.build ();
+    });
+  }
+
+  /**
+   * Read only the header of a UBL 2.1 Invoice or Credit Note into a
+   * {@link UBL21DocumentSummary}.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   * @see #readDocumentSummary(XMLStreamReader, ErrorList)
+   */
+  @Nullable
+  public static UBL21DocumentSummary readDocumentSummary (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aIS, aErrorList, r -> readDocumentSummary (r, aErrorList));
+  }
+}
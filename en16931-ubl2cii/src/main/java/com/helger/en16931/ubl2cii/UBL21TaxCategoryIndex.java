@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsLinkedHashMap;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsOrderedMap;
+import com.helger.commons.string.ToStringGenerator;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+
+/**
+ * The distinct tax categories of the VAT breakdown (BG-23) of a single UBL
+ * document. The index is created with a single pass over all tax totals and
+ * tax subtotals and is afterwards used by all conversion steps that need the
+ * tax categories of the document. The tax categories are kept in document
+ * order and are identified by tax scheme, VAT category code and VAT rate.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class UBL21TaxCategoryIndex
+{
+  private final ICommonsOrderedMap <TaxCategoryKey, BigDecimal> m_aTaxAmounts;
+  private final BigDecimal m_aTotalTaxAmount;
+
+  private UBL21TaxCategoryIndex (@Nonnull final ICommonsOrderedMap <TaxCategoryKey, BigDecimal> aTaxAmounts,
+                                 @Nonnull final BigDecimal aTotalTaxAmount)
+  {
+    m_aTaxAmounts = aTaxAmounts;
+    m_aTotalTaxAmount = aTotalTaxAmount;
+  }
+
+  /**
+   * @return The number of distinct tax categories. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getTaxCategoryCount ()
+  {
+    return m_aTaxAmounts.size ();
+  }
+
+  /**
+   * @return All distinct tax categories in the order of their first
+   *         occurrence. Never <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsList <TaxCategoryKey> getAllTaxCategories ()
+  {
+    return new CommonsArrayList <> (m_aTaxAmounts.keySet ());
+  }
+
+  /**
+   * @return The first of {@link #getAllTaxCategories()} or <code>null</code>
+   *         if the document contains no tax subtotal. This is the tax category
+   *         used for the allowances and charges of parent invoice lines that
+   *         have no VAT category of their own.
+   */
+  @Nullable
+  public TaxCategoryKey getFirstTaxCategory ()
+  {
+    return m_aTaxAmounts.getFirstKey ();
+  }
+
+  /**
+   * Get the sum of all tax subtotal amounts of the provided tax category.
+   *
+   * @param aTaxCategory
+   *        The tax category to query. May be <code>null</code>.
+   * @return <code>null</code> if the tax category is not contained.
+   */
+  @Nullable
+  public BigDecimal getTaxAmount (@Nullable final TaxCategoryKey aTaxCategory)
+  {
+    return m_aTaxAmounts.get (aTaxCategory);
+  }
+
+  /**
+   * @return The sum of the tax amounts of all tax totals. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public BigDecimal getTotalTaxAmount ()
+  {
+    return m_aTotalTaxAmount;
+  }
+
+  @Nonnull
+  private static TaxCategoryKey _createKey (@Nonnull final TaxCategoryType aUBLTaxCategory)
+  {
+    return new TaxCategoryKey (aUBLTaxCategory.getTaxScheme () != null ? aUBLTaxCategory.getTaxScheme ()
+                                                                                            .getIDValue ()
+                                                                           : null,
+                                   aUBLTaxCategory.getIDValue (),
+                                   aUBLTaxCategory.getPercentValue ());
+  }
+
+  /**
+   * Create the tax category index of the provided document.
+   *
+   * @param aUBLDoc
+   *        The UBL document to index. May not be <code>null</code>.
+   * @return The new index. Never <code>null</code>.
+   */
+  @Nonnull
+  public static UBL21TaxCategoryIndex createFrom (@Nonnull final IUBL21Document aUBLDoc)
+  {
+    ValueEnforcer.notNull (aUBLDoc, "UBLDoc");
+
+    final ICommonsOrderedMap <TaxCategoryKey, BigDecimal> aTaxAmounts = new CommonsLinkedHashMap <> ();
+    BigDecimal aTotalTaxAmount = BigDecimal.ZERO;
+    for (final TaxTotalType aUBLTaxTotal : aUBLDoc.getTaxTotals ())
+    {
+      if (aUBLTaxTotal.getTaxAmountValue () != null)
+        aTotalTaxAmount = aTotalTaxAmount.add (aUBLTaxTotal.getTaxAmountValue ());
+
+      for (final TaxSubtotalType aUBLTaxSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+        if (aUBLTaxSubtotal.getTaxCategory () != null)
+        {
+          final BigDecimal aTaxAmount = aUBLTaxSubtotal.getTaxAmountValue () != null ? aUBLTaxSubtotal.getTaxAmountValue ()
+                                                                                    : BigDecimal.ZERO;
+          aTaxAmounts.merge (_createKey (aUBLTaxSubtotal.getTaxCategory ()), aTaxAmount, BigDecimal::add);
+        }
+    }
+    return new UBL21TaxCategoryIndex (aTaxAmounts, aTotalTaxAmount);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("TaxAmounts", m_aTaxAmounts)
+                                       .append ("TotalTaxAmount", m_aTotalTaxAmount)
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,752 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertAddress;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertAdditionalReferencedDocument;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertAmount;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertApplicableTradeTax;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertDate;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertID;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertNote;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertParty;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertPersonType;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertSpecifiedTradeAllowanceCharge;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertSpecifiedTradePaymentTerms;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.convertText;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.createApplicableHeaderTradeDelivery;
+import static com.helger.en16931.ubl2cii.AbstractToCIID16BConverter.createSpecifiedTradeSettlementHeaderMonetarySummation;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import com.helger.commons.string.StringHelper;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AddressType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CommodityClassificationType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CreditNoteLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ItemPropertyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.ItemType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.MonetaryTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.OrderLineReferenceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyLegalEntityType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyTaxSchemeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PartyType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentMeansType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PaymentTermsType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PeriodType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.PriceType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.ItemClassificationCodeType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.LineExtensionAmountType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.NoteType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.*;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IndicatorType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.QuantityType;
+
+/**
+ * The declarative business term mapping table from UBL 2.1 to CII D16B. Each
+ * row of a plan maps a single EN 16931 business term (BT) or business group
+ * (BG). All plans are built once when this class is initialized and are
+ * shared by all conversions.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+final class UBL21ToCIID16BMapping
+{
+  /**
+   * The per line type mapping. UBL invoice lines and credit note lines don't
+   * share a common super type, so the different accessors are provided once
+   * and the line level plans are built from them.
+   *
+   * @author Philip Helger
+   * @param <LINE>
+   *        The UBL line type
+   */
+  @Immutable
+  static final class LineMapping <LINE>
+  {
+    private final Function <? super LINE, ItemType> m_aItemGetter;
+    private final FieldMappingPlan <LINE, DocumentLineDocumentType> m_aDocumentPlan;
+    private final FieldMappingPlan <LINE, LineTradeAgreementType> m_aAgreementPlan;
+    private final FieldMappingPlan <LINE, LineTradeDeliveryType> m_aDeliveryPlan;
+    private final FieldMappingPlan <LINE, LineTradeSettlementType> m_aSettlementPlan;
+
+    LineMapping (@Nonnull final Function <? super LINE, String> aIDGetter,
+                 @Nonnull final Function <? super LINE, ? extends List <NoteType>> aNoteGetter,
+                 @Nonnull final Function <? super LINE, ItemType> aItemGetter,
+                 @Nonnull final Function <? super LINE, ? extends List <OrderLineReferenceType>> aOrderLineReferenceGetter,
+                 @Nonnull final Function <? super LINE, PriceType> aPriceGetter,
+                 @Nonnull final Function <? super LINE, ? extends oasis.names.specification.ubl.schema.xsd.unqualifieddatatypes_21.QuantityType> aQuantityGetter,
+                 @Nonnull final Function <? super LINE, ? extends oasis.names.specification.ubl.schema.xsd.unqualifieddatatypes_21.AmountType> aLineExtensionAmountGetter,
+                 @Nonnull final Function <? super LINE, ? extends List <AllowanceChargeType>> aAllowanceChargeGetter,
+                 @Nonnull final Function <? super LINE, String> aAccountingCostGetter)
+    {
+      m_aItemGetter = aItemGetter;
+      m_aDocumentPlan = FieldMappingPlan.<LINE, DocumentLineDocumentType> builder ()
+                                        .always ("BT-126", aIDGetter, DocumentLineDocumentType::setLineID)
+                                        .forEach ("BT-127", aNoteGetter, (d, x) -> d.addIncludedNote (convertNote (x)))
+                                        .build ();
+      m_aAgreementPlan = FieldMappingPlan.<LINE, LineTradeAgreementType> builder ()
+                                         .always ("BT-132",
+                                                  x -> _createOrderLineReference (aOrderLineReferenceGetter.apply (x)),
+                                                  LineTradeAgreementType::setBuyerOrderReferencedDocument)
+                                         .always ("BT-146",
+                                                  x -> _createNetPrice (aPriceGetter.apply (x)),
+                                                  LineTradeAgreementType::setNetPriceProductTradePrice)
+                                         .build ();
+      m_aDeliveryPlan = FieldMappingPlan.<LINE, LineTradeDeliveryType> builder ()
+                                        .always ("BT-129", x -> _createQuantity (aQuantityGetter.apply (x)), LineTradeDeliveryType::setBilledQuantity)
+                                        .build ();
+      m_aSettlementPlan = FieldMappingPlan.<LINE, LineTradeSettlementType> builder ()
+                                          .forEach ("BG-30",
+                                                    x -> aItemGetter.apply (x).getClassifiedTaxCategory (),
+                                                    (d, x) -> d.addApplicableTradeTax (TAX_CATEGORY.apply (x, new TradeTaxType ())))
+                                          .forEach ("BG-27",
+                                                    aAllowanceChargeGetter,
+                                                    (d, x) -> d.addSpecifiedTradeAllowanceCharge (convertSpecifiedTradeAllowanceCharge (x)))
+                                          .ifNotNull ("BT-133", aAccountingCostGetter, (d, x) -> d.addReceivableSpecifiedTradeAccountingAccount (_createAccountingAccount (x)))
+                                          .always ("BT-131",
+                                                   x -> _createLineMonetarySummation (aLineExtensionAmountGetter.apply (x)),
+                                                   LineTradeSettlementType::setSpecifiedTradeSettlementLineMonetarySummation)
+                                          .build ();
+    }
+
+    /**
+     * Convert a single UBL line. Sub lines are not considered.
+     *
+     * @param aUBLLine
+     *        The line to convert. May not be <code>null</code>.
+     * @return The converted line item. Never <code>null</code>.
+     */
+    @Nonnull
+    SupplyChainTradeLineItemType convert (@Nonnull final LINE aUBLLine)
+    {
+      final SupplyChainTradeLineItemType ret = new SupplyChainTradeLineItemType ();
+      ret.setAssociatedDocumentLineDocument (m_aDocumentPlan.apply (aUBLLine, new DocumentLineDocumentType ()));
+      ret.setSpecifiedTradeProduct (TRADE_PRODUCT.apply (m_aItemGetter.apply (aUBLLine), new TradeProductType ()));
+      ret.setSpecifiedLineTradeAgreement (m_aAgreementPlan.apply (aUBLLine, new LineTradeAgreementType ()));
+      ret.setSpecifiedLineTradeDelivery (m_aDeliveryPlan.apply (aUBLLine, new LineTradeDeliveryType ()));
+      ret.setSpecifiedLineTradeSettlement (m_aSettlementPlan.apply (aUBLLine, new LineTradeSettlementType ()));
+      return ret;
+    }
+  }
+
+  /**
+   * The per document type mapping of the document header.
+   *
+   * @author Philip Helger
+   * @param <DOC>
+   *        The UBL document type
+   */
+  @Immutable
+  static final class DocumentMapping <DOC extends IUBL21Document>
+  {
+    private final FieldMappingPlan <DOC, ExchangedDocumentContextType> m_aContextPlan;
+    private final FieldMappingPlan <DOC, ExchangedDocumentType> m_aDocumentPlan;
+    private final FieldMappingPlan <DOC, HeaderTradeAgreementType> m_aAgreementPlan;
+
+    DocumentMapping (@Nonnull final FieldMappingPlan <DOC, ExchangedDocumentContextType> aContextPlan,
+                     @Nonnull final FieldMappingPlan <DOC, ExchangedDocumentType> aDocumentPlan,
+                     @Nonnull final FieldMappingPlan <DOC, HeaderTradeAgreementType> aAgreementPlan)
+    {
+      m_aContextPlan = aContextPlan;
+      m_aDocumentPlan = aDocumentPlan;
+      m_aAgreementPlan = aAgreementPlan;
+    }
+
+    /**
+     * Create the CII document from the UBL document header.
+     *
+     * @param aUBLDoc
+     *        The UBL document. May not be <code>null</code>.
+     * @param aLineItems
+     *        The already converted lines in document order. The list is used
+     *        as is and not copied. May not be <code>null</code>.
+     * @param aSettlement
+     *        The header trade settlement to use. May not be <code>null</code>.
+     * @return The created CII invoice. Never <code>null</code>.
+     */
+    @Nonnull
+    CrossIndustryInvoiceType convert (@Nonnull final DOC aUBLDoc,
+                                      @Nonnull final List <SupplyChainTradeLineItemType> aLineItems,
+                                      @Nonnull final HeaderTradeSettlementType aSettlement)
+    {
+      final CrossIndustryInvoiceType ret = new CrossIndustryInvoiceType ();
+      ret.setExchangedDocumentContext (m_aContextPlan.apply (aUBLDoc, new ExchangedDocumentContextType ()));
+      ret.setExchangedDocument (m_aDocumentPlan.apply (aUBLDoc, new ExchangedDocumentType ()));
+
+      final SupplyChainTradeTransactionType aSCTT = new SupplyChainTradeTransactionType ();
+      aSCTT.setIncludedSupplyChainTradeLineItem (aLineItems);
+      aSCTT.setApplicableHeaderTradeAgreement (m_aAgreementPlan.apply (aUBLDoc, new HeaderTradeAgreementType ()));
+      aSCTT.setApplicableHeaderTradeDelivery (createApplicableHeaderTradeDelivery (aUBLDoc.getDelivery ()));
+      aSCTT.setApplicableHeaderTradeSettlement (aSettlement);
+      ret.setSupplyChainTradeTransaction (aSCTT);
+      return ret;
+    }
+  }
+
+  /** UBL identifier to CII identifier */
+  static final FieldMappingPlan <com.helger.xsds.ccts.cct.schemamodule.IdentifierType, IDType> ID = _createIDPlan ();
+  /** BG-5, BG-8, BG-12, BG-15 */
+  static final FieldMappingPlan <AddressType, TradeAddressType> ADDRESS = _createAddressPlan ();
+  /** Legal registration of a party */
+  static final FieldMappingPlan <PartyLegalEntityType, LegalOrganizationType> LEGAL_ORGANIZATION = _createLegalOrganizationPlan ();
+  /** BG-4, BG-7, BG-10 */
+  static final FieldMappingPlan <PartyType, TradePartyType> PARTY = _createPartyPlan ();
+  /** Tax category of a line (BG-30) or an allowance or charge */
+  static final FieldMappingPlan <TaxCategoryType, TradeTaxType> TAX_CATEGORY = _createTaxCategoryPlan ();
+  /** BG-23 */
+  static final FieldMappingPlan <TaxSubtotalType, TradeTaxType> VAT_BREAKDOWN = _createVATBreakdownPlan ();
+  /** BG-20, BG-21, BG-27, BG-28 */
+  static final FieldMappingPlan <AllowanceChargeType, TradeAllowanceChargeType> ALLOWANCE_CHARGE = _createAllowanceChargePlan ();
+  /** BG-22 without BT-110, which requires the currency */
+  static final FieldMappingPlan <MonetaryTotalType, TradeSettlementHeaderMonetarySummationType> MONETARY_SUMMATION = _createMonetarySummationPlan ();
+  /** BG-31 */
+  static final FieldMappingPlan <ItemType, TradeProductType> TRADE_PRODUCT = _createTradeProductPlan ();
+  /** BG-16 */
+  static final FieldMappingPlan <PaymentMeansType, TradeSettlementPaymentMeansType> PAYMENT_MEANS = _createPaymentMeansPlan ();
+  /** BG-14 */
+  static final FieldMappingPlan <PeriodType, SpecifiedPeriodType> INVOICING_PERIOD = _createInvoicingPeriodPlan ();
+  /** Header trade settlement of invoices and credit notes */
+  static final FieldMappingPlan <IUBL21Document, HeaderTradeSettlementType> HEADER_TRADE_SETTLEMENT = _createHeaderTradeSettlementPlan ();
+
+  /** Invoice lines */
+  static final LineMapping <InvoiceLineType> INVOICE_LINE = new LineMapping <> (InvoiceLineType::getIDValue,
+                                                                                InvoiceLineType::getNote,
+                                                                                InvoiceLineType::getItem,
+                                                                                InvoiceLineType::getOrderLineReference,
+                                                                                InvoiceLineType::getPrice,
+                                                                                InvoiceLineType::getInvoicedQuantity,
+                                                                                InvoiceLineType::getLineExtensionAmount,
+                                                                                InvoiceLineType::getAllowanceCharge,
+                                                                                InvoiceLineType::getAccountingCostValue);
+  /**
+   * Invoice lines that have sub invoice lines. The amounts are part of the sub
+   * lines, so the price and the line total are zero, and the allowances and
+   * charges are added on the document level. The zero values are created for
+   * each conversion so that the UBL line is never modified.
+   */
+  static final LineMapping <InvoiceLineType> PARENT_INVOICE_LINE = new LineMapping <> (InvoiceLineType::getIDValue,
+                                                                                       InvoiceLineType::getNote,
+                                                                                       InvoiceLineType::getItem,
+                                                                                       InvoiceLineType::getOrderLineReference,
+                                                                                       x -> _createZeroPrice (),
+                                                                                       InvoiceLineType::getInvoicedQuantity,
+                                                                                       x -> new LineExtensionAmountType (BigDecimal.ZERO),
+                                                                                       x -> Collections.emptyList (),
+                                                                                       InvoiceLineType::getAccountingCostValue);
+  /**
+   * Credit note lines. Line level allowances and charges are currently not
+   * mapped for credit notes.
+   */
+  static final LineMapping <CreditNoteLineType> CREDIT_NOTE_LINE = new LineMapping <> (CreditNoteLineType::getIDValue,
+                                                                                       CreditNoteLineType::getNote,
+                                                                                       CreditNoteLineType::getItem,
+                                                                                       CreditNoteLineType::getOrderLineReference,
+                                                                                       CreditNoteLineType::getPrice,
+                                                                                       CreditNoteLineType::getCreditedQuantity,
+                                                                                       CreditNoteLineType::getLineExtensionAmount,
+                                                                                       x -> Collections.emptyList (),
+                                                                                       CreditNoteLineType::getAccountingCostValue);
+
+  /** Invoice header */
+  static final DocumentMapping <IUBL21Invoice> INVOICE = _createInvoiceMapping ();
+  /** Credit note header */
+  static final DocumentMapping <IUBL21CreditNote> CREDIT_NOTE = _createCreditNoteMapping ();
+
+  private UBL21ToCIID16BMapping ()
+  {}
+
+  @Nonnull
+  private static FieldMappingPlan <com.helger.xsds.ccts.cct.schemamodule.IdentifierType, IDType> _createIDPlan ()
+  {
+    return FieldMappingPlan.<com.helger.xsds.ccts.cct.schemamodule.IdentifierType, IDType> builder ()
+                           .ifNotNull ("scheme identifier", com.helger.xsds.ccts.cct.schemamodule.IdentifierType::getSchemeID, IDType::setSchemeID)
+                           .ifNotNull ("identifier", com.helger.xsds.ccts.cct.schemamodule.IdentifierType::getValue, IDType::setValue)
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <AddressType, TradeAddressType> _createAddressPlan ()
+  {
+    return FieldMappingPlan.<AddressType, TradeAddressType> builder ()
+                           .ifNotEmpty ("BT-35", AddressType::getStreetNameValue, TradeAddressType::setLineOne)
+                           .ifNotEmpty ("BT-36", AddressType::getAdditionalStreetNameValue, TradeAddressType::setLineTwo)
+                           .ifNotEmpty ("BT-162",
+                                        x -> x.hasAddressLineEntries () ? x.getAddressLineAtIndex (0).getLineValue () : null,
+                                        TradeAddressType::setLineThree)
+                           .ifNotEmpty ("BT-37", AddressType::getCityNameValue, TradeAddressType::setCityName)
+                           .ifNotEmpty ("BT-38", AddressType::getPostalZoneValue, TradeAddressType::setPostcodeCode)
+                           .ifNotNull ("BT-39",
+                                       x -> x.getCountrySubentity () == null ? null : convertText (x.getCountrySubentity ().getValue ()),
+                                       TradeAddressType::addCountrySubDivisionName)
+                           .ifNotEmpty ("BT-40",
+                                        x -> x.getCountry () == null ? null : x.getCountry ().getIdentificationCodeValue (),
+                                        TradeAddressType::setCountryID)
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <PartyLegalEntityType, LegalOrganizationType> _createLegalOrganizationPlan ()
+  {
+    return FieldMappingPlan.<PartyLegalEntityType, LegalOrganizationType> builder ()
+                           .ifNotEmpty ("BT-27", PartyLegalEntityType::getRegistrationNameValue, LegalOrganizationType::setTradingBusinessName)
+                           .ifNotNull ("BT-30", x -> convertID (x.getCompanyID ()), LegalOrganizationType::setID)
+                           .ifNotNull ("registration address", x -> convertAddress (x.getRegistrationAddress ()), LegalOrganizationType::setPostalTradeAddress)
+                           .build ();
+  }
+
+  private static void _setLegalOrganization (@Nonnull final TradePartyType aTPT, @Nonnull final PartyLegalEntityType aUBLLegalEntity)
+  {
+    aTPT.setSpecifiedLegalOrganization (LEGAL_ORGANIZATION.apply (aUBLLegalEntity, new LegalOrganizationType ()));
+
+    // Fill mandatory field
+    if (StringHelper.hasNoText (aTPT.getNameValue ()) && StringHelper.hasText (aUBLLegalEntity.getRegistrationNameValue ()))
+      aTPT.setName (aUBLLegalEntity.getRegistrationNameValue ());
+  }
+
+  @Nullable
+  private static String _getAsVAIfNecessary (@Nullable final String s)
+  {
+    if ("VAT".equals (s))
+      return "VA";
+    return s;
+  }
+
+  private static void _addTaxRegistration (@Nonnull final TradePartyType aTPT, @Nonnull final PartyTaxSchemeType aUBLPartyTaxScheme)
+  {
+    if (aUBLPartyTaxScheme.getCompanyIDValue () != null)
+    {
+      final TaxRegistrationType aTaxReg = new TaxRegistrationType ();
+      final IDType aID = convertID (aUBLPartyTaxScheme.getCompanyID ());
+      if (aUBLPartyTaxScheme.getTaxScheme () != null)
+      {
+        // MUST use "VA" scheme
+        final String sSchemeID = _getAsVAIfNecessary (aUBLPartyTaxScheme.getTaxScheme ().getIDValue ());
+        if (StringHelper.hasText (sSchemeID))
+          aID.setSchemeID (sSchemeID);
+      }
+      aTaxReg.setID (aID);
+      aTPT.addSpecifiedTaxRegistration (aTaxReg);
+    }
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <PartyType, TradePartyType> _createPartyPlan ()
+  {
+    return FieldMappingPlan.<PartyType, TradePartyType> builder ()
+                           .forEach ("BT-29", PartyType::getPartyIdentification, (d, x) -> {
+                             final IDType aID = convertID (x.getID ());
+                             if (aID != null)
+                               d.addID (aID);
+                           })
+                           .ifNotEmpty ("BT-28",
+                                        x -> x.hasPartyNameEntries () ? x.getPartyNameAtIndex (0).getNameValue () : null,
+                                        TradePartyType::setName)
+                           .ifNotNull ("BT-27, BT-30",
+                                       x -> x.hasPartyLegalEntityEntries () ? x.getPartyLegalEntityAtIndex (0) : null,
+                                       UBL21ToCIID16BMapping::_setLegalOrganization)
+                           .ifNotNull ("BG-5", x -> convertAddress (x.getPostalAddress ()), TradePartyType::setPostalTradeAddress)
+                           .ifNotNull ("BT-34", PartyType::getEndpointID, (d, x) -> {
+                             final UniversalCommunicationType aUCT = new UniversalCommunicationType ();
+                             aUCT.setURIID (convertID (x));
+                             d.addURIUniversalCommunication (aUCT);
+                           })
+                           .ifNotNull ("BT-31",
+                                       x -> x.hasPartyTaxSchemeEntries () ? x.getPartyTaxSchemeAtIndex (0) : null,
+                                       UBL21ToCIID16BMapping::_addTaxRegistration)
+                           .forEach ("BG-6", PartyType::getPerson, (d, x) -> d.addDefinedTradeContact (convertPersonType (x)))
+                           .ifNotNull ("BG-6", PartyType::getContact, (d, x) -> d.addDefinedTradeContact (convertPersonType (x)))
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <TaxCategoryType, TradeTaxType> _createTaxCategoryPlan ()
+  {
+    return FieldMappingPlan.<TaxCategoryType, TradeTaxType> builder ()
+                           .ifNotEmpty ("tax scheme",
+                                        x -> x.getTaxScheme () == null ? null : x.getTaxScheme ().getIDValue (),
+                                        TradeTaxType::setTypeCode)
+                           .ifNotEmpty ("BT-151", TaxCategoryType::getIDValue, TradeTaxType::setCategoryCode)
+                           .ifNotNull ("BT-152", TaxCategoryType::getPercentValue, TradeTaxType::setRateApplicablePercent)
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <TaxSubtotalType, TradeTaxType> _createVATBreakdownPlan ()
+  {
+    return FieldMappingPlan.<TaxSubtotalType, TradeTaxType> builder ()
+                           .ifNotEmpty ("tax scheme",
+                                        x -> x.getTaxCategory ().getTaxScheme () == null ? null
+                                                                                        : x.getTaxCategory ().getTaxScheme ().getIDValue (),
+                                        TradeTaxType::setTypeCode)
+                           .ifNotEmpty ("BT-118", x -> x.getTaxCategory ().getIDValue (), TradeTaxType::setCategoryCode)
+                           .ifNotNull ("BT-117", x -> convertAmount (x.getTaxAmount ()), TradeTaxType::addCalculatedAmount)
+                           .ifNotNull ("BT-116", x -> convertAmount (x.getTaxableAmount ()), TradeTaxType::addBasisAmount)
+                           .ifNotNull ("BT-119", x -> x.getTaxCategory ().getPercentValue (), TradeTaxType::setRateApplicablePercent)
+                           .ifNotEmpty ("BT-120",
+                                        x -> x.getTaxCategory ().hasTaxExemptionReasonEntries () ? x.getTaxCategory ()
+                                                                                                      .getTaxExemptionReasonAtIndex (0)
+                                                                                                      .getValue ()
+                                                                                                   : null,
+                                        TradeTaxType::setExemptionReason)
+                           .ifNotEmpty ("BT-121", x -> x.getTaxCategory ().getTaxExemptionReasonCodeValue (), TradeTaxType::setExemptionReasonCode)
+                           .build ();
+  }
+
+  @Nonnull
+  private static IndicatorType _createIndicator (final boolean bValue)
+  {
+    final IndicatorType ret = new IndicatorType ();
+    ret.setIndicator (Boolean.valueOf (bValue));
+    return ret;
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <AllowanceChargeType, TradeAllowanceChargeType> _createAllowanceChargePlan ()
+  {
+    return FieldMappingPlan.<AllowanceChargeType, TradeAllowanceChargeType> builder ()
+                           .always ("charge indicator",
+                                    x -> _createIndicator (x.getChargeIndicator ().isValue ()),
+                                    TradeAllowanceChargeType::setChargeIndicator)
+                           .always ("BT-92", x -> convertAmount (x.getAmount ()), TradeAllowanceChargeType::addActualAmount)
+                           .ifNotEmpty ("BT-98", AllowanceChargeType::getAllowanceChargeReasonCodeValue, TradeAllowanceChargeType::setReasonCode)
+                           .ifNotNull ("BT-97",
+                                       x -> x.hasAllowanceChargeReasonEntries () ? x.getAllowanceChargeReasonAtIndex (0) : null,
+                                       (d, x) -> d.setReason (x.getValue ()))
+                           .ifNotNull ("BT-94", AllowanceChargeType::getMultiplierFactorNumericValue, TradeAllowanceChargeType::setCalculationPercent)
+                           .ifNotNull ("BT-93", AllowanceChargeType::getBaseAmountValue, TradeAllowanceChargeType::setBasisAmount)
+                           .ifNotNull ("BT-95",
+                                       x -> x.hasTaxCategoryEntries () ? x.getTaxCategoryAtIndex (0) : null,
+                                       (d, x) -> d.addCategoryTradeTax (TAX_CATEGORY.apply (x, new TradeTaxType ())))
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <MonetaryTotalType, TradeSettlementHeaderMonetarySummationType> _createMonetarySummationPlan ()
+  {
+    return FieldMappingPlan.<MonetaryTotalType, TradeSettlementHeaderMonetarySummationType> builder ()
+                           .ifNotNull ("BT-106",
+                                       x -> convertAmount (x.getLineExtensionAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addLineTotalAmount)
+                           .ifNotNull ("BT-108",
+                                       x -> convertAmount (x.getChargeTotalAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addChargeTotalAmount)
+                           .ifNotNull ("BT-107",
+                                       x -> convertAmount (x.getAllowanceTotalAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addAllowanceTotalAmount)
+                           .ifNotNull ("BT-109",
+                                       x -> convertAmount (x.getTaxExclusiveAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addTaxBasisTotalAmount)
+                           .ifNotNull ("BT-114",
+                                       x -> convertAmount (x.getPayableRoundingAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addRoundingAmount)
+                           .ifNotNull ("BT-112",
+                                       x -> convertAmount (x.getTaxInclusiveAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addGrandTotalAmount)
+                           .ifNotNull ("BT-113",
+                                       x -> convertAmount (x.getPrepaidAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addTotalPrepaidAmount)
+                           .ifNotNull ("BT-115",
+                                       x -> convertAmount (x.getPayableAmount ()),
+                                       TradeSettlementHeaderMonetarySummationType::addDuePayableAmount)
+                           .build ();
+  }
+
+  @Nonnull
+  private static ProductCharacteristicType _createProductCharacteristic (@Nonnull final ItemPropertyType aUBLItemProperty)
+  {
+    final ProductCharacteristicType ret = new ProductCharacteristicType ();
+    // BT-160
+    final var aName = convertText (aUBLItemProperty.getNameValue ());
+    if (aName != null)
+      ret.addDescription (aName);
+    // BT-161
+    final var aValue = convertText (aUBLItemProperty.getValueValue ());
+    if (aValue != null)
+      ret.addValue (aValue);
+    return ret;
+  }
+
+  @Nonnull
+  private static ProductClassificationType _createProductClassification (@Nonnull final CommodityClassificationType aUBLCC)
+  {
+    final ItemClassificationCodeType aUBLCode = aUBLCC.getItemClassificationCode ();
+    final CodeType aCT = new CodeType ();
+    if (StringHelper.hasText (aUBLCode.getListID ()))
+      aCT.setListID (aUBLCode.getListID ());
+    if (StringHelper.hasText (aUBLCode.getValue ()))
+      aCT.setValue (aUBLCode.getValue ());
+
+    final ProductClassificationType ret = new ProductClassificationType ();
+    ret.setClassCode (aCT);
+    return ret;
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <ItemType, TradeProductType> _createTradeProductPlan ()
+  {
+    return FieldMappingPlan.<ItemType, TradeProductType> builder ()
+                           .ifNotNull ("BT-157",
+                                       x -> x.getStandardItemIdentification () == null ? null
+                                                                                      : convertID (x.getStandardItemIdentification ().getID ()),
+                                       TradeProductType::setGlobalID)
+                           .ifNotNull ("BT-155", ItemType::getSellersItemIdentification, (d, x) -> d.setSellerAssignedID (x.getIDValue ()))
+                           .always ("BT-153", x -> convertText (x.getNameValue ()), TradeProductType::addName)
+                           .ifNotNull ("BT-154",
+                                       x -> x.hasDescriptionEntries () ? x.getDescriptionAtIndex (0) : null,
+                                       (d, x) -> d.setDescription (x.getValue ()))
+                           .forEach ("BG-32",
+                                     ItemType::getAdditionalItemProperty,
+                                     (d, x) -> d.addApplicableProductCharacteristic (_createProductCharacteristic (x)))
+                           .forEach ("BT-158",
+                                     ItemType::getCommodityClassification,
+                                     (d, x) -> d.addDesignatedProductClassification (_createProductClassification (x)))
+                           .build ();
+  }
+
+  @Nonnull
+  private static ReferencedDocumentType _createOrderLineReference (@Nonnull final List <OrderLineReferenceType> aUBLOrderLineReferences)
+  {
+    final ReferencedDocumentType ret = new ReferencedDocumentType ();
+    if (!aUBLOrderLineReferences.isEmpty ())
+      ret.setLineID (aUBLOrderLineReferences.get (0).getLineIDValue ());
+    return ret;
+  }
+
+  @Nonnull
+  private static TradePriceType _createNetPrice (@Nullable final PriceType aUBLPrice)
+  {
+    final TradePriceType ret = new TradePriceType ();
+    if (aUBLPrice != null && aUBLPrice.getPriceAmount () != null)
+      ret.addChargeAmount (convertAmount (aUBLPrice.getPriceAmount ()));
+    return ret;
+  }
+
+  @Nonnull
+  private static PriceType _createZeroPrice ()
+  {
+    final PriceType ret = new PriceType ();
+    ret.setPriceAmount (BigDecimal.ZERO);
+    return ret;
+  }
+
+  @Nonnull
+  private static QuantityType _createQuantity (@Nonnull final oasis.names.specification.ubl.schema.xsd.unqualifieddatatypes_21.QuantityType aUBLQuantity)
+  {
+    final QuantityType ret = new QuantityType ();
+    ret.setUnitCode (aUBLQuantity.getUnitCode ());
+    ret.setValue (aUBLQuantity.getValue ());
+    return ret;
+  }
+
+  @Nonnull
+  private static TradeSettlementLineMonetarySummationType _createLineMonetarySummation (@Nullable final oasis.names.specification.ubl.schema.xsd.unqualifieddatatypes_21.AmountType aUBLLineExtensionAmount)
+  {
+    final TradeSettlementLineMonetarySummationType ret = new TradeSettlementLineMonetarySummationType ();
+    final var aAmount = convertAmount (aUBLLineExtensionAmount);
+    if (aAmount != null)
+      ret.addLineTotalAmount (aAmount);
+    return ret;
+  }
+
+  @Nonnull
+  private static TradeAccountingAccountType _createAccountingAccount (@Nonnull final String sAccountingCost)
+  {
+    final TradeAccountingAccountType ret = new TradeAccountingAccountType ();
+    ret.setID (sAccountingCost);
+    return ret;
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <PaymentMeansType, TradeSettlementPaymentMeansType> _createPaymentMeansPlan ()
+  {
+    return FieldMappingPlan.<PaymentMeansType, TradeSettlementPaymentMeansType> builder ()
+                           .ifNotEmpty ("BT-81", PaymentMeansType::getPaymentMeansCodeValue, TradeSettlementPaymentMeansType::setTypeCode)
+                           .always ("BT-84", x -> {
+                             final CreditorFinancialAccountType ret = new CreditorFinancialAccountType ();
+                             if (x.getPayeeFinancialAccount () != null && StringHelper.hasText (x.getPayeeFinancialAccount ().getIDValue ()))
+                               ret.setIBANID (x.getPayeeFinancialAccount ().getIDValue ());
+                             return ret;
+                           }, TradeSettlementPaymentMeansType::setPayeePartyCreditorFinancialAccount)
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <PeriodType, SpecifiedPeriodType> _createInvoicingPeriodPlan ()
+  {
+    return FieldMappingPlan.<PeriodType, SpecifiedPeriodType> builder ()
+                           .ifNotNull ("BT-73", PeriodType::getStartDate, (d, x) -> d.setStartDateTime (convertDate (x.getValueLocal ())))
+                           .ifNotNull ("BT-74", PeriodType::getEndDate, (d, x) -> d.setEndDateTime (convertDate (x.getValueLocal ())))
+                           .build ();
+  }
+
+  private static void _addVATBreakdowns (@Nonnull final HeaderTradeSettlementType aHTS, @Nonnull final TaxTotalType aUBLTaxTotal)
+  {
+    for (final TaxSubtotalType aUBLTaxSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+      aHTS.addApplicableTradeTax (convertApplicableTradeTax (aUBLTaxSubtotal));
+  }
+
+  private static void _addPaymentTerms (@Nonnull final HeaderTradeSettlementType aHTS, @Nonnull final IUBL21Document aUBLDoc)
+  {
+    // The due date is taken from the payment means
+    for (final PaymentTermsType aUBLPaymentTerms : aUBLDoc.getPaymentTerms ())
+      aHTS.addSpecifiedTradePaymentTerms (convertSpecifiedTradePaymentTerms (aUBLPaymentTerms, aUBLDoc.getPaymentMeans ()));
+  }
+
+  @Nonnull
+  private static TradeSettlementHeaderMonetarySummationType _createMonetarySummation (@Nonnull final IUBL21Document aUBLDoc)
+  {
+    final TaxTotalType aUBLTaxTotal = aUBLDoc.getTaxTotals ().isEmpty () ? null : aUBLDoc.getTaxTotals ().get (0);
+    return createSpecifiedTradeSettlementHeaderMonetarySummation (aUBLDoc.getLegalMonetaryTotal (), aUBLTaxTotal);
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <IUBL21Document, HeaderTradeSettlementType> _createHeaderTradeSettlementPlan ()
+  {
+    return FieldMappingPlan.<IUBL21Document, HeaderTradeSettlementType> builder ()
+                           .ifNotNull ("BT-83",
+                                       x -> x.getPaymentMeans () != null && x.getPaymentMeans ().hasPaymentIDEntries () ? x.getPaymentMeans ()
+                                                                                                                          .getPaymentIDAtIndex (0)
+                                                                                                                       : null,
+                                       (d, x) -> d.addPaymentReference (convertText (x.getValue ())))
+                           .ifNotEmpty ("BT-5", IUBL21Document::getDocumentCurrencyCode, HeaderTradeSettlementType::setInvoiceCurrencyCode)
+                           .ifNotNull ("BG-10", x -> convertParty (x.getPayeeParty ()), HeaderTradeSettlementType::setPayeeTradeParty)
+                           .ifNotNull ("BG-16",
+                                       IUBL21Document::getPaymentMeans,
+                                       (d, x) -> d.addSpecifiedTradeSettlementPaymentMeans (PAYMENT_MEANS.apply (x, new TradeSettlementPaymentMeansType ())))
+                           .forEach ("BG-23", IUBL21Document::getTaxTotals, UBL21ToCIID16BMapping::_addVATBreakdowns)
+                           .ifNotNull ("BG-14",
+                                       IUBL21Document::getInvoicePeriod,
+                                       (d, x) -> d.setBillingSpecifiedPeriod (INVOICING_PERIOD.apply (x, new SpecifiedPeriodType ())))
+                           .forEach ("BG-20",
+                                     IUBL21Document::getAllowanceCharges,
+                                     (d, x) -> d.addSpecifiedTradeAllowanceCharge (convertSpecifiedTradeAllowanceCharge (x)))
+                           .always ("BT-20", Function.identity (), UBL21ToCIID16BMapping::_addPaymentTerms)
+                           .always ("BG-22",
+                                    UBL21ToCIID16BMapping::_createMonetarySummation,
+                                    HeaderTradeSettlementType::setSpecifiedTradeSettlementHeaderMonetarySummation)
+                           .ifNotNull ("BT-19",
+                                       IUBL21Document::getAccountingCost,
+                                       (d, x) -> d.addReceivableSpecifiedTradeAccountingAccount (_createAccountingAccount (x)))
+                           .build ();
+  }
+
+  @Nonnull
+  private static DocumentContextParameterType _createContextParameter (@Nonnull final String sID)
+  {
+    final DocumentContextParameterType ret = new DocumentContextParameterType ();
+    ret.setID (sID);
+    return ret;
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <IUBL21Document, ExchangedDocumentType> _createExchangedDocumentPlan ()
+  {
+    return FieldMappingPlan.<IUBL21Document, ExchangedDocumentType> builder ()
+                           .ifNotEmpty ("BT-1", IUBL21Document::getID, ExchangedDocumentType::setID)
+                           .ifNotNull ("BT-2", IUBL21Document::getIssueDate, (d, x) -> d.setIssueDateTime (convertDate (x)))
+                           .forEach ("BG-1", IUBL21Document::getNotes, (d, x) -> d.addIncludedNote (convertNote (x)))
+                           .build ();
+  }
+
+  @Nonnull
+  private static FieldMappingPlan <IUBL21Document, HeaderTradeAgreementType> _createHeaderTradeAgreementPlan ()
+  {
+    return FieldMappingPlan.<IUBL21Document, HeaderTradeAgreementType> builder ()
+                           .ifNotNull ("BG-4",
+                                       x -> x.getAccountingSupplierParty () == null ? null : convertParty (x.getAccountingSupplierParty ().getParty ()),
+                                       HeaderTradeAgreementType::setSellerTradeParty)
+                           .ifNotNull ("BG-7",
+                                       x -> x.getAccountingCustomerParty () == null ? null : convertParty (x.getAccountingCustomerParty ().getParty ()),
+                                       HeaderTradeAgreementType::setBuyerTradeParty)
+                           .ifNotNull ("BT-13",
+                                       x -> x.getOrderReference () != null && x.getOrderReference ().getID () != null ? x.getOrderReference () : null,
+                                       (d, x) -> {
+                                         final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
+                                         aRDT.setIssuerAssignedID (x.getIDValue ());
+                                         d.setBuyerOrderReferencedDocument (aRDT);
+                                       })
+                           .ifNotNull ("BT-12", IUBL21Document::getContractDocumentReference, (d, x) -> {
+                             final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
+                             aRDT.setIssuerAssignedID (x.getIDValue ());
+                             d.setContractReferencedDocument (aRDT);
+                           })
+                           .forEach ("BG-24",
+                                     IUBL21Document::getAdditionalDocumentReferences,
+                                     (d, x) -> d.addAdditionalReferencedDocument (convertAdditionalReferencedDocument (x)))
+                           .build ();
+  }
+
+  @Nonnull
+  private static DocumentMapping <IUBL21Invoice> _createInvoiceMapping ()
+  {
+    final var aContextPlan = FieldMappingPlan.<IUBL21Invoice, ExchangedDocumentContextType> builder ()
+                                             .ifNotNull ("BT-24",
+                                                         IUBL21Invoice::getCustomizationID,
+                                                         (d, x) -> d.addGuidelineSpecifiedDocumentContextParameter (_createContextParameter (x)))
+                                             .ifNotNull ("BT-23",
+                                                         IUBL21Invoice::getProfileID,
+                                                         (d, x) -> d.addBusinessProcessSpecifiedDocumentContextParameter (_createContextParameter (x)))
+                                             .build ();
+    final var aDocumentPlan = FieldMappingPlan.<IUBL21Invoice, ExchangedDocumentType> builder ()
+                                              .addAll (_createExchangedDocumentPlan ())
+                                              .ifNotEmpty ("BT-3", IUBL21Invoice::getInvoiceTypeCode, ExchangedDocumentType::setTypeCode)
+                                              .build ();
+    // BuyerReference (in B2G context used for PEPPOL routing, but it is
+    // generally mandatory)
+    final var aAgreementPlan = FieldMappingPlan.<IUBL21Invoice, HeaderTradeAgreementType> builder ()
+                                               .always ("BT-10", IUBL21Invoice::getBuyerReference, HeaderTradeAgreementType::setBuyerReference)
+                                               .addAll (_createHeaderTradeAgreementPlan ())
+                                               .build ();
+    return new DocumentMapping <> (aContextPlan, aDocumentPlan, aAgreementPlan);
+  }
+
+  @Nonnull
+  private static DocumentMapping <IUBL21CreditNote> _createCreditNoteMapping ()
+  {
+    final var aContextPlan = FieldMappingPlan.<IUBL21CreditNote, ExchangedDocumentContextType> builder ()
+                                             .ifNotNull ("BT-24",
+                                                         IUBL21CreditNote::getCustomizationID,
+                                                         (d, x) -> d.addGuidelineSpecifiedDocumentContextParameter (_createContextParameter (x)))
+                                             .build ();
+    final var aDocumentPlan = FieldMappingPlan.<IUBL21CreditNote, ExchangedDocumentType> builder ()
+                                              .addAll (_createExchangedDocumentPlan ())
+                                              .ifNotEmpty ("BT-3", IUBL21CreditNote::getCreditNoteTypeCode, ExchangedDocumentType::setTypeCode)
+                                              .build ();
+    final var aAgreementPlan = FieldMappingPlan.<IUBL21CreditNote, HeaderTradeAgreementType> builder ()
+                                               .addAll (_createHeaderTradeAgreementPlan ())
+                                               .build ();
+    return new DocumentMapping <> (aContextPlan, aDocumentPlan, aAgreementPlan);
+  }
+}
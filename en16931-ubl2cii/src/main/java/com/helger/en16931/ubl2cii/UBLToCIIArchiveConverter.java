@@ -0,0 +1,464 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FilenameHelper;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.NonClosingInputStream;
+import com.helger.commons.io.stream.NonClosingOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.string.ToStringGenerator;
+
+/**
+ * Batch converter for ZIP archives containing UBL 2.1 documents. The entries
+ * are read one after the other from the input archive and converted in
+ * parallel on a {@link ForkJoinPool}. The CII documents are written into the
+ * output archive in the order of the input entries, independent of the order
+ * in which the conversions finish. Only a limited number of entries is pending
+ * at the same time, so that the memory consumption does not depend on the
+ * size of the archive. No temporary files are created.<br>
+ * Directory entries are skipped. Entries that cannot be converted are not
+ * written to the output archive but reported in the returned
+ * {@link EntryResult} list.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class UBLToCIIArchiveConverter
+{
+  /** The default suffix added to the base name of each output entry */
+  public static final String DEFAULT_OUTPUT_SUFFIX = "-cii";
+
+  private final UBLToCIIConversionEngine m_aEngine;
+  private final ForkJoinPool m_aPool;
+  private final int m_nMaxPendingEntries;
+  private final String m_sOutputSuffix;
+
+  /**
+   * Constructor using the common {@link ForkJoinPool}, two pending entries per
+   * thread and the default output suffix.
+   *
+   * @param aEngine
+   *        The conversion engine to use. May not be <code>null</code>.
+   */
+  public UBLToCIIArchiveConverter (@Nonnull final UBLToCIIConversionEngine aEngine)
+  {
+    this (aEngine, DEFAULT_OUTPUT_SUFFIX);
+  }
+
+  /**
+   * Constructor using the common {@link ForkJoinPool} and two pending entries
+   * per thread.
+   *
+   * @param aEngine
+   *        The conversion engine to use. May not be <code>null</code>.
+   * @param sOutputSuffix
+   *        The suffix to be added to the base name of each output entry. May
+   *        not be <code>null</code> but maybe empty.
+   */
+  public UBLToCIIArchiveConverter (@Nonnull final UBLToCIIConversionEngine aEngine,
+                                   @Nonnull final String sOutputSuffix)
+  {
+    this (aEngine, ForkJoinPool.commonPool (), 2 * ForkJoinPool.commonPool ().getParallelism (), sOutputSuffix);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param aEngine
+   *        The conversion engine to use. May not be <code>null</code>.
+   * @param aPool
+   *        The pool to run the entry conversions on. May not be
+   *        <code>null</code>.
+   * @param nMaxPendingEntries
+   *        The maximum number of entries that were read but not yet written.
+   *        This limits the memory consumption. Must be &gt; 0.
+   * @param sOutputSuffix
+   *        The suffix to be added to the base name of each output entry. May
+   *        not be <code>null</code> but maybe empty.
+   */
+  public UBLToCIIArchiveConverter (@Nonnull final UBLToCIIConversionEngine aEngine,
+                                   @Nonnull final ForkJoinPool aPool,
+                                   @Nonnegative final int nMaxPendingEntries,
+                                   @Nonnull final String sOutputSuffix)
+  {
+    ValueEnforcer.notNull (aEngine, "Engine");
+    ValueEnforcer.notNull (aPool, "Pool");
+    ValueEnforcer.isGT0 (nMaxPendingEntries, "MaxPendingEntries");
+    ValueEnforcer.notNull (sOutputSuffix, "OutputSuffix");
+    m_aEngine = aEngine;
+    m_aPool = aPool;
+    m_nMaxPendingEntries = nMaxPendingEntries;
+    m_sOutputSuffix = sOutputSuffix;
+  }
+
+  /**
+   * @return The conversion engine used. Never <code>null</code>.
+   */
+  @Nonnull
+  public UBLToCIIConversionEngine getEngine ()
+  {
+    return m_aEngine;
+  }
+
+  /**
+   * @return The pool the entry conversions are run on. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public ForkJoinPool getPool ()
+  {
+    return m_aPool;
+  }
+
+  /**
+   * @return The maximum number of entries that were read but not yet written.
+   *         Always &gt; 0.
+   */
+  @Nonnegative
+  public int getMaxPendingEntries ()
+  {
+    return m_nMaxPendingEntries;
+  }
+
+  /**
+   * @return The suffix added to the base name of each output entry. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public String getOutputSuffix ()
+  {
+    return m_sOutputSuffix;
+  }
+
+  /**
+   * Get the name of the output entry for the provided input entry name. The
+   * directory part is retained, a trailing <code>.gz</code> and the file
+   * extension are replaced.
+   *
+   * @param sInputName
+   *        The input entry name. May not be <code>null</code>.
+   * @return The output entry name. Never <code>null</code>.
+   */
+  @Nonnull
+  public String getOutputEntryName (@Nonnull final String sInputName)
+  {
+    ValueEnforcer.notNull (sInputName, "InputName");
+
+    String sName = sInputName;
+    if (sName.endsWith (".gz"))
+      sName = sName.substring (0, sName.length () - 3);
+    final int nSlash = sName.lastIndexOf ('/') + 1;
+    return sName.substring (0, nSlash) +
+           FilenameHelper.getBaseName (sName.substring (nSlash)) +
+           m_sOutputSuffix +
+           (m_aEngine.getSettings ().isGZIPOutput () ? ".xml.gz" : ".xml");
+  }
+
+  /**
+   * The result of a single archive entry.
+   *
+   * @author Philip Helger
+   */
+  @Immutable
+  public static final class EntryResult
+  {
+    private final String m_sInputName;
+    private final String m_sOutputName;
+    private final ErrorList m_aErrorList;
+
+    EntryResult (@Nonnull final String sInputName,
+                 @Nullable final String sOutputName,
+                 @Nonnull final ErrorList aErrorList)
+    {
+      m_sInputName = sInputName;
+      m_sOutputName = sOutputName;
+      m_aErrorList = aErrorList;
+    }
+
+    /**
+     * @return The name of the entry in the input archive. Never
+     *         <code>null</code>.
+     */
+    @Nonnull
+    public String getInputName ()
+    {
+      return m_sInputName;
+    }
+
+    /**
+     * @return The name of the entry in the output archive or
+     *         <code>null</code> if the entry could not be converted.
+     */
+    @Nullable
+    public String getOutputName ()
+    {
+      return m_sOutputName;
+    }
+
+    /**
+     * @return <code>true</code> if the entry was converted and written to the
+     *         output archive.
+     */
+    public boolean isSuccess ()
+    {
+      return m_sOutputName != null;
+    }
+
+    /**
+     * @return All errors and warnings of this entry. Never <code>null</code>.
+     */
+    @Nonnull
+    public ErrorList getErrorList ()
+    {
+      return m_aErrorList;
+    }
+
+    @Override
+    public String toString ()
+    {
+      return new ToStringGenerator (this).append ("InputName", m_sInputName)
+                                         .append ("OutputName", m_sOutputName)
+                                         .append ("ErrorList", m_aErrorList)
+                                         .getToString ();
+    }
+  }
+
+  /**
+   * The state of an entry between reading and writing.
+   */
+  private static final class PendingEntry
+  {
+    private final ZipEntry m_aInputEntry;
+    private final ErrorList m_aErrorList = new ErrorList ();
+    private final ForkJoinTask <NonBlockingByteArrayOutputStream> m_aTask;
+
+    PendingEntry (@Nonnull final ZipEntry aInputEntry,
+                  @Nonnull final byte [] aBytes,
+                  @Nonnull final UBLToCIIConversionEngine aEngine,
+                  @Nonnull final ForkJoinPool aPool)
+    {
+      m_aInputEntry = aInputEntry;
+      m_aTask = aPool.submit ( () -> _convert (aEngine, aBytes, m_aErrorList));
+    }
+
+    @Nullable
+    private static NonBlockingByteArrayOutputStream _convert (@Nonnull final UBLToCIIConversionEngine aEngine,
+                                                              @Nonnull final byte [] aBytes,
+                                                              @Nonnull final ErrorList aErrorList)
+    {
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      try
+      {
+        if (aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes), aBAOS, aErrorList)
+                   .isFailure () || aErrorList.containsAtLeastOneError ())
+          return null;
+        return aBAOS;
+      }
+      catch (final RuntimeException ex)
+      {
+        aErrorList.add (SingleError.builderError ()
+                                   .errorText ("Failed to convert the archive entry")
+                                   .linkedException (ex)
+                                   .build ());
+        return null;
+      }
+    }
+  }
+
+  private void _writeEntry (@Nonnull final PendingEntry aEntry,
+                            @Nonnull final ZipOutputStream aZOS,
+                            @Nonnull final ICommonsSet <String> aUsedOutputNames,
+                            @Nonnull final ICommonsList <EntryResult> aResults) throws IOException
+  {
+    final String sInputName = aEntry.m_aInputEntry.getName ();
+    final NonBlockingByteArrayOutputStream aBAOS = aEntry.m_aTask.join ();
+    String sOutputName = null;
+    if (aBAOS != null)
+    {
+      final String sName = getOutputEntryName (sInputName);
+      if (aUsedOutputNames.add (sName))
+      {
+        final ZipEntry aOutputEntry = new ZipEntry (sName);
+        // Retain the timestamp, so that the output only depends on the input
+        aOutputEntry.setTime (aEntry.m_aInputEntry.getTime ());
+        aZOS.putNextEntry (aOutputEntry);
+        aBAOS.writeTo (aZOS);
+        aZOS.closeEntry ();
+        sOutputName = sName;
+      }
+      else
+        aEntry.m_aErrorList.add (SingleError.builderError ()
+                                            .errorText ("The output entry name '" +
+                                                        sName +
+                                                        "' was already used by a previous entry")
+                                            .build ());
+    }
+    aResults.add (new EntryResult (sInputName, sOutputName, aEntry.m_aErrorList));
+  }
+
+  /**
+   * Convert all entries of the provided ZIP archive and write the results as a
+   * ZIP archive to the provided output stream.
+   *
+   * @param aIS
+   *        The input stream with the ZIP archive to read. May not be
+   *        <code>null</code>.
+   * @param aOS
+   *        The output stream to write the ZIP archive to. Is finished but not
+   *        closed. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with errors reading or writing the
+   *        archives. Errors of the single entries are contained in the
+   *        results. May not be <code>null</code>.
+   * @return The results of all non-directory entries in the order of the input
+   *         archive or <code>null</code> if reading or writing an archive
+   *         failed.
+   */
+  @Nullable
+  public ICommonsList <EntryResult> convertArchive (@Nonnull @WillNotClose final InputStream aIS,
+                                                    @Nonnull @WillNotClose final OutputStream aOS,
+                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aIS, "InputStream");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final ICommonsList <EntryResult> ret = new CommonsArrayList <> ();
+    final ICommonsSet <String> aUsedOutputNames = new CommonsHashSet <> ();
+    final Deque <PendingEntry> aPending = new ArrayDeque <> (m_nMaxPendingEntries);
+    try (final ZipInputStream aZIS = new ZipInputStream (new NonClosingInputStream (aIS));
+        final ZipOutputStream aZOS = new ZipOutputStream (new NonClosingOutputStream (aOS)))
+    {
+      ZipEntry aInputEntry;
+      while ((aInputEntry = aZIS.getNextEntry ()) != null)
+      {
+        if (aInputEntry.isDirectory ())
+          continue;
+
+        // Read in this thread, convert in the pool
+        final byte [] aBytes = StreamHelper.getAllBytes (new NonClosingInputStream (aZIS));
+        aPending.addLast (new PendingEntry (aInputEntry, aBytes, m_aEngine, m_aPool));
+
+        // Write the oldest entry, once the window is full
+        if (aPending.size () >= m_nMaxPendingEntries)
+          _writeEntry (aPending.removeFirst (), aZOS, aUsedOutputNames, ret);
+      }
+
+      while (!aPending.isEmpty ())
+        _writeEntry (aPending.removeFirst (), aZOS, aUsedOutputNames, ret);
+      aZOS.finish ();
+    }
+    catch (final IOException ex)
+    {
+      // Don't leave running conversions behind
+      for (final PendingEntry aEntry : aPending)
+        aEntry.m_aTask.cancel (false);
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to convert the ZIP archive")
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+    return ret;
+  }
+
+  /**
+   * Convert all entries of the provided ZIP archive file into a new ZIP
+   * archive file.
+   *
+   * @param aSrcPath
+   *        The ZIP archive to read. May not be <code>null</code>.
+   * @param aDstPath
+   *        The ZIP archive to be created or overwritten. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with errors reading or writing the
+   *        archives. Errors of the single entries are contained in the
+   *        results. May not be <code>null</code>.
+   * @return The results of all non-directory entries in the order of the input
+   *         archive or <code>null</code> if reading or writing an archive
+   *         failed.
+   * @see #convertArchive(InputStream, OutputStream, ErrorList)
+   */
+  @Nullable
+  public ICommonsList <EntryResult> convertArchive (@Nonnull final Path aSrcPath,
+                                                    @Nonnull final Path aDstPath,
+                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aSrcPath, "SrcPath");
+    ValueEnforcer.notNull (aDstPath, "DstPath");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    try (final InputStream aIS = StreamHelper.getBuffered (Files.newInputStream (aSrcPath));
+        final OutputStream aOS = StreamHelper.getBuffered (Files.newOutputStream (aDstPath)))
+    {
+      return convertArchive (aIS, aOS, aErrorList);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to convert the ZIP archive '" +
+                                             aSrcPath +
+                                             "' to '" +
+                                             aDstPath +
+                                             "'")
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Engine", m_aEngine)
+                                       .append ("Pool", m_aPool)
+                                       .append ("MaxPendingEntries", m_nMaxPendingEntries)
+                                       .append ("OutputSuffix", m_sOutputSuffix)
+                                       .getToString ();
+  }
+}
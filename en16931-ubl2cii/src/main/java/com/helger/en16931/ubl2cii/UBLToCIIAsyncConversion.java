@@ -0,0 +1,405 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
+import com.helger.ubl21.EUBL21DocumentType;
+
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Unmarshaller;
+import jakarta.xml.bind.UnmarshallerHandler;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * A push style conversion of a single UBL 2.1 Invoice or Credit Note to CII
+ * D16B. The document is provided in chunks as they arrive via
+ * {@link #feed(ByteBuffer)} and is parsed with a non-blocking XML parser, so
+ * that no thread needs to wait for I/O. All parsed content is directly passed
+ * to the JAXB unmarshaller, so that the complete document never needs to be
+ * buffered. The conversion itself is performed in {@link #complete()} after
+ * the last chunk was fed.<br>
+ * Instances are created via
+ * {@link UBLToCIIConversionEngine#createAsyncConversion(ErrorList)} and can
+ * only be used for a single document. They may be used from different threads,
+ * but not concurrently.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+public final class UBLToCIIAsyncConversion
+{
+  private static final AsyncXMLInputFactory XML_INPUT_FACTORY;
+
+  static
+  {
+    // Created only once - configured for safe processing of untrusted input
+    XML_INPUT_FACTORY = new InputFactoryImpl ();
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    XML_INPUT_FACTORY.setProperty (XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+  }
+
+  private final UBLToCIIConversionEngine m_aEngine;
+  private final ICommonsSet <QName> m_aSkippedElements;
+  private final ErrorList m_aErrorList;
+  private final AsyncXMLStreamReader <AsyncByteBufferFeeder> m_aReader;
+  private final AttributesImpl m_aAttrs = new AttributesImpl ();
+  private EUBL21DocumentType m_eDocType;
+  private Unmarshaller m_aUnmarshaller;
+  private UnmarshallerHandler m_aHandler;
+  private int m_nSkipDepth = 0;
+  private boolean m_bFailed = false;
+  private boolean m_bEndOfDocument = false;
+  private boolean m_bCompleted = false;
+
+  UBLToCIIAsyncConversion (@Nonnull final UBLToCIIConversionEngine aEngine, @Nonnull final ErrorList aErrorList)
+  {
+    m_aEngine = aEngine;
+    m_aSkippedElements = aEngine.getSettings ().getAllSkippedElements ();
+    m_aErrorList = aErrorList;
+    m_aReader = XML_INPUT_FACTORY.createAsyncForByteBuffer ();
+  }
+
+  /**
+   * @return <code>true</code> if an error occurred and all further input is
+   *         ignored.
+   */
+  public boolean isFailed ()
+  {
+    return m_bFailed;
+  }
+
+  /**
+   * @return <code>true</code> if {@link #complete()} was already called.
+   */
+  public boolean isCompleted ()
+  {
+    return m_bCompleted;
+  }
+
+  private void _fail (@Nonnull final String sErrorText, @Nullable final Exception ex)
+  {
+    m_bFailed = true;
+    m_aErrorList.add (SingleError.builderError ()
+                                 .errorLocation (ex instanceof XMLStreamException ? ((XMLStreamException) ex).getLocation ()
+                                                                                  : null)
+                                 .errorText (sErrorText)
+                                 .linkedException (ex)
+                                 .build ());
+  }
+
+  private void _startRoot () throws JAXBException, SAXException
+  {
+    final String sRootLocalName = m_aReader.getLocalName ();
+    if ("Invoice".equals (sRootLocalName))
+      m_eDocType = EUBL21DocumentType.INVOICE;
+    else
+      if ("CreditNote".equals (sRootLocalName))
+        m_eDocType = EUBL21DocumentType.CREDIT_NOTE;
+      else
+      {
+        _fail ("The XML document type " + m_aReader.getName () + " is not supported", null);
+        return;
+      }
+
+    // Use a new unmarshaller, as different conversions may be interleaved on
+    // the same thread
+    m_aUnmarshaller = m_aEngine.createUBLUnmarshaller (m_eDocType);
+    m_aUnmarshaller.setEventHandler (new WrappedCollectingValidationEventHandler (m_aErrorList));
+    m_aHandler = m_aUnmarshaller.getUnmarshallerHandler ();
+    m_aHandler.startDocument ();
+  }
+
+  private void _startElement () throws SAXException
+  {
+    final int nNSCount = m_aReader.getNamespaceCount ();
+    for (int i = 0; i < nNSCount; ++i)
+      m_aHandler.startPrefixMapping (StringHelper.getNotNull (m_aReader.getNamespacePrefix (i)),
+                                     StringHelper.getNotNull (m_aReader.getNamespaceURI (i)));
+
+    m_aAttrs.clear ();
+    final int nAttrCount = m_aReader.getAttributeCount ();
+    for (int i = 0; i < nAttrCount; ++i)
+    {
+      final String sPrefix = m_aReader.getAttributePrefix (i);
+      final String sLocalName = m_aReader.getAttributeLocalName (i);
+      m_aAttrs.addAttribute (StringHelper.getNotNull (m_aReader.getAttributeNamespace (i)),
+                             sLocalName,
+                             StringHelper.hasText (sPrefix) ? sPrefix + ':' + sLocalName : sLocalName,
+                             "CDATA",
+                             m_aReader.getAttributeValue (i));
+    }
+    final String sPrefix = m_aReader.getPrefix ();
+    final String sLocalName = m_aReader.getLocalName ();
+    m_aHandler.startElement (StringHelper.getNotNull (m_aReader.getNamespaceURI ()),
+                             sLocalName,
+                             StringHelper.hasText (sPrefix) ? sPrefix + ':' + sLocalName : sLocalName,
+                             m_aAttrs);
+  }
+
+  private void _endElement () throws SAXException
+  {
+    final String sPrefix = m_aReader.getPrefix ();
+    final String sLocalName = m_aReader.getLocalName ();
+    m_aHandler.endElement (StringHelper.getNotNull (m_aReader.getNamespaceURI ()),
+                           sLocalName,
+                           StringHelper.hasText (sPrefix) ? sPrefix + ':' + sLocalName : sLocalName);
+
+    final int nNSCount = m_aReader.getNamespaceCount ();
+    for (int i = 0; i < nNSCount; ++i)
+      m_aHandler.endPrefixMapping (StringHelper.getNotNull (m_aReader.getNamespacePrefix (i)));
+  }
+
+  /**
+   * Process all events that are available with the input fed so far.
+   */
+  private void _processAvailableEvents ()
+  {
+    try
+    {
+      while (!m_bFailed && !m_bEndOfDocument && m_aReader.hasNext ())
+      {
+        final int nEventType = m_aReader.next ();
+        if (nEventType == AsyncXMLStreamReader.EVENT_INCOMPLETE)
+          break;
+
+        if (m_nSkipDepth > 0)
+        {
+          // Inside a skipped subtree
+          if (nEventType == XMLStreamConstants.START_ELEMENT)
+            m_nSkipDepth++;
+          else
+            if (nEventType == XMLStreamConstants.END_ELEMENT)
+              m_nSkipDepth--;
+          continue;
+        }
+
+        switch (nEventType)
+        {
+          case XMLStreamConstants.START_ELEMENT:
+            if (m_aHandler == null)
+            {
+              _startRoot ();
+              if (m_bFailed)
+                break;
+            }
+            else
+              if (m_aSkippedElements.contains (m_aReader.getName ()))
+              {
+                m_nSkipDepth = 1;
+                break;
+              }
+            _startElement ();
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            _endElement ();
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+          case XMLStreamConstants.SPACE:
+            if (m_aHandler != null)
+              m_aHandler.characters (m_aReader.getTextCharacters (),
+                                     m_aReader.getTextStart (),
+                                     m_aReader.getTextLength ());
+            break;
+          case XMLStreamConstants.END_DOCUMENT:
+            m_bEndOfDocument = true;
+            if (m_aHandler != null)
+              m_aHandler.endDocument ();
+            break;
+          default:
+            // Comments, processing instructions etc. are not relevant
+            break;
+        }
+      }
+    }
+    catch (final XMLStreamException ex)
+    {
+      _fail ("Failed to read the XML document", ex);
+    }
+    catch (final JAXBException | SAXException ex)
+    {
+      _fail ("Failed to read the UBL 2.1 document", ex);
+    }
+  }
+
+  /**
+   * Feed the next chunk of the document. All events that can be derived from
+   * the input so far are processed before this method returns, so the passed
+   * buffer may be reused afterwards. Its position is not modified.
+   *
+   * @param aBuffer
+   *        The buffer with the next chunk of bytes. May not be
+   *        <code>null</code>.
+   * @return this for chaining
+   * @throws IllegalStateException
+   *         If {@link #complete()} was already called
+   */
+  @Nonnull
+  public UBLToCIIAsyncConversion feed (@Nonnull final ByteBuffer aBuffer)
+  {
+    ValueEnforcer.notNull (aBuffer, "Buffer");
+    if (m_bCompleted)
+      throw new IllegalStateException ("The conversion was already completed");
+
+    if (!m_bFailed && aBuffer.hasRemaining ())
+    {
+      if (m_bEndOfDocument)
+        _fail ("Content after the end of the XML document", null);
+      else
+      {
+        try
+        {
+          m_aReader.getInputFeeder ().feedInput (aBuffer.duplicate ());
+          _processAvailableEvents ();
+        }
+        catch (final XMLStreamException ex)
+        {
+          _fail ("Failed to read the XML document", ex);
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Feed the next chunk of the document.
+   *
+   * @param aBytes
+   *        The bytes to read from. May not be <code>null</code>.
+   * @param nOfs
+   *        The offset of the first byte to use. Must be &ge; 0.
+   * @param nLen
+   *        The number of bytes to use. Must be &ge; 0.
+   * @return this for chaining
+   * @see #feed(ByteBuffer)
+   */
+  @Nonnull
+  public UBLToCIIAsyncConversion feed (@Nonnull final byte [] aBytes, final int nOfs, final int nLen)
+  {
+    ValueEnforcer.isArrayOfsLen (aBytes, nOfs, nLen);
+    return feed (ByteBuffer.wrap (aBytes, nOfs, nLen));
+  }
+
+  /**
+   * Signal that the last chunk was fed and perform the conversion of the
+   * unmarshalled document.
+   *
+   * @return The created CII or <code>null</code> if reading or conversion
+   *         failed. In this case the error list contains the details.
+   * @throws IllegalStateException
+   *         If this method was already called before
+   */
+  @Nullable
+  public CrossIndustryInvoiceType complete ()
+  {
+    if (m_bCompleted)
+      throw new IllegalStateException ("The conversion was already completed");
+    m_bCompleted = true;
+
+    try
+    {
+      if (!m_bFailed)
+      {
+        m_aReader.getInputFeeder ().endOfInput ();
+        _processAvailableEvents ();
+        if (!m_bFailed && (!m_bEndOfDocument || m_aHandler == null))
+          _fail ("The XML document is incomplete", null);
+      }
+
+      try
+      {
+        m_aReader.close ();
+      }
+      catch (final XMLStreamException ex)
+      {
+        // Ignore
+      }
+
+      if (m_bFailed)
+        return null;
+
+      final Object aResult = m_aHandler.getResult ();
+      final Object aValue = aResult instanceof JAXBElement <?> ? ((JAXBElement <?>) aResult).getValue () : aResult;
+      if (m_eDocType == EUBL21DocumentType.INVOICE)
+        return m_aEngine.convertUBL21Invoice (UBL21InvoiceModel.createFrom ((InvoiceType) aValue),
+                                              false,
+                                              null,
+                                              m_aErrorList);
+      return m_aEngine.convertUBL21CreditNote (UBL21CreditNoteModel.createFrom ((CreditNoteType) aValue),
+                                               false,
+                                               null,
+                                               m_aErrorList);
+    }
+    catch (final JAXBException | IllegalStateException ex)
+    {
+      _fail ("Failed to read the UBL 2.1 document", ex);
+      return null;
+    }
+    finally
+    {
+      if (m_aUnmarshaller != null)
+        try
+        {
+          // Don't keep a reference to the error list
+          m_aUnmarshaller.setEventHandler (null);
+        }
+        catch (final JAXBException ex)
+        {
+          // Never happens with the reference implementation
+          throw new IllegalStateException (ex);
+        }
+    }
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("DocType", m_eDocType)
+                                       .append ("Failed", m_bFailed)
+                                       .append ("EndOfDocument", m_bEndOfDocument)
+                                       .append ("Completed", m_bCompleted)
+                                       .getToString ();
+  }
+}
@@ -0,0 +1,1619 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.WillClose;
+import javax.annotation.WillNotClose;
+import javax.annotation.concurrent.ThreadSafe;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.validation.Schema;
+import javax.xml.transform.Result;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXResult;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.ContentHandler;
+
+import com.helger.cii.d16b.CCIID16B;
+import com.helger.cii.d16b.CIID16BNamespaceContext;
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.error.SingleError;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.ByteBufferInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonClosingInputStream;
+import com.helger.commons.io.stream.NonClosingOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+import com.helger.commons.state.ESuccess;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.commons.system.ENewLineMode;
+import com.helger.en16931.ubl2cii.CIIOutputDigest.DigestingOutputStream;
+import com.helger.en16931.ubl2cii.CIIOutputDigest.DigestingWritableByteChannel;
+import com.helger.jaxb.JAXBContextCache;
+import com.helger.jaxb.JAXBContextCacheKey;
+import com.helger.jaxb.JAXBMarshallerHelper;
+import com.helger.jaxb.validation.WrappedCollectingValidationEventHandler;
+import com.helger.ubl21.EUBL21DocumentType;
+import com.helger.xml.XMLFactory;
+import com.helger.xml.schema.XMLSchemaCache;
+import com.helger.xml.serialize.write.EXMLIncorrectCharacterHandling;
+import com.helger.xml.serialize.write.EXMLSerializeIndent;
+import com.helger.xml.serialize.write.IXMLWriterSettings;
+import com.helger.xml.serialize.write.SafeXMLStreamWriter;
+import com.helger.xml.serialize.write.XMLWriterSettings;
+
+import jakarta.xml.bind.JAXBElement;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import jakarta.xml.bind.Unmarshaller;
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.ObjectFactory;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.HeaderTradeAgreementType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.BinaryObjectType;
+
+/**
+ * A reusable and thread-safe UBL 2.1 to CII D16B converter. All settings are
+ * provided upon construction and cannot be changed afterwards. The JAXB
+ * marshallers and unmarshallers are created once per thread and reused for all
+ * subsequent conversions on that thread, so that the setup costs are only paid
+ * once.
+ *
+ * @author Philip Helger
+ */
+@ThreadSafe
+public final class UBLToCIIConversionEngine
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (UBLToCIIConversionEngine.class);
+  private static final UBLToCIIConversionEngine DEFAULT_INSTANCE = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.DEFAULT);
+
+  private final UBLToCIIConversionSettings m_aSettings;
+  private final ICommonsSet <QName> m_aSkippedElements;
+  private final MappedFileBufferProvider m_aBufferProvider;
+  private final ChannelOutputBufferPool m_aChannelBufferPool;
+  private final boolean m_bCanonical;
+  private final IXMLWriterSettings m_aXWS;
+  private final ThreadLocal <Unmarshaller> m_aInvoiceUnmarshaller;
+  private final ThreadLocal <Unmarshaller> m_aCreditNoteUnmarshaller;
+  private final ThreadLocal <Unmarshaller> m_aInvoiceModelUnmarshaller;
+  private final ThreadLocal <Unmarshaller> m_aCreditNoteModelUnmarshaller;
+  private final ThreadLocal <Marshaller> m_aCIIMarshaller;
+  private final UBL21ParallelConverter m_aParallelConverter;
+
+  public UBLToCIIConversionEngine (@Nonnull final UBLToCIIConversionSettings aSettings)
+  {
+    ValueEnforcer.notNull (aSettings, "Settings");
+    m_aSettings = aSettings;
+    m_aSkippedElements = aSettings.getAllSkippedElements ();
+    if (aSettings.getFileInputMode () == EFileInputMode.MAPPED)
+      m_aBufferProvider = new MappedFileBufferProvider (aSettings.getMappingThreshold (),
+                                                        MappedFileBufferProvider.DEFAULT_MAX_POOLED_BUFFERS);
+    else
+      m_aBufferProvider = null;
+    // Buffers are only allocated when needed
+    m_aChannelBufferPool = new ChannelOutputBufferPool (aSettings.getChannelBufferSize (),
+                                                        aSettings.getMaxPooledChannelBuffers ());
+    m_bCanonical = aSettings.getOutputProfile () == ECIIOutputProfile.CANONICAL;
+    if (m_bCanonical)
+    {
+      // UTF-8, no XML declaration and Unix line endings
+      m_aXWS = XMLWriterSettings.createForCanonicalization ()
+                                .setNamespaceContext (CIID16BNamespaceContext.getInstance ())
+                                .setIndent (EXMLSerializeIndent.NONE)
+                                .setSpaceOnSelfClosedElement (false)
+                                .setIncorrectCharacterHandling (EXMLIncorrectCharacterHandling.DO_NOT_WRITE_LOG_WARNING);
+    }
+    else
+    {
+      // For PRETTY the same settings as used by the
+      // CIID16BCrossIndustryInvoiceTypeMarshaller
+      final boolean bCompact = aSettings.getOutputProfile () == ECIIOutputProfile.COMPACT;
+      m_aXWS = new XMLWriterSettings ().setNamespaceContext (CIID16BNamespaceContext.getInstance ())
+                                       .setIndent (aSettings.isFormattedOutput () ? EXMLSerializeIndent.INDENT_AND_ALIGN
+                                                                                  : EXMLSerializeIndent.NONE)
+                                       .setSpaceOnSelfClosedElement (!bCompact)
+                                       .setCharset (aSettings.getCharset ())
+                                       .setNewLineMode (ENewLineMode.DEFAULT)
+                                       .setIncorrectCharacterHandling (EXMLIncorrectCharacterHandling.DO_NOT_WRITE_LOG_WARNING);
+    }
+    m_aInvoiceUnmarshaller = ThreadLocal.withInitial ( () -> createUBLUnmarshaller (EUBL21DocumentType.INVOICE));
+    m_aCreditNoteUnmarshaller = ThreadLocal.withInitial ( () -> createUBLUnmarshaller (EUBL21DocumentType.CREDIT_NOTE));
+    // The model readers validate the whole document themselves
+    m_aInvoiceModelUnmarshaller = ThreadLocal.withInitial ( () -> _createUBLUnmarshaller (EUBL21DocumentType.INVOICE,
+                                                                                            false));
+    m_aCreditNoteModelUnmarshaller = ThreadLocal.withInitial ( () -> _createUBLUnmarshaller (EUBL21DocumentType.CREDIT_NOTE,
+                                                                                               false));
+    m_aCIIMarshaller = ThreadLocal.withInitial (this::_createCIIMarshaller);
+    // Only used for documents with at least the threshold number of lines
+    m_aParallelConverter = new UBL21ParallelConverter (ForkJoinPool.commonPool (),
+                                                       UBL21ParallelConverter.DEFAULT_LINES_PER_TASK,
+                                                       aSettings.getParallelLineThreshold ());
+  }
+
+  /**
+   * @return The shared instance using the default settings. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static UBLToCIIConversionEngine getDefaultInstance ()
+  {
+    return DEFAULT_INSTANCE;
+  }
+
+  /**
+   * @return The settings of this engine as provided in the constructor. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public UBLToCIIConversionSettings getSettings ()
+  {
+    return m_aSettings;
+  }
+
+  /**
+   * Create a new UBL unmarshaller with the settings of this engine.
+   *
+   * @param eDocType
+   *        The UBL document type to unmarshal. May not be <code>null</code>.
+   * @return A new unmarshaller and never <code>null</code>.
+   */
+  @Nonnull
+  Unmarshaller createUBLUnmarshaller (@Nonnull final EUBL21DocumentType eDocType)
+  {
+    return _createUBLUnmarshaller (eDocType, m_aSettings.isUseSchema ());
+  }
+
+  @Nonnull
+  private static Unmarshaller _createUBLUnmarshaller (@Nonnull final EUBL21DocumentType eDocType,
+                                                      final boolean bUseSchema)
+  {
+    try
+    {
+      final Unmarshaller ret = JAXBContextCache.getInstance ()
+                                               .getFromCache (JAXBContextCacheKey.createForClass (eDocType.getImplementationClass ()))
+                                               .createUnmarshaller ();
+      if (bUseSchema)
+        ret.setSchema (_getUBLSchema (eDocType));
+      return ret;
+    }
+    catch (final JAXBException ex)
+    {
+      throw new IllegalStateException ("Failed to create JAXB Unmarshaller for " + eDocType, ex);
+    }
+  }
+
+  @Nonnull
+  private static Schema _getUBLSchema (@Nonnull final EUBL21DocumentType eDocType)
+  {
+    return XMLSchemaCache.getInstance ().getSchema (eDocType.getAllXSDResources ());
+  }
+
+  @Nonnull
+  private Marshaller _createCIIMarshaller ()
+  {
+    try
+    {
+      final Marshaller ret = JAXBContextCache.getInstance ()
+                                             .getFromCache (JAXBContextCacheKey.createForClass (CrossIndustryInvoiceType.class))
+                                             .createMarshaller ();
+      try
+      {
+        JAXBMarshallerHelper.setJakartaNamespacePrefixMapper (ret, CIID16BNamespaceContext.getInstance ());
+      }
+      catch (final Exception | NoClassDefFoundError ex)
+      {
+        // Requires the JAXB reference implementation
+        LOGGER.warn ("Failed to set the CII namespace context: " + ex.getClass ().getName () + " -- " + ex.getMessage ());
+      }
+      JAXBMarshallerHelper.setFormattedOutput (ret, m_aSettings.isFormattedOutput ());
+      JAXBMarshallerHelper.setEncoding (ret, m_aXWS.getCharset ());
+      if (m_aSettings.isUseSchema ())
+        ret.setSchema (XMLSchemaCache.getInstance ().getSchema (CCIID16B.getXSDResource ()));
+      return ret;
+    }
+    catch (final JAXBException ex)
+    {
+      throw new IllegalStateException ("Failed to create JAXB Marshaller for CII D16B", ex);
+    }
+  }
+
+  private static void _resetEventHandler (@Nonnull final Unmarshaller aUnmarshaller)
+  {
+    try
+    {
+      // Don't keep a reference to the error list
+      aUnmarshaller.setEventHandler (null);
+    }
+    catch (final JAXBException ex)
+    {
+      // Never happens with the reference implementation
+      throw new IllegalStateException (ex);
+    }
+  }
+
+  @Nonnull
+  private XMLStreamReader _getFilteredReader (@Nonnull final XMLStreamReader aReader,
+                                              @Nullable final AttachmentSpool aSpool)
+  {
+    XMLStreamReader ret = aReader;
+    if (m_aSkippedElements.isNotEmpty ())
+    {
+      // Drop the unused subtrees before JAXB creates any objects for them
+      ret = new SkippingXMLStreamReader (ret, m_aSkippedElements);
+    }
+    if (aSpool != null)
+    {
+      // Decode large attachments into files instead of byte arrays
+      ret = new AttachmentSpoolingXMLStreamReader (ret, aSpool);
+    }
+    return ret;
+  }
+
+  /**
+   * @return A new spool for the attachments of a single conversion or
+   *         <code>null</code> if spooling is disabled.
+   */
+  @Nullable
+  private AttachmentSpool _createAttachmentSpool ()
+  {
+    if (!m_aSettings.isSpoolAttachments ())
+      return null;
+    return new AttachmentSpool (m_aSettings.getAttachmentSpoolThreshold (),
+                                m_aSettings.getAttachmentSpoolDirectory (),
+                                m_aSettings.getAttachmentStore ());
+  }
+
+  /**
+   * Internal callback to run the unmarshalling on an arbitrary source.
+   *
+   * @param <T>
+   *        The result type
+   */
+  @FunctionalInterface
+  private interface IUnmarshalCallback <T>
+  {
+    @Nonnull
+    JAXBElement <T> apply (@Nonnull Unmarshaller aUnmarshaller, @Nonnull Class <T> aClass) throws JAXBException;
+  }
+
+  @Nullable
+  private static <T> T _unmarshal (@Nonnull final Unmarshaller aUnmarshaller,
+                                   @Nonnull final Class <T> aClass,
+                                   @Nonnull final ErrorList aErrorList,
+                                   @Nonnull final IUnmarshalCallback <T> aCallback)
+  {
+    try
+    {
+      aUnmarshaller.setEventHandler (new WrappedCollectingValidationEventHandler (aErrorList));
+      return aCallback.apply (aUnmarshaller, aClass).getValue ();
+    }
+    catch (final JAXBException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to read the UBL 2.1 document as " + aClass.getSimpleName ())
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+    finally
+    {
+      _resetEventHandler (aUnmarshaller);
+    }
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice from the provided stream reader. The reader must be
+   * positioned before or on the root element. All configured skipped elements
+   * are dropped before unmarshalling.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public InvoiceType readUBL21Invoice (@Nonnull final XMLStreamReader aReader, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final XMLStreamReader aFilteredReader = _getFilteredReader (aReader, null);
+    return _unmarshal (m_aInvoiceUnmarshaller.get (),
+                       InvoiceType.class,
+                       aErrorList,
+                       (u, c) -> u.unmarshal (aFilteredReader, c));
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note from the provided stream reader. The reader
+   * must be positioned before or on the root element. All configured skipped
+   * elements are dropped before unmarshalling.
+   *
+   * @param aReader
+   *        The stream reader to use. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public CreditNoteType readUBL21CreditNote (@Nonnull final XMLStreamReader aReader,
+                                             @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final XMLStreamReader aFilteredReader = _getFilteredReader (aReader, null);
+    return _unmarshal (m_aCreditNoteUnmarshaller.get (),
+                       CreditNoteType.class,
+                       aErrorList,
+                       (u, c) -> u.unmarshal (aFilteredReader, c));
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice directly into the model used by the converters,
+   * without creating the full {@link InvoiceType}. If schema validation is
+   * enabled, everything except the configured skipped elements is still
+   * validated.
+   */
+  @Nullable
+  private UBL21InvoiceModel _readUBL21InvoiceModel (@Nonnull final XMLStreamReader aReader,
+                                                    @Nullable final AttachmentSpool aSpool,
+                                                    @Nonnull final ErrorList aErrorList)
+  {
+    return UBL21StreamReader.readInvoiceModel (_getFilteredReader (aReader, aSpool),
+                                               m_aInvoiceModelUnmarshaller.get (),
+                                               m_aSettings.isUseSchema () ? _getUBLSchema (EUBL21DocumentType.INVOICE)
+                                                                          : null,
+                                               aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note directly into the model used by the
+   * converters, without creating the full {@link CreditNoteType}. If schema
+   * validation is enabled, everything except the configured skipped elements
+   * is still validated.
+   */
+  @Nullable
+  private UBL21CreditNoteModel _readUBL21CreditNoteModel (@Nonnull final XMLStreamReader aReader,
+                                                          @Nullable final AttachmentSpool aSpool,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBL21StreamReader.readCreditNoteModel (_getFilteredReader (aReader, aSpool),
+                                                  m_aCreditNoteModelUnmarshaller.get (),
+                                                  m_aSettings.isUseSchema () ? _getUBLSchema (EUBL21DocumentType.CREDIT_NOTE)
+                                                                             : null,
+                                                  aErrorList);
+  }
+
+  /**
+   * Read a UBL 2.1 Invoice from an existing DOM node, without serializing and
+   * parsing it again. The skipped elements of the settings are not applied,
+   * as the DOM is already present in memory.
+   *
+   * @param aNode
+   *        The DOM document or element to read from. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public InvoiceType readUBL21Invoice (@Nonnull final Node aNode, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aNode, "Node");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _unmarshal (m_aInvoiceUnmarshaller.get (), InvoiceType.class, aErrorList, (u, c) -> u.unmarshal (aNode, c));
+  }
+
+  /**
+   * Read a UBL 2.1 Credit Note from an existing DOM node, without serializing
+   * and parsing it again. The skipped elements of the settings are not
+   * applied, as the DOM is already present in memory.
+   *
+   * @param aNode
+   *        The DOM document or element to read from. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if reading failed.
+   */
+  @Nullable
+  public CreditNoteType readUBL21CreditNote (@Nonnull final Node aNode, @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aNode, "Node");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _unmarshal (m_aCreditNoteUnmarshaller.get (),
+                       CreditNoteType.class,
+                       aErrorList,
+                       (u, c) -> u.unmarshal (aNode, c));
+  }
+
+  /**
+   * Internal callback to run the marshalling on an arbitrary target.
+   */
+  @FunctionalInterface
+  private interface IMarshalCallback
+  {
+    void apply (@Nonnull Marshaller aMarshaller,
+                @Nonnull JAXBElement <CrossIndustryInvoiceType> aElement) throws JAXBException, XMLStreamException;
+  }
+
+  @Nonnull
+  private ESuccess _marshal (@Nonnull final CrossIndustryInvoiceType aCII,
+                             @Nonnull final ErrorList aErrorList,
+                             @Nonnull final IMarshalCallback aCallback)
+  {
+    final Marshaller aMarshaller = m_aCIIMarshaller.get ();
+    try
+    {
+      aMarshaller.setEventHandler (new WrappedCollectingValidationEventHandler (aErrorList));
+      aCallback.apply (aMarshaller, new ObjectFactory ().createCrossIndustryInvoice (aCII));
+      return ESuccess.SUCCESS;
+    }
+    catch (final JAXBException | XMLStreamException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write the CII D16B document")
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+    finally
+    {
+      try
+      {
+        aMarshaller.setEventHandler (null);
+      }
+      catch (final JAXBException ex)
+      {
+        // Never happens with the reference implementation
+        throw new IllegalStateException (ex);
+      }
+    }
+  }
+
+  /**
+   * Write the provided CII D16B invoice to the output stream, using the
+   * settings of this engine.
+   *
+   * @param aCII
+   *        The CII to be written. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. Is closed afterwards. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess writeCIID16B (@Nonnull final CrossIndustryInvoiceType aCII,
+                                @Nonnull @WillClose final OutputStream aOS,
+                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCII, "CII");
+    ValueEnforcer.notNull (aOS, "OutputStream");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    try
+    {
+      return _writeBytes (aCII, null, aOS, aErrorList);
+    }
+    finally
+    {
+      StreamHelper.close (aOS);
+    }
+  }
+
+  /**
+   * Serialize the CII to the provided stream and compress it, if configured.
+   */
+  @Nonnull
+  private ESuccess _writeBytes (@Nonnull final CrossIndustryInvoiceType aCII,
+                                @Nullable final AttachmentSpool aSpool,
+                                @Nonnull @WillNotClose final OutputStream aOS,
+                                @Nonnull final ErrorList aErrorList)
+  {
+    if (!m_aSettings.isGZIPOutput ())
+      return _writeToStream (aCII, aSpool, aOS, aErrorList);
+
+    // Closing only releases the deflater
+    try (final GZIPOutputStream aGZOS = GZIPHelper.getCompressingOutputStream (new NonClosingOutputStream (aOS),
+                                                                                m_aSettings.getGZIPLevel ()))
+    {
+      if (_writeToStream (aCII, aSpool, aGZOS, aErrorList).isFailure ())
+        return ESuccess.FAILURE;
+
+      // Write the trailer explicitly, to get notified about errors
+      aGZOS.finish ();
+      return ESuccess.SUCCESS;
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write the compressed CII D16B document")
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+  }
+
+  @Nonnull
+  private ESuccess _writeToStream (@Nonnull final CrossIndustryInvoiceType aCII,
+                                   @Nullable final AttachmentSpool aSpool,
+                                   @Nonnull @WillNotClose final OutputStream aOS,
+                                   @Nonnull final ErrorList aErrorList)
+  {
+    return _marshal (aCII, aErrorList, (m, e) -> {
+      XMLStreamWriter aWriter = SafeXMLStreamWriter.create (aOS, m_aXWS);
+      if (m_bCanonical)
+        aWriter = new CanonicalXMLStreamWriter (aWriter);
+      if (aSpool != null && aSpool.getSpooledCount () > 0)
+      {
+        // Stream the spooled attachments instead of the placeholders
+        m.marshal (e, new AttachmentStreamingXMLStreamWriter (aWriter, aSpool));
+      }
+      else
+        m.marshal (e, aWriter);
+      aWriter.flush ();
+    });
+  }
+
+  /**
+   * Write the provided CII D16B invoice to the channel, using the settings of
+   * this engine. The serialized bytes are collected in pooled direct buffers,
+   * that are handed to the channel without further copying.
+   *
+   * @param aCII
+   *        The CII to be written. May not be <code>null</code>.
+   * @param aChannel
+   *        The channel to write to, e.g. a {@link FileChannel} or a socket
+   *        channel. Is not closed. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   * @see UBLToCIIConversionSettings#getChannelBufferSize()
+   * @see UBLToCIIConversionSettings#getMaxPooledChannelBuffers()
+   */
+  @Nonnull
+  public ESuccess writeCIID16B (@Nonnull final CrossIndustryInvoiceType aCII,
+                                @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCII, "CII");
+    ValueEnforcer.notNull (aChannel, "Channel");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _writeToChannel (aCII, null, aChannel, aErrorList);
+  }
+
+  @Nonnull
+  private ESuccess _writeToChannel (@Nonnull final CrossIndustryInvoiceType aCII,
+                                    @Nullable final AttachmentSpool aSpool,
+                                    @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                    @Nonnull final ErrorList aErrorList)
+  {
+    // Closing the stream only returns the buffer to the pool
+    final ChannelOutputBufferPool.BufferedChannelOutputStream aOS = m_aChannelBufferPool.createBufferedOutputStream (aChannel);
+    try
+    {
+      if (_writeBytes (aCII, aSpool, aOS, aErrorList).isFailure ())
+        return ESuccess.FAILURE;
+
+      // Write the last buffer explicitly, to get notified about errors
+      aOS.flush ();
+
+      // The XML writer swallows exceptions on flush, so check explicitly
+      final IOException aWriteEx = aOS.getWriteException ();
+      if (aWriteEx != null)
+        throw aWriteEx;
+      return ESuccess.SUCCESS;
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to write the CII D16B document to the channel")
+                                 .linkedException (ex)
+                                 .build ());
+      return ESuccess.FAILURE;
+    }
+    finally
+    {
+      StreamHelper.close (aOS);
+    }
+  }
+
+  /**
+   * Write the provided CII D16B invoice to an arbitrary JAXP result, like a
+   * {@link DOMResult}, a {@link SAXResult} or a
+   * {@link javax.xml.transform.stax.StAXResult}. This allows downstream
+   * processing like Schematron validation or XSLT without serializing and
+   * parsing the document again.<br>
+   * Note: for a {@link javax.xml.transform.stream.StreamResult} the JAXB
+   * formatting is used instead of the output profile of this engine. Use
+   * {@link #writeCIID16B(CrossIndustryInvoiceType, OutputStream, ErrorList)}
+   * for serialized output.
+   *
+   * @param aCII
+   *        The CII to be written. May not be <code>null</code>.
+   * @param aResult
+   *        The result to write to. Is not closed. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess writeCIID16B (@Nonnull final CrossIndustryInvoiceType aCII,
+                                @Nonnull final Result aResult,
+                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aCII, "CII");
+    ValueEnforcer.notNull (aResult, "Result");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return _marshal (aCII, aErrorList, (m, e) -> m.marshal (e, aResult));
+  }
+
+  /**
+   * Emit the provided CII D16B invoice as SAX events to the provided content
+   * handler.
+   *
+   * @param aCII
+   *        The CII to be written. May not be <code>null</code>.
+   * @param aContentHandler
+   *        The content handler to receive the events. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess writeCIID16B (@Nonnull final CrossIndustryInvoiceType aCII,
+                                @Nonnull final ContentHandler aContentHandler,
+                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aContentHandler, "ContentHandler");
+
+    return writeCIID16B (aCII, new SAXResult (aContentHandler), aErrorList);
+  }
+
+  /**
+   * Get the provided CII D16B invoice as a new DOM document.
+   *
+   * @param aCII
+   *        The CII to be converted. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return <code>null</code> if writing failed.
+   */
+  @Nullable
+  public Document getCIID16BAsDocument (@Nonnull final CrossIndustryInvoiceType aCII,
+                                        @Nonnull final ErrorList aErrorList)
+  {
+    final Document aDoc = XMLFactory.newDocument ();
+    return writeCIID16B (aCII, new DOMResult (aDoc), aErrorList).isSuccess () ? aDoc : null;
+  }
+
+  @Nonnull
+  private ESuccess _writeCIID16B (@Nullable final CrossIndustryInvoiceType aCII,
+                                  @Nonnull final Result aResult,
+                                  @Nonnull final ErrorList aErrorList)
+  {
+    if (aCII == null)
+      return ESuccess.FAILURE;
+
+    return writeCIID16B (aCII, aResult, aErrorList);
+  }
+
+  @Nullable
+  private Document _getCIID16BAsDocument (@Nullable final CrossIndustryInvoiceType aCII,
+                                          @Nonnull final ErrorList aErrorList)
+  {
+    if (aCII == null)
+      return null;
+
+    return getCIID16BAsDocument (aCII, aErrorList);
+  }
+
+  /**
+   * Get an input stream on the remaining bytes of the provided buffer without
+   * copying them. The position of the provided buffer is not modified.
+   *
+   * @param aBuffer
+   *        The buffer to read from. May not be <code>null</code>.
+   * @return The input stream and never <code>null</code>.
+   */
+  @Nonnull
+  private static InputStream _getInputStream (@Nonnull final ByteBuffer aBuffer)
+  {
+    ValueEnforcer.notNull (aBuffer, "Buffer");
+    if (aBuffer.hasArray ())
+      return new NonBlockingByteArrayInputStream (aBuffer.array (),
+                                                  aBuffer.arrayOffset () + aBuffer.position (),
+                                                  aBuffer.remaining ());
+    // Direct or read-only buffer
+    return new ByteBufferInputStream (aBuffer.duplicate ());
+  }
+
+  @Nonnull
+  private ESuccess _writeCIID16B (@Nullable final CrossIndustryInvoiceType aCII,
+                                  @Nullable final AttachmentSpool aSpool,
+                                  @Nonnull @WillClose final OutputStream aOS,
+                                  @Nonnull final ErrorList aErrorList)
+  {
+    try
+    {
+      if (aCII == null)
+        return ESuccess.FAILURE;
+
+      // Write CII D16B XML
+      return _writeBytes (aCII, aSpool, aOS, aErrorList);
+    }
+    finally
+    {
+      StreamHelper.close (aOS);
+    }
+  }
+
+  /**
+   * Read the provided input stream and decompress it on the fly, if it is GZIP
+   * compressed and the detection is enabled.
+   */
+  @Nullable
+  private <T> T _read (@Nonnull @WillNotClose final InputStream aIS,
+                       @Nonnull final ErrorList aErrorList,
+                       @Nonnull final StAXHelper.IXMLStreamReaderCallback <T> aCallback)
+  {
+    if (!m_aSettings.isDetectGZIPInput ())
+      return StAXHelper.read (aIS, aErrorList, aCallback);
+
+    ValueEnforcer.notNull (aIS, "InputStream");
+    // Closing only releases the inflater
+    try (final InputStream aRealIS = GZIPHelper.getDecompressedIfGZIP (new NonClosingInputStream (aIS)))
+    {
+      return StAXHelper.read (aRealIS, aErrorList, aCallback);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorText ("Failed to read the UBL input")
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  /**
+   * Open the provided file via a {@link FileChannel} and invoke the callback
+   * with an input stream on it.
+   *
+   * @param <T>
+   *        The result type
+   * @param aPath
+   *        The file to read. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @param aCallback
+   *        The callback to be invoked with the input stream.
+   * @return The result of the callback or <code>null</code> if the file could
+   *         not be read.
+   */
+  @Nullable
+  private static <T> T _readPath (@Nonnull final Path aPath,
+                                  @Nonnull final ErrorList aErrorList,
+                                  @Nonnull final Function <InputStream, T> aCallback)
+  {
+    ValueEnforcer.notNull (aPath, "Path");
+    try (final FileChannel aChannel = FileChannel.open (aPath, StandardOpenOption.READ);
+         final InputStream aIS = Channels.newInputStream (aChannel))
+    {
+      return aCallback.apply (aIS);
+    }
+    catch (final IOException ex)
+    {
+      aErrorList.add (SingleError.builderError ()
+                                 .errorFieldName (aPath.toString ())
+                                 .errorText ("Failed to read the file")
+                                 .linkedException (ex)
+                                 .build ());
+      return null;
+    }
+  }
+
+  /**
+   * Store all embedded attachments of the provided CII via the configured
+   * attachment sink and reference them via the URI instead.
+   */
+  @Nullable
+  private CrossIndustryInvoiceType _externalizeAttachments (@Nullable final CrossIndustryInvoiceType aCII,
+                                                            @Nullable final AttachmentSpool aSpool,
+                                                            @Nonnull final ErrorList aErrorList)
+  {
+    final IAttachmentSink aSink = m_aSettings.getAttachmentSink ();
+    if (aSink == null || aCII == null || aCII.getSupplyChainTradeTransaction () == null)
+      return aCII;
+
+    final HeaderTradeAgreementType aHTAT = aCII.getSupplyChainTradeTransaction ().getApplicableHeaderTradeAgreement ();
+    if (aHTAT == null)
+      return aCII;
+
+    final String sDocumentID = aCII.getExchangedDocument () != null ? aCII.getExchangedDocument ().getIDValue ()
+                                                                    : null;
+    for (final ReferencedDocumentType aRDT : aHTAT.getAdditionalReferencedDocument ())
+    {
+      // Externalized attachments are removed from the list
+      final Iterator <BinaryObjectType> it = aRDT.getAttachmentBinaryObject ().iterator ();
+      while (it.hasNext ())
+      {
+        final BinaryObjectType aBOT = it.next ();
+        final byte [] aValue = aBOT.getValue ();
+        if (aValue == null)
+          continue;
+
+        final Path aSpoolFile = aSpool != null ? aSpool.getSpoolFile (aValue) : null;
+        final AttachmentStore.IURIStorer aStorer = () -> {
+          try (final InputStream aIS = aSpoolFile != null ? Files.newInputStream (aSpoolFile)
+                                                          : new NonBlockingByteArrayInputStream (aValue))
+          {
+            return aSink.storeAttachment (sDocumentID, aRDT, aBOT, aIS);
+          }
+        };
+        try
+        {
+          final String sURI;
+          final AttachmentStore aStore = m_aSettings.getAttachmentStore ();
+          if (aStore != null)
+          {
+            // Store each distinct attachment only once per batch
+            AttachmentStore.Entry aEntry = aSpoolFile != null ? aSpool.getStoreEntry (aValue) : null;
+            if (aEntry == null)
+              aEntry = aStore.registerContent (aValue);
+            sURI = aStore.getURI (aEntry, aStorer);
+          }
+          else
+            sURI = aStorer.store ();
+          // An external reference takes precedence
+          if (aRDT.getURIID () == null)
+            aRDT.setURIID (sURI);
+          it.remove ();
+        }
+        catch (final IOException ex)
+        {
+          // The attachment stays embedded
+          aErrorList.add (SingleError.builderError ()
+                                     .errorFieldName (aRDT.getIssuerAssignedIDValue ())
+                                     .errorText ("Failed to externalize the attachment")
+                                     .linkedException (ex)
+                                     .build ());
+        }
+      }
+    }
+    return aCII;
+  }
+
+  /**
+   * Convert a UBL 2.1 Invoice that was read by this engine.
+   *
+   * @param aUBLInvoice
+   *        The invoice model to convert. May not be <code>null</code>.
+   * @param bLazyLines
+   *        <code>true</code> to convert the lines only while the CII is
+   *        written. Documents with at least the configured parallel line
+   *        threshold of line items are always converted in parallel upfront.
+   * @param aSpool
+   *        The attachment spool used while reading. May be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII or <code>null</code>.
+   */
+  @Nullable
+  CrossIndustryInvoiceType convertUBL21Invoice (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                final boolean bLazyLines,
+                                                @Nullable final AttachmentSpool aSpool,
+                                                @Nonnull final ErrorList aErrorList)
+  {
+    final CrossIndustryInvoiceType ret;
+    if (bLazyLines)
+      ret = m_aParallelConverter.convertUBL21InvoiceToCIID16BWithLazyLines (aUBLInvoice, aErrorList);
+    else
+      ret = m_aParallelConverter.convertUBL21InvoiceToCIID16B (aUBLInvoice, aErrorList);
+    return _externalizeAttachments (ret, aSpool, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Credit Note that was read by this engine.
+   *
+   * @param aUBLCreditNote
+   *        The credit note model to convert. May not be <code>null</code>.
+   * @param bLazyLines
+   *        <code>true</code> to convert the lines only while the CII is
+   *        written. Documents with at least the configured parallel line
+   *        threshold of line items are always converted in parallel upfront.
+   * @param aSpool
+   *        The attachment spool used while reading. May be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The created CII or <code>null</code>.
+   */
+  @Nullable
+  CrossIndustryInvoiceType convertUBL21CreditNote (@Nonnull final IUBL21CreditNote aUBLCreditNote,
+                                                   final boolean bLazyLines,
+                                                   @Nullable final AttachmentSpool aSpool,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    final CrossIndustryInvoiceType ret;
+    if (bLazyLines)
+      ret = m_aParallelConverter.convertUBL21CreditNoteToCIID16BWithLazyLines (aUBLCreditNote, aErrorList);
+    else
+      ret = m_aParallelConverter.convertUBL21CreditNoteToCIID16B (aUBLCreditNote, aErrorList);
+    return _externalizeAttachments (ret, aSpool, aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    // Read UBL 2.1
+    final UBL21InvoiceModel aUBLInvoice = _read (aIS, aErrorList, r -> _readUBL21InvoiceModel (r, null, aErrorList));
+    if (aUBLInvoice == null)
+      return null;
+
+    // Main conversion
+    return convertUBL21Invoice (aUBLInvoice, false, null, aErrorList);
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertUBL21InvoiceWithLazyLines (@Nonnull @WillNotClose final InputStream aIS,
+                                                                      @Nullable final AttachmentSpool aSpool,
+                                                                      @Nonnull final ErrorList aErrorList)
+  {
+    // Read UBL 2.1
+    final UBL21InvoiceModel aUBLInvoice = _read (aIS, aErrorList, r -> _readUBL21InvoiceModel (r, aSpool, aErrorList));
+    if (aUBLInvoice == null)
+      return null;
+
+    // The lines are converted while writing
+    return convertUBL21Invoice (aUBLInvoice, true, aSpool, aErrorList);
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                @Nonnull @WillClose final OutputStream aOS,
+                                                @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      return _writeCIID16B (_convertUBL21InvoiceWithLazyLines (aIS, aSpool, aErrorList), aSpool, aOS, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21InvoiceWithLazyLines (aIS, aSpool, aErrorList);
+      if (aCrossIndustryInvoice == null)
+        return ESuccess.FAILURE;
+
+      return _writeToChannel (aCrossIndustryInvoice, aSpool, aChannel, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                @Nonnull final Result aResult,
+                                                @Nonnull final ErrorList aErrorList)
+  {
+    return _writeCIID16B (_convertUBL21InvoiceWithLazyLines (aIS, null, aErrorList), aResult, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Invoice and write the CII D16B to the provided stream,
+   * while calculating the SHA-256 digest of the written bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. Is closed afterwards. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21InvoiceToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                 @Nonnull @WillClose final OutputStream aOS,
+                                                                 @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    final DigestingOutputStream aDOS = new DigestingOutputStream (aOS);
+    return convertUBL21InvoiceToCIID16B (aIS, aDOS, aErrorList).isSuccess () ? aDOS.getDigest () : null;
+  }
+
+  /**
+   * Convert a UBL 2.1 Invoice and write the CII D16B to the provided channel,
+   * while calculating the SHA-256 digest of the written bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aChannel
+   *        The channel to write to. Is not closed. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21InvoiceToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aChannel, "Channel");
+
+    final DigestingWritableByteChannel aDC = new DigestingWritableByteChannel (aChannel);
+    return convertUBL21InvoiceToCIID16B (aIS, aDC, aErrorList).isSuccess () ? aDC.getDigest () : null;
+  }
+
+  @Nullable
+  public Document convertUBL21InvoiceToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                        @Nonnull final ErrorList aErrorList)
+  {
+    return _getCIID16BAsDocument (_convertUBL21InvoiceWithLazyLines (aIS, null, aErrorList), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final byte [] aBytes,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    // No copy - the parser reads directly from the array
+    return convertUBL21InvoiceToCIID16B (new NonBlockingByteArrayInputStream (aBytes), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    return convertUBL21InvoiceToCIID16B (_getInputStream (aBuffer), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final Path aPath,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    if (m_aBufferProvider != null)
+      return m_aBufferProvider.read (aPath, aErrorList, aBuffer -> convertUBL21InvoiceToCIID16B (aBuffer, aErrorList));
+    return _readPath (aPath, aErrorList, aIS -> convertUBL21InvoiceToCIID16B (aIS, aErrorList));
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final Node aNode,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    final InvoiceType aUBLInvoice = readUBL21Invoice (aNode, aErrorList);
+    if (aUBLInvoice == null)
+      return null;
+
+    // Main conversion - the DOM was already unmarshalled completely
+    return convertUBL21Invoice (UBL21InvoiceModel.createFrom (aUBLInvoice), false, null, aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                @Nonnull final ErrorList aErrorList)
+  {
+    final UBL21InvoiceModel aUBLInvoice = _readUBL21InvoiceModel (aReader, null, aErrorList);
+    if (aUBLInvoice == null)
+      return null;
+
+    // Main conversion
+    return convertUBL21Invoice (aUBLInvoice, false, null, aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    // Read UBL 2.1
+    final UBL21CreditNoteModel aUBLCreditNote = _read (aIS,
+                                                       aErrorList,
+                                                       r -> _readUBL21CreditNoteModel (r, null, aErrorList));
+    if (aUBLCreditNote == null)
+      return null;
+
+    // Main conversion
+    return convertUBL21CreditNote (aUBLCreditNote, false, null, aErrorList);
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertUBL21CreditNoteWithLazyLines (@Nonnull @WillNotClose final InputStream aIS,
+                                                                         @Nullable final AttachmentSpool aSpool,
+                                                                         @Nonnull final ErrorList aErrorList)
+  {
+    // Read UBL 2.1
+    final UBL21CreditNoteModel aUBLCreditNote = _read (aIS,
+                                                       aErrorList,
+                                                       r -> _readUBL21CreditNoteModel (r, aSpool, aErrorList));
+    if (aUBLCreditNote == null)
+      return null;
+
+    // The lines are converted while writing
+    return convertUBL21CreditNote (aUBLCreditNote, true, aSpool, aErrorList);
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull @WillClose final OutputStream aOS,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      return _writeCIID16B (_convertUBL21CreditNoteWithLazyLines (aIS, aSpool, aErrorList), aSpool, aOS, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21CreditNoteWithLazyLines (aIS, aSpool, aErrorList);
+      if (aCrossIndustryInvoice == null)
+        return ESuccess.FAILURE;
+
+      return _writeToChannel (aCrossIndustryInvoice, aSpool, aChannel, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull final Result aResult,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    return _writeCIID16B (_convertUBL21CreditNoteWithLazyLines (aIS, null, aErrorList), aResult, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 Credit Note and write the CII D16B to the provided stream,
+   * while calculating the SHA-256 digest of the written bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. Is closed afterwards. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21CreditNoteToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                    @Nonnull @WillClose final OutputStream aOS,
+                                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    final DigestingOutputStream aDOS = new DigestingOutputStream (aOS);
+    return convertUBL21CreditNoteToCIID16B (aIS, aDOS, aErrorList).isSuccess () ? aDOS.getDigest () : null;
+  }
+
+  /**
+   * Convert a UBL 2.1 Credit Note and write the CII D16B to the provided channel,
+   * while calculating the SHA-256 digest of the written bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aChannel
+   *        The channel to write to. Is not closed. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21CreditNoteToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aChannel, "Channel");
+
+    final DigestingWritableByteChannel aDC = new DigestingWritableByteChannel (aChannel);
+    return convertUBL21CreditNoteToCIID16B (aIS, aDC, aErrorList).isSuccess () ? aDC.getDigest () : null;
+  }
+
+  @Nullable
+  public Document convertUBL21CreditNoteToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                           @Nonnull final ErrorList aErrorList)
+  {
+    return _getCIID16BAsDocument (_convertUBL21CreditNoteWithLazyLines (aIS, null, aErrorList), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final byte [] aBytes,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    // No copy - the parser reads directly from the array
+    return convertUBL21CreditNoteToCIID16B (new NonBlockingByteArrayInputStream (aBytes), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    return convertUBL21CreditNoteToCIID16B (_getInputStream (aBuffer), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final Path aPath,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    if (m_aBufferProvider != null)
+      return m_aBufferProvider.read (aPath, aErrorList, aBuffer -> convertUBL21CreditNoteToCIID16B (aBuffer, aErrorList));
+    return _readPath (aPath, aErrorList, aIS -> convertUBL21CreditNoteToCIID16B (aIS, aErrorList));
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final Node aNode,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    final CreditNoteType aUBLCreditNote = readUBL21CreditNote (aNode, aErrorList);
+    if (aUBLCreditNote == null)
+      return null;
+
+    // Main conversion - the DOM was already unmarshalled completely
+    return convertUBL21CreditNote (UBL21CreditNoteModel.createFrom (aUBLCreditNote), false, null, aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    final UBL21CreditNoteModel aUBLCreditNote = _readUBL21CreditNoteModel (aReader, null, aErrorList);
+    if (aUBLCreditNote == null)
+      return null;
+
+    // Main conversion
+    return convertUBL21CreditNote (aUBLCreditNote, false, null, aErrorList);
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertUBL21AutoDetectToCIID16B (@Nonnull final XMLStreamReader aReader,
+                                                                     final boolean bLazyLines,
+                                                                     @Nullable final AttachmentSpool aSpool,
+                                                                     @Nonnull final ErrorList aErrorList) throws XMLStreamException
+  {
+    // Only peek at the root element - the reader is not consumed any further
+    if (!StAXHelper.moveToStartElement (aReader))
+    {
+      aErrorList.add (SingleError.builderError ().errorText ("The XML document has no root element").build ());
+      return null;
+    }
+
+    final String sRootLocalName = aReader.getLocalName ();
+
+    if ("Invoice".equals (sRootLocalName))
+    {
+      // Read UBL 2.1 Invoice from the same reader
+      final UBL21InvoiceModel aUBLInvoice = _readUBL21InvoiceModel (aReader, aSpool, aErrorList);
+      if (aUBLInvoice == null)
+        return null;
+
+      // Main conversion
+      return convertUBL21Invoice (aUBLInvoice, bLazyLines, aSpool, aErrorList);
+    }
+
+    if ("CreditNote".equals (sRootLocalName))
+    {
+      // Read UBL 2.1 Credit Note from the same reader
+      final UBL21CreditNoteModel aUBLCreditNote = _readUBL21CreditNoteModel (aReader, aSpool, aErrorList);
+      if (aUBLCreditNote == null)
+        return null;
+
+      // Main conversion
+      return convertUBL21CreditNote (aUBLCreditNote, bLazyLines, aSpool, aErrorList);
+    }
+
+    aErrorList.add (SingleError.builderError ()
+                               .errorLocation (aReader.getLocation ())
+                               .errorText ("The XML document type " + aReader.getName () + " is not supported")
+                               .build ());
+    return null;
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    // Read exactly once - the document type is determined from the first
+    // start element of the stream
+    return _read (aIS, aErrorList, r -> _convertUBL21AutoDetectToCIID16B (r, false, null, aErrorList));
+  }
+
+  @Nullable
+  private CrossIndustryInvoiceType _convertUBL21AutoDetectWithLazyLines (@Nonnull @WillNotClose final InputStream aIS,
+                                                                         @Nullable final AttachmentSpool aSpool,
+                                                                         @Nonnull final ErrorList aErrorList)
+  {
+    // The lines are converted while writing
+    return _read (aIS, aErrorList, r -> _convertUBL21AutoDetectToCIID16B (r, true, aSpool, aErrorList));
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull @WillClose final OutputStream aOS,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      return _writeCIID16B (_convertUBL21AutoDetectWithLazyLines (aIS, aSpool, aErrorList), aSpool, aOS, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    try (final AttachmentSpool aSpool = _createAttachmentSpool ())
+    {
+      final CrossIndustryInvoiceType aCrossIndustryInvoice = _convertUBL21AutoDetectWithLazyLines (aIS, aSpool, aErrorList);
+      if (aCrossIndustryInvoice == null)
+        return ESuccess.FAILURE;
+
+      return _writeToChannel (aCrossIndustryInvoice, aSpool, aChannel, aErrorList);
+    }
+  }
+
+  @Nonnull
+  public ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                   @Nonnull final Result aResult,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    return _writeCIID16B (_convertUBL21AutoDetectWithLazyLines (aIS, null, aErrorList), aResult, aErrorList);
+  }
+
+  /**
+   * Convert a UBL 2.1 document of any supported type and write the CII D16B
+   * to the provided stream, while calculating the SHA-256 digest of the written
+   * bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aOS
+   *        The output stream to write to. Is closed afterwards. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21AutoDetectToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                    @Nonnull @WillClose final OutputStream aOS,
+                                                                    @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aOS, "OutputStream");
+
+    final DigestingOutputStream aDOS = new DigestingOutputStream (aOS);
+    return convertUBL21AutoDetectToCIID16B (aIS, aDOS, aErrorList).isSuccess () ? aDOS.getDigest () : null;
+  }
+
+  /**
+   * Convert a UBL 2.1 document of any supported type and write the CII D16B
+   * to the provided channel, while calculating the SHA-256 digest of the written
+   * bytes.
+   *
+   * @param aIS
+   *        The input stream to read from. May not be <code>null</code>.
+   * @param aChannel
+   *        The channel to write to. Is not closed. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The digest of the written bytes or <code>null</code> if the
+   *         conversion failed.
+   * @see ECIIOutputProfile#CANONICAL
+   */
+  @Nullable
+  public CIIOutputDigest convertUBL21AutoDetectToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aChannel, "Channel");
+
+    final DigestingWritableByteChannel aDC = new DigestingWritableByteChannel (aChannel);
+    return convertUBL21AutoDetectToCIID16B (aIS, aDC, aErrorList).isSuccess () ? aDC.getDigest () : null;
+  }
+
+  @Nullable
+  public Document convertUBL21AutoDetectToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                           @Nonnull final ErrorList aErrorList)
+  {
+    return _getCIID16BAsDocument (_convertUBL21AutoDetectWithLazyLines (aIS, null, aErrorList), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final byte [] aBytes,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aBytes, "Bytes");
+    // No copy - the parser reads directly from the array
+    return convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    return convertUBL21AutoDetectToCIID16B (_getInputStream (aBuffer), aErrorList);
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final Path aPath,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    if (m_aBufferProvider != null)
+      return m_aBufferProvider.read (aPath, aErrorList, aBuffer -> convertUBL21AutoDetectToCIID16B (aBuffer, aErrorList));
+    return _readPath (aPath, aErrorList, aIS -> convertUBL21AutoDetectToCIID16B (aIS, aErrorList));
+  }
+
+  /**
+   * Convert a UBL 2.1 document of any supported type from the provided file
+   * and write the CII D16B to the provided channel in one pass. The file is
+   * read according to the {@link UBLToCIIConversionSettings#getFileInputMode()
+   * file input mode} of this engine.
+   *
+   * @param aPath
+   *        The file to read. May not be <code>null</code>.
+   * @param aChannel
+   *        The channel to write to. Is not closed. May not be
+   *        <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return {@link ESuccess}
+   */
+  @Nonnull
+  public ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull final Path aPath,
+                                                   @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                   @Nonnull final ErrorList aErrorList)
+  {
+    final ESuccess ret;
+    if (m_aBufferProvider != null)
+      ret = m_aBufferProvider.read (aPath,
+                                    aErrorList,
+                                    aBuffer -> convertUBL21AutoDetectToCIID16B (_getInputStream (aBuffer),
+                                                                                aChannel,
+                                                                                aErrorList));
+    else
+      ret = _readPath (aPath, aErrorList, aIS -> convertUBL21AutoDetectToCIID16B (aIS, aChannel, aErrorList));
+    return ret == null ? ESuccess.FAILURE : ret;
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final Node aNode,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aNode, "Node");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    final Element aRootElement = aNode instanceof Document ? ((Document) aNode).getDocumentElement ()
+                                                           : aNode instanceof Element ? (Element) aNode : null;
+    if (aRootElement == null)
+    {
+      aErrorList.add (SingleError.builderError ().errorText ("The DOM node is neither a document nor an element").build ());
+      return null;
+    }
+
+    final String sRootLocalName = aRootElement.getLocalName ();
+    if ("Invoice".equals (sRootLocalName))
+      return convertUBL21InvoiceToCIID16B (aRootElement, aErrorList);
+    if ("CreditNote".equals (sRootLocalName))
+      return convertUBL21CreditNoteToCIID16B (aRootElement, aErrorList);
+
+    aErrorList.add (SingleError.builderError ()
+                               .errorText ("The XML document type {" +
+                                           aRootElement.getNamespaceURI () +
+                                           "}" +
+                                           sRootLocalName +
+                                           " is not supported")
+                               .build ());
+    return null;
+  }
+
+  @Nullable
+  public CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                   @Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    return StAXHelper.read (aReader, aErrorList, r -> _convertUBL21AutoDetectToCIID16B (r, false, null, aErrorList));
+  }
+
+  /**
+   * Create a new push style conversion for a single UBL 2.1 Invoice or Credit
+   * Note. The document type is determined from the root element. This
+   * requires the optional dependency <code>com.fasterxml:aalto-xml</code> to
+   * be present.
+   *
+   * @param aErrorList
+   *        The error list to be filled. May not be <code>null</code>.
+   * @return The new conversion and never <code>null</code>.
+   */
+  @Nonnull
+  public UBLToCIIAsyncConversion createAsyncConversion (@Nonnull final ErrorList aErrorList)
+  {
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+    return new UBLToCIIAsyncConversion (this, aErrorList);
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("Settings", m_aSettings).getToString ();
+  }
+}
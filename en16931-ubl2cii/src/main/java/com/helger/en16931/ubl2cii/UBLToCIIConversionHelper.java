@@ -19,30 +19,31 @@ package com.helger.en16931.ubl2cii;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.annotation.WillClose;
 import javax.annotation.WillNotClose;
 import javax.annotation.concurrent.Immutable;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Result;
 
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
-import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
-import com.helger.commons.error.SingleError;
 import com.helger.commons.error.list.ErrorList;
 import com.helger.commons.state.ESuccess;
-import com.helger.ubl21.UBL21Marshaller;
-import com.helger.xml.XMLHelper;
-import com.helger.xml.sax.WrappedCollectingSAXErrorHandler;
-import com.helger.xml.serialize.read.DOMReader;
-import com.helger.xml.serialize.read.DOMReaderSettings;
-
-import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
-import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
 
 /**
+ * Static helper methods for the UBL 2.1 to CII D16B conversion. All methods
+ * delegate to the shared default {@link UBLToCIIConversionEngine}. Use a
+ * custom engine instance if different settings are needed.
+ *
  * @author Vartika Gupta
  * @author Philip Helger
  */
@@ -56,13 +57,7 @@ public final class UBLToCIIConversionHelper
   public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
                                                                        @Nonnull final ErrorList aErrorList)
   {
-    // Read UBL 2.1
-    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aIS);
-    if (aUBLInvoice == null)
-      return null;
-
-    // Main conversion
-    return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList);
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aIS, aErrorList);
   }
 
   @Nonnull
@@ -70,27 +65,90 @@ public final class UBLToCIIConversionHelper
                                                        @Nonnull @WillClose final OutputStream aOS,
                                                        @Nonnull final ErrorList aErrorList)
   {
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21InvoiceToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aIS, aOS, aErrorList);
+  }
+
+  @Nonnull
+  public static ESuccess convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                       @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aIS, aChannel, aErrorList);
+  }
+
+  @Nonnull
+  public static ESuccess convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                       @Nonnull final Result aResult,
+                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aIS, aResult, aErrorList);
+  }
+
+  @Nullable
+  public static CIIOutputDigest convertUBL21InvoiceToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                        @Nonnull @WillClose final OutputStream aOS,
+                                                                        @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16BWithDigest (aIS, aOS, aErrorList);
+  }
+
+  @Nullable
+  public static CIIOutputDigest convertUBL21InvoiceToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ()
+                                   .convertUBL21InvoiceToCIID16BWithDigest (aIS, aChannel, aErrorList);
+  }
+
+  @Nullable
+  public static Document convertUBL21InvoiceToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                               @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16BDocument (aIS, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final byte [] aBytes,
+                                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aBytes, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aBuffer, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final Path aPath,
+                                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aPath, aErrorList);
+  }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull final Node aNode,
+                                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aNode, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21InvoiceToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                       @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aReader, aErrorList);
   }
 
   @Nullable
   public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
                                                                           @Nonnull final ErrorList aErrorList)
   {
-    // Read UBL 2.1
-    final CreditNoteType aUBLCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aIS);
-    if (aUBLCreditNote == null)
-      return null;
-
-    // Main conversion
-    return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aErrorList);
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aIS, aErrorList);
   }
 
   @Nonnull
@@ -98,57 +156,91 @@ public final class UBLToCIIConversionHelper
                                                           @Nonnull @WillClose final OutputStream aOS,
                                                           @Nonnull final ErrorList aErrorList)
   {
-    // Main conversion
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21CreditNoteToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aIS, aOS, aErrorList);
+  }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+  @Nonnull
+  public static ESuccess convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aIS, aChannel, aErrorList);
+  }
+
+  @Nonnull
+  public static ESuccess convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull final Result aResult,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aIS, aResult, aErrorList);
   }
 
   @Nullable
-  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
-                                                                          @Nonnull final ErrorList aErrorList)
+  public static CIIOutputDigest convertUBL21CreditNoteToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                           @Nonnull @WillClose final OutputStream aOS,
+                                                                           @Nonnull final ErrorList aErrorList)
   {
-    // Read exactly once into XML
-    final Document aDoc = DOMReader.readXMLDOM (aIS,
-                                                new DOMReaderSettings ().setErrorHandler (new WrappedCollectingSAXErrorHandler (aErrorList)));
-    if (aDoc == null || aDoc.getDocumentElement () == null)
-      return null;
+    return UBLToCIIConversionEngine.getDefaultInstance ()
+                                   .convertUBL21CreditNoteToCIID16BWithDigest (aIS, aOS, aErrorList);
+  }
 
-    final String sRootLocalName = aDoc.getDocumentElement ().getLocalName ();
+  @Nullable
+  public static CIIOutputDigest convertUBL21CreditNoteToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ()
+                                   .convertUBL21CreditNoteToCIID16BWithDigest (aIS, aChannel, aErrorList);
+  }
 
-    if ("Invoice".equals (sRootLocalName))
-    {
-      // Read UBL 2.1 Invoice
-      final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aDoc);
-      if (aUBLInvoice == null)
-        return null;
+  @Nullable
+  public static Document convertUBL21CreditNoteToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                                  @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16BDocument (aIS, aErrorList);
+  }
 
-      // Main conversion
-      return UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, aErrorList);
-    }
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final byte [] aBytes,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aBytes, aErrorList);
+  }
 
-    if ("CreditNote".equals (sRootLocalName))
-    {
-      // Read UBL 2.1 Credit Note
-      final CreditNoteType aUBLCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aDoc);
-      if (aUBLCreditNote == null)
-        return null;
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aBuffer, aErrorList);
+  }
 
-      // Main conversion
-      return UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote, aErrorList);
-    }
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final Path aPath,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aPath, aErrorList);
+  }
 
-    aErrorList.add (SingleError.builderError ()
-                               .errorText ("The XML document type " +
-                                           XMLHelper.getQName (aDoc.getDocumentElement ()) +
-                                           " is not supported")
-                               .build ());
-    return null;
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull final Node aNode,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aNode, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21CreditNoteToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21CreditNoteToCIID16B (aReader, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aIS, aErrorList);
   }
 
   @Nonnull
@@ -156,13 +248,84 @@ public final class UBLToCIIConversionHelper
                                                           @Nonnull @WillClose final OutputStream aOS,
                                                           @Nonnull final ErrorList aErrorList)
   {
-    final CrossIndustryInvoiceType aCrossIndustryInvoice = convertUBL21AutoDetectToCIID16B (aIS, aErrorList);
-    if (aCrossIndustryInvoice == null)
-      return ESuccess.FAILURE;
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aIS, aOS, aErrorList);
+  }
+
+  @Nonnull
+  public static ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull @WillNotClose final WritableByteChannel aChannel,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aIS, aChannel, aErrorList);
+  }
 
-    // Write CII D16B XML
-    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
-                                                           .setCollectErrors (aErrorList)
-                                                           .write (aCrossIndustryInvoice, aOS);
+  @Nonnull
+  public static ESuccess convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final InputStream aIS,
+                                                          @Nonnull final Result aResult,
+                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aIS, aResult, aErrorList);
   }
+
+  @Nullable
+  public static CIIOutputDigest convertUBL21AutoDetectToCIID16BWithDigest (@Nonnull @WillNotClose final InputStream aIS,
+                                                                           @Nonnull @WillClose final OutputStream aOS,
+                                                                           @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ()
+                                   .convertUBL21AutoDetectToCIID16BWithDigest (aIS, aOS, aErrorList);
+  }
+
+  @Nullable
+  public static CIIOutputDigest convertUBL21AutoDetectToCIID16BWithDigest (
+      @Nonnull @WillNotClose final InputStream aIS,
+      @Nonnull @WillNotClose final WritableByteChannel aChannel,
+      @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ()
+                                   .convertUBL21AutoDetectToCIID16BWithDigest (aIS, aChannel, aErrorList);
+  }
+
+  @Nullable
+  public static Document convertUBL21AutoDetectToCIID16BDocument (@Nonnull @WillNotClose final InputStream aIS,
+                                                                  @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16BDocument (aIS, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final byte [] aBytes,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aBytes, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final ByteBuffer aBuffer,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aBuffer, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final Path aPath,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aPath, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull final Node aNode,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aNode, aErrorList);
+  }
+
+  @Nullable
+  public static CrossIndustryInvoiceType convertUBL21AutoDetectToCIID16B (@Nonnull @WillNotClose final XMLStreamReader aReader,
+                                                                          @Nonnull final ErrorList aErrorList)
+  {
+    return UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21AutoDetectToCIID16B (aReader, aErrorList);
+  }
+
 }
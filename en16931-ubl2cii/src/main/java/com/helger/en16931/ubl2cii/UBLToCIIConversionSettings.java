@@ -0,0 +1,678 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.namespace.QName;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.annotation.ReturnsMutableCopy;
+import com.helger.commons.builder.IBuilder;
+import com.helger.commons.collection.impl.CommonsHashSet;
+import com.helger.commons.collection.impl.ICommonsSet;
+import com.helger.commons.equals.EqualsHelper;
+import com.helger.commons.hashcode.HashCodeGenerator;
+import com.helger.commons.string.ToStringGenerator;
+import com.helger.ubl21.CUBL21;
+
+/**
+ * Immutable settings for a {@link UBLToCIIConversionEngine}. Use
+ * {@link #builder()} to create new instances.
+ *
+ * @author Philip Helger
+ */
+@Immutable
+public final class UBLToCIIConversionSettings
+{
+  /** The default serialization profile of the created CII */
+  public static final ECIIOutputProfile DEFAULT_OUTPUT_PROFILE = ECIIOutputProfile.DEFAULT;
+  /** By default the created CII is pretty printed */
+  public static final boolean DEFAULT_FORMATTED_OUTPUT = DEFAULT_OUTPUT_PROFILE.isFormattedOutput ();
+  /** The default charset of the created CII */
+  public static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+  /**
+   * By default UBL input and CII output are validated against the XML Schema
+   * and all validation problems are collected in the error list
+   */
+  public static final boolean DEFAULT_USE_SCHEMA = true;
+  /**
+   * The elements that are dropped from the UBL input before unmarshalling by
+   * default. They are optional in all UBL 2.1 documents and don't contribute
+   * to the conversion, but may be huge for signed documents.
+   */
+  public static final Set <QName> DEFAULT_SKIPPED_ELEMENTS = new CommonsHashSet <> (new QName (CUBL21.XML_SCHEMA_CEC_NAMESPACE_URL,
+                                                                                           "UBLExtensions"),
+                                                                                 new QName (CUBL21.XML_SCHEMA_CAC_NAMESPACE_URL,
+                                                                                           "Signature")).getAsUnmodifiable ();
+
+  /** The default way to read input files */
+  public static final EFileInputMode DEFAULT_FILE_INPUT_MODE = EFileInputMode.DEFAULT;
+  /** The default minimum size of files to be memory mapped */
+  public static final int DEFAULT_MAPPING_THRESHOLD = MappedFileBufferProvider.DEFAULT_MAPPING_THRESHOLD;
+
+  /** The default size of the direct buffers for channel output */
+  public static final int DEFAULT_CHANNEL_BUFFER_SIZE = ChannelOutputBufferPool.DEFAULT_BUFFER_SIZE;
+  /** The default maximum number of pooled direct buffers for channel output */
+  public static final int DEFAULT_MAX_POOLED_CHANNEL_BUFFERS = ChannelOutputBufferPool.DEFAULT_MAX_POOLED_BUFFERS;
+
+  /** By default GZIP compressed input is detected and decompressed */
+  public static final boolean DEFAULT_DETECT_GZIP_INPUT = true;
+  /** By default the created CII is not compressed */
+  public static final boolean DEFAULT_GZIP_OUTPUT = false;
+  /** The default GZIP compression level of the created CII */
+  public static final int DEFAULT_GZIP_LEVEL = Deflater.DEFAULT_COMPRESSION;
+
+  /** By default embedded attachments are kept in memory */
+  public static final boolean DEFAULT_SPOOL_ATTACHMENTS = false;
+  /** The default minimum decoded size of attachments to be spooled */
+  public static final int DEFAULT_ATTACHMENT_SPOOL_THRESHOLD = AttachmentSpool.DEFAULT_THRESHOLD;
+  /** By default attachments are spooled to the system temporary directory */
+  public static final Path DEFAULT_ATTACHMENT_SPOOL_DIRECTORY = null;
+
+  /** By default attachments are embedded in the CII */
+  public static final IAttachmentSink DEFAULT_ATTACHMENT_SINK = null;
+  /** By default attachments are not deduplicated */
+  public static final AttachmentStore DEFAULT_ATTACHMENT_STORE = null;
+
+  /**
+   * The default minimum number of line items to convert the lines of a
+   * document in parallel
+   */
+  public static final int DEFAULT_PARALLEL_LINE_THRESHOLD = UBL21ParallelConverter.DEFAULT_PARALLEL_LINE_THRESHOLD;
+
+  /** The default settings */
+  public static final UBLToCIIConversionSettings DEFAULT = builder ().build ();
+
+  private final ECIIOutputProfile m_eOutputProfile;
+  private final Charset m_aCharset;
+  private final boolean m_bUseSchema;
+  private final ICommonsSet <QName> m_aSkippedElements;
+  private final EFileInputMode m_eFileInputMode;
+  private final int m_nMappingThreshold;
+  private final int m_nChannelBufferSize;
+  private final int m_nMaxPooledChannelBuffers;
+  private final boolean m_bDetectGZIPInput;
+  private final boolean m_bGZIPOutput;
+  private final int m_nGZIPLevel;
+  private final boolean m_bSpoolAttachments;
+  private final int m_nAttachmentSpoolThreshold;
+  private final Path m_aAttachmentSpoolDirectory;
+  private final IAttachmentSink m_aAttachmentSink;
+  private final AttachmentStore m_aAttachmentStore;
+  private final int m_nParallelLineThreshold;
+
+  private UBLToCIIConversionSettings (@Nonnull final ECIIOutputProfile eOutputProfile,
+                                      @Nonnull final Charset aCharset,
+                                      final boolean bUseSchema,
+                                      @Nonnull final ICommonsSet <QName> aSkippedElements,
+                                      @Nonnull final EFileInputMode eFileInputMode,
+                                      final int nMappingThreshold,
+                                      final int nChannelBufferSize,
+                                      final int nMaxPooledChannelBuffers,
+                                      final boolean bDetectGZIPInput,
+                                      final boolean bGZIPOutput,
+                                      final int nGZIPLevel,
+                                      final boolean bSpoolAttachments,
+                                      final int nAttachmentSpoolThreshold,
+                                      @Nullable final Path aAttachmentSpoolDirectory,
+                                      @Nullable final IAttachmentSink aAttachmentSink,
+                                      @Nullable final AttachmentStore aAttachmentStore,
+                                      final int nParallelLineThreshold)
+  {
+    m_eOutputProfile = eOutputProfile;
+    m_aCharset = aCharset;
+    m_bUseSchema = bUseSchema;
+    m_aSkippedElements = aSkippedElements;
+    m_eFileInputMode = eFileInputMode;
+    m_nMappingThreshold = nMappingThreshold;
+    m_nChannelBufferSize = nChannelBufferSize;
+    m_nMaxPooledChannelBuffers = nMaxPooledChannelBuffers;
+    m_bDetectGZIPInput = bDetectGZIPInput;
+    m_bGZIPOutput = bGZIPOutput;
+    m_nGZIPLevel = nGZIPLevel;
+    m_bSpoolAttachments = bSpoolAttachments;
+    m_nAttachmentSpoolThreshold = nAttachmentSpoolThreshold;
+    m_aAttachmentSpoolDirectory = aAttachmentSpoolDirectory;
+    m_aAttachmentSink = aAttachmentSink;
+    m_aAttachmentStore = aAttachmentStore;
+    m_nParallelLineThreshold = nParallelLineThreshold;
+  }
+
+  /**
+   * @return The serialization profile of the created CII. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public ECIIOutputProfile getOutputProfile ()
+  {
+    return m_eOutputProfile;
+  }
+
+  /**
+   * @return <code>true</code> if the created CII should be pretty printed.
+   * @see #getOutputProfile()
+   */
+  public boolean isFormattedOutput ()
+  {
+    return m_eOutputProfile.isFormattedOutput ();
+  }
+
+  /**
+   * @return The charset of the created CII. Never <code>null</code>.
+   */
+  @Nonnull
+  public Charset getCharset ()
+  {
+    return m_aCharset;
+  }
+
+  /**
+   * @return <code>true</code> if the UBL input and the CII output should be
+   *         validated against the respective XML Schema, with all problems
+   *         being collected in the error list.
+   */
+  public boolean isUseSchema ()
+  {
+    return m_bUseSchema;
+  }
+
+  /**
+   * @return A copy of the fully qualified names of all UBL elements that are
+   *         dropped, including their content, before the UBL input is
+   *         unmarshalled. Never <code>null</code> but maybe empty.
+   */
+  @Nonnull
+  @ReturnsMutableCopy
+  public ICommonsSet <QName> getAllSkippedElements ()
+  {
+    return m_aSkippedElements.getClone ();
+  }
+
+  /**
+   * @return The way input files are read. Never <code>null</code>.
+   */
+  @Nonnull
+  public EFileInputMode getFileInputMode ()
+  {
+    return m_eFileInputMode;
+  }
+
+  /**
+   * @return The minimum size in bytes of input files to be memory mapped, if
+   *         the file input mode is {@link EFileInputMode#MAPPED}. Smaller files
+   *         are read into pooled heap buffers. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMappingThreshold ()
+  {
+    return m_nMappingThreshold;
+  }
+
+  /**
+   * @return The size in bytes of each direct buffer used to write the CII to a
+   *         {@link java.nio.channels.WritableByteChannel}. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getChannelBufferSize ()
+  {
+    return m_nChannelBufferSize;
+  }
+
+  /**
+   * @return The maximum number of direct buffers for channel output that are
+   *         kept for reuse. Always &ge; 0.
+   */
+  @Nonnegative
+  public int getMaxPooledChannelBuffers ()
+  {
+    return m_nMaxPooledChannelBuffers;
+  }
+
+  /**
+   * @return <code>true</code> if UBL input streams starting with the GZIP
+   *         magic bytes should be decompressed while reading.
+   */
+  public boolean isDetectGZIPInput ()
+  {
+    return m_bDetectGZIPInput;
+  }
+
+  /**
+   * @return <code>true</code> if the CII written to output streams and
+   *         channels should be GZIP compressed.
+   */
+  public boolean isGZIPOutput ()
+  {
+    return m_bGZIPOutput;
+  }
+
+  /**
+   * @return The GZIP compression level used if {@link #isGZIPOutput()} is
+   *         enabled. Between {@link GZIPHelper#MIN_LEVEL} and
+   *         {@link GZIPHelper#MAX_LEVEL}.
+   */
+  public int getGZIPLevel ()
+  {
+    return m_nGZIPLevel;
+  }
+
+  /**
+   * @return <code>true</code> if large embedded attachments should be spooled
+   *         to temporary files while reading, if the CII is written to an
+   *         output stream or a channel.
+   */
+  public boolean isSpoolAttachments ()
+  {
+    return m_bSpoolAttachments;
+  }
+
+  /**
+   * @return The minimum decoded size in bytes of embedded attachments that are
+   *         spooled, if {@link #isSpoolAttachments()} is enabled. Always &ge;
+   *         0.
+   */
+  @Nonnegative
+  public int getAttachmentSpoolThreshold ()
+  {
+    return m_nAttachmentSpoolThreshold;
+  }
+
+  /**
+   * @return The directory to create the attachment spool files in. May be
+   *         <code>null</code> to use the default temporary directory.
+   */
+  @Nullable
+  public Path getAttachmentSpoolDirectory ()
+  {
+    return m_aAttachmentSpoolDirectory;
+  }
+
+  /**
+   * @return The sink to store embedded attachments outside of the CII. May be
+   *         <code>null</code> to keep the attachments embedded.
+   */
+  @Nullable
+  public IAttachmentSink getAttachmentSink ()
+  {
+    return m_aAttachmentSink;
+  }
+
+  /**
+   * @return The batch scoped store to deduplicate attachments. May be
+   *         <code>null</code> to handle each attachment on its own.
+   */
+  @Nullable
+  public AttachmentStore getAttachmentStore ()
+  {
+    return m_aAttachmentStore;
+  }
+
+  /**
+   * @return The minimum number of line items, including all sub invoice lines,
+   *         of a document to convert its lines in parallel on the common
+   *         fork/join pool. Smaller documents are converted sequentially -
+   *         when writing to a stream, a channel or a result, their lines are
+   *         only converted while writing. Always &gt; 0.
+   */
+  @Nonnegative
+  public int getParallelLineThreshold ()
+  {
+    return m_nParallelLineThreshold;
+  }
+
+  @Override
+  public boolean equals (final Object o)
+  {
+    if (o == this)
+      return true;
+    if (o == null || !getClass ().equals (o.getClass ()))
+      return false;
+    final UBLToCIIConversionSettings rhs = (UBLToCIIConversionSettings) o;
+    return m_eOutputProfile == rhs.m_eOutputProfile &&
+           m_aCharset.equals (rhs.m_aCharset) &&
+           m_bUseSchema == rhs.m_bUseSchema &&
+           m_aSkippedElements.equals (rhs.m_aSkippedElements) &&
+           m_eFileInputMode == rhs.m_eFileInputMode &&
+           m_nMappingThreshold == rhs.m_nMappingThreshold &&
+           m_nChannelBufferSize == rhs.m_nChannelBufferSize &&
+           m_nMaxPooledChannelBuffers == rhs.m_nMaxPooledChannelBuffers &&
+           m_bDetectGZIPInput == rhs.m_bDetectGZIPInput &&
+           m_bGZIPOutput == rhs.m_bGZIPOutput &&
+           m_nGZIPLevel == rhs.m_nGZIPLevel &&
+           m_bSpoolAttachments == rhs.m_bSpoolAttachments &&
+           m_nAttachmentSpoolThreshold == rhs.m_nAttachmentSpoolThreshold &&
+           EqualsHelper.equals (m_aAttachmentSpoolDirectory, rhs.m_aAttachmentSpoolDirectory) &&
+           EqualsHelper.equals (m_aAttachmentSink, rhs.m_aAttachmentSink) &&
+           EqualsHelper.equals (m_aAttachmentStore, rhs.m_aAttachmentStore) &&
+           m_nParallelLineThreshold == rhs.m_nParallelLineThreshold;
+  }
+
+  @Override
+  public int hashCode ()
+  {
+    return new HashCodeGenerator (this).append (m_eOutputProfile)
+                                       .append (m_aCharset)
+                                       .append (m_bUseSchema)
+                                       .append (m_aSkippedElements)
+                                       .append (m_eFileInputMode)
+                                       .append (m_nMappingThreshold)
+                                       .append (m_nChannelBufferSize)
+                                       .append (m_nMaxPooledChannelBuffers)
+                                       .append (m_bDetectGZIPInput)
+                                       .append (m_bGZIPOutput)
+                                       .append (m_nGZIPLevel)
+                                       .append (m_bSpoolAttachments)
+                                       .append (m_nAttachmentSpoolThreshold)
+                                       .append (m_aAttachmentSpoolDirectory)
+                                       .append (m_aAttachmentSink)
+                                       .append (m_aAttachmentStore)
+                                       .append (m_nParallelLineThreshold)
+                                       .getHashCode ();
+  }
+
+  @Override
+  public String toString ()
+  {
+    return new ToStringGenerator (this).append ("OutputProfile", m_eOutputProfile)
+                                       .append ("Charset", m_aCharset)
+                                       .append ("UseSchema", m_bUseSchema)
+                                       .append ("SkippedElements", m_aSkippedElements)
+                                       .append ("FileInputMode", m_eFileInputMode)
+                                       .append ("MappingThreshold", m_nMappingThreshold)
+                                       .append ("ChannelBufferSize", m_nChannelBufferSize)
+                                       .append ("MaxPooledChannelBuffers", m_nMaxPooledChannelBuffers)
+                                       .append ("DetectGZIPInput", m_bDetectGZIPInput)
+                                       .append ("GZIPOutput", m_bGZIPOutput)
+                                       .append ("GZIPLevel", m_nGZIPLevel)
+                                       .append ("SpoolAttachments", m_bSpoolAttachments)
+                                       .append ("AttachmentSpoolThreshold", m_nAttachmentSpoolThreshold)
+                                       .append ("AttachmentSpoolDirectory", m_aAttachmentSpoolDirectory)
+                                       .append ("AttachmentSink", m_aAttachmentSink)
+                                       .append ("AttachmentStore", m_aAttachmentStore)
+                                       .append ("ParallelLineThreshold", m_nParallelLineThreshold)
+                                       .getToString ();
+  }
+
+  /**
+   * @return A new builder with the default values. Never <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder ()
+  {
+    return new Builder ();
+  }
+
+  /**
+   * @param aBase
+   *        The settings to copy the values from. May not be <code>null</code>.
+   * @return A new builder with the values of the provided settings. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  public static Builder builder (@Nonnull final UBLToCIIConversionSettings aBase)
+  {
+    ValueEnforcer.notNull (aBase, "Base");
+    return new Builder ().outputProfile (aBase.m_eOutputProfile)
+                         .charset (aBase.m_aCharset)
+                         .useSchema (aBase.m_bUseSchema)
+                         .skippedElements (aBase.m_aSkippedElements)
+                         .fileInputMode (aBase.m_eFileInputMode)
+                         .mappingThreshold (aBase.m_nMappingThreshold)
+                         .channelBufferSize (aBase.m_nChannelBufferSize)
+                         .maxPooledChannelBuffers (aBase.m_nMaxPooledChannelBuffers)
+                         .detectGZIPInput (aBase.m_bDetectGZIPInput)
+                         .gzipOutput (aBase.m_bGZIPOutput)
+                         .gzipLevel (aBase.m_nGZIPLevel)
+                         .spoolAttachments (aBase.m_bSpoolAttachments)
+                         .attachmentSpoolThreshold (aBase.m_nAttachmentSpoolThreshold)
+                         .attachmentSpoolDirectory (aBase.m_aAttachmentSpoolDirectory)
+                         .attachmentSink (aBase.m_aAttachmentSink)
+                         .attachmentStore (aBase.m_aAttachmentStore)
+                         .parallelLineThreshold (aBase.m_nParallelLineThreshold);
+  }
+
+  /**
+   * Builder for {@link UBLToCIIConversionSettings}
+   *
+   * @author Philip Helger
+   */
+  @NotThreadSafe
+  public static final class Builder implements IBuilder <UBLToCIIConversionSettings>
+  {
+    private ECIIOutputProfile m_eOutputProfile = DEFAULT_OUTPUT_PROFILE;
+    private Charset m_aCharset = DEFAULT_CHARSET;
+    private boolean m_bUseSchema = DEFAULT_USE_SCHEMA;
+    private final ICommonsSet <QName> m_aSkippedElements = new CommonsHashSet <> (DEFAULT_SKIPPED_ELEMENTS);
+    private EFileInputMode m_eFileInputMode = DEFAULT_FILE_INPUT_MODE;
+    private int m_nMappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+    private int m_nChannelBufferSize = DEFAULT_CHANNEL_BUFFER_SIZE;
+    private int m_nMaxPooledChannelBuffers = DEFAULT_MAX_POOLED_CHANNEL_BUFFERS;
+    private boolean m_bDetectGZIPInput = DEFAULT_DETECT_GZIP_INPUT;
+    private boolean m_bGZIPOutput = DEFAULT_GZIP_OUTPUT;
+    private int m_nGZIPLevel = DEFAULT_GZIP_LEVEL;
+    private boolean m_bSpoolAttachments = DEFAULT_SPOOL_ATTACHMENTS;
+    private int m_nAttachmentSpoolThreshold = DEFAULT_ATTACHMENT_SPOOL_THRESHOLD;
+    private Path m_aAttachmentSpoolDirectory = DEFAULT_ATTACHMENT_SPOOL_DIRECTORY;
+    private IAttachmentSink m_aAttachmentSink = DEFAULT_ATTACHMENT_SINK;
+    private AttachmentStore m_aAttachmentStore = DEFAULT_ATTACHMENT_STORE;
+    private int m_nParallelLineThreshold = DEFAULT_PARALLEL_LINE_THRESHOLD;
+
+    Builder ()
+    {}
+
+    @Nonnull
+    public Builder outputProfile (@Nonnull final ECIIOutputProfile e)
+    {
+      ValueEnforcer.notNull (e, "OutputProfile");
+      m_eOutputProfile = e;
+      return this;
+    }
+
+    /**
+     * Shortcut for {@link #outputProfile(ECIIOutputProfile)} with
+     * {@link ECIIOutputProfile#PRETTY} or {@link ECIIOutputProfile#COMPACT}.
+     *
+     * @param b
+     *        <code>true</code> for pretty printed output, <code>false</code>
+     *        for compact output.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder formattedOutput (final boolean b)
+    {
+      return outputProfile (b ? ECIIOutputProfile.PRETTY : ECIIOutputProfile.COMPACT);
+    }
+
+    @Nonnull
+    public Builder charset (@Nonnull final Charset a)
+    {
+      ValueEnforcer.notNull (a, "Charset");
+      m_aCharset = a;
+      return this;
+    }
+
+    @Nonnull
+    public Builder useSchema (final boolean b)
+    {
+      m_bUseSchema = b;
+      return this;
+    }
+
+    /**
+     * Set the UBL elements to be dropped before unmarshalling. This replaces
+     * all previously configured elements.
+     *
+     * @param a
+     *        The fully qualified element names. May be <code>null</code> or
+     *        empty to not skip anything.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder skippedElements (@Nullable final Collection <QName> a)
+    {
+      m_aSkippedElements.setAll (a);
+      return this;
+    }
+
+    /**
+     * Add a single UBL element to be dropped before unmarshalling.
+     *
+     * @param a
+     *        The fully qualified element name. May not be <code>null</code>.
+     * @return this for chaining
+     */
+    @Nonnull
+    public Builder addSkippedElement (@Nonnull final QName a)
+    {
+      ValueEnforcer.notNull (a, "SkippedElement");
+      m_aSkippedElements.add (a);
+      return this;
+    }
+
+    @Nonnull
+    public Builder fileInputMode (@Nonnull final EFileInputMode e)
+    {
+      ValueEnforcer.notNull (e, "FileInputMode");
+      m_eFileInputMode = e;
+      return this;
+    }
+
+    @Nonnull
+    public Builder mappingThreshold (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGE0 (n, "MappingThreshold");
+      m_nMappingThreshold = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder channelBufferSize (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGT0 (n, "ChannelBufferSize");
+      m_nChannelBufferSize = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder maxPooledChannelBuffers (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGE0 (n, "MaxPooledChannelBuffers");
+      m_nMaxPooledChannelBuffers = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder detectGZIPInput (final boolean b)
+    {
+      m_bDetectGZIPInput = b;
+      return this;
+    }
+
+    @Nonnull
+    public Builder gzipOutput (final boolean b)
+    {
+      m_bGZIPOutput = b;
+      return this;
+    }
+
+    @Nonnull
+    public Builder gzipLevel (final int n)
+    {
+      ValueEnforcer.isBetweenInclusive (n, "GZIPLevel", GZIPHelper.MIN_LEVEL, GZIPHelper.MAX_LEVEL);
+      m_nGZIPLevel = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder spoolAttachments (final boolean b)
+    {
+      m_bSpoolAttachments = b;
+      return this;
+    }
+
+    @Nonnull
+    public Builder attachmentSpoolThreshold (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGE0 (n, "AttachmentSpoolThreshold");
+      m_nAttachmentSpoolThreshold = n;
+      return this;
+    }
+
+    @Nonnull
+    public Builder attachmentSpoolDirectory (@Nullable final Path a)
+    {
+      m_aAttachmentSpoolDirectory = a;
+      return this;
+    }
+
+    @Nonnull
+    public Builder attachmentSink (@Nullable final IAttachmentSink a)
+    {
+      m_aAttachmentSink = a;
+      return this;
+    }
+
+    @Nonnull
+    public Builder attachmentStore (@Nullable final AttachmentStore a)
+    {
+      m_aAttachmentStore = a;
+      return this;
+    }
+
+    @Nonnull
+    public Builder parallelLineThreshold (@Nonnegative final int n)
+    {
+      ValueEnforcer.isGT0 (n, "ParallelLineThreshold");
+      m_nParallelLineThreshold = n;
+      return this;
+    }
+
+    @Nonnull
+    public UBLToCIIConversionSettings build ()
+    {
+      return new UBLToCIIConversionSettings (m_eOutputProfile,
+                                             m_aCharset,
+                                             m_bUseSchema,
+                                             m_aSkippedElements.getClone (),
+                                             m_eFileInputMode,
+                                             m_nMappingThreshold,
+                                             m_nChannelBufferSize,
+                                             m_nMaxPooledChannelBuffers,
+                                             m_bDetectGZIPInput,
+                                             m_bGZIPOutput,
+                                             m_nGZIPLevel,
+                                             m_bSpoolAttachments,
+                                             m_nAttachmentSpoolThreshold,
+                                             m_aAttachmentSpoolDirectory,
+                                             m_aAttachmentSink,
+                                             m_aAttachmentStore,
+                                             m_nParallelLineThreshold);
+    }
+  }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import com.helger.commons.ValueEnforcer;
+import com.helger.commons.error.level.EErrorLevel;
+import com.helger.commons.error.level.IErrorLevel;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.xml.sax.AbstractSAXErrorHandler;
+
+/**
+ * An {@link XMLStreamReader} that validates all events it passes through
+ * against an XML Schema. This allows to read only parts of a document via
+ * {@link UBL21StreamReader} while still validating the elements it does not
+ * map, as they are read via {@link #next()} as well. Elements that were
+ * already dropped by an underlying {@link SkippingXMLStreamReader} are not
+ * seen and therefore not validated. Validation warnings
+ * are collected, the first validation error is collected and aborts reading
+ * with an {@link XMLStreamException} - this is the same behaviour as with a
+ * JAXB unmarshaller that has a schema set.<br>
+ * The reader must be created when the underlying reader is positioned before
+ * or on the root element.
+ *
+ * @author Philip Helger
+ */
+@NotThreadSafe
+final class ValidatingXMLStreamReader extends StreamReaderDelegate
+{
+  private final ValidatorHandler m_aValidator;
+  private final AttributesImpl m_aAttrs = new AttributesImpl ();
+  private int m_nDepth = 0;
+
+  /**
+   * Constructor
+   *
+   * @param aReader
+   *        The reader to read from. May not be <code>null</code>.
+   * @param aSchema
+   *        The schema to validate against. May not be <code>null</code>.
+   * @param aErrorList
+   *        The error list to be filled with the validation results. May not be
+   *        <code>null</code>.
+   * @throws XMLStreamException
+   *         If the current root element is already invalid
+   */
+  ValidatingXMLStreamReader (@Nonnull final XMLStreamReader aReader,
+                             @Nonnull final Schema aSchema,
+                             @Nonnull final ErrorList aErrorList) throws XMLStreamException
+  {
+    super (aReader);
+    ValueEnforcer.notNull (aReader, "Reader");
+    ValueEnforcer.notNull (aSchema, "Schema");
+    ValueEnforcer.notNull (aErrorList, "ErrorList");
+
+    m_aValidator = aSchema.newValidatorHandler ();
+    m_aValidator.setErrorHandler (new ErrorHandler ()
+    {
+      private void _add (@Nonnull final IErrorLevel aLevel, @Nonnull final SAXParseException ex)
+      {
+        aErrorList.add (AbstractSAXErrorHandler.getSaxParseError (aLevel, ex));
+      }
+
+      public void warning (@Nonnull final SAXParseException ex)
+      {
+        _add (EErrorLevel.WARN, ex);
+      }
+
+      public void error (@Nonnull final SAXParseException ex) throws SAXException
+      {
+        _add (EErrorLevel.ERROR, ex);
+        throw ex;
+      }
+
+      public void fatalError (@Nonnull final SAXParseException ex) throws SAXException
+      {
+        _add (EErrorLevel.FATAL_ERROR, ex);
+        throw ex;
+      }
+    });
+    m_aValidator.setDocumentLocator (new Locator ()
+    {
+      @Nullable
+      public String getPublicId ()
+      {
+        return getLocation ().getPublicId ();
+      }
+
+      @Nullable
+      public String getSystemId ()
+      {
+        return getLocation ().getSystemId ();
+      }
+
+      public int getLineNumber ()
+      {
+        return getLocation ().getLineNumber ();
+      }
+
+      public int getColumnNumber ()
+      {
+        return getLocation ().getColumnNumber ();
+      }
+    });
+    try
+    {
+      m_aValidator.startDocument ();
+    }
+    catch (final SAXException ex)
+    {
+      throw _createException (ex);
+    }
+
+    // The root element was already read
+    if (aReader.isStartElement ())
+      _validate (XMLStreamConstants.START_ELEMENT);
+  }
+
+  @Nonnull
+  private XMLStreamException _createException (@Nonnull final SAXException ex)
+  {
+    return new XMLStreamException ("XML Schema validation failed: " + ex.getMessage (), getLocation (), ex);
+  }
+
+  @Nonnull
+  private static String _getQName (@Nullable final String sPrefix, @Nonnull final String sLocalName)
+  {
+    return StringHelper.hasText (sPrefix) ? sPrefix + ':' + sLocalName : sLocalName;
+  }
+
+  private void _validate (final int nEventType) throws XMLStreamException
+  {
+    try
+    {
+      switch (nEventType)
+      {
+        case XMLStreamConstants.START_ELEMENT:
+        {
+          for (int i = 0; i < getNamespaceCount (); ++i)
+            m_aValidator.startPrefixMapping (StringHelper.getNotNull (getNamespacePrefix (i)),
+                                             StringHelper.getNotNull (getNamespaceURI (i)));
+          m_aAttrs.clear ();
+          for (int i = 0; i < getAttributeCount (); ++i)
+          {
+            final String sLocalName = getAttributeLocalName (i);
+            m_aAttrs.addAttribute (StringHelper.getNotNull (getAttributeNamespace (i)),
+                                   sLocalName,
+                                   _getQName (getAttributePrefix (i), sLocalName),
+                                   "CDATA",
+                                   getAttributeValue (i));
+          }
+          m_aValidator.startElement (StringHelper.getNotNull (getNamespaceURI ()),
+                                     getLocalName (),
+                                     _getQName (getPrefix (), getLocalName ()),
+                                     m_aAttrs);
+          m_nDepth++;
+          break;
+        }
+        case XMLStreamConstants.END_ELEMENT:
+        {
+          m_aValidator.endElement (StringHelper.getNotNull (getNamespaceURI ()),
+                                   getLocalName (),
+                                   _getQName (getPrefix (), getLocalName ()));
+          for (int i = 0; i < getNamespaceCount (); ++i)
+            m_aValidator.endPrefixMapping (StringHelper.getNotNull (getNamespacePrefix (i)));
+          m_nDepth--;
+          if (m_nDepth == 0)
+          {
+            // The reader is usually not consumed until the end of the document
+            m_aValidator.endDocument ();
+          }
+          break;
+        }
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          if (m_nDepth > 0)
+            m_aValidator.characters (getTextCharacters (), getTextStart (), getTextLength ());
+          break;
+        default:
+          // Not relevant for validation
+          break;
+      }
+    }
+    catch (final SAXException ex)
+    {
+      throw _createException (ex);
+    }
+  }
+
+  @Override
+  public int next () throws XMLStreamException
+  {
+    final int nEventType = super.next ();
+    _validate (nEventType);
+    return nEventType;
+  }
+
+  @Override
+  public int nextTag () throws XMLStreamException
+  {
+    // Must go through next() - the parent implementation would bypass the
+    // validation
+    int nEventType = next ();
+    while ((nEventType == XMLStreamConstants.CHARACTERS && isWhiteSpace ()) ||
+           (nEventType == XMLStreamConstants.CDATA && isWhiteSpace ()) ||
+           nEventType == XMLStreamConstants.SPACE ||
+           nEventType == XMLStreamConstants.PROCESSING_INSTRUCTION ||
+           nEventType == XMLStreamConstants.COMMENT)
+    {
+      nEventType = next ();
+    }
+    if (nEventType != XMLStreamConstants.START_ELEMENT && nEventType != XMLStreamConstants.END_ELEMENT)
+      throw new XMLStreamException ("Expected a start or end element", getLocation ());
+    return nEventType;
+  }
+
+  @Override
+  public String getElementText () throws XMLStreamException
+  {
+    // Must go through next() - the parent implementation would bypass the
+    // validation
+    if (getEventType () != XMLStreamConstants.START_ELEMENT)
+      throw new XMLStreamException ("The current event is not a start element", getLocation ());
+
+    final StringBuilder aSB = new StringBuilder ();
+    int nEventType = next ();
+    while (nEventType != XMLStreamConstants.END_ELEMENT)
+    {
+      if (nEventType == XMLStreamConstants.CHARACTERS ||
+          nEventType == XMLStreamConstants.CDATA ||
+          nEventType == XMLStreamConstants.SPACE ||
+          nEventType == XMLStreamConstants.ENTITY_REFERENCE)
+        aSB.append (getText ());
+      else
+        if (nEventType != XMLStreamConstants.PROCESSING_INSTRUCTION && nEventType != XMLStreamConstants.COMMENT)
+          throw new XMLStreamException ("Unexpected event in element text", getLocation ());
+      nEventType = next ();
+    }
+    return aSB.toString ();
+  }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.statistics.StatisticsManager;
+
+/**
+ * Test class for class {@link AttachmentSpool}.
+ *
+ * @author Philip Helger
+ */
+public final class AttachmentSpoolTest
+{
+  private static final int THRESHOLD = 64 * 1024;
+
+  @Nonnull
+  private static String _getAttachment (@Nonnull final String sID, @Nonnull final String sBase64)
+  {
+    return "<cac:AdditionalDocumentReference><cbc:ID>" +
+           sID +
+           "</cbc:ID><cac:Attachment><cbc:EmbeddedDocumentBinaryObject mimeCode=\"application/pdf\" filename=\"" +
+           sID +
+           ".pdf\">" +
+           sBase64 +
+           "</cbc:EmbeddedDocumentBinaryObject></cac:Attachment></cac:AdditionalDocumentReference>";
+  }
+
+  /**
+   * @return The base example with one small and one large attachment, where
+   *         the large one is line wrapped like MIME content.
+   */
+  @Nonnull
+  static byte [] getInvoiceWithAttachments (@Nonnull final byte [] aLarge)
+  {
+    final String sXML = MockSettings.getBaseExampleInvoice ();
+    final int nIdx = sXML.indexOf ("<cac:AccountingSupplierParty>");
+    final byte [] aSmall = "Terms and conditions".getBytes (StandardCharsets.UTF_8);
+    return (sXML.substring (0, nIdx) +
+            _getAttachment ("small", Base64.getEncoder ().encodeToString (aSmall)) +
+            _getAttachment ("large", Base64.getMimeEncoder ().encodeToString (aLarge)) +
+            sXML.substring (nIdx)).getBytes (StandardCharsets.UTF_8);
+  }
+
+  @Nonnull
+  static byte [] getRandomBytes (final int nSize)
+  {
+    final byte [] ret = new byte [nSize];
+    new Random (nSize).nextBytes (ret);
+    return ret;
+  }
+
+  @Nonnull
+  private static byte [] _convert (@Nonnull final UBLToCIIConversionEngine aEngine, @Nonnull final byte [] aUBL)
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final ErrorList aErrorList = new ErrorList ();
+    assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aUBL), aBAOS, aErrorList)
+                       .isSuccess ());
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    return aBAOS.toByteArray ();
+  }
+
+  private static long _getFileCount (@Nonnull final Path aDir) throws IOException
+  {
+    try (final Stream <Path> aStream = Files.list (aDir))
+    {
+      return aStream.count ();
+    }
+  }
+
+  @Test
+  public void testSameResultAsInMemory () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-spool-test");
+    try
+    {
+      final UBLToCIIConversionEngine aSpoolEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                            .spoolAttachments (true)
+                                                                                                            .attachmentSpoolThreshold (THRESHOLD)
+                                                                                                            .attachmentSpoolDirectory (aDir)
+                                                                                                            .build ());
+      // Below and above the threshold, with and without padding
+      for (final int nSize : new int [] { THRESHOLD - 100, THRESHOLD + 100, 3 * THRESHOLD, 300_001 })
+      {
+        final byte [] aUBL = getInvoiceWithAttachments (getRandomBytes (nSize));
+        final byte [] aExpected = _convert (UBLToCIIConversionEngine.getDefaultInstance (), aUBL);
+
+        final long nSpooled = StatisticsManager.getCounterHandler (AttachmentSpool.class.getName () + "$spooled")
+                                               .getCount ();
+        assertArrayEquals ("Size " + nSize, aExpected, _convert (aSpoolEngine, aUBL));
+        assertEquals (nSize > THRESHOLD ? nSpooled + 1 : nSpooled,
+                      StatisticsManager.getCounterHandler (AttachmentSpool.class.getName () + "$spooled")
+                                       .getCount ());
+
+        // Channel output
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        final ErrorList aErrorList = new ErrorList ();
+        assertTrue (aSpoolEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aUBL),
+                                                                  Channels.newChannel (aBAOS),
+                                                                  aErrorList)
+                                .isSuccess ());
+        assertArrayEquals (aExpected, aBAOS.toByteArray ());
+
+        // All spool files are gone
+        assertEquals (0, _getFileCount (aDir));
+      }
+    }
+    finally
+    {
+      Files.delete (aDir);
+    }
+  }
+
+  @Test
+  public void testInvalidBase64 () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-spool-test");
+    try
+    {
+      final UBLToCIIConversionEngine aSpoolEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                            .spoolAttachments (true)
+                                                                                                            .attachmentSpoolThreshold (0)
+                                                                                                            .attachmentSpoolDirectory (aDir)
+                                                                                                            .build ());
+      final String sUBL = new String (getInvoiceWithAttachments (getRandomBytes (1000)), StandardCharsets.UTF_8);
+      final int nIdx = sUBL.indexOf ("filename=\"large.pdf\">") + 21;
+      final byte [] aBroken = (sUBL.substring (0, nIdx) + "!!!!" + sUBL.substring (nIdx)).getBytes (StandardCharsets.UTF_8);
+
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (aSpoolEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBroken),
+                                                                new NonBlockingByteArrayOutputStream (),
+                                                                aErrorList)
+                              .isFailure ());
+      assertTrue (aErrorList.containsAtLeastOneError ());
+      assertEquals (0, _getFileCount (aDir));
+    }
+    finally
+    {
+      Files.delete (aDir);
+    }
+  }
+}
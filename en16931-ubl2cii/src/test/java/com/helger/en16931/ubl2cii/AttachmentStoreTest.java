@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+/**
+ * Test class for class {@link AttachmentStore}.
+ *
+ * @author Philip Helger
+ */
+public final class AttachmentStoreTest
+{
+  private static final int THRESHOLD = 16 * 1024;
+
+  @Nonnull
+  private static byte [] _convert (@Nonnull final UBLToCIIConversionEngine aEngine, @Nonnull final byte [] aUBL)
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final ErrorList aErrorList = new ErrorList ();
+    assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aUBL), aBAOS, aErrorList)
+                       .isSuccess ());
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    return aBAOS.toByteArray ();
+  }
+
+  private static long _getFileCount (@Nonnull final Path aDir) throws IOException
+  {
+    try (final Stream <Path> aStream = Files.list (aDir))
+    {
+      return aStream.count ();
+    }
+  }
+
+  private static void _deleteRecursive (@Nonnull final Path aDir) throws IOException
+  {
+    try (final Stream <Path> aStream = Files.walk (aDir))
+    {
+      aStream.sorted (Comparator.reverseOrder ()).forEach (x -> x.toFile ().delete ());
+    }
+  }
+
+  @Test
+  public void testEmbedded () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-store-test");
+    try
+    {
+      final byte [] aUBL1 = AttachmentSpoolTest.getInvoiceWithAttachments (AttachmentSpoolTest.getRandomBytes (3 *
+                                                                                                               THRESHOLD));
+      final byte [] aUBL2 = AttachmentSpoolTest.getInvoiceWithAttachments (AttachmentSpoolTest.getRandomBytes (5 *
+                                                                                                               THRESHOLD));
+      final byte [] aExpected1 = _convert (UBLToCIIConversionEngine.getDefaultInstance (), aUBL1);
+      final byte [] aExpected2 = _convert (UBLToCIIConversionEngine.getDefaultInstance (), aUBL2);
+
+      try (final AttachmentStore aStore = new AttachmentStore (aDir))
+      {
+        final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                         .spoolAttachments (true)
+                                                                                                         .attachmentSpoolThreshold (THRESHOLD)
+                                                                                                         .attachmentSpoolDirectory (aDir)
+                                                                                                         .attachmentStore (aStore)
+                                                                                                         .build ());
+        for (int i = 0; i < 3; ++i)
+        {
+          assertArrayEquals (aExpected1, _convert (aEngine, aUBL1));
+          assertArrayEquals (aExpected2, _convert (aEngine, aUBL2));
+        }
+
+        // Only the large attachments are deduplicated
+        assertEquals (2, aStore.getDistinctCount ());
+        assertEquals (4, aStore.getDuplicateCount ());
+        assertEquals (2 * 3 * THRESHOLD + 2 * 5 * THRESHOLD, aStore.getDuplicateSize ());
+        assertEquals (4, aStore.getEncodedReuseCount ());
+
+        // One decoded and one encoded file per distinct attachment
+        assertEquals (4, _getFileCount (aDir));
+      }
+      assertEquals (0, _getFileCount (aDir));
+    }
+    finally
+    {
+      _deleteRecursive (aDir);
+    }
+  }
+
+  @Test
+  public void testExternalized () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-store-test");
+    try
+    {
+      final Path aSpoolDir = Files.createDirectory (aDir.resolve ("spool"));
+      final Path aAttachmentDir = Files.createDirectory (aDir.resolve ("attachments"));
+      final byte [] aLarge = AttachmentSpoolTest.getRandomBytes (3 * THRESHOLD);
+      final byte [] aUBL = AttachmentSpoolTest.getInvoiceWithAttachments (aLarge);
+
+      try (final AttachmentStore aStore = new AttachmentStore (aSpoolDir))
+      {
+        final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                         .spoolAttachments (true)
+                                                                                                         .attachmentSpoolThreshold (THRESHOLD)
+                                                                                                         .attachmentSpoolDirectory (aSpoolDir)
+                                                                                                         .attachmentStore (aStore)
+                                                                                                         .attachmentSink (new DirectoryAttachmentSink (aAttachmentDir))
+                                                                                                         .build ());
+        final String sCII1 = new String (_convert (aEngine, aUBL), StandardCharsets.UTF_8);
+        final String sCII2 = new String (_convert (aEngine, aUBL), StandardCharsets.UTF_8);
+        assertFalse (sCII1.contains ("AttachmentBinaryObject"));
+        // The second document references the files of the first one
+        assertEquals (sCII1, sCII2);
+
+        // The small attachment is deduplicated from memory
+        assertEquals (2, aStore.getDistinctCount ());
+        assertEquals (2, aStore.getDuplicateCount ());
+        assertEquals (2, aStore.getURIReuseCount ());
+        assertEquals (0, aStore.getEncodedReuseCount ());
+        assertEquals (2, _getFileCount (aAttachmentDir));
+        assertArrayEquals (aLarge, Files.readAllBytes (aAttachmentDir.resolve ("Snippet1_large.pdf")));
+      }
+      assertEquals (0, _getFileCount (aSpoolDir));
+    }
+    finally
+    {
+      _deleteRecursive (aDir);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileHelper;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+/**
+ * Test class for class {@link ChannelOutputBufferPool}.
+ *
+ * @author Philip Helger
+ */
+public final class ChannelOutputBufferPoolTest
+{
+  /**
+   * Behaves like a non-blocking channel, that accepts only a few bytes per
+   * call.
+   */
+  private static final class SlowChannel implements WritableByteChannel
+  {
+    private final NonBlockingByteArrayOutputStream m_aBAOS = new NonBlockingByteArrayOutputStream ();
+    private boolean m_bOpen = true;
+
+    public int write (@Nonnull final ByteBuffer aSrc)
+    {
+      assertTrue (aSrc.isDirect ());
+      final int nLen = Math.min (aSrc.remaining (), 3);
+      for (int i = 0; i < nLen; ++i)
+        m_aBAOS.write (aSrc.get ());
+      return nLen;
+    }
+
+    public boolean isOpen ()
+    {
+      return m_bOpen;
+    }
+
+    public void close ()
+    {
+      m_bOpen = false;
+    }
+  }
+
+  @Test
+  public void testWriteAndReuse () throws IOException
+  {
+    final byte [] aExpected = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ());
+    final ChannelOutputBufferPool aPool = new ChannelOutputBufferPool (100, 1);
+    assertEquals (0, aPool.getPooledBufferCount ());
+
+    for (int i = 0; i < 3; ++i)
+    {
+      final SlowChannel aChannel = new SlowChannel ();
+      try (final OutputStream aOS = aPool.createOutputStream (aChannel))
+      {
+        // Mix of single bytes and chunks larger than the buffer
+        aOS.write (aExpected[0]);
+        aOS.write (aExpected, 1, 250);
+        aOS.write (aExpected, 251, aExpected.length - 251);
+      }
+      assertTrue (aChannel.isOpen ());
+      assertArrayEquals (aExpected, aChannel.m_aBAOS.toByteArray ());
+      assertEquals (1, aPool.getPooledBufferCount ());
+    }
+  }
+
+  @Test
+  public void testEngineSameResultAsStream () throws IOException
+  {
+    // Small buffers to have many channel writes
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                   .channelBufferSize (512)
+                                                                                                   .maxPooledChannelBuffers (1)
+                                                                                                   .build ());
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertTrue (aEngine.convertUBL21InvoiceToCIID16B (aIS, aExpected, aErrorList).isSuccess ());
+      }
+
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      try (final InputStream aIS = FileHelper.getInputStream (aFile);
+           final WritableByteChannel aChannel = Channels.newChannel (aBAOS))
+      {
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aChannel, aErrorList).isSuccess ());
+        assertTrue (aChannel.isOpen ());
+      }
+      assertArrayEquals ("Difference in " + aFile.getName (), aExpected.toByteArray (), aBAOS.toByteArray ());
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testClosedChannel () throws IOException
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final File aFile = MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ();
+    final WritableByteChannel aChannel = Channels.newChannel (new NonBlockingByteArrayOutputStream ());
+    aChannel.close ();
+    try (final InputStream aIS = FileHelper.getInputStream (aFile))
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aChannel, aErrorList).isFailure ());
+      assertTrue (aErrorList.containsAtLeastOneError ());
+    }
+  }
+}
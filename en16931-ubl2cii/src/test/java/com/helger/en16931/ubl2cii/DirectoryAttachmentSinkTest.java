@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.ReferencedDocumentType;
+
+/**
+ * Test class for class {@link DirectoryAttachmentSink}.
+ *
+ * @author Philip Helger
+ */
+public final class DirectoryAttachmentSinkTest
+{
+  private static void _deleteRecursive (@Nonnull final Path aDir) throws IOException
+  {
+    try (final Stream <Path> aStream = Files.walk (aDir))
+    {
+      aStream.sorted (Comparator.reverseOrder ()).forEach (x -> x.toFile ().delete ());
+    }
+  }
+
+  @Test
+  public void testExternalize () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-sink-test");
+    try
+    {
+      final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                       .attachmentSink (new DirectoryAttachmentSink (aDir))
+                                                                                                       .build ());
+      final byte [] aLarge = AttachmentSpoolTest.getRandomBytes (10_000);
+      final ErrorList aErrorList = new ErrorList ();
+      final CrossIndustryInvoiceType aCII = aEngine.convertUBL21AutoDetectToCIID16B (AttachmentSpoolTest.getInvoiceWithAttachments (aLarge),
+                                                                                    aErrorList);
+      assertNotNull (aCII);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+      int nCount = 0;
+      for (final ReferencedDocumentType aRDT : aCII.getSupplyChainTradeTransaction ()
+                                                   .getApplicableHeaderTradeAgreement ()
+                                                   .getAdditionalReferencedDocument ())
+        if (aRDT.getIssuerAssignedIDValue ().equals ("small") || aRDT.getIssuerAssignedIDValue ().equals ("large"))
+        {
+          assertTrue (aRDT.getAttachmentBinaryObject ().isEmpty ());
+          assertEquals ("Snippet1_" + aRDT.getIssuerAssignedIDValue () + ".pdf", aRDT.getURIIDValue ());
+          nCount++;
+        }
+      assertEquals (2, nCount);
+
+      assertArrayEquals ("Terms and conditions".getBytes (StandardCharsets.UTF_8),
+                         Files.readAllBytes (aDir.resolve ("Snippet1_small.pdf")));
+      assertArrayEquals (aLarge, Files.readAllBytes (aDir.resolve ("Snippet1_large.pdf")));
+
+      // The created CII is still valid
+      assertNotNull (new CIID16BCrossIndustryInvoiceTypeMarshaller ().getAsBytes (aCII));
+
+      // A second conversion does not overwrite the files of the first one
+      aErrorList.clear ();
+      assertNotNull (aEngine.convertUBL21AutoDetectToCIID16B (AttachmentSpoolTest.getInvoiceWithAttachments (aLarge),
+                                                              aErrorList));
+      assertTrue (Files.isRegularFile (aDir.resolve ("Snippet1_large_2.pdf")));
+    }
+    finally
+    {
+      _deleteRecursive (aDir);
+    }
+  }
+
+  @Test
+  public void testExternalizeSpooled () throws IOException
+  {
+    final Path aDir = Files.createTempDirectory ("ubl2cii-sink-test");
+    try
+    {
+      final Path aSpoolDir = Files.createDirectory (aDir.resolve ("spool"));
+      final Path aAttachmentDir = Files.createDirectory (aDir.resolve ("attachments"));
+      final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                       .spoolAttachments (true)
+                                                                                                       .attachmentSpoolThreshold (1024)
+                                                                                                       .attachmentSpoolDirectory (aSpoolDir)
+                                                                                                       .attachmentSink (new DirectoryAttachmentSink (aAttachmentDir))
+                                                                                                       .build ());
+      final byte [] aLarge = AttachmentSpoolTest.getRandomBytes (100_000);
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (AttachmentSpoolTest.getInvoiceWithAttachments (aLarge)),
+                                                           aBAOS,
+                                                           aErrorList)
+                         .isSuccess ());
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+      final String sCII = aBAOS.getAsString (StandardCharsets.UTF_8);
+      assertFalse (sCII.contains ("AttachmentBinaryObject"));
+      assertTrue (sCII.contains ("Snippet1_large.pdf"));
+      assertArrayEquals (aLarge, Files.readAllBytes (aAttachmentDir.resolve ("Snippet1_large.pdf")));
+
+      // The spool files are deleted
+      try (final Stream <Path> aStream = Files.list (aSpoolDir))
+      {
+        assertEquals (0, aStream.count ());
+      }
+    }
+    finally
+    {
+      _deleteRecursive (aDir);
+    }
+  }
+}
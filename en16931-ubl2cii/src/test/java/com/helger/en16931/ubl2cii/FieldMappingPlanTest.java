@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AddressLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AddressType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.CountryType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAddressType;
+
+/**
+ * Test class for class {@link FieldMappingPlan} and
+ * {@link UBL21ToCIID16BMapping}.
+ *
+ * @author Philip Helger
+ */
+public final class FieldMappingPlanTest
+{
+  private static final class Source
+  {
+    private final String m_sValue;
+    private final List <String> m_aValues;
+
+    Source (final String sValue, final List <String> aValues)
+    {
+      m_sValue = sValue;
+      m_aValues = aValues;
+    }
+  }
+
+  @Test
+  public void testConditions ()
+  {
+    final FieldMappingPlan <Source, List <String>> aPlan = FieldMappingPlan.<Source, List <String>> builder ()
+                                                                           .always ("BT-1", x -> x.m_sValue, List::add)
+                                                                           .ifNotNull ("BT-2", x -> x.m_sValue, List::add)
+                                                                           .ifNotEmpty ("BT-3", x -> x.m_sValue, List::add)
+                                                                           .forEach ("BG-4", x -> x.m_aValues, List::add)
+                                                                           .build ();
+    assertEquals (4, aPlan.getMappingCount ());
+    assertEquals (new CommonsArrayList <> ("BT-1", "BT-2", "BT-3", "BG-4"), aPlan.getAllBusinessTerms ());
+
+    final List <String> aDst = new CommonsArrayList <> ();
+    assertSame (aDst, aPlan.apply (new Source ("a", List.of ("b", "c")), aDst));
+    assertEquals (List.of ("a", "a", "a", "b", "c"), aDst);
+
+    aDst.clear ();
+    aPlan.apply (new Source ("", null), aDst);
+    assertEquals (List.of ("", ""), aDst);
+
+    aDst.clear ();
+    aPlan.apply (new Source (null, List.of ()), aDst);
+    assertEquals (1, aDst.size ());
+    assertNull (aDst.get (0));
+  }
+
+  @Test
+  public void testAddAll ()
+  {
+    final FieldMappingPlan <Object, List <String>> aBase = FieldMappingPlan.<Object, List <String>> builder ()
+                                                                           .always ("BT-1", Object::toString, List::add)
+                                                                           .build ();
+    final FieldMappingPlan <String, List <String>> aPlan = FieldMappingPlan.<String, List <String>> builder ()
+                                                                           .addAll (aBase)
+                                                                           .ifNotEmpty ("BT-2", String::trim, List::add)
+                                                                           .build ();
+    assertEquals (new CommonsArrayList <> ("BT-1", "BT-2"), aPlan.getAllBusinessTerms ());
+    assertEquals (List.of (" x ", "x"), aPlan.apply (" x ", new CommonsArrayList <> ()));
+    // The base plan is not modified
+    assertEquals (1, aBase.getMappingCount ());
+  }
+
+  @Test
+  public void testAddressPlan ()
+  {
+    final AddressType aUBLAddress = new AddressType ();
+    aUBLAddress.setStreetName ("Main Street 1");
+    aUBLAddress.setAdditionalStreetName ("");
+    final AddressLineType aLine = new AddressLineType ();
+    aLine.setLine ("Building 2");
+    aUBLAddress.addAddressLine (aLine);
+    aUBLAddress.setCityName ("Vienna");
+    final CountryType aCountry = new CountryType ();
+    aCountry.setIdentificationCode ("AT");
+    aUBLAddress.setCountry (aCountry);
+
+    final TradeAddressType aAddress = UBL21ToCIID16BMapping.ADDRESS.apply (aUBLAddress, new TradeAddressType ());
+    assertEquals ("Main Street 1", aAddress.getLineOneValue ());
+    // Empty values are not mapped
+    assertNull (aAddress.getLineTwo ());
+    assertEquals ("Building 2", aAddress.getLineThreeValue ());
+    assertEquals ("Vienna", aAddress.getCityNameValue ());
+    assertNull (aAddress.getPostcodeCode ());
+    assertFalse (aAddress.hasCountrySubDivisionNameEntries ());
+    assertEquals ("AT", aAddress.getCountryIDValue ());
+  }
+
+  @Test
+  public void testAllRowsHaveABusinessTerm ()
+  {
+    for (final FieldMappingPlan <?, ?> aPlan : new FieldMappingPlan <?, ?> [] { UBL21ToCIID16BMapping.ID,
+                                                                                UBL21ToCIID16BMapping.ADDRESS,
+                                                                                UBL21ToCIID16BMapping.LEGAL_ORGANIZATION,
+                                                                                UBL21ToCIID16BMapping.PARTY,
+                                                                                UBL21ToCIID16BMapping.TAX_CATEGORY,
+                                                                                UBL21ToCIID16BMapping.VAT_BREAKDOWN,
+                                                                                UBL21ToCIID16BMapping.ALLOWANCE_CHARGE,
+                                                                                UBL21ToCIID16BMapping.MONETARY_SUMMATION,
+                                                                                UBL21ToCIID16BMapping.TRADE_PRODUCT,
+                                                                                UBL21ToCIID16BMapping.PAYMENT_MEANS,
+                                                                                UBL21ToCIID16BMapping.INVOICING_PERIOD,
+                                                                                UBL21ToCIID16BMapping.HEADER_TRADE_SETTLEMENT })
+    {
+      assertTrue (aPlan.getMappingCount () > 0);
+      assertEquals (aPlan.getMappingCount (), aPlan.getAllBusinessTerms ().size ());
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.statistics.StatisticsManager;
+import com.helger.commons.timing.StopWatch;
+
+/**
+ * Compare the throughput and the number of read calls of the different file
+ * input modes. Every read call on the file channel stream results in one read
+ * system call, whereas mapped files are read via page faults only.
+ *
+ * @author Philip Helger
+ */
+public final class FileInputModeBenchmarkFuncTest
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (FileInputModeBenchmarkFuncTest.class);
+  private static final int RUNS = 20;
+
+  private static final class ReadCallCountingInputStream extends FilterInputStream
+  {
+    private long m_nReadCalls = 0;
+
+    ReadCallCountingInputStream (@Nonnull final InputStream aIS)
+    {
+      super (aIS);
+    }
+
+    @Override
+    public int read () throws IOException
+    {
+      m_nReadCalls++;
+      return super.read ();
+    }
+
+    @Override
+    public int read (final byte [] aBuf, final int nOfs, final int nLen) throws IOException
+    {
+      m_nReadCalls++;
+      return super.read (aBuf, nOfs, nLen);
+    }
+  }
+
+  @Nonnull
+  private static ICommonsList <File> _getBenchmarkFiles ()
+  {
+    final ICommonsList <File> ret = new CommonsArrayList <> ();
+    ret.addAll (MockSettings.getAllTestFilesUBL21Invoice ());
+
+    // Create one large file with many lines
+    final File aLargeFile = new File ("target/benchmark/large-invoice.xml");
+    aLargeFile.getParentFile ().mkdirs ();
+    SimpleFileIO.writeFile (aLargeFile, MockSettings.getBaseExampleInvoiceWithManyLines (2000), StandardCharsets.UTF_8);
+    ret.add (aLargeFile);
+    return ret;
+  }
+
+  private static long _getCount (@Nonnull final String sSuffix)
+  {
+    return StatisticsManager.getCounterHandler (MappedFileBufferProvider.class.getName () + sSuffix).getCount ();
+  }
+
+  @Test
+  @Ignore ("Benchmark only - takes too long for regular builds")
+  public void testCompareInputModes () throws IOException
+  {
+    final ICommonsList <File> aFiles = _getBenchmarkFiles ();
+    long nTotalBytes = 0;
+    for (final File aFile : aFiles)
+      nTotalBytes += aFile.length ();
+
+    final UBLToCIIConversionEngine aStreamEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final UBLToCIIConversionEngine aMappedEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                           .fileInputMode (EFileInputMode.MAPPED)
+                                                                                                           .build ());
+
+    // Warm up
+    for (final File aFile : aFiles)
+    {
+      assertNotNull (aStreamEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), new ErrorList ()));
+      assertNotNull (aMappedEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), new ErrorList ()));
+    }
+
+    // Stream - same as the engine does internally, but with counting
+    long nReadCalls = 0;
+    StopWatch aSW = StopWatch.createdStarted ();
+    for (int i = 0; i < RUNS; ++i)
+      for (final File aFile : aFiles)
+        try (final FileChannel aChannel = FileChannel.open (aFile.toPath (), StandardOpenOption.READ);
+             final ReadCallCountingInputStream aIS = new ReadCallCountingInputStream (Channels.newInputStream (aChannel)))
+        {
+          assertNotNull (aStreamEngine.convertUBL21AutoDetectToCIID16B (aIS, new ErrorList ()));
+          nReadCalls += aIS.m_nReadCalls;
+        }
+    long nMillis = aSW.stopAndGetMillis ();
+    LOGGER.info ("STREAM: " +
+                 nMillis +
+                 " ms, " +
+                 (nTotalBytes * RUNS / 1024 / Math.max (nMillis, 1)) +
+                 " KB/ms, " +
+                 nReadCalls +
+                 " read calls");
+
+    // Mapped
+    final long nMappedBefore = _getCount ("$mapped");
+    final long nHeapBefore = _getCount ("$heap");
+    final long nChannelReadsBefore = _getCount ("$channelreads");
+    aSW = StopWatch.createdStarted ();
+    for (int i = 0; i < RUNS; ++i)
+      for (final File aFile : aFiles)
+        assertNotNull (aMappedEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), new ErrorList ()));
+    nMillis = aSW.stopAndGetMillis ();
+    LOGGER.info ("MAPPED: " +
+                 nMillis +
+                 " ms, " +
+                 (nTotalBytes * RUNS / 1024 / Math.max (nMillis, 1)) +
+                 " KB/ms, " +
+                 (_getCount ("$channelreads") - nChannelReadsBefore) +
+                 " read calls, " +
+                 (_getCount ("$mapped") - nMappedBefore) +
+                 " mapped files, " +
+                 (_getCount ("$heap") - nHeapBefore) +
+                 " pooled heap files");
+  }
+}
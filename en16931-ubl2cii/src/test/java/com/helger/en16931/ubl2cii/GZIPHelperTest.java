@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.StreamHelper;
+
+/**
+ * Test class for class {@link GZIPHelper}.
+ *
+ * @author Philip Helger
+ */
+public final class GZIPHelperTest
+{
+  @Nonnull
+  private static byte [] _compress (@Nonnull final byte [] aBytes, final int nLevel) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    try (final OutputStream aOS = GZIPHelper.getCompressingOutputStream (aBAOS, nLevel))
+    {
+      aOS.write (aBytes);
+    }
+    return aBAOS.toByteArray ();
+  }
+
+  @Nonnull
+  private static byte [] _decompress (@Nonnull final byte [] aBytes) throws IOException
+  {
+    try (final InputStream aIS = new GZIPInputStream (new NonBlockingByteArrayInputStream (aBytes)))
+    {
+      return StreamHelper.getAllBytes (aIS);
+    }
+  }
+
+  @Test
+  public void testDetection () throws IOException
+  {
+    final byte [] aPlain = "<Invoice/>".getBytes (StandardCharsets.UTF_8);
+    final byte [] aCompressed = _compress (aPlain, GZIPHelper.MAX_LEVEL);
+    assertTrue (GZIPHelper.isGZIP (aCompressed, 0, aCompressed.length));
+    assertFalse (GZIPHelper.isGZIP (aPlain, 0, aPlain.length));
+    assertFalse (GZIPHelper.isGZIP (aCompressed, 0, 1));
+
+    for (final byte [] aSrc : new byte [] [] { aPlain, aCompressed })
+      try (final InputStream aIS = GZIPHelper.getDecompressedIfGZIP (new NonBlockingByteArrayInputStream (aSrc)))
+      {
+        assertArrayEquals (aPlain, StreamHelper.getAllBytes (aIS));
+      }
+
+    // Less than 2 bytes
+    for (final byte [] aSrc : new byte [] [] { new byte [0], new byte [] { 0x1f } })
+      try (final InputStream aIS = GZIPHelper.getDecompressedIfGZIP (new NonBlockingByteArrayInputStream (aSrc)))
+      {
+        assertArrayEquals (aSrc, StreamHelper.getAllBytes (aIS));
+      }
+  }
+
+  @Test
+  public void testEngineInputAndOutput () throws IOException
+  {
+    final UBLToCIIConversionEngine aPlainEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final UBLToCIIConversionEngine aGZIPEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                       .fileInputMode (EFileInputMode.MAPPED)
+                                                                                                       .gzipOutput (true)
+                                                                                                       .gzipLevel (1)
+                                                                                                       .build ());
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final byte [] aUBL = SimpleFileIO.getAllFileBytes (aFile);
+      final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+      assertTrue (aPlainEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aUBL),
+                                                               aExpected,
+                                                               aErrorList)
+                              .isSuccess ());
+
+      // Compressed input is detected
+      final byte [] aCompressedUBL = _compress (aUBL, GZIPHelper.MIN_LEVEL);
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      assertTrue (aPlainEngine.convertUBL21InvoiceToCIID16B (new NonBlockingByteArrayInputStream (aCompressedUBL),
+                                                            aBAOS,
+                                                            aErrorList)
+                              .isSuccess ());
+      assertArrayEquals (aExpected.toByteArray (), aBAOS.toByteArray ());
+
+      // Compressed output
+      aBAOS.reset ();
+      assertTrue (aGZIPEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aCompressedUBL),
+                                                              aBAOS,
+                                                              aErrorList)
+                             .isSuccess ());
+      assertArrayEquals (aExpected.toByteArray (), _decompress (aBAOS.toByteArray ()));
+
+      // Compressed file read via a mapped buffer
+      final File aTempFile = File.createTempFile ("ubl2cii", ".xml.gz");
+      try
+      {
+        SimpleFileIO.writeFile (aTempFile, aCompressedUBL);
+        assertNotNull (aGZIPEngine.convertUBL21AutoDetectToCIID16B (aTempFile.toPath (), aErrorList));
+      }
+      finally
+      {
+        aTempFile.delete ();
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testDetectionDisabled ()
+  {
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                   .detectGZIPInput (false)
+                                                                                                   .build ());
+    final byte [] aUBL = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ());
+    assertNotNull (aEngine.convertUBL21AutoDetectToCIID16B (aUBL, new ErrorList ()));
+
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (aEngine.convertUBL21AutoDetectToCIID16B (new byte [] { 0x1f, (byte) 0x8b, 8, 0 }, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}
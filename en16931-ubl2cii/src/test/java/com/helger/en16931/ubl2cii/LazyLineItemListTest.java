@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.junit.Test;
+
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.SupplyChainTradeLineItemType;
+
+/**
+ * Test class for class {@link LazyLineItemList}.
+ *
+ * @author Philip Helger
+ */
+public final class LazyLineItemListTest
+{
+  @Test
+  public void testListContract ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ()
+                                                   .read (MockSettings.BASE_EXAMPLE_INVOICE);
+    assertNotNull (aUBLInvoice);
+
+    // Make the second line a parent line
+    final InvoiceLineType aSubLine = aUBLInvoice.getInvoiceLineAtIndex (0).clone ();
+    aSubLine.setID ("2.1");
+    aUBLInvoice.getInvoiceLineAtIndex (1).addSubInvoiceLine (aSubLine);
+
+    final List <SupplyChainTradeLineItemType> aEager = new ArrayList <> ();
+    int nSize = 0;
+    for (final InvoiceLineType aLine : aUBLInvoice.getInvoiceLine ())
+    {
+      aEager.addAll (UBL21InvoiceToCIID16BConverter.convertInvoiceLine (aLine));
+      nSize += UBL21InvoiceToCIID16BConverter.countLineItems (aLine);
+    }
+    assertEquals (3, nSize);
+
+    // Sequential iteration
+    final List <SupplyChainTradeLineItemType> aIterated = new ArrayList <> ();
+    for (final SupplyChainTradeLineItemType aItem : new LazyLineItemList <> (aUBLInvoice.getInvoiceLine (),
+                                                                             UBL21InvoiceToCIID16BConverter::convertInvoiceLine,
+                                                                             nSize))
+      aIterated.add (aItem);
+    assertEquals (aEager, aIterated);
+
+    // Random access and everything that is based on it
+    final LazyLineItemList <InvoiceLineType> aLazy = new LazyLineItemList <> (aUBLInvoice.getInvoiceLine (),
+                                                                               UBL21InvoiceToCIID16BConverter::convertInvoiceLine,
+                                                                               nSize);
+    assertEquals (nSize, aLazy.size ());
+    assertEquals (aEager.get (2), aLazy.get (2));
+    assertEquals (aEager.get (0), aLazy.get (0));
+    assertEquals (aEager, aLazy);
+    assertEquals (aLazy, aEager);
+    assertEquals (aEager.hashCode (), aLazy.hashCode ());
+    assertEquals (aEager.subList (1, 3), aLazy.subList (1, 3));
+    final ListIterator <SupplyChainTradeLineItemType> aIt = aLazy.listIterator (nSize);
+    assertEquals (aEager.get (2), aIt.previous ());
+    assertEquals (aEager, new ArrayList <> (aLazy));
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+
+/**
+ * Test class for class {@link MappedFileBufferProvider}.
+ *
+ * @author Philip Helger
+ */
+public final class MappedFileBufferProviderTest
+{
+  private static final File TEST_FILE = MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ();
+
+  private static byte [] _getBytes (final ByteBuffer aBuffer)
+  {
+    final byte [] ret = new byte [aBuffer.remaining ()];
+    aBuffer.get (ret);
+    return ret;
+  }
+
+  @Test
+  public void testHeap ()
+  {
+    final byte [] aExpected = SimpleFileIO.getAllFileBytes (TEST_FILE);
+    final MappedFileBufferProvider aProvider = new MappedFileBufferProvider (aExpected.length + 1, 1);
+    final ErrorList aErrorList = new ErrorList ();
+    for (int i = 0; i < 3; ++i)
+    {
+      final ByteBuffer [] aUsed = new ByteBuffer [1];
+      assertArrayEquals (aExpected, aProvider.read (TEST_FILE.toPath (), aErrorList, x -> {
+        aUsed[0] = x;
+        return _getBytes (x);
+      }));
+      assertFalse (aUsed[0].isDirect ());
+    }
+    assertTrue (aErrorList.isEmpty ());
+  }
+
+  @Test
+  public void testMapped ()
+  {
+    final byte [] aExpected = SimpleFileIO.getAllFileBytes (TEST_FILE);
+    final MappedFileBufferProvider aProvider = new MappedFileBufferProvider (0, 0);
+    final ErrorList aErrorList = new ErrorList ();
+    assertArrayEquals (aExpected, aProvider.read (TEST_FILE.toPath (), aErrorList, x -> {
+      assertTrue (x.isDirect ());
+      return _getBytes (x);
+    }));
+    assertTrue (aErrorList.isEmpty ());
+  }
+
+  @Test
+  public void testMissingFile ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (new MappedFileBufferProvider (1024, 1).read (new File ("does-not-exist.xml").toPath (),
+                                                             aErrorList,
+                                                             x -> Boolean.TRUE));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testSameResultAsStream ()
+  {
+    final ICommonsList <File> aFiles = new CommonsArrayList <> ();
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21Invoice ());
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21CreditNote ());
+
+    final UBLToCIIConversionEngine aStreamEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    // Use a small threshold so that both variants are used
+    final UBLToCIIConversionEngine aMappedEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                           .fileInputMode (EFileInputMode.MAPPED)
+                                                                                                           .mappingThreshold (8 * 1024)
+                                                                                                           .build ());
+    final CIID16BCrossIndustryInvoiceTypeMarshaller aMarshaller = new CIID16BCrossIndustryInvoiceTypeMarshaller ();
+    final ErrorList aErrorList = new ErrorList ();
+    for (final File aFile : aFiles)
+      assertEquals (aFile.getName (),
+                    aMarshaller.getAsString (aStreamEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), aErrorList)),
+                    aMarshaller.getAsString (aMappedEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), aErrorList)));
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+  }
+}
@@ -0,0 +1,624 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.string.StringHelper;
+import com.helger.commons.timing.StopWatch;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.*;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.*;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.CodeType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IDType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.IndicatorType;
+import un.unece.uncefact.data.standard.unqualifieddatatype._100.QuantityType;
+
+/**
+ * Compare the conversion throughput of the {@link UBL21ToCIID16BMapping} based
+ * invoice conversion with the former hand-written field by field conversion.
+ *
+ * @author Philip Helger
+ */
+public final class MappingPlanBenchmarkFuncTest
+{
+  /**
+   * Verbatim copy of the hand-written invoice conversion, as it was before
+   * the mapping plans were introduced.
+   */
+  private static final class LegacyConverter extends AbstractToCIID16BConverter
+  {
+    @Nullable
+    private static String _getAsVAIfNecessary(@Nullable final String s) {
+      if ("VAT".equals(s))
+        return "VA";
+      return s;
+    }
+
+    @Nullable
+    protected static IDType convertID(@Nullable final com.helger.xsds.ccts.cct.schemamodule.IdentifierType aUBLID) {
+      if (aUBLID == null)
+        return null;
+
+      final IDType ret = new IDType();
+      ifNotNull(ret::setSchemeID, aUBLID.getSchemeID());
+      ifNotNull(ret::setValue, aUBLID.getValue());
+      return ret;
+    }
+
+    @Nullable
+    protected static TradeAddressType convertAddress(@Nullable final AddressType aUBLAddress) {
+      if (aUBLAddress == null)
+        return null;
+
+      final TradeAddressType ret = new TradeAddressType();
+      ifNotEmpty(ret::setLineOne, aUBLAddress.getStreetNameValue());
+      ifNotEmpty(ret::setLineTwo, aUBLAddress.getAdditionalStreetNameValue());
+      if (aUBLAddress.hasAddressLineEntries())
+        ifNotEmpty(ret::setLineThree, aUBLAddress.getAddressLineAtIndex(0).getLineValue());
+      ifNotEmpty(ret::setCityName, aUBLAddress.getCityNameValue());
+      ifNotEmpty(ret::setPostcodeCode, aUBLAddress.getPostalZoneValue());
+      if (aUBLAddress.getCountrySubentity() != null)
+        ret.addCountrySubDivisionName(convertText(aUBLAddress.getCountrySubentity().getValue()));
+      if (aUBLAddress.getCountry() != null)
+        ifNotEmpty(ret::setCountryID, aUBLAddress.getCountry().getIdentificationCodeValue());
+      return ret;
+    }
+
+    @Nullable
+    protected static TradePartyType convertParty(@Nullable final PartyType aUBLParty) {
+      if (aUBLParty == null)
+        return null;
+
+      final TradePartyType aTPT = new TradePartyType();
+      for (final var aUBLPartyID : aUBLParty.getPartyIdentification())
+        ifNotNull(aTPT::addID, convertID(aUBLPartyID.getID()));
+
+      if (aUBLParty.hasPartyNameEntries())
+        ifNotEmpty(aTPT::setName, aUBLParty.getPartyNameAtIndex(0).getNameValue());
+
+      if (aUBLParty.hasPartyLegalEntityEntries()) {
+        final PartyLegalEntityType aUBLLegalEntity = aUBLParty.getPartyLegalEntity().get(0);
+
+        final LegalOrganizationType aLOT = new LegalOrganizationType();
+        ifNotEmpty(aLOT::setTradingBusinessName, aUBLLegalEntity.getRegistrationNameValue());
+        ifNotNull(aLOT::setID, convertID(aUBLLegalEntity.getCompanyID()));
+        ifNotNull(aLOT::setPostalTradeAddress, convertAddress(aUBLLegalEntity.getRegistrationAddress()));
+
+        if (StringHelper.hasNoText(aTPT.getNameValue())) {
+          // Fill mandatory field
+          ifNotEmpty(aTPT::setName, aUBLLegalEntity.getRegistrationNameValue());
+        }
+
+        aTPT.setSpecifiedLegalOrganization(aLOT);
+      }
+
+      ifNotNull(aTPT::setPostalTradeAddress, convertAddress(aUBLParty.getPostalAddress()));
+
+      if (aUBLParty.getEndpointID() != null) {
+        final UniversalCommunicationType aUCT = new UniversalCommunicationType();
+        ifNotNull(aUCT::setURIID, convertID(aUBLParty.getEndpointID()));
+        aTPT.addURIUniversalCommunication(aUCT);
+      }
+
+      if (aUBLParty.hasPartyTaxSchemeEntries()) {
+        final PartyTaxSchemeType aUBLPartyTaxScheme = aUBLParty.getPartyTaxSchemeAtIndex(0);
+        if (aUBLPartyTaxScheme.getCompanyIDValue() != null) {
+          final TaxRegistrationType aTaxReg = new TaxRegistrationType();
+          final IDType aID = convertID(aUBLPartyTaxScheme.getCompanyID());
+          if (aUBLPartyTaxScheme.getTaxScheme() != null) {
+            // MUST use "VA" scheme
+            ifNotEmpty(aID::setSchemeID, _getAsVAIfNecessary(aUBLPartyTaxScheme.getTaxScheme().getIDValue()));
+          }
+          aTaxReg.setID(aID);
+          aTPT.addSpecifiedTaxRegistration(aTaxReg);
+        }
+      }
+
+      if (!aUBLParty.hasNoPersonEntries())
+        for (var aPerson : aUBLParty.getPerson())
+          aTPT.addDefinedTradeContact(convertPersonType(aPerson));
+      if(aUBLParty.getContact() != null) {
+        aTPT.addDefinedTradeContact(convertPersonType(aUBLParty.getContact()));
+      }
+
+      return aTPT;
+    }
+
+    @Nonnull
+    protected static TradeTaxType convertApplicableTradeTax(@Nonnull final TaxSubtotalType aUBLTaxSubtotal) {
+      final TaxCategoryType aUBLTaxCategory = aUBLTaxSubtotal.getTaxCategory();
+      final TaxSchemeType aUBLTaxScheme = aUBLTaxCategory.getTaxScheme();
+
+      final TradeTaxType ret = new TradeTaxType();
+      if (aUBLTaxScheme != null)
+        ifNotEmpty(ret::setTypeCode, aUBLTaxScheme.getIDValue());
+      ifNotEmpty(ret::setCategoryCode, aUBLTaxCategory.getIDValue());
+      ifNotNull(ret::addCalculatedAmount, convertAmount(aUBLTaxSubtotal.getTaxAmount()));
+      ifNotEmpty(ret::setCategoryCode, aUBLTaxCategory.getIDValue());
+      ifNotNull(ret::addBasisAmount, convertAmount(aUBLTaxSubtotal.getTaxableAmount()));
+      ifNotNull(ret::setRateApplicablePercent, aUBLTaxCategory.getPercentValue());
+      if (aUBLTaxCategory.hasTaxExemptionReasonEntries())
+        ifNotEmpty(ret::setExemptionReason, aUBLTaxCategory.getTaxExemptionReasonAtIndex(0).getValue());
+      ifNotEmpty(ret::setExemptionReasonCode, aUBLTaxCategory.getTaxExemptionReasonCodeValue());
+      return ret;
+    }
+
+    @Nonnull
+    protected static TradeAllowanceChargeType convertSpecifiedTradeAllowanceCharge(@Nonnull final AllowanceChargeType aUBLAllowanceCharge) {
+      final TradeAllowanceChargeType ret = new TradeAllowanceChargeType();
+
+      final IndicatorType aITDC = new IndicatorType();
+      aITDC.setIndicator(Boolean.valueOf(aUBLAllowanceCharge.getChargeIndicator().isValue()));
+      ret.setChargeIndicator(aITDC);
+
+      ret.addActualAmount(convertAmount(aUBLAllowanceCharge.getAmount()));
+      ifNotEmpty(ret::setReasonCode, aUBLAllowanceCharge.getAllowanceChargeReasonCodeValue());
+      if (aUBLAllowanceCharge.hasAllowanceChargeReasonEntries())
+        ret.setReason(aUBLAllowanceCharge.getAllowanceChargeReason().get(0).getValue());
+      ifNotNull(ret::setCalculationPercent, aUBLAllowanceCharge.getMultiplierFactorNumericValue());
+      ifNotNull(ret::setBasisAmount, aUBLAllowanceCharge.getBaseAmountValue());
+
+      if (aUBLAllowanceCharge.hasTaxCategoryEntries()) {
+        final TaxCategoryType aUBLTaxCategory = aUBLAllowanceCharge.getTaxCategoryAtIndex(0);
+        final TaxSchemeType aUBLTaxSchene = aUBLTaxCategory.getTaxScheme();
+
+        final TradeTaxType aTradeTax = new TradeTaxType();
+        if (aUBLTaxSchene != null)
+          ifNotEmpty(aTradeTax::setTypeCode, aUBLTaxSchene.getIDValue());
+        ifNotEmpty(aTradeTax::setCategoryCode, aUBLTaxCategory.getIDValue());
+        ifNotNull(aTradeTax::setRateApplicablePercent, aUBLTaxCategory.getPercentValue());
+        ret.addCategoryTradeTax(aTradeTax);
+      }
+
+      return ret;
+    }
+
+    @Nonnull
+    protected static TradeSettlementHeaderMonetarySummationType createSpecifiedTradeSettlementHeaderMonetarySummation(@Nullable final MonetaryTotalType aUBLMonetaryTotal,
+                                                                                                                      @Nullable final TaxTotalType aUBLTaxTotal) {
+      final TradeSettlementHeaderMonetarySummationType ret = new TradeSettlementHeaderMonetarySummationType();
+      if (aUBLMonetaryTotal != null) {
+        ifNotNull(ret::addLineTotalAmount, convertAmount(aUBLMonetaryTotal.getLineExtensionAmount()));
+        ifNotNull(ret::addChargeTotalAmount, convertAmount(aUBLMonetaryTotal.getChargeTotalAmount()));
+        ifNotNull(ret::addAllowanceTotalAmount, convertAmount(aUBLMonetaryTotal.getAllowanceTotalAmount()));
+        ifNotNull(ret::addTaxBasisTotalAmount, convertAmount(aUBLMonetaryTotal.getTaxExclusiveAmount()));
+      }
+
+      if (aUBLTaxTotal != null) {
+        // Currency ID is required here
+        ifNotNull(ret::addTaxTotalAmount, convertAmount(aUBLTaxTotal.getTaxAmount(), true));
+      }
+
+      if (aUBLMonetaryTotal != null) {
+        ifNotNull(ret::addRoundingAmount, convertAmount(aUBLMonetaryTotal.getPayableRoundingAmount()));
+        ifNotNull(ret::addGrandTotalAmount, convertAmount(aUBLMonetaryTotal.getTaxInclusiveAmount()));
+        ifNotNull(ret::addTotalPrepaidAmount, convertAmount(aUBLMonetaryTotal.getPrepaidAmount()));
+        ifNotNull(ret::addDuePayableAmount, convertAmount(aUBLMonetaryTotal.getPayableAmount()));
+      }
+
+      return ret;
+    }
+
+    @Nonnull
+    private static List<SupplyChainTradeLineItemType> _convertInvoiceLine (@Nonnull final InvoiceLineType aUBLLine)
+    {
+      return _convertInvoiceLine(aUBLLine, null);
+    }
+
+    @Nonnull
+    private static List<SupplyChainTradeLineItemType> _convertInvoiceLine (@Nonnull final InvoiceLineType aUBLLine, String parentID)
+    {
+      final SupplyChainTradeLineItemType supplyChainTradeLineItemType = new SupplyChainTradeLineItemType ();
+      final DocumentLineDocumentType aDLDT = new DocumentLineDocumentType ();
+      final List<SupplyChainTradeLineItemType> ret = new ArrayList<>();
+
+      aDLDT.setLineID (aUBLLine.getIDValue ());
+
+      if(parentID != null) {
+        aDLDT.setParentLineID(parentID);
+      }
+
+      var aAllowanceChargeList = aUBLLine.getAllowanceCharge();
+      if(aUBLLine.hasSubInvoiceLineEntries()) {
+        aUBLLine.getPrice().setPriceAmount(new BigDecimal(0));
+        aUBLLine.setLineExtensionAmount(new BigDecimal(0));
+        aUBLLine.setAllowanceCharge(new ArrayList<>()); // this must be set on billing level
+      }
+
+      for (final var aUBLNote : aUBLLine.getNote ())
+        aDLDT.addIncludedNote (convertNote (aUBLNote));
+
+      supplyChainTradeLineItemType.setAssociatedDocumentLineDocument (aDLDT);
+
+      // SpecifiedTradeProduct
+      final TradeProductType aTPT = new TradeProductType ();
+      final ItemType aUBLItem = aUBLLine.getItem ();
+      if (aUBLItem.getStandardItemIdentification () != null)
+        aTPT.setGlobalID (convertID (aUBLItem.getStandardItemIdentification ().getID ()));
+
+      if (aUBLItem.getSellersItemIdentification () != null)
+        aTPT.setSellerAssignedID (aUBLItem.getSellersItemIdentification ().getIDValue ());
+
+      aTPT.addName (convertText (aUBLItem.getNameValue ()));
+
+      if (aUBLItem.hasDescriptionEntries ())
+        aTPT.setDescription (aUBLItem.getDescriptionAtIndex (0).getValue ());
+
+      // ApplicableProductCharacteristic
+      for (final ItemPropertyType aUBLAddItemProp : aUBLLine.getItem ().getAdditionalItemProperty ())
+      {
+        final ProductCharacteristicType aPCT = new ProductCharacteristicType ();
+        ifNotNull (aPCT::addDescription, convertText (aUBLAddItemProp.getNameValue ()));
+        ifNotNull (aPCT::addValue, convertText (aUBLAddItemProp.getValueValue ()));
+        aTPT.addApplicableProductCharacteristic (aPCT);
+      }
+
+      // DesignatedProductClassification
+      for (final CommodityClassificationType aUBLCC : aUBLLine.getItem ().getCommodityClassification ())
+      {
+        final ProductClassificationType aPCT = new ProductClassificationType ();
+        final CodeType aCT = new CodeType ();
+        ifNotEmpty (aCT::setListID, aUBLCC.getItemClassificationCode ().getListID ());
+        ifNotEmpty (aCT::setValue, aUBLCC.getItemClassificationCode ().getValue ());
+        aPCT.setClassCode (aCT);
+        aTPT.addDesignatedProductClassification (aPCT);
+      }
+      supplyChainTradeLineItemType.setSpecifiedTradeProduct (aTPT);
+
+      // BuyerOrderReferencedDocument
+      final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
+      if (aUBLLine.hasOrderLineReferenceEntries ())
+      {
+        aRDT.setLineID (aUBLLine.getOrderLineReferenceAtIndex (0).getLineIDValue ());
+      }
+
+      // NetPriceProductTradePrice
+      final TradePriceType aLTPT = new TradePriceType ();
+      if (aUBLLine.getPrice () != null && aUBLLine.getPrice ().getPriceAmount () != null)
+      {
+        aLTPT.addChargeAmount (convertAmount (aUBLLine.getPrice ().getPriceAmount ()));
+      }
+
+      // SpecifiedLineTradeAgreement
+      final LineTradeAgreementType aLTAT = new LineTradeAgreementType ();
+      aLTAT.setBuyerOrderReferencedDocument (aRDT);
+      aLTAT.setNetPriceProductTradePrice (aLTPT);
+
+      // SpecifiedLineTradeDelivery
+      final LineTradeDeliveryType aLTDT = new LineTradeDeliveryType ();
+      final QuantityType aQuantity = new QuantityType ();
+      aQuantity.setUnitCode (aUBLLine.getInvoicedQuantity ().getUnitCode ());
+      aQuantity.setValue (aUBLLine.getInvoicedQuantity ().getValue ());
+      aLTDT.setBilledQuantity (aQuantity);
+
+      // SpecifiedLineTradeSettlement
+      final LineTradeSettlementType aSLTS = new LineTradeSettlementType ();
+      for (final TaxCategoryType aUBLTaxCategory : aUBLLine.getItem ().getClassifiedTaxCategory ())
+      {
+        final TaxSchemeType aUBLTaxScheme = aUBLTaxCategory.getTaxScheme ();
+
+        final TradeTaxType aTradeTax = new TradeTaxType ();
+        if (aUBLTaxScheme != null)
+          ifNotEmpty (aTradeTax::setTypeCode, aUBLTaxCategory.getTaxScheme ().getIDValue ());
+        ifNotEmpty (aTradeTax::setCategoryCode, aUBLTaxCategory.getIDValue ());
+        ifNotNull (aTradeTax::setRateApplicablePercent, aUBLTaxCategory.getPercentValue ());
+        aSLTS.addApplicableTradeTax (aTradeTax);
+      }
+
+      for(final AllowanceChargeType allowanceCharge : aUBLLine.getAllowanceCharge()) {
+        aSLTS.addSpecifiedTradeAllowanceCharge(convertSpecifiedTradeAllowanceCharge(allowanceCharge));
+      }
+
+      // set it back, as it needs to be available to be put on billing level
+      if(aUBLLine.hasSubInvoiceLineEntries())
+        aUBLLine.setAllowanceCharge(aAllowanceChargeList);
+
+      final TradeSettlementLineMonetarySummationType aTSLMST = new TradeSettlementLineMonetarySummationType ();
+      ifNotNull (aTSLMST::addLineTotalAmount, convertAmount (aUBLLine.getLineExtensionAmount ()));
+
+      if (aUBLLine.getAccountingCostValue () != null)
+      {
+        final TradeAccountingAccountType aTAATL = new TradeAccountingAccountType ();
+        aTAATL.setID (aUBLLine.getAccountingCostValue ());
+        aSLTS.addReceivableSpecifiedTradeAccountingAccount (aTAATL);
+      }
+      aSLTS.setSpecifiedTradeSettlementLineMonetarySummation(aTSLMST);
+
+      supplyChainTradeLineItemType.setSpecifiedLineTradeDelivery (aLTDT);
+      supplyChainTradeLineItemType.setSpecifiedLineTradeAgreement (aLTAT);
+      supplyChainTradeLineItemType.setSpecifiedLineTradeSettlement(aSLTS);
+
+      ret.add(supplyChainTradeLineItemType);
+
+      // SubInvoiceLine handling
+      if(aUBLLine.hasSubInvoiceLineEntries()) {
+        for(int i = 0; i < aUBLLine.getSubInvoiceLineCount(); i++) {
+          var subInvoiceLines = _convertInvoiceLine(Objects.requireNonNull(aUBLLine.getSubInvoiceLineAtIndex(i)), aDLDT.getLineIDValue());
+          ret.addAll (subInvoiceLines);
+        }
+      }
+      return ret;
+    }
+
+    @Nonnull
+    private static HeaderTradeSettlementType _createApplicableHeaderTradeSettlement (@Nonnull final IUBL21Invoice aUBLInvoice)
+    {
+      final HeaderTradeSettlementType ret = new HeaderTradeSettlementType ();
+
+      final PaymentMeansType aUBLPaymentMeans = aUBLInvoice.getPaymentMeans ();
+
+      if (aUBLPaymentMeans != null && aUBLPaymentMeans.hasPaymentIDEntries ())
+        ret.addPaymentReference (convertText (aUBLPaymentMeans.getPaymentIDAtIndex (0).getValue ()));
+
+      ifNotEmpty (ret::setInvoiceCurrencyCode, aUBLInvoice.getDocumentCurrencyCode ());
+      ifNotNull (ret::setPayeeTradeParty, convertParty (aUBLInvoice.getPayeeParty ()));
+
+      if (aUBLPaymentMeans != null)
+      {
+        final TradeSettlementPaymentMeansType aTSPMT = new TradeSettlementPaymentMeansType ();
+        ifNotEmpty (aTSPMT::setTypeCode, aUBLPaymentMeans.getPaymentMeansCodeValue ());
+
+        final CreditorFinancialAccountType aCFAT = new CreditorFinancialAccountType ();
+        if (aUBLPaymentMeans.getPayeeFinancialAccount () != null)
+          ifNotEmpty (aCFAT::setIBANID, aUBLPaymentMeans.getPayeeFinancialAccount ().getIDValue ());
+        aTSPMT.setPayeePartyCreditorFinancialAccount (aCFAT);
+        ret.addSpecifiedTradeSettlementPaymentMeans (aTSPMT);
+      }
+
+      for (final TaxTotalType aUBLTaxTotal : aUBLInvoice.getTaxTotals ())
+        for (final TaxSubtotalType aUBLTaxSubtotal : aUBLTaxTotal.getTaxSubtotal ())
+          ret.addApplicableTradeTax (convertApplicableTradeTax (aUBLTaxSubtotal));
+
+      final PeriodType aUBLPeriod = aUBLInvoice.getInvoicePeriod ();
+      if (aUBLPeriod != null)
+      {
+
+        final SpecifiedPeriodType aSPT = new SpecifiedPeriodType ();
+        if (aUBLPeriod.getStartDate () != null)
+          aSPT.setStartDateTime (convertDate (aUBLPeriod.getStartDate ().getValueLocal ()));
+        if (aUBLPeriod.getEndDate () != null)
+          aSPT.setEndDateTime (convertDate (aUBLPeriod.getEndDate ().getValueLocal ()));
+        ret.setBillingSpecifiedPeriod (aSPT);
+      }
+
+      for (final AllowanceChargeType aUBLAllowanceCharge : aUBLInvoice.getAllowanceCharges ())
+        ret.addSpecifiedTradeAllowanceCharge (convertSpecifiedTradeAllowanceCharge (aUBLAllowanceCharge));
+
+      for (final PaymentTermsType aUBLPaymentTerms : aUBLInvoice.getPaymentTerms ())
+        ret.addSpecifiedTradePaymentTerms (convertSpecifiedTradePaymentTerms (aUBLPaymentTerms, aUBLPaymentMeans));
+
+      final TaxTotalType aUBLTaxTotal = aUBLInvoice.getTaxTotals ().isEmpty () ? null : aUBLInvoice.getTaxTotals ().get (0);
+      ret.setSpecifiedTradeSettlementHeaderMonetarySummation (createSpecifiedTradeSettlementHeaderMonetarySummation (aUBLInvoice.getLegalMonetaryTotal (), aUBLTaxTotal));
+
+      UBL21InvoiceToCIID16BConverter._handleParentInvoiceLines (ret, aUBLInvoice);
+
+      if (aUBLInvoice.getAccountingCost () != null)
+      {
+        final TradeAccountingAccountType aTAAT = new TradeAccountingAccountType ();
+        aTAAT.setID (aUBLInvoice.getAccountingCost ());
+        ret.addReceivableSpecifiedTradeAccountingAccount (aTAAT);
+      }
+
+      return ret;
+    }
+
+    /**
+     * Convert the provided UBL invoice, using the already converted invoice
+     * lines. The lines must have been converted before, because the line
+     * conversion modifies the UBL lines that are later used for the header
+     * trade settlement.
+     *
+     * @param aUBLInvoice
+     *        The UBL invoice incl. all lines. May not be <code>null</code>.
+     * @param aLineItems
+     *        The converted lines in document order. The list is used as is and
+     *        not copied. May not be <code>null</code>.
+     * @param aErrorList
+     *        The error list to be filled. May not be <code>null</code>.
+     * @return The created CII invoice.
+     */
+    @Nullable
+    static CrossIndustryInvoiceType convertToCrossIndustryInvoice (@Nonnull final IUBL21Invoice aUBLInvoice,
+                                                                   @Nonnull final List <SupplyChainTradeLineItemType> aLineItems,
+                                                                   @Nonnull final ErrorList aErrorList)
+    {
+
+      final CrossIndustryInvoiceType aCIIInvoice = new CrossIndustryInvoiceType ();
+
+      {
+        final ExchangedDocumentContextType aEDCT = new ExchangedDocumentContextType ();
+        if (aUBLInvoice.getCustomizationID () != null)
+        {
+          final DocumentContextParameterType aDCP = new DocumentContextParameterType ();
+          aDCP.setID (aUBLInvoice.getCustomizationID ());
+          aEDCT.addGuidelineSpecifiedDocumentContextParameter (aDCP);
+        }
+        if(aUBLInvoice.getProfileID() != null) {
+          final DocumentContextParameterType aDCP = new DocumentContextParameterType ();
+          aDCP.setID (aUBLInvoice.getProfileID ());
+          aEDCT.addBusinessProcessSpecifiedDocumentContextParameter(aDCP);
+        }
+        aCIIInvoice.setExchangedDocumentContext (aEDCT);
+      }
+
+      {
+        final ExchangedDocumentType aEDT = new ExchangedDocumentType ();
+        ifNotEmpty (aEDT::setID, aUBLInvoice.getID ());
+        ifNotEmpty (aEDT::setTypeCode, aUBLInvoice.getInvoiceTypeCode ());
+
+        // IssueDate
+        if (aUBLInvoice.getIssueDate () != null)
+          aEDT.setIssueDateTime (convertDate (aUBLInvoice.getIssueDate ()));
+
+        // Add add IncludedNote
+        for (final var aNote : aUBLInvoice.getNotes ())
+          aEDT.addIncludedNote (convertNote (aNote));
+
+        aCIIInvoice.setExchangedDocument (aEDT);
+      }
+
+      {
+        final SupplyChainTradeTransactionType aSCTT = new SupplyChainTradeTransactionType ();
+
+        // IncludedSupplyChainTradeLineItem
+        aSCTT.setIncludedSupplyChainTradeLineItem (aLineItems);
+
+
+        // ApplicableHeaderTradeAgreement
+        {
+          final HeaderTradeAgreementType aHTAT = new HeaderTradeAgreementType ();
+
+          // BuyerReference (in B2G context used for PEPPOL routing, but it is generally mandatory)
+          aHTAT.setBuyerReference(aUBLInvoice.getBuyerReference ());
+
+          // SellerTradeParty
+          final SupplierPartyType aSupplierParty = aUBLInvoice.getAccountingSupplierParty ();
+          if (aSupplierParty != null)
+            aHTAT.setSellerTradeParty (convertParty (aSupplierParty.getParty ()));
+
+          // BuyerTradeParty
+          final CustomerPartyType aCustomerParty = aUBLInvoice.getAccountingCustomerParty ();
+          if (aCustomerParty != null)
+            aHTAT.setBuyerTradeParty (convertParty (aCustomerParty.getParty ()));
+
+          // BuyerOrderReferencedDocument
+          if (aUBLInvoice.getOrderReference () != null && aUBLInvoice.getOrderReference ().getID () != null)
+          {
+            final ReferencedDocumentType aRDT = new ReferencedDocumentType ();
+            aRDT.setIssuerAssignedID (aUBLInvoice.getOrderReference ().getIDValue ());
+            aHTAT.setBuyerOrderReferencedDocument (aRDT);
+          }
+
+          // ContractReferencedDocument
+          if (aUBLInvoice.getContractDocumentReference () != null)
+          {
+            final ReferencedDocumentType aCRDT = new ReferencedDocumentType ();
+            aCRDT.setIssuerAssignedID (aUBLInvoice.getContractDocumentReference ().getIDValue ());
+            aHTAT.setContractReferencedDocument (aCRDT);
+          }
+
+          // AdditionalReferencedDocument
+          for (final var aUBLDocDesc : aUBLInvoice.getAdditionalDocumentReferences ())
+            aHTAT.addAdditionalReferencedDocument (convertAdditionalReferencedDocument (aUBLDocDesc));
+          aSCTT.setApplicableHeaderTradeAgreement (aHTAT);
+        }
+
+        // ApplicableHeaderTradeDelivery
+        aSCTT.setApplicableHeaderTradeDelivery (createApplicableHeaderTradeDelivery (aUBLInvoice.getDelivery ()));
+
+        // ApplicableHeaderTradeSettlement
+        aSCTT.setApplicableHeaderTradeSettlement (_createApplicableHeaderTradeSettlement (aUBLInvoice));
+
+        aCIIInvoice.setSupplyChainTradeTransaction (aSCTT);
+      }
+
+      return aCIIInvoice;
+    }
+
+    @Nonnull
+    static CrossIndustryInvoiceType convert (@Nonnull final IUBL21Invoice aUBLInvoice)
+    {
+      final List <SupplyChainTradeLineItemType> aLineItems = new ArrayList <> ();
+      for (final InvoiceLineType aLine : aUBLInvoice.getInvoiceLines ())
+        aLineItems.addAll (_convertInvoiceLine (aLine));
+      return convertToCrossIndustryInvoice (aUBLInvoice, aLineItems, new ErrorList ());
+    }
+  }
+
+  private static final Logger LOGGER = LoggerFactory.getLogger (MappingPlanBenchmarkFuncTest.class);
+  private static final int RUNS = 200;
+
+  @Nonnull
+  private static ICommonsList <InvoiceType> _getBenchmarkDocuments ()
+  {
+    final ICommonsList <InvoiceType> ret = new CommonsArrayList <> ();
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+      ret.add (UBL21Marshaller.invoice ().read (aFile));
+
+    // One large document with many lines
+    ret.add (UBL21Marshaller.invoice ().read (MockSettings.getBaseExampleInvoiceWithManyLines (2000)));
+
+    ret.forEach (x -> assertNotNull (x));
+    return ret;
+  }
+
+  @Test
+  @Ignore ("Benchmark only - takes too long for regular builds")
+  public void testCompareWithHandWrittenConversion ()
+  {
+    final ICommonsList <InvoiceType> aDocs = _getBenchmarkDocuments ();
+    final ICommonsList <IUBL21Invoice> aModels = aDocs.getAllMapped (UBL21InvoiceModel::createFrom);
+
+    // Both must create the same result
+    final CIID16BCrossIndustryInvoiceTypeMarshaller aMarshaller = new CIID16BCrossIndustryInvoiceTypeMarshaller ();
+    for (final IUBL21Invoice aModel : aModels)
+      assertEquals (aMarshaller.getAsString (LegacyConverter.convert (aModel)),
+                    aMarshaller.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aModel,
+                                                                                                           new ErrorList ())));
+
+    // The first round is the warm up
+    for (int nRound = 0; nRound < 3; ++nRound)
+    {
+      StopWatch aSW = StopWatch.createdStarted ();
+      for (int i = 0; i < RUNS; ++i)
+        for (final IUBL21Invoice aModel : aModels)
+          LegacyConverter.convert (aModel);
+      final long nLegacyMillis = aSW.stopAndGetMillis ();
+
+      aSW = StopWatch.createdStarted ();
+      for (int i = 0; i < RUNS; ++i)
+        for (final IUBL21Invoice aModel : aModels)
+          UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aModel, new ErrorList ());
+      final long nPlanMillis = aSW.stopAndGetMillis ();
+
+      if (nRound > 0)
+        LOGGER.info ("Hand-written: " +
+                     nLegacyMillis +
+                     " ms; mapping plan: " +
+                     nPlanMillis +
+                     " ms for " +
+                     RUNS +
+                     " runs over " +
+                     aModels.size () +
+                     " documents");
+    }
+  }
+}
@@ -18,25 +18,35 @@
 package com.helger.en16931.ubl2cii;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiFunction;
 
+import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
 import com.helger.commons.annotation.Nonempty;
 import com.helger.commons.annotation.ReturnsMutableCopy;
 import com.helger.commons.collection.impl.CommonsArrayList;
 import com.helger.commons.collection.impl.ICommonsList;
 import com.helger.commons.io.file.FileSystemRecursiveIterator;
+import com.helger.commons.io.file.SimpleFileIO;
 import com.helger.diver.api.coord.DVRCoordinate;
 import com.helger.phive.api.executorset.ValidationExecutorSetRegistry;
 import com.helger.phive.en16931.EN16931Validation;
 import com.helger.phive.xml.source.IValidationSourceXML;
 
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
 final class MockSettings
 {
   static final DVRCoordinate VID_CII_2017 = EN16931Validation.VID_CII_1313.getWithVersionLatestRelease ();
   static final DVRCoordinate VID_UBL_INV_2017 = EN16931Validation.VID_UBL_INVOICE_1313.getWithVersionLatestRelease ();
   static final DVRCoordinate VID_UBL_CN_2017 = EN16931Validation.VID_UBL_CREDIT_NOTE_1313.getWithVersionLatestRelease ();
 
+  /** The invoice that is used as the template for generated test documents */
+  static final File BASE_EXAMPLE_INVOICE = new File ("src/test/resources/external/ubl21/inv/peppol/base-example.xml");
+
   static final ValidationExecutorSetRegistry <IValidationSourceXML> VES_REGISTRY = new ValidationExecutorSetRegistry <> ();
   static
   {
@@ -66,4 +76,85 @@ final class MockSettings
         ret.add (f);
     return ret;
   }
+
+  /**
+   * @return All UBL 2.1 invoice and credit note test files. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  @Nonempty
+  @ReturnsMutableCopy
+  static ICommonsList <File> getAllTestFiles ()
+  {
+    final ICommonsList <File> ret = new CommonsArrayList <> ();
+    ret.addAll (getAllTestFilesUBL21Invoice ());
+    ret.addAll (getAllTestFilesUBL21CreditNote ());
+    return ret;
+  }
+
+  /**
+   * Serialize a CII document, e.g. to compare conversion results.
+   *
+   * @param aCII
+   *        The CII document. May not be <code>null</code>.
+   * @return The formatted XML. May be <code>null</code> if serialization
+   *         failed.
+   */
+  static String getAsString (@Nonnull final CrossIndustryInvoiceType aCII)
+  {
+    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true).getAsString (aCII);
+  }
+
+  /**
+   * @return The content of {@link #BASE_EXAMPLE_INVOICE}. Never
+   *         <code>null</code>.
+   */
+  @Nonnull
+  static String getBaseExampleInvoice ()
+  {
+    return SimpleFileIO.getFileAsString (BASE_EXAMPLE_INVOICE, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Create a variant of {@link #BASE_EXAMPLE_INVOICE} in which all invoice
+   * lines are replaced.
+   *
+   * @param nCopies
+   *        The number of times the lines creator is invoked. Must be &ge; 0.
+   * @param aLinesCreator
+   *        Gets the XML of all invoice lines of the base example and the
+   *        0-based index of the copy and returns the XML to be inserted. May
+   *        not be <code>null</code>.
+   * @return The XML of the new invoice. Never <code>null</code>.
+   */
+  @Nonnull
+  static String getBaseExampleInvoiceWithLines (@Nonnegative final int nCopies,
+                                                @Nonnull final BiFunction <String, Integer, String> aLinesCreator)
+  {
+    final String sXML = getBaseExampleInvoice ();
+    final int nStart = sXML.indexOf ("<cac:InvoiceLine>");
+    final int nEnd = sXML.lastIndexOf ("</cac:InvoiceLine>") + "</cac:InvoiceLine>".length ();
+    final String sLines = sXML.substring (nStart, nEnd);
+
+    final StringBuilder aSB = new StringBuilder (sXML.substring (0, nStart));
+    for (int i = 0; i < nCopies; ++i)
+      aSB.append (aLinesCreator.apply (sLines, Integer.valueOf (i)));
+    aSB.append (sXML.substring (nEnd));
+    return aSB.toString ();
+  }
+
+  /**
+   * Create a large variant of {@link #BASE_EXAMPLE_INVOICE} with many lines,
+   * e.g. for benchmarks.
+   *
+   * @param nCopies
+   *        The number of copies of the invoice lines of the base example. Must
+   *        be &ge; 0.
+   * @return The XML of the new invoice. Never <code>null</code>.
+   */
+  @Nonnull
+  static String getBaseExampleInvoiceWithManyLines (@Nonnegative final int nCopies)
+  {
+    return getBaseExampleInvoiceWithLines (nCopies, (sLines, aIndex) -> sLines);
+  }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.timing.StopWatch;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Compare the output size and the serialization throughput of the different
+ * CII output profiles.
+ *
+ * @author Philip Helger
+ */
+public final class OutputProfileBenchmarkFuncTest
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (OutputProfileBenchmarkFuncTest.class);
+  private static final int RUNS = 50;
+
+  @Nonnull
+  private static ICommonsList <CrossIndustryInvoiceType> _getBenchmarkDocuments ()
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final ICommonsList <CrossIndustryInvoiceType> ret = new CommonsArrayList <> ();
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+      ret.add (aEngine.convertUBL21InvoiceToCIID16B (aFile.toPath (), new ErrorList ()));
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+      ret.add (aEngine.convertUBL21CreditNoteToCIID16B (aFile.toPath (), new ErrorList ()));
+
+    // One large document with many lines
+    ret.add (aEngine.convertUBL21InvoiceToCIID16B (MockSettings.getBaseExampleInvoiceWithManyLines (2000)
+                                                               .getBytes (StandardCharsets.UTF_8),
+                                                   new ErrorList ()));
+
+    ret.forEach (x -> assertNotNull (x));
+    return ret;
+  }
+
+  @Test
+  @Ignore ("Benchmark only - takes too long for regular builds")
+  public void testCompareOutputProfiles ()
+  {
+    final ICommonsList <CrossIndustryInvoiceType> aDocs = _getBenchmarkDocuments ();
+    // Without schema validation only the serialization itself is measured
+    for (final boolean bUseSchema : new boolean [] { true, false })
+      // The first round is the warm up
+      for (int nRound = 0; nRound < 2; ++nRound)
+        for (final ECIIOutputProfile eProfile : ECIIOutputProfile.values ())
+        {
+          final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                         .outputProfile (eProfile)
+                                                                                                         .useSchema (bUseSchema)
+                                                                                                         .build ());
+          long nTotalBytes = 0;
+          for (final CrossIndustryInvoiceType aCII : aDocs)
+          {
+            final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+            assertTrue (aEngine.writeCIID16B (aCII, aBAOS, new ErrorList ()).isSuccess ());
+            nTotalBytes += aBAOS.size ();
+          }
+
+          final StopWatch aSW = StopWatch.createdStarted ();
+          for (int i = 0; i < RUNS; ++i)
+            for (final CrossIndustryInvoiceType aCII : aDocs)
+              aEngine.writeCIID16B (aCII, new NonBlockingByteArrayOutputStream (), new ErrorList ());
+          final long nMillis = aSW.stopAndGetMillis ();
+          if (nRound > 0)
+            LOGGER.info (eProfile +
+                         (bUseSchema ? " with schema: " : " without schema: ") +
+                         nTotalBytes +
+                         " bytes, " +
+                         nMillis +
+                         " ms for " +
+                         RUNS +
+                         " runs, " +
+                         (nTotalBytes * RUNS / 1024 / Math.max (nMillis, 1)) +
+                         " KB/ms");
+        }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.annotation.Nonnull;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link SkippingXMLStreamReader}.
+ *
+ * @author Philip Helger
+ */
+public final class SkippingXMLStreamReaderTest
+{
+  @Nonnull
+  private static String _getSignedExample ()
+  {
+    final String sXML = MockSettings.getBaseExampleInvoice ();
+    final StringBuilder aSB = new StringBuilder ();
+    // Missing cbc:ID and ext:ExtensionContent - invalid if not skipped
+    aSB.append ("<ext:UBLExtensions xmlns:ext='urn:oasis:names:specification:ubl:schema:xsd:CommonExtensionComponents-2'>")
+       .append ("<ext:UBLExtension>");
+    for (int i = 0; i < 1000; ++i)
+      aSB.append ("<ds:Object xmlns:ds='http://www.w3.org/2000/09/xmldsig#'><ds:X>").append (i).append ("</ds:X></ds:Object>");
+    aSB.append ("</ext:UBLExtension></ext:UBLExtensions>");
+    final int nIdx = sXML.indexOf ("<cbc:CustomizationID>");
+    return sXML.substring (0, nIdx) +
+           aSB.toString () +
+           sXML.substring (nIdx).replace ("<cac:AccountingSupplierParty>",
+                                          "<cac:Signature><cbc:Note>no ID</cbc:Note></cac:Signature><cac:AccountingSupplierParty>");
+  }
+
+  @Nonnull
+  private static String _convert (@Nonnull final UBLToCIIConversionEngine aEngine,
+                                  @Nonnull final String sXML,
+                                  @Nonnull final ErrorList aErrorList)
+  {
+    final CrossIndustryInvoiceType aCII = aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (sXML.getBytes (StandardCharsets.UTF_8)),
+                                                                                   aErrorList);
+    assertNotNull (aCII);
+    return new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true).getAsString (aCII);
+  }
+
+  @Test
+  public void testSkipSubtrees () throws Exception
+  {
+    final String sXML = _getSignedExample ();
+    final XMLStreamReader aReader = new SkippingXMLStreamReader (StAXHelper.createXMLStreamReader (new NonBlockingByteArrayInputStream (sXML.getBytes (StandardCharsets.UTF_8))),
+                                                                 UBLToCIIConversionSettings.DEFAULT_SKIPPED_ELEMENTS);
+    int nStartElements = 0;
+    while (aReader.hasNext ())
+      if (aReader.next () == XMLStreamReader.START_ELEMENT)
+      {
+        nStartElements++;
+        assertFalse (aReader.getLocalName ().equals ("UBLExtensions"));
+        assertFalse (aReader.getLocalName ().equals ("UBLExtension"));
+        assertFalse (aReader.getLocalName ().equals ("Signature"));
+      }
+    assertTrue (nStartElements > 0);
+    assertEquals (2, ((SkippingXMLStreamReader) aReader).getSkippedCount ());
+  }
+
+  @Test
+  public void testSameResult ()
+  {
+    final String sPlain = MockSettings.getBaseExampleInvoice ();
+    final String sSigned = _getSignedExample ();
+
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final ErrorList aErrorList = new ErrorList ();
+    final String sExpected = _convert (aEngine, sPlain, aErrorList);
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    assertEquals (sExpected, _convert (aEngine, sSigned, aErrorList));
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+    // Without skipping, the invalid extensions are reported
+    final UBLToCIIConversionSettings aSettings = UBLToCIIConversionSettings.builder ().skippedElements (null).build ();
+    assertTrue (aSettings.getAllSkippedElements ().isEmpty ());
+    new UBLToCIIConversionEngine (aSettings).convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (sSigned.getBytes (StandardCharsets.UTF_8)),
+                                                                          aErrorList);
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}
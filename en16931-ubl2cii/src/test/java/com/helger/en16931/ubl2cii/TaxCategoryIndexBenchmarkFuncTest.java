@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.math.BigDecimal;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.timing.StopWatch;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AllowanceChargeReasonType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Measure the conversion time of invoices with parent lines for a growing
+ * number of lines. The number of VAT breakdown entries grows with the number
+ * of lines, so recomputing the tax categories per allowance or charge shows
+ * quadratic growth, whereas the single pass {@link UBL21TaxCategoryIndex}
+ * keeps the time per line constant.
+ *
+ * @author Philip Helger
+ */
+public final class TaxCategoryIndexBenchmarkFuncTest
+{
+  private static final Logger LOGGER = LoggerFactory.getLogger (TaxCategoryIndexBenchmarkFuncTest.class);
+  private static final int RUNS = 20;
+
+  @Nonnull
+  private static IUBL21Invoice _createInvoice (@Nonnegative final int nParentLines)
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ()
+                                                   .read (MockSettings.BASE_EXAMPLE_INVOICE);
+    assertNotNull (aUBLInvoice);
+
+    // Each parent line has one sub line and one allowance
+    final InvoiceLineType aTemplateLine = aUBLInvoice.getInvoiceLineAtIndex (0);
+    aUBLInvoice.getInvoiceLine ().clear ();
+    for (int i = 0; i < nParentLines; ++i)
+    {
+      final InvoiceLineType aParentLine = aTemplateLine.clone ();
+      aParentLine.setID (Integer.toString (i));
+      final InvoiceLineType aSubLine = aTemplateLine.clone ();
+      aSubLine.setID (i + ".1");
+      aParentLine.addSubInvoiceLine (aSubLine);
+
+      final AllowanceChargeType aUBLAllowance = new AllowanceChargeType ();
+      aUBLAllowance.setChargeIndicator (false);
+      aUBLAllowance.setAmount (BigDecimal.ONE).setCurrencyID ("EUR");
+      aUBLAllowance.addAllowanceChargeReason (new AllowanceChargeReasonType ("Discount"));
+      aParentLine.addAllowanceCharge (aUBLAllowance);
+      aUBLInvoice.addInvoiceLine (aParentLine);
+    }
+
+    // One VAT breakdown entry per 10 parent lines
+    final TaxTotalType aUBLTaxTotal = aUBLInvoice.getTaxTotalAtIndex (0);
+    final TaxSubtotalType aTemplateSubtotal = aUBLTaxTotal.getTaxSubtotalAtIndex (0);
+    aUBLTaxTotal.getTaxSubtotal ().clear ();
+    for (int i = 0; i < Math.max (1, nParentLines / 10); ++i)
+    {
+      final TaxSubtotalType aUBLTaxSubtotal = aTemplateSubtotal.clone ();
+      aUBLTaxSubtotal.getTaxCategory ().setPercent (BigDecimal.valueOf (i));
+      aUBLTaxTotal.addTaxSubtotal (aUBLTaxSubtotal);
+    }
+    return UBL21InvoiceModel.createFrom (aUBLInvoice);
+  }
+
+  @SuppressWarnings ("removal")
+  private static int _recomputePerAllowanceCharge (@Nonnull final IUBL21Invoice aUBLInvoice)
+  {
+    // The way it was done before the tax category index existed
+    int ret = 0;
+    for (final InvoiceLineType aUBLLine : aUBLInvoice.getInvoiceLines ())
+      for (int i = 0; i < aUBLLine.getAllowanceChargeCount (); ++i)
+        ret += UBL21InvoiceToCIID16BConverter.convertToTaxCategories (aUBLInvoice).getT1 ().size ();
+    return ret;
+  }
+
+  private static int _useIndex (@Nonnull final IUBL21Invoice aUBLInvoice)
+  {
+    final UBL21TaxCategoryIndex aIndex = UBL21TaxCategoryIndex.createFrom (aUBLInvoice);
+    int ret = 0;
+    for (final InvoiceLineType aUBLLine : aUBLInvoice.getInvoiceLines ())
+      for (int i = 0; i < aUBLLine.getAllowanceChargeCount (); ++i)
+        ret += aIndex.getTaxCategoryCount ();
+    return ret;
+  }
+
+  @Test
+  @Ignore ("Benchmark only - takes too long for regular builds")
+  public void testScaling ()
+  {
+    // Warm up
+    final IUBL21Invoice aWarmUpInvoice = _createInvoice (1_000);
+    for (int i = 0; i < RUNS; ++i)
+    {
+      _recomputePerAllowanceCharge (aWarmUpInvoice);
+      _useIndex (aWarmUpInvoice);
+      UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aWarmUpInvoice, new ErrorList ());
+    }
+
+    for (final int nParentLines : new int [] { 250, 500, 1_000, 2_000, 4_000 })
+    {
+      final IUBL21Invoice aUBLInvoice = _createInvoice (nParentLines);
+      assertEquals (_recomputePerAllowanceCharge (aUBLInvoice), _useIndex (aUBLInvoice));
+
+      StopWatch aSW = StopWatch.createdStarted ();
+      for (int i = 0; i < RUNS; ++i)
+        _recomputePerAllowanceCharge (aUBLInvoice);
+      aSW.stop ();
+      final long nRecomputeNanos = aSW.getNanos () / RUNS;
+
+      aSW = StopWatch.createdStarted ();
+      for (int i = 0; i < RUNS; ++i)
+        _useIndex (aUBLInvoice);
+      aSW.stop ();
+      final long nIndexNanos = aSW.getNanos () / RUNS;
+
+      aSW = StopWatch.createdStarted ();
+      for (int i = 0; i < RUNS; ++i)
+        assertNotNull (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice, new ErrorList ()));
+      aSW.stop ();
+      final long nConvertNanos = aSW.getNanos () / RUNS;
+
+      LOGGER.info (nParentLines +
+                   " parent lines: recompute per allowance/charge " +
+                   nRecomputeNanos / nParentLines +
+                   " ns/line; index " +
+                   nIndexNanos / nParentLines +
+                   " ns/line; full conversion " +
+                   nConvertNanos / nParentLines +
+                   " ns/line");
+    }
+  }
+}
@@ -17,11 +17,15 @@
  */
 package com.helger.en16931.ubl2cii;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -40,8 +44,14 @@ import com.helger.phive.api.validity.IValidityDeterminator;
 import com.helger.phive.xml.source.ValidationSourceXML;
 import com.helger.ubl21.UBL21Marshaller;
 
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.AllowanceChargeType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxCategoryType;
+import oasis.names.specification.ubl.schema.xsd.commonbasiccomponents_21.AllowanceChargeReasonType;
 import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeAllowanceChargeType;
+import un.unece.uncefact.data.standard.reusableaggregatebusinessinformationentity._100.TradeTaxType;
 
 /**
  * Test class for class {@link UBL21InvoiceToCIID16BConverter}.
@@ -112,4 +122,143 @@ public final class UBL21InvoiceToCIID16BConverterTest
       }
     }
   }
+
+  @Test
+  public void testSubInvoiceLinesDoNotModifySource ()
+  {
+    final File aFile = MockSettings.getAllTestFilesUBL21Invoice ().findFirst (x -> x.getName ().equals ("base-example.xml"));
+    assertNotNull (aFile);
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().read (aFile);
+    assertNotNull (aUBLInvoice);
+
+    // Make the first line a parent line with a percentage based charge
+    final InvoiceLineType aParentLine = aUBLInvoice.getInvoiceLineAtIndex (0);
+    for (int i = 1; i <= 2; ++i)
+    {
+      final InvoiceLineType aSubLine = aUBLInvoice.getInvoiceLineAtIndex (1).clone ();
+      aSubLine.setID ("1." + i);
+      aParentLine.addSubInvoiceLine (aSubLine);
+    }
+    final AllowanceChargeType aUBLCharge = new AllowanceChargeType ();
+    aUBLCharge.setChargeIndicator (true);
+    aUBLCharge.setAmount (new BigDecimal ("12.50")).setCurrencyID ("EUR");
+    aUBLCharge.setMultiplierFactorNumeric (new BigDecimal ("10"));
+    aUBLCharge.setBaseAmount (new BigDecimal ("125")).setCurrencyID ("EUR");
+    aUBLCharge.addAllowanceChargeReason (new AllowanceChargeReasonType ("Packing"));
+    aParentLine.addAllowanceCharge (aUBLCharge);
+
+    final CIID16BCrossIndustryInvoiceTypeMarshaller aMarshaller = new CIID16BCrossIndustryInvoiceTypeMarshaller ();
+    aMarshaller.setFormattedOutput (true);
+    final String sBefore = UBL21Marshaller.invoice ().getAsString (aUBLInvoice);
+
+    final CrossIndustryInvoiceType aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                                                     new ErrorList ());
+    assertNotNull (aCII);
+    assertEquals (4, aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItemCount ());
+    final String sCII = aMarshaller.getAsString (aCII);
+    assertNotNull (sCII);
+
+    // The source is unchanged
+    assertEquals (sBefore, UBL21Marshaller.invoice ().getAsString (aUBLInvoice));
+    assertEquals (1, aParentLine.getAllowanceChargeCount ());
+    assertNotNull (aUBLCharge.getMultiplierFactorNumeric ());
+    assertNotNull (aUBLCharge.getBaseAmount ());
+    assertTrue (aUBLCharge.getTaxCategory ().isEmpty ());
+
+    // Converting again gives the same result
+    assertEquals (sCII,
+                  aMarshaller.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                                                         new ErrorList ())));
+
+    // Converting the same instance concurrently gives the same result
+    final UBL21ParallelConverter aParallelConverter = new UBL21ParallelConverter (ForkJoinPool.commonPool (), 1, 1);
+    final IUBL21Invoice aModel = UBL21InvoiceModel.createFrom (aUBLInvoice);
+    for (int i = 0; i < 4; ++i)
+      assertEquals (sCII, aMarshaller.getAsString (aParallelConverter.convertUBL21InvoiceToCIID16B (aModel, new ErrorList ())));
+    assertEquals (sBefore, UBL21Marshaller.invoice ().getAsString (aUBLInvoice));
+  }
+
+  @Test
+  public void testSubInvoiceLinesWithDifferentVATCategories ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().read (MockSettings.BASE_EXAMPLE_INVOICE);
+    assertNotNull (aUBLInvoice);
+
+    // Both lines become parent lines with different VAT categories
+    final InvoiceLineType aParentLine1 = aUBLInvoice.getInvoiceLineAtIndex (0);
+    final InvoiceLineType aParentLine2 = aUBLInvoice.getInvoiceLineAtIndex (1);
+    final InvoiceLineType aSubLine1 = aParentLine2.clone ();
+    aSubLine1.setID ("1.1");
+    final InvoiceLineType aSubLine2 = aParentLine1.clone ();
+    aSubLine2.setID ("2.1");
+    aParentLine1.addSubInvoiceLine (aSubLine1);
+    aParentLine2.addSubInvoiceLine (aSubLine2);
+    final TaxCategoryType aUBLTaxCategory2 = aParentLine2.getItem ().getClassifiedTaxCategoryAtIndex (0);
+    aUBLTaxCategory2.setID ("Z");
+    aUBLTaxCategory2.setPercent (BigDecimal.ZERO);
+
+    final AllowanceChargeType aUBLCharge = new AllowanceChargeType ();
+    aUBLCharge.setChargeIndicator (true);
+    aUBLCharge.setAmount (new BigDecimal ("12.50")).setCurrencyID ("EUR");
+    aUBLCharge.addAllowanceChargeReason (new AllowanceChargeReasonType ("Packing"));
+    aParentLine1.addAllowanceCharge (aUBLCharge);
+    final AllowanceChargeType aUBLAllowance = new AllowanceChargeType ();
+    aUBLAllowance.setChargeIndicator (false);
+    aUBLAllowance.setAmount (new BigDecimal ("5.00")).setCurrencyID ("EUR");
+    aUBLAllowance.addAllowanceChargeReason (new AllowanceChargeReasonType ("Discount"));
+    aParentLine2.addAllowanceCharge (aUBLAllowance);
+
+    // Direct conversion
+    final CrossIndustryInvoiceType aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                                                     new ErrorList ());
+    assertNotNull (aCII);
+    final List <TradeAllowanceChargeType> aCIIACs = aCII.getSupplyChainTradeTransaction ()
+                                                        .getApplicableHeaderTradeSettlement ()
+                                                        .getSpecifiedTradeAllowanceCharge ();
+    final int nCIICount = aCIIACs.size ();
+    assertTrue (nCIICount >= 2);
+    // Each moved allowance or charge keeps the VAT category of its line
+    final TradeTaxType aCIITax1 = aCIIACs.get (nCIICount - 2).getCategoryTradeTaxAtIndex (0);
+    assertEquals ("VAT", aCIITax1.getTypeCodeValue ());
+    assertEquals ("S", aCIITax1.getCategoryCodeValue ());
+    assertEquals (0, new BigDecimal ("25").compareTo (aCIITax1.getRateApplicablePercentValue ()));
+    final TradeTaxType aCIITax2 = aCIIACs.get (nCIICount - 1).getCategoryTradeTaxAtIndex (0);
+    assertEquals ("VAT", aCIITax2.getTypeCodeValue ());
+    assertEquals ("Z", aCIITax2.getCategoryCodeValue ());
+    assertEquals (0, BigDecimal.ZERO.compareTo (aCIITax2.getRateApplicablePercentValue ()));
+  }
+
+  @Test
+  public void testSubInvoiceLinesWithoutVATCategory ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().read (MockSettings.BASE_EXAMPLE_INVOICE);
+    assertNotNull (aUBLInvoice);
+
+    // The parent line has no VAT category on its own
+    final InvoiceLineType aParentLine = aUBLInvoice.getInvoiceLineAtIndex (0);
+    final InvoiceLineType aSubLine = aParentLine.clone ();
+    aSubLine.setID ("1.1");
+    aParentLine.addSubInvoiceLine (aSubLine);
+    aParentLine.getItem ().getClassifiedTaxCategory ().clear ();
+
+    final AllowanceChargeType aUBLCharge = new AllowanceChargeType ();
+    aUBLCharge.setChargeIndicator (true);
+    aUBLCharge.setAmount (new BigDecimal ("12.50")).setCurrencyID ("EUR");
+    aUBLCharge.addAllowanceChargeReason (new AllowanceChargeReasonType ("Packing"));
+    aParentLine.addAllowanceCharge (aUBLCharge);
+
+    final CrossIndustryInvoiceType aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aUBLInvoice,
+                                                                                                     new ErrorList ());
+    assertNotNull (aCII);
+    final List <TradeAllowanceChargeType> aCIIACs = aCII.getSupplyChainTradeTransaction ()
+                                                        .getApplicableHeaderTradeSettlement ()
+                                                        .getSpecifiedTradeAllowanceCharge ();
+    assertTrue (aCIIACs.size () >= 1);
+
+    // The first tax category of the document is used, without placeholders
+    final TradeTaxType aCIITax = aCIIACs.get (aCIIACs.size () - 1).getCategoryTradeTaxAtIndex (0);
+    assertEquals ("VAT", aCIITax.getTypeCodeValue ());
+    assertEquals ("S", aCIITax.getCategoryCodeValue ());
+    assertEquals (0, new BigDecimal ("25").compareTo (aCIITax.getRateApplicablePercentValue ()));
+  }
 }
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.InvoiceLineType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link UBL21ParallelConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class UBL21ParallelConverterTest
+{
+  // Use tiny tasks to have many of them
+  private static final UBL21ParallelConverter CONVERTER = new UBL21ParallelConverter (ForkJoinPool.commonPool (), 1);
+  // Convert the lines of all documents on the pool
+  private static final UBL21ParallelConverter FORK_JOIN_CONVERTER = new UBL21ParallelConverter (ForkJoinPool.commonPool (),
+                                                                                                1,
+                                                                                                1);
+
+  @Nonnull
+  private static String _convertSequential (@Nonnull final byte [] aBytes)
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                                                    aErrorList);
+    assertNotNull (aCII);
+    return MockSettings.getAsString (aCII);
+  }
+
+  @Nonnull
+  private static String _convertParallel (@Nonnull final byte [] aBytes)
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = CONVERTER.convertUBL21AutoDetectToCIID16B (aBytes, aErrorList);
+    assertNotNull ("Errors: " + aErrorList, aCII);
+    assertTrue ("Errors: " + aErrorList, aErrorList.containsNoError ());
+    return MockSettings.getAsString (aCII);
+  }
+
+  @Test
+  public void testSameResultAsSequential ()
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final byte [] aBytes = SimpleFileIO.getAllFileBytes (aFile);
+      assertEquals ("Difference in " + aFile.getName (), _convertSequential (aBytes), _convertParallel (aBytes));
+    }
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      final byte [] aBytes = SimpleFileIO.getAllFileBytes (aFile);
+      assertEquals ("Difference in " + aFile.getName (), _convertSequential (aBytes), _convertParallel (aBytes));
+    }
+  }
+
+  @Test
+  public void testManyLines ()
+  {
+    final String sXML = MockSettings.getBaseExampleInvoiceWithLines (500, (sLines, aIndex) -> {
+      return sLines.replace ("<cbc:ID>", "<cbc:ID>" + aIndex + "-") + "\n<!-- <cac:InvoiceLine> -->\n";
+    });
+    final byte [] aBytes = sXML.getBytes (StandardCharsets.UTF_8);
+
+    final UBL21LineScanner.Result aScan = UBL21LineScanner.scan (aBytes, "InvoiceLine");
+    assertNotNull (aScan);
+    assertEquals (1000, aScan.getLineCount ());
+
+    assertEquals (_convertSequential (aBytes), _convertParallel (aBytes));
+  }
+
+  @Test
+  public void testFallback ()
+  {
+    // Namespace declaration on the line level is not handled by the scanner
+    final String sXML = MockSettings.getBaseExampleInvoice ()
+                                    .replace ("<cac:InvoiceLine>",
+                                              "<cac:InvoiceLine xmlns:cac=\"urn:oasis:names:specification:ubl:schema:xsd:CommonAggregateComponents-2\">");
+    final byte [] aBytes = sXML.getBytes (StandardCharsets.UTF_8);
+    assertNull (UBL21LineScanner.scan (aBytes, "InvoiceLine"));
+
+    assertEquals (_convertSequential (aBytes), _convertParallel (aBytes));
+  }
+
+  @Test
+  public void testUnsupportedDocumentType ()
+  {
+    final byte [] aBytes = "<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2'/>".getBytes (StandardCharsets.UTF_8);
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (CONVERTER.convertUBL21AutoDetectToCIID16B (aBytes, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Nonnull
+  private static String _convertForkJoin (@Nonnull final InvoiceType aUBLInvoice)
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    final CrossIndustryInvoiceType aCII = FORK_JOIN_CONVERTER.convertUBL21InvoiceToCIID16B (UBL21InvoiceModel.createFrom (aUBLInvoice),
+                                                                                            aErrorList);
+    assertNotNull ("Errors: " + aErrorList, aCII);
+    return MockSettings.getAsString (aCII);
+  }
+
+  @Test
+  public void testForkJoinSameResultAsSequential ()
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ().read (aFile);
+      assertNotNull (aUBLInvoice);
+      final CrossIndustryInvoiceType aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (UBL21Marshaller.invoice ()
+                                                                                                                         .read (aFile),
+                                                                                                         new ErrorList ());
+      assertEquals ("Difference in " + aFile.getName (), MockSettings.getAsString (aCII), _convertForkJoin (aUBLInvoice));
+    }
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      final UBL21CreditNoteModel aUBLCreditNote = UBL21CreditNoteModel.createFrom (UBL21Marshaller.creditNote ()
+                                                                                                  .read (aFile));
+      final CrossIndustryInvoiceType aCII = FORK_JOIN_CONVERTER.convertUBL21CreditNoteToCIID16B (aUBLCreditNote,
+                                                                                                 new ErrorList ());
+      assertNotNull (aCII);
+      assertEquals ("Difference in " + aFile.getName (),
+                    MockSettings.getAsString (UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aUBLCreditNote,
+                                                                                                               new ErrorList ())),
+                    MockSettings.getAsString (aCII));
+    }
+  }
+
+  @Nonnull
+  private static InvoiceType _readWithSubInvoiceLines ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ()
+                                                   .read (MockSettings.BASE_EXAMPLE_INVOICE);
+    assertNotNull (aUBLInvoice);
+    // Line 1 gets two sub lines and the first sub line gets another one
+    final InvoiceLineType aParentLine = aUBLInvoice.getInvoiceLineAtIndex (0);
+    for (int i = 1; i <= 2; ++i)
+    {
+      final InvoiceLineType aSubLine = aUBLInvoice.getInvoiceLineAtIndex (1).clone ();
+      aSubLine.setID ("1." + i);
+      aParentLine.addSubInvoiceLine (aSubLine);
+    }
+    final InvoiceLineType aSubSubLine = aUBLInvoice.getInvoiceLineAtIndex (1).clone ();
+    aSubSubLine.setID ("1.1.1");
+    aParentLine.getSubInvoiceLineAtIndex (0).addSubInvoiceLine (aSubSubLine);
+    return aUBLInvoice;
+  }
+
+  @Test
+  public void testForkJoinSubInvoiceLines ()
+  {
+    final CrossIndustryInvoiceType aCII = UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (_readWithSubInvoiceLines (),
+                                                                                                     new ErrorList ());
+    assertNotNull (aCII);
+    // 2 original lines, 2 sub lines and 1 sub sub line
+    assertEquals (5, aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItemCount ());
+    assertEquals (MockSettings.getAsString (aCII), _convertForkJoin (_readWithSubInvoiceLines ()));
+  }
+
+  @Test
+  public void testBelowParallelLineThreshold ()
+  {
+    final UBL21ParallelConverter aConverter = new UBL21ParallelConverter (ForkJoinPool.commonPool (), 1, 6);
+    assertEquals (6, aConverter.getParallelLineThreshold ());
+
+    final CrossIndustryInvoiceType aCII = aConverter.convertUBL21InvoiceToCIID16B (UBL21InvoiceModel.createFrom (_readWithSubInvoiceLines ()),
+                                                                                   new ErrorList ());
+    assertNotNull (aCII);
+    assertEquals (MockSettings.getAsString (aCII), _convertForkJoin (_readWithSubInvoiceLines ()));
+  }
+
+  @Test
+  public void testWithLazyLines ()
+  {
+    final String sExpected = _convertForkJoin (_readWithSubInvoiceLines ());
+
+    // Below the threshold the lines are converted while writing
+    final UBL21ParallelConverter aLazyConverter = new UBL21ParallelConverter (ForkJoinPool.commonPool (), 1, 6);
+    CrossIndustryInvoiceType aCII = aLazyConverter.convertUBL21InvoiceToCIID16BWithLazyLines (UBL21InvoiceModel.createFrom (_readWithSubInvoiceLines ()),
+                                                                                               new ErrorList ());
+    assertNotNull (aCII);
+    assertTrue (aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItem () instanceof LazyLineItemList);
+    assertEquals (sExpected, MockSettings.getAsString (aCII));
+
+    // From the threshold on the lines are converted on the pool upfront
+    final UBL21ParallelConverter aParallelConverter = new UBL21ParallelConverter (ForkJoinPool.commonPool (), 1, 5);
+    aCII = aParallelConverter.convertUBL21InvoiceToCIID16BWithLazyLines (UBL21InvoiceModel.createFrom (_readWithSubInvoiceLines ()),
+                                                                         new ErrorList ());
+    assertNotNull (aCII);
+    assertFalse (aCII.getSupplyChainTradeTransaction ().getIncludedSupplyChainTradeLineItem () instanceof LazyLineItemList);
+    assertEquals (sExpected, MockSettings.getAsString (aCII));
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileHelper;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.ubl21.EUBL21DocumentType;
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.creditnote_21.CreditNoteType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link UBL21StreamReader}.
+ *
+ * @author Philip Helger
+ */
+public final class UBL21StreamReaderTest
+{
+  @Test
+  public void testInvoiceSameResultAsJAXB () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      // Full JAXB path
+      final ErrorList aErrorList = new ErrorList ();
+      final InvoiceType aJAXBInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aJAXBInvoice);
+      final String sExpected = MockSettings.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aJAXBInvoice,
+                                                                                                                       aErrorList));
+
+      // StAX path
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final InvoiceType aStAXInvoice = UBL21StreamReader.readInvoice (aIS, aErrorList);
+        assertNotNull (aStAXInvoice);
+        final String sActual = MockSettings.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aStAXInvoice,
+                                                                                                                     aErrorList));
+        assertEquals ("Difference in " + aFile.getName (), sExpected, sActual);
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testCreditNoteSameResultAsJAXB () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      // Full JAXB path
+      final ErrorList aErrorList = new ErrorList ();
+      final CreditNoteType aJAXBCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aJAXBCreditNote);
+      final String sExpected = MockSettings.getAsString (UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aJAXBCreditNote,
+                                                                                                                          aErrorList));
+
+      // StAX path
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final CreditNoteType aStAXCreditNote = UBL21StreamReader.readCreditNote (aIS, aErrorList);
+        assertNotNull (aStAXCreditNote);
+        final String sActual = MockSettings.getAsString (UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aStAXCreditNote,
+                                                                                                                        aErrorList));
+        assertEquals ("Difference in " + aFile.getName (), sExpected, sActual);
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testInvoiceModelSameResultAsJAXB () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      // Full JAXB path
+      final ErrorList aErrorList = new ErrorList ();
+      final InvoiceType aJAXBInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aJAXBInvoice);
+      final String sExpected = MockSettings.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aJAXBInvoice,
+                                                                                                                       aErrorList));
+
+      // Projection path
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final UBL21InvoiceModel aModel = UBL21StreamReader.readInvoiceModel (aIS, aErrorList);
+        assertNotNull (aModel);
+        final String sActual = MockSettings.getAsString (UBL21InvoiceToCIID16BConverter.convertToCrossIndustryInvoice (aModel,
+                                                                                                                     aErrorList));
+        assertEquals ("Difference in " + aFile.getName (), sExpected, sActual);
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testCreditNoteModelSameResultAsJAXB () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      // Full JAXB path
+      final ErrorList aErrorList = new ErrorList ();
+      final CreditNoteType aJAXBCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aJAXBCreditNote);
+      final String sExpected = MockSettings.getAsString (UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aJAXBCreditNote,
+                                                                                                                          aErrorList));
+
+      // Projection path
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final UBL21CreditNoteModel aModel = UBL21StreamReader.readCreditNoteModel (aIS, aErrorList);
+        assertNotNull (aModel);
+        final String sActual = MockSettings.getAsString (UBL21CreditNoteToCIID16BConverter.convertToCrossIndustryInvoice (aModel,
+                                                                                                                        aErrorList));
+        assertEquals ("Difference in " + aFile.getName (), sExpected, sActual);
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testWrongDocumentType () throws IOException
+  {
+    final File aFile = MockSettings.getAllTestFilesUBL21CreditNote ().getFirstOrNull ();
+    try (final InputStream aIS = FileHelper.getInputStream (aFile))
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      assertNull (UBL21StreamReader.readInvoice (aIS, aErrorList));
+      assertTrue (aErrorList.containsAtLeastOneError ());
+    }
+  }
+
+  @Test
+  public void testDocumentSummary () throws IOException
+  {
+    for (final File aFile : MockSettings.getAllTestFilesUBL21Invoice ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final InvoiceType aInvoice = UBL21Marshaller.invoice ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aInvoice);
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final UBL21DocumentSummary aSummary = UBL21StreamReader.readDocumentSummary (aIS, aErrorList);
+        assertNotNull (aSummary);
+        assertEquals (EUBL21DocumentType.INVOICE, aSummary.getDocumentType ());
+        assertEquals (aInvoice.getIDValue (), aSummary.getID ());
+        assertEquals (aInvoice.getIssueDateValueLocal (), aSummary.getIssueDate ());
+        assertEquals (aInvoice.getInvoiceTypeCodeValue (), aSummary.getTypeCode ());
+        assertEquals (aInvoice.getDocumentCurrencyCodeValue (), aSummary.getDocumentCurrencyCode ());
+        assertEquals (aInvoice.getBuyerReferenceValue (), aSummary.getBuyerReference ());
+        assertEquals (aInvoice.getAccountingSupplierParty ().getParty ().getEndpointIDValue (),
+                      aSummary.getSellerEndpointID ());
+        assertEquals (aInvoice.getAccountingCustomerParty ().getParty ().getEndpointIDValue (),
+                      aSummary.getBuyerEndpointID ());
+        assertNotNull (aSummary.getSellerName ());
+        assertNotNull (aSummary.getBuyerName ());
+        assertEquals (aInvoice.getLegalMonetaryTotal ().getPayableAmountValue (), aSummary.getPayableAmount ());
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+
+    for (final File aFile : MockSettings.getAllTestFilesUBL21CreditNote ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final CreditNoteType aCreditNote = UBL21Marshaller.creditNote ().setCollectErrors (aErrorList).read (aFile);
+      assertNotNull (aCreditNote);
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final UBL21DocumentSummary aSummary = UBL21StreamReader.readDocumentSummary (aIS, aErrorList);
+        assertNotNull (aSummary);
+        assertEquals (EUBL21DocumentType.CREDIT_NOTE, aSummary.getDocumentType ());
+        assertEquals (aCreditNote.getIDValue (), aSummary.getID ());
+        assertEquals (aCreditNote.getCreditNoteTypeCodeValue (), aSummary.getTypeCode ());
+        assertEquals (aCreditNote.getLegalMonetaryTotal ().getPayableAmountValue (), aSummary.getPayableAmount ());
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testDocumentSummaryDoesNotReadLines ()
+  {
+    // Everything after the LegalMonetaryTotal is broken
+    final byte [] aBytes = MockSettings.getBaseExampleInvoiceWithLines (1, (sLines, aIndex) -> "<cac:InvoiceLine><<<")
+                                       .getBytes (StandardCharsets.UTF_8);
+
+    final ErrorList aErrorList = new ErrorList ();
+    final UBL21DocumentSummary aSummary = UBL21StreamReader.readDocumentSummary (new NonBlockingByteArrayInputStream (aBytes),
+                                                                                 aErrorList);
+    assertNotNull (aSummary);
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    assertNotNull (aSummary.getPayableAmount ());
+
+    assertNull (UBL21StreamReader.readInvoiceModel (new NonBlockingByteArrayInputStream (aBytes), aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}
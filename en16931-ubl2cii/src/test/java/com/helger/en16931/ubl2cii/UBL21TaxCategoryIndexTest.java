@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import org.junit.Test;
+
+import com.helger.ubl21.UBL21Marshaller;
+
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxSubtotalType;
+import oasis.names.specification.ubl.schema.xsd.commonaggregatecomponents_21.TaxTotalType;
+import oasis.names.specification.ubl.schema.xsd.invoice_21.InvoiceType;
+
+/**
+ * Test class for class {@link UBL21TaxCategoryIndex}.
+ *
+ * @author Philip Helger
+ */
+public final class UBL21TaxCategoryIndexTest
+{
+  private static final TaxCategoryKey VAT_S_25 = new TaxCategoryKey ("VAT", "S", new BigDecimal ("25"));
+  private static final TaxCategoryKey VAT_E_0 = new TaxCategoryKey ("VAT", "E", BigDecimal.ZERO);
+
+  @Test
+  public void testEmpty ()
+  {
+    final UBL21TaxCategoryIndex aIndex = UBL21TaxCategoryIndex.createFrom (UBL21InvoiceModel.createFrom (new InvoiceType ()));
+    assertEquals (0, aIndex.getTaxCategoryCount ());
+    assertEquals (0, aIndex.getAllTaxCategories ().size ());
+    assertNull (aIndex.getFirstTaxCategory ());
+    assertNull (aIndex.getTaxAmount (VAT_S_25));
+    assertEquals (BigDecimal.ZERO, aIndex.getTotalTaxAmount ());
+  }
+
+  @Test
+  public void testDocumentOrder ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ()
+                                                   .read (new File ("src/test/resources/external/ubl21/inv/peppol/Allowance-example.xml"));
+    assertNotNull (aUBLInvoice);
+
+    final UBL21TaxCategoryIndex aIndex = UBL21TaxCategoryIndex.createFrom (UBL21InvoiceModel.createFrom (aUBLInvoice));
+    assertEquals (2, aIndex.getTaxCategoryCount ());
+    assertEquals (VAT_S_25, aIndex.getAllTaxCategories ().get (0));
+    assertEquals (VAT_E_0, aIndex.getAllTaxCategories ().get (1));
+    assertEquals (VAT_S_25, aIndex.getFirstTaxCategory ());
+    assertEquals (0, new BigDecimal ("1225").compareTo (aIndex.getTaxAmount (VAT_S_25)));
+    assertEquals (0, BigDecimal.ZERO.compareTo (aIndex.getTaxAmount (VAT_E_0)));
+    assertNull (aIndex.getTaxAmount (new TaxCategoryKey ("VAT", "Z", BigDecimal.ZERO)));
+    // Both tax totals (EUR and SEK) are summed up
+    assertEquals (0, new BigDecimal ("10549").compareTo (aIndex.getTotalTaxAmount ()));
+  }
+
+  @Test
+  public void testSameCategoryWithDifferentScale ()
+  {
+    final InvoiceType aUBLInvoice = UBL21Marshaller.invoice ()
+                                                   .read (new File ("src/test/resources/external/ubl21/inv/peppol/Allowance-example.xml"));
+    assertNotNull (aUBLInvoice);
+
+    // Add another subtotal for "S 25.00" in a separate tax total
+    final TaxTotalType aUBLTaxTotal = aUBLInvoice.getTaxTotalAtIndex (1);
+    final TaxSubtotalType aUBLTaxSubtotal = aUBLInvoice.getTaxTotalAtIndex (0).getTaxSubtotalAtIndex (0).clone ();
+    aUBLTaxSubtotal.getTaxCategory ().setPercent (new BigDecimal ("25.00"));
+    aUBLTaxSubtotal.setTaxAmount (new BigDecimal ("100"));
+    aUBLTaxTotal.addTaxSubtotal (aUBLTaxSubtotal);
+
+    final UBL21TaxCategoryIndex aIndex = UBL21TaxCategoryIndex.createFrom (UBL21InvoiceModel.createFrom (aUBLInvoice));
+    assertEquals (2, aIndex.getTaxCategoryCount ());
+    assertEquals (0, new BigDecimal ("1325").compareTo (aIndex.getTaxAmount (VAT_S_25)));
+    assertEquals (0,
+                  new BigDecimal ("1325").compareTo (aIndex.getTaxAmount (new TaxCategoryKey ("VAT",
+                                                                                                  "S",
+                                                                                                  new BigDecimal ("25.0")))));
+  }
+}
@@ -17,16 +17,24 @@
  */
 package com.helger.en16931.ubl2cii;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.junit.Test;
 
 import com.helger.commons.error.list.ErrorList;
 import com.helger.commons.io.file.FileHelper;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
 
 import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
 
@@ -56,4 +64,50 @@ public final class UBLCIIConversionHelperTest
         assertNotNull (aCII);
       }
   }
+
+  @Test
+  public void testAutoDetectWithDigest () throws IOException
+  {
+    final File aFile = MockSettings.BASE_EXAMPLE_INVOICE;
+    final ErrorList aErrorList = new ErrorList ();
+    final NonBlockingByteArrayOutputStream aBAOS1 = new NonBlockingByteArrayOutputStream ();
+    final NonBlockingByteArrayOutputStream aBAOS2 = new NonBlockingByteArrayOutputStream ();
+    final CIIOutputDigest aDigest1;
+    final CIIOutputDigest aDigest2;
+    try (InputStream aIS = FileHelper.getInputStream (aFile))
+    {
+      aDigest1 = UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16BWithDigest (aIS, aBAOS1, aErrorList);
+    }
+    try (InputStream aIS = FileHelper.getInputStream (aFile))
+    {
+      aDigest2 = UBLToCIIConversionHelper.convertUBL21InvoiceToCIID16BWithDigest (aIS, aBAOS2, aErrorList);
+    }
+    assertTrue (aErrorList.containsNoError ());
+    assertNotNull (aDigest1);
+    assertEquals (aDigest1, aDigest2);
+    assertEquals (aBAOS1.size (), aDigest1.getByteCount ());
+    assertArrayEquals (aBAOS1.toByteArray (), aBAOS2.toByteArray ());
+  }
+
+  @Test
+  public void testAutoDetectUnsupportedDocumentType ()
+  {
+    final byte [] aBytes = "<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2'/>".getBytes (StandardCharsets.UTF_8);
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                          aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testAutoDetectStillValidatesSchema ()
+  {
+    final File aFile = MockSettings.BASE_EXAMPLE_INVOICE;
+    final String sInvalid = SimpleFileIO.getFileAsString (aFile, StandardCharsets.UTF_8)
+                                        .replace ("<cbc:ID>Snippet1</cbc:ID>", "<cbc:ID>Snippet1</cbc:ID><cbc:Foo/>");
+    final ErrorList aErrorList = new ErrorList ();
+    UBLToCIIConversionHelper.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (sInvalid.getBytes (StandardCharsets.UTF_8)),
+                                                              aErrorList);
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
 }
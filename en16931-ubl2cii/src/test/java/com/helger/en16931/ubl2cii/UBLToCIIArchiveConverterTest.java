@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.io.stream.NonClosingInputStream;
+import com.helger.commons.io.stream.StreamHelper;
+
+/**
+ * Test class for class {@link UBLToCIIArchiveConverter}.
+ *
+ * @author Philip Helger
+ */
+public final class UBLToCIIArchiveConverterTest
+{
+  private static final long ENTRY_TIME = 1_700_000_000_000L;
+
+  @Nonnull
+  private static byte [] _createArchive (@Nonnull final ICommonsList <File> aFiles) throws IOException
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    try (final ZipOutputStream aZOS = new ZipOutputStream (aBAOS))
+    {
+      final ZipEntry aDir = new ZipEntry ("batch/");
+      aDir.setTime (ENTRY_TIME);
+      aZOS.putNextEntry (aDir);
+      aZOS.closeEntry ();
+
+      for (final File aFile : aFiles)
+      {
+        final ZipEntry aEntry = new ZipEntry ("batch/" + aFile.getName ());
+        aEntry.setTime (ENTRY_TIME);
+        aZOS.putNextEntry (aEntry);
+        aZOS.write (SimpleFileIO.getAllFileBytes (aFile));
+        aZOS.closeEntry ();
+      }
+
+      // Not a UBL document
+      final ZipEntry aEntry = new ZipEntry ("readme.txt");
+      aEntry.setTime (ENTRY_TIME);
+      aZOS.putNextEntry (aEntry);
+      aZOS.write ("Monthly batch".getBytes (StandardCharsets.UTF_8));
+      aZOS.closeEntry ();
+    }
+    return aBAOS.toByteArray ();
+  }
+
+  @Nonnull
+  private static byte [] _convert (@Nonnull final UBLToCIIArchiveConverter aConverter,
+                                   @Nonnull final byte [] aArchive,
+                                   @Nonnull final ICommonsList <UBLToCIIArchiveConverter.EntryResult> aResults)
+  {
+    final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+    final ErrorList aErrorList = new ErrorList ();
+    final ICommonsList <UBLToCIIArchiveConverter.EntryResult> ret = aConverter.convertArchive (new NonBlockingByteArrayInputStream (aArchive),
+                                                                                               aBAOS,
+                                                                                               aErrorList);
+    assertNotNull (ret);
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+    aResults.addAll (ret);
+    return aBAOS.toByteArray ();
+  }
+
+  @Test
+  public void testOutputEntryName ()
+  {
+    final UBLToCIIArchiveConverter aConverter = new UBLToCIIArchiveConverter (UBLToCIIConversionEngine.getDefaultInstance ());
+    assertEquals ("a-cii.xml", aConverter.getOutputEntryName ("a.xml"));
+    assertEquals ("dir/sub/a-cii.xml", aConverter.getOutputEntryName ("dir/sub/a.xml"));
+    assertEquals ("dir/a-cii.xml", aConverter.getOutputEntryName ("dir/a.xml.gz"));
+    assertEquals ("a.b/c-cii.xml", aConverter.getOutputEntryName ("a.b/c"));
+  }
+
+  @Test
+  public void testConvertArchive () throws IOException
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final ICommonsList <File> aFiles = new CommonsArrayList <> ();
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21Invoice ());
+    aFiles.addAll (MockSettings.getAllTestFilesUBL21CreditNote ());
+    final byte [] aArchive = _createArchive (aFiles);
+
+    // Small window to make sure the conversions overtake each other
+    final UBLToCIIArchiveConverter aConverter = new UBLToCIIArchiveConverter (aEngine,
+                                                                              ForkJoinPool.commonPool (),
+                                                                              3,
+                                                                              UBLToCIIArchiveConverter.DEFAULT_OUTPUT_SUFFIX);
+    final ICommonsList <UBLToCIIArchiveConverter.EntryResult> aResults = new CommonsArrayList <> ();
+    final byte [] aOutput = _convert (aConverter, aArchive, aResults);
+
+    // Directory skipped, readme failed
+    assertEquals (aFiles.size () + 1, aResults.size ());
+    final UBLToCIIArchiveConverter.EntryResult aLast = aResults.getLastOrNull ();
+    assertEquals ("readme.txt", aLast.getInputName ());
+    assertFalse (aLast.isSuccess ());
+    assertNull (aLast.getOutputName ());
+    assertTrue (aLast.getErrorList ().containsAtLeastOneError ());
+
+    // Same order and same content as the single conversion
+    try (final ZipInputStream aZIS = new ZipInputStream (new NonBlockingByteArrayInputStream (aOutput)))
+    {
+      for (int i = 0; i < aFiles.size (); ++i)
+      {
+        final UBLToCIIArchiveConverter.EntryResult aResult = aResults.get (i);
+        assertTrue (aResult.getErrorList ().toString (), aResult.isSuccess ());
+
+        final ZipEntry aEntry = aZIS.getNextEntry ();
+        assertNotNull (aEntry);
+        assertEquals (aResult.getOutputName (), aEntry.getName ());
+        assertEquals (aConverter.getOutputEntryName ("batch/" + aFiles.get (i).getName ()), aEntry.getName ());
+
+        final NonBlockingByteArrayOutputStream aExpected = new NonBlockingByteArrayOutputStream ();
+        final ErrorList aErrorList = new ErrorList ();
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (SimpleFileIO.getAllFileBytes (aFiles.get (i))),
+                                                             aExpected,
+                                                             aErrorList)
+                           .isSuccess ());
+        assertArrayEquals (aEntry.getName (),
+                           aExpected.toByteArray (),
+                           StreamHelper.getAllBytes (new NonClosingInputStream (aZIS)));
+      }
+      assertNull (aZIS.getNextEntry ());
+    }
+
+    // Deterministic output
+    assertArrayEquals (aOutput, _convert (aConverter, aArchive, new CommonsArrayList <> ()));
+    assertArrayEquals (aOutput,
+                       _convert (new UBLToCIIArchiveConverter (aEngine,
+                                                               ForkJoinPool.commonPool (),
+                                                               1,
+                                                               UBLToCIIArchiveConverter.DEFAULT_OUTPUT_SUFFIX),
+                                 aArchive,
+                                 new CommonsArrayList <> ()));
+  }
+
+  @Test
+  public void testTruncatedArchive () throws IOException
+  {
+    final UBLToCIIArchiveConverter aConverter = new UBLToCIIArchiveConverter (UBLToCIIConversionEngine.getDefaultInstance ());
+    final byte [] aArchive = _createArchive (MockSettings.getAllTestFilesUBL21Invoice ());
+    final byte [] aTruncated = Arrays.copyOf (aArchive, aArchive.length / 2);
+
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (aConverter.convertArchive (new NonBlockingByteArrayInputStream (aTruncated),
+                                           new NonBlockingByteArrayOutputStream (),
+                                           aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}
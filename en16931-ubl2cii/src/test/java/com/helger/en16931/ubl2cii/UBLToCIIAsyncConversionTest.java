@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import javax.annotation.Nonnull;
+
+import org.junit.Test;
+
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link UBLToCIIAsyncConversion}.
+ *
+ * @author Philip Helger
+ */
+public final class UBLToCIIAsyncConversionTest
+{
+  private static final UBLToCIIConversionEngine ENGINE = UBLToCIIConversionEngine.getDefaultInstance ();
+
+  @Nonnull
+  private static String _convertSync (@Nonnull final byte [] aBytes)
+  {
+    final CrossIndustryInvoiceType aCII = ENGINE.convertUBL21AutoDetectToCIID16B (new NonBlockingByteArrayInputStream (aBytes),
+                                                                                  new ErrorList ());
+    assertNotNull (aCII);
+    return MockSettings.getAsString (aCII);
+  }
+
+  @Test
+  public void testRandomChunks ()
+  {
+    final Random aRandom = new Random (1234);
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final byte [] aBytes = SimpleFileIO.getAllFileBytes (aFile);
+      final ErrorList aErrorList = new ErrorList ();
+      final UBLToCIIAsyncConversion aConversion = ENGINE.createAsyncConversion (aErrorList);
+      int nOfs = 0;
+      while (nOfs < aBytes.length)
+      {
+        final int nLen = Math.min (1 + aRandom.nextInt (100), aBytes.length - nOfs);
+        aConversion.feed (aBytes, nOfs, nLen);
+        nOfs += nLen;
+      }
+      final CrossIndustryInvoiceType aCII = aConversion.complete ();
+      assertNotNull (aFile.getName () + ": " + aErrorList, aCII);
+      assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+      assertEquals (aFile.getName (), _convertSync (aBytes), MockSettings.getAsString (aCII));
+    }
+  }
+
+  @Test
+  public void testInterleavedOnSameThread ()
+  {
+    final ICommonsList <File> aFiles = MockSettings.getAllTestFiles ();
+    final ICommonsList <byte []> aBytes = aFiles.getAllMapped (SimpleFileIO::getAllFileBytes);
+    final ErrorList aErrorList = new ErrorList ();
+    final ICommonsList <UBLToCIIAsyncConversion> aConversions = new CommonsArrayList <> ();
+    for (int i = 0; i < aFiles.size (); ++i)
+      aConversions.add (ENGINE.createAsyncConversion (aErrorList));
+
+    // Feed one chunk of each document in turn
+    final int nChunkSize = 64;
+    boolean bAnyFed = true;
+    for (int nOfs = 0; bAnyFed; nOfs += nChunkSize)
+    {
+      bAnyFed = false;
+      for (int i = 0; i < aFiles.size (); ++i)
+      {
+        final byte [] a = aBytes.get (i);
+        if (nOfs < a.length)
+        {
+          aConversions.get (i).feed (a, nOfs, Math.min (nChunkSize, a.length - nOfs));
+          bAnyFed = true;
+        }
+      }
+    }
+
+    for (int i = 0; i < aFiles.size (); ++i)
+    {
+      final CrossIndustryInvoiceType aCII = aConversions.get (i).complete ();
+      assertNotNull (aErrorList.toString (), aCII);
+      assertEquals (_convertSync (aBytes.get (i)), MockSettings.getAsString (aCII));
+    }
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+  }
+
+  @Test
+  public void testIncomplete ()
+  {
+    final byte [] aBytes = SimpleFileIO.getAllFileBytes (MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ());
+    final ErrorList aErrorList = new ErrorList ();
+    final UBLToCIIAsyncConversion aConversion = ENGINE.createAsyncConversion (aErrorList);
+    aConversion.feed (aBytes, 0, aBytes.length / 2);
+    assertNull (aConversion.complete ());
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testUnsupportedDocumentType ()
+  {
+    final byte [] aBytes = "<Order xmlns='urn:oasis:names:specification:ubl:schema:xsd:Order-2'/>".getBytes (StandardCharsets.UTF_8);
+    final ErrorList aErrorList = new ErrorList ();
+    final UBLToCIIAsyncConversion aConversion = ENGINE.createAsyncConversion (aErrorList);
+    aConversion.feed (aBytes, 0, aBytes.length);
+    assertTrue (aConversion.isFailed ());
+    assertNull (aConversion.complete ());
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2024-2025 Philip Helger
+ * http://www.helger.com
+ * philip[at]helger[dot]com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.helger.en16931.ubl2cii;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.dom.DOMResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.helger.cii.d16b.CIID16BCrossIndustryInvoiceTypeMarshaller;
+import com.helger.commons.collection.impl.CommonsArrayList;
+import com.helger.commons.collection.impl.ICommonsList;
+import com.helger.commons.error.list.ErrorList;
+import com.helger.commons.io.file.FileHelper;
+import com.helger.commons.io.file.SimpleFileIO;
+import com.helger.commons.io.stream.NonBlockingByteArrayInputStream;
+import com.helger.commons.io.stream.NonBlockingByteArrayOutputStream;
+import com.helger.commons.mutable.MutableInt;
+import com.helger.xml.serialize.read.DOMReader;
+
+import un.unece.uncefact.data.standard.crossindustryinvoice._100.CrossIndustryInvoiceType;
+
+/**
+ * Test class for class {@link UBLToCIIConversionEngine}.
+ *
+ * @author Philip Helger
+ */
+public final class UBLToCIIConversionEngineTest
+{
+  @Test
+  public void testSameResultAsMarshaller () throws IOException
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    for (final File aFile : MockSettings.getAllTestFiles ())
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final ErrorList aErrorList = new ErrorList ();
+        final CrossIndustryInvoiceType aCII = aEngine.convertUBL21AutoDetectToCIID16B (aIS, aErrorList);
+        assertNotNull (aCII);
+
+        final byte [] aExpected = new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
+                                                                                  .getAsBytes (aCII);
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        assertTrue (aEngine.writeCIID16B (aCII, aBAOS, aErrorList).isSuccess ());
+        assertArrayEquals ("Difference in " + aFile.getName (), aExpected, aBAOS.toByteArray ());
+        assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+      }
+  }
+
+  @Test
+  public void testStreamedLinesSameResultAsMarshaller () throws IOException
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final byte [] aExpected;
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final CrossIndustryInvoiceType aCII = aEngine.convertUBL21AutoDetectToCIID16B (aIS, aErrorList);
+        assertNotNull (aCII);
+        aExpected = new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true).getAsBytes (aCII);
+      }
+
+      // Lines are converted while writing
+      final boolean bInvoice = MockSettings.getAllTestFilesUBL21Invoice ().contains (aFile);
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        if (bInvoice)
+          assertTrue (aEngine.convertUBL21InvoiceToCIID16B (aIS, aBAOS, aErrorList).isSuccess ());
+        else
+          assertTrue (aEngine.convertUBL21CreditNoteToCIID16B (aIS, aBAOS, aErrorList).isSuccess ());
+        assertArrayEquals ("Difference in " + aFile.getName (), aExpected, aBAOS.toByteArray ());
+      }
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aBAOS, aErrorList).isSuccess ());
+        assertArrayEquals ("Difference in " + aFile.getName (), aExpected, aBAOS.toByteArray ());
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testConcurrentReuse () throws Exception
+  {
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.DEFAULT);
+    final ICommonsList <File> aFiles = MockSettings.getAllTestFiles ();
+
+    // Sequential reference results
+    final ICommonsList <byte []> aExpected = new CommonsArrayList <> ();
+    for (final File aFile : aFiles)
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aBAOS, new ErrorList ()).isSuccess ());
+        aExpected.add (aBAOS.toByteArray ());
+      }
+
+    // Same engine used from multiple threads at the same time
+    final ExecutorService aES = Executors.newFixedThreadPool (4);
+    try
+    {
+      final List <Future <byte []>> aFutures = new ArrayList <> ();
+      for (int nRun = 0; nRun < 4; ++nRun)
+        for (final File aFile : aFiles)
+          aFutures.add (aES.submit ( () -> {
+            try (final InputStream aIS = FileHelper.getInputStream (aFile))
+            {
+              final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+              final ErrorList aErrorList = new ErrorList ();
+              aEngine.convertUBL21AutoDetectToCIID16B (aIS, aBAOS, aErrorList);
+              return aBAOS.toByteArray ();
+            }
+          }));
+
+      for (int i = 0; i < aFutures.size (); ++i)
+        assertArrayEquals (aExpected.get (i % aFiles.size ()), aFutures.get (i).get ());
+    }
+    finally
+    {
+      aES.shutdown ();
+    }
+  }
+
+  @Test
+  public void testUnformattedOutput () throws IOException
+  {
+    final UBLToCIIConversionSettings aSettings = UBLToCIIConversionSettings.builder ().formattedOutput (false).build ();
+    assertFalse (aSettings.isFormattedOutput ());
+    assertEquals (aSettings, UBLToCIIConversionSettings.builder (aSettings).build ());
+
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (aSettings);
+    final File aFile = MockSettings.getAllTestFilesUBL21Invoice ().getFirstOrNull ();
+    try (final InputStream aIS = FileHelper.getInputStream (aFile))
+    {
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      final ErrorList aErrorList = new ErrorList ();
+      assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aBAOS, aErrorList).isSuccess ());
+      final String sXML = aBAOS.getAsString (StandardCharsets.UTF_8);
+      assertFalse (sXML.contains ("\n  <"));
+      assertTrue (sXML.contains ("CrossIndustryInvoice"));
+    }
+  }
+
+  @Test
+  public void testCompactOutput () throws IOException
+  {
+    final UBLToCIIConversionSettings aSettings = UBLToCIIConversionSettings.builder ()
+                                                                           .outputProfile (ECIIOutputProfile.COMPACT)
+                                                                           .build ();
+    assertFalse (aSettings.isFormattedOutput ());
+    assertEquals (aSettings, UBLToCIIConversionSettings.builder ().formattedOutput (false).build ());
+
+    final UBLToCIIConversionEngine aPrettyEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final UBLToCIIConversionEngine aCompactEngine = new UBLToCIIConversionEngine (aSettings);
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final NonBlockingByteArrayOutputStream aPretty = new NonBlockingByteArrayOutputStream ();
+      final NonBlockingByteArrayOutputStream aCompact = new NonBlockingByteArrayOutputStream ();
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertTrue (aPrettyEngine.convertUBL21AutoDetectToCIID16B (aIS, aPretty, aErrorList).isSuccess ());
+      }
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertTrue (aCompactEngine.convertUBL21AutoDetectToCIID16B (aIS, aCompact, aErrorList).isSuccess ());
+      }
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+      assertTrue (aCompact.size () < aPretty.size ());
+
+      final String sXML = aCompact.getAsString (StandardCharsets.UTF_8);
+      assertFalse (sXML.contains (">\n"));
+      assertFalse (sXML.contains (" />"));
+
+      // All namespaces are declared on the root element only
+      final String sRoot = sXML.substring (0, sXML.indexOf ('>', sXML.indexOf ("<rsm:CrossIndustryInvoice")));
+      assertEquals (4, sRoot.split ("xmlns:", -1).length - 1);
+      assertEquals (4, sXML.split ("xmlns:", -1).length - 1);
+
+      // Same content
+      final CrossIndustryInvoiceType aCII = new CIID16BCrossIndustryInvoiceTypeMarshaller ().read (aCompact.toByteArray ());
+      assertNotNull (aCII);
+      assertArrayEquals ("Difference in " + aFile.getName (),
+                         aPretty.toByteArray (),
+                         new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true).getAsBytes (aCII));
+    }
+  }
+
+  @Test
+  public void testCanonicalOutputWithDigest () throws IOException
+  {
+    final UBLToCIIConversionEngine aCanonicalEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                             .outputProfile (ECIIOutputProfile.CANONICAL)
+                                                                                                             .build ());
+    // The charset is ignored
+    final UBLToCIIConversionEngine aCanonicalEngine2 = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                              .outputProfile (ECIIOutputProfile.CANONICAL)
+                                                                                                              .charset (StandardCharsets.ISO_8859_1)
+                                                                                                              .build ());
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      final CIIOutputDigest aDigest;
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        aDigest = aCanonicalEngine.convertUBL21AutoDetectToCIID16BWithDigest (aIS, aBAOS, aErrorList);
+      }
+      assertNotNull (aDigest);
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+      final byte [] aBytes = aBAOS.toByteArray ();
+
+      // Digest of exactly the written bytes
+      assertEquals (aBytes.length, aDigest.getByteCount ());
+      assertArrayEquals (AttachmentStore.createMessageDigest ().digest (aBytes), aDigest.getAllDigestBytes ());
+      assertEquals (64, aDigest.getDigestAsHexString ().length ());
+
+      // Same bytes and digest via the channel and with another engine
+      final NonBlockingByteArrayOutputStream aBAOS2 = new NonBlockingByteArrayOutputStream ();
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertEquals (aDigest,
+                      aCanonicalEngine2.convertUBL21AutoDetectToCIID16BWithDigest (aIS,
+                                                                                   Channels.newChannel (aBAOS2),
+                                                                                   aErrorList));
+      }
+      assertArrayEquals (aBytes, aBAOS2.toByteArray ());
+
+      final String sXML = new String (aBytes, StandardCharsets.UTF_8);
+      assertTrue (sXML.startsWith ("<rsm:CrossIndustryInvoice xmlns:qdt=\"urn:un:unece:uncefact:data:standard:QualifiedDataType:100\" xmlns:ram="));
+      assertFalse (sXML.contains ("\n<"));
+      assertFalse (sXML.contains (" />"));
+
+      // Same content
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertArrayEquals ("Difference in " + aFile.getName (),
+                           new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
+                                                                          .getAsBytes (aCanonicalEngine.convertUBL21AutoDetectToCIID16B (aIS,
+                                                                                                                                         aErrorList)),
+                           new CIID16BCrossIndustryInvoiceTypeMarshaller ().setFormattedOutput (true)
+                                                                          .getAsBytes (new CIID16BCrossIndustryInvoiceTypeMarshaller ().read (aBytes)));
+      }
+    }
+
+    // No digest on error
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (aCanonicalEngine.convertUBL21AutoDetectToCIID16BWithDigest (new NonBlockingByteArrayInputStream ("<Invoice/>".getBytes (StandardCharsets.UTF_8)),
+                                                                            new NonBlockingByteArrayOutputStream (),
+                                                                            aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testDOMAndSAXOutput () throws IOException
+  {
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                   .outputProfile (ECIIOutputProfile.COMPACT)
+                                                                                                   .build ());
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final ErrorList aErrorList = new ErrorList ();
+      final NonBlockingByteArrayOutputStream aBAOS = new NonBlockingByteArrayOutputStream ();
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aBAOS, aErrorList).isSuccess ());
+      }
+      final Document aExpected = DOMReader.readXMLDOM (aBAOS.toByteArray ());
+      assertNotNull (aExpected);
+
+      // DOM
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final Document aDoc = aEngine.convertUBL21AutoDetectToCIID16BDocument (aIS, aErrorList);
+        assertNotNull (aDoc);
+        assertTrue ("Difference in " + aFile.getName (), aExpected.isEqualNode (aDoc));
+      }
+
+      // Any result
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        final DOMResult aResult = new DOMResult ();
+        assertTrue (aEngine.convertUBL21AutoDetectToCIID16B (aIS, aResult, aErrorList).isSuccess ());
+        assertTrue ("Difference in " + aFile.getName (), aExpected.isEqualNode (aResult.getNode ()));
+      }
+
+      // SAX
+      final CrossIndustryInvoiceType aCII = new CIID16BCrossIndustryInvoiceTypeMarshaller ().read (aBAOS.toByteArray ());
+      final MutableInt aElementCount = new MutableInt (0);
+      assertTrue (aEngine.writeCIID16B (aCII, new DefaultHandler ()
+      {
+        @Override
+        public void startElement (final String sURI, final String sLocalName, final String sQName, final Attributes aAttrs)
+        {
+          aElementCount.inc ();
+        }
+      }, aErrorList).isSuccess ());
+      assertEquals (aExpected.getElementsByTagNameNS ("*", "*").getLength (), aElementCount.intValue ());
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testAllInputTypes () throws Exception
+  {
+    final UBLToCIIConversionEngine aEngine = UBLToCIIConversionEngine.getDefaultInstance ();
+    final CIID16BCrossIndustryInvoiceTypeMarshaller aMarshaller = new CIID16BCrossIndustryInvoiceTypeMarshaller ();
+    for (final File aFile : MockSettings.getAllTestFiles ())
+    {
+      final String sExpected;
+      try (final InputStream aIS = FileHelper.getInputStream (aFile))
+      {
+        sExpected = aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aIS, new ErrorList ()));
+      }
+      final byte [] aBytes = SimpleFileIO.getAllFileBytes (aFile);
+      final ErrorList aErrorList = new ErrorList ();
+
+      assertEquals (sExpected, aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aBytes, aErrorList)));
+
+      // Heap buffer with an offset
+      final byte [] aPadded = new byte [aBytes.length + 10];
+      System.arraycopy (aBytes, 0, aPadded, 5, aBytes.length);
+      final ByteBuffer aHeapBuffer = ByteBuffer.wrap (aPadded, 5, aBytes.length).slice ();
+      assertEquals (sExpected, aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aHeapBuffer, aErrorList)));
+      assertEquals (0, aHeapBuffer.position ());
+
+      final ByteBuffer aDirectBuffer = ByteBuffer.allocateDirect (aBytes.length).put (aBytes).flip ();
+      assertEquals (sExpected, aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aDirectBuffer, aErrorList)));
+      assertEquals (0, aDirectBuffer.position ());
+
+      assertEquals (sExpected,
+                    aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aFile.toPath (), aErrorList)));
+
+      final Document aDoc = DOMReader.readXMLDOM (aBytes);
+      assertNotNull (aDoc);
+      assertEquals (sExpected, aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aDoc, aErrorList)));
+
+      final XMLStreamReader aReader = StAXHelper.createXMLStreamReader (new NonBlockingByteArrayInputStream (aBytes));
+      try
+      {
+        assertEquals (sExpected, aMarshaller.getAsString (aEngine.convertUBL21AutoDetectToCIID16B (aReader, aErrorList)));
+      }
+      finally
+      {
+        aReader.close ();
+      }
+
+      assertTrue ("Errors: " + aErrorList.toString (), aErrorList.containsNoError ());
+    }
+  }
+
+  @Test
+  public void testSchemaValidationOfLines ()
+  {
+    // Wrong element order inside a line - only detected by the schema
+    // validation
+    final String sXML = MockSettings.getBaseExampleInvoice ()
+                                    .replaceFirst ("<cac:InvoiceLine>",
+                                                   "<cac:InvoiceLine><cbc:Note>x</cbc:Note>");
+    final byte [] aBytes = sXML.getBytes (StandardCharsets.UTF_8);
+
+    ErrorList aErrorList = new ErrorList ();
+    assertNull (UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aBytes, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+
+    aErrorList = new ErrorList ();
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                  .useSchema (false)
+                                                                                                  .build ());
+    assertNotNull (aEngine.convertUBL21InvoiceToCIID16B (aBytes, aErrorList));
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+  }
+
+  @Test
+  public void testSchemaValidationOfSkippedElements ()
+  {
+    // cac:Signature without the mandatory cbc:ID
+    final String sXML = MockSettings.getBaseExampleInvoice ()
+                                    .replace ("<cac:AccountingSupplierParty>",
+                                              "<cac:Signature><cbc:Note>no ID</cbc:Note></cac:Signature><cac:AccountingSupplierParty>");
+    final byte [] aBytes = sXML.getBytes (StandardCharsets.UTF_8);
+
+    // Skipped elements are dropped before the validation
+    ErrorList aErrorList = new ErrorList ();
+    assertNotNull (UBLToCIIConversionEngine.getDefaultInstance ().convertUBL21InvoiceToCIID16B (aBytes, aErrorList));
+    assertTrue (aErrorList.toString (), aErrorList.containsNoError ());
+
+    // Not mapped, but not skipped either - validated while being read over
+    aErrorList = new ErrorList ();
+    final UBLToCIIConversionEngine aEngine = new UBLToCIIConversionEngine (UBLToCIIConversionSettings.builder ()
+                                                                                                  .skippedElements (null)
+                                                                                                  .build ());
+    assertNull (aEngine.convertUBL21InvoiceToCIID16B (aBytes, aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+
+  @Test
+  public void testMissingPath ()
+  {
+    final ErrorList aErrorList = new ErrorList ();
+    assertNull (UBLToCIIConversionEngine.getDefaultInstance ()
+                                        .convertUBL21AutoDetectToCIID16B (new File ("does-not-exist.xml").toPath (), aErrorList));
+    assertTrue (aErrorList.containsAtLeastOneError ());
+  }
+}